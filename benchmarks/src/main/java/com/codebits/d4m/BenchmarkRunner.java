@@ -0,0 +1,45 @@
+package com.codebits.d4m;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Run the d4m benchmarks.
+ *
+ * Accepts the usual JMH command line. Unless overridden, results are
+ * reported as throughput in ops/s and the GC profiler is attached so
+ * every benchmark also reports gc.alloc.rate.norm, the bytes allocated
+ * per operation.
+ *
+ * @author david medinets
+ */
+public class BenchmarkRunner {
+
+    /** Run the benchmarks selected on the command line.
+     *
+     * @param args JMH command line options.
+     * @throws CommandLineOptionException if the options cannot be parsed.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getBenchModes().isEmpty()) {
+            options.mode(Mode.Throughput);
+        }
+        if (!commandLine.getTimeUnit().hasValue()) {
+            options.timeUnit(TimeUnit.SECONDS);
+        }
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.minicluster.MiniAccumuloCluster;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end ingest and query throughput against MiniAccumuloCluster.
+ *
+ * Each ingest operation writes one batch of edges through D4MWriter and
+ * flushes it, so the score is batches per second; multiply by batchSize
+ * for edges per second. The BatchWriterConfig settings are parameters so
+ * configurations can be compared on the same data.
+ *
+ * The query benchmarks read rows and columns written during setup.
+ *
+ * @author david medinets
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ClusterBenchmark {
+
+    private final static String PASSWORD = "secret";
+
+    @Param({"1000"})
+    public int batchSize;
+
+    @Param({"10000000", "50000000"})
+    public long maxMemory;
+
+    @Param({"1", "10"})
+    public int maxWriteThreads;
+
+    private File directory = null;
+    private MiniAccumuloCluster cluster = null;
+    private TableManager tableManager = null;
+    private D4MWriter writer = null;
+    private D4MQuery query = null;
+    private List<String> queryRows = null;
+    private List<String> queryColumns = null;
+    private long batch = 0;
+
+    /** Start the cluster, create the tables and write the query data.
+     *
+     * @throws IOException if the cluster directory cannot be created.
+     * @throws InterruptedException if the cluster start is interrupted.
+     * @throws AccumuloException if the cluster cannot be reached.
+     * @throws AccumuloSecurityException if the root user is rejected.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException, AccumuloException, AccumuloSecurityException {
+        directory = Files.createTempDirectory("d4m-benchmark").toFile();
+        cluster = new MiniAccumuloCluster(directory, PASSWORD);
+        cluster.start();
+        Connector connector = cluster.getConnector("root", PASSWORD);
+        tableManager = new TableManager(connector, connector.tableOperations());
+        tableManager.createTables();
+
+        writer = new D4MWriter(tableManager);
+        writer.setMaxMemory(maxMemory);
+        writer.setMaxWriteThreads(maxWriteThreads);
+        writer.open();
+
+        queryRows = new ArrayList<>();
+        queryColumns = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String row = String.format("query%08d", i);
+            writer.addEdge(row, "field|value" + (i % 100));
+            if (i % 100 == 0) {
+                queryRows.add(row);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            queryColumns.add("field|value" + i);
+        }
+        writer.flush();
+
+        query = new D4MQuery(tableManager);
+    }
+
+    /** Close the writer and stop the cluster.
+     *
+     * @throws IOException if the cluster directory cannot be removed.
+     * @throws InterruptedException if the cluster stop is interrupted.
+     */
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException, InterruptedException {
+        writer.close();
+        cluster.stop();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /** Write and flush one batch of edges.
+     *
+     * @return the batch number.
+     */
+    @Benchmark
+    public long ingest() {
+        long current = batch++;
+        for (int i = 0; i < batchSize; i++) {
+            writer.addEdge(String.format("ingest%08d%06d", current, i), "field|value" + (i % 1000));
+        }
+        writer.flush();
+        return current;
+    }
+
+    /** Read 100 rows from Tedge.
+     *
+     * @return the rows read.
+     */
+    @Benchmark
+    public AssociativeArray getRows() {
+        return query.getRows(queryRows);
+    }
+
+    /** Read 10 columns from TedgeTranspose.
+     *
+     * @return the columns read.
+     */
+    @Benchmark
+    public AssociativeArray getColumns() {
+        return query.getColumns(queryColumns);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.codebits.d4m;
+
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measure DegreeAggregator.add on a skewed column distribution.
+ *
+ * Column popularity follows a power law, as it does in real D4M data,
+ * so most adds hit an existing slot and a few insert a new column.
+ *
+ * @author david medinets
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DegreeAggregatorBenchmark {
+
+    @Param({"1000", "100000"})
+    public int maxEntries;
+
+    private DegreeAggregator aggregator = null;
+    private String[] columns = null;
+    private int next = 0;
+
+    /** Build the column stream.
+     */
+    @Setup
+    public void setup() {
+        aggregator = new DegreeAggregator(maxEntries);
+        Random random = new Random(42);
+        columns = new String[1 << 16];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = "field|value" + (int) Math.pow(2 * maxEntries, random.nextDouble());
+        }
+    }
+
+    /** Add one degree increment, clearing the aggregator when full.
+     *
+     * @return true when the add filled the aggregator.
+     */
+    @Benchmark
+    public boolean add() {
+        boolean full = aggregator.add(columns[next++ & (columns.length - 1)], 1);
+        if (full) {
+            aggregator.clear();
+        }
+        return full;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.codebits.d4m;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.data.Mutation;
+
+/** MultiTableBatchWriter which drops every mutation after sizing it.
+ *
+ * Lets the benchmarks measure how D4MWriter builds mutations without
+ * the cost of sending them. The summed mutation size keeps the JIT from
+ * discarding the work.
+ *
+ * @author david medinets
+ */
+public class DiscardingBatchWriter implements MultiTableBatchWriter, BatchWriter {
+
+    private long bytes = 0;
+    private boolean closed = false;
+
+    /** Get the total size of the mutations seen so far.
+     *
+     * @return the summed size in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public BatchWriter getBatchWriter(final String tablename) {
+        return this;
+    }
+
+    @Override
+    public void addMutation(final Mutation mutation) {
+        bytes += mutation.numBytes();
+    }
+
+    @Override
+    public void addMutations(final Iterable<Mutation> mutations) {
+        for (Mutation mutation : mutations) {
+            addMutation(mutation);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.codebits.d4m;
+
+import java.util.Collections;
+import java.util.Map;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.mockito.Mockito.*;
+
+/** Measure triple-to-mutation encoding in D4MWriter.
+ *
+ * Mutations go to a DiscardingBatchWriter, so only the client-side
+ * work is measured: Text encoding, mutation building and, when
+ * maxDegreeEntries is not zero, degree aggregation.
+ *
+ * @author david medinets
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MutationBenchmark {
+
+    @Param({"0", "100000"})
+    public int maxDegreeEntries;
+
+    @Param({"1000"})
+    public int distinctColumns;
+
+    private final DiscardingBatchWriter batchWriter = new DiscardingBatchWriter();
+    private D4MWriter writer = null;
+    private String[] rows = null;
+    private String[] columns = null;
+    private int next = 0;
+
+    /** Open a writer on a stub connector and build the input triples.
+     *
+     * The stub metadata table is empty, so the writer uses the STRING
+     * degree encoding.
+     *
+     * @throws TableNotFoundException never; the connector is a stub.
+     */
+    @Setup
+    public void setup() throws TableNotFoundException {
+        Scanner metadataScanner = mock(Scanner.class);
+        when(metadataScanner.iterator()).thenReturn(Collections.<Map.Entry<Key, Value>>emptyIterator());
+        Connector connector = mock(Connector.class);
+        when(connector.createScanner(anyString(), any(Authorizations.class))).thenReturn(metadataScanner);
+        when(connector.createMultiTableBatchWriter(any(BatchWriterConfig.class))).thenReturn(batchWriter);
+        writer = new D4MWriter(new TableManager(connector, connector.tableOperations()));
+        writer.setMaxDegreeEntries(maxDegreeEntries);
+        writer.open();
+
+        rows = new String[4096];
+        columns = new String[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = String.format("%040x", i * 2654435761L);
+            columns[i] = "field|value" + (i % distinctColumns);
+        }
+    }
+
+    /** Close the writer.
+     */
+    @TearDown
+    public void teardown() {
+        writer.close();
+    }
+
+    /** Encode one triple into its edge, transpose and degree mutations.
+     *
+     * @return bytes sent to the discarding writer so far.
+     */
+    @Benchmark
+    public long addEdge() {
+        int i = next++ & (rows.length - 1);
+        writer.addEdge(rows[i], columns[i]);
+        return batchWriter.getBytes();
+    }
+
+}
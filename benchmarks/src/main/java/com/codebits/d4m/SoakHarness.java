@@ -0,0 +1,273 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.minicluster.MiniAccumuloCluster;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.io.Text;
+
+/** Soak test R-MAT ingest against MiniAccumuloCluster for each split strategy.
+ *
+ * For every strategy a fresh table set is created through TableManager
+ * and pre-split, then the same RmatGenerator graph is written through
+ * D4MWriter, flushing every batchSize edges. The report gives, per
+ * strategy:
+ *
+ * - overall edges per second, and the sustained rate once the first
+ *   fifth of the batches (the warmup) is past
+ * - p50, p95, p99 and max batch latency, from adding the first edge of
+ *   a batch to the return of its flush
+ * - the tablet count and skew (largest tablet load over mean tablet
+ *   load) of Tedge and TedgeTranspose
+ *
+ * Tablet load is the number of mutations sent to each tablet. It is
+ * counted after the timed run by generating the graph again and
+ * locating each row and column among the table's split points, so
+ * counting does not slow the ingest.
+ *
+ * Usage: SoakHarness [scale [edgeFactor [batchSize [strategy ...]]]]
+ * with defaults 16, 16, 10000 and every strategy.
+ *
+ * @author david medinets
+ */
+public class SoakHarness {
+
+    private final static String PASSWORD = "secret";
+    private final static double WARMUP = 0.2;
+
+    /** How the tables are pre-split before ingest. */
+    public enum Strategy {
+        /** No split points; every table is one tablet. */
+        NONE,
+        /** TableManager.addSplitsForSha1(): 1 through e on Tedge and TedgeText. */
+        SHA1,
+        /** SplitPlanner.addHexSplits(1): 1 through f on Tedge and TedgeText. */
+        HEX,
+        /** SplitPlanner.computeSplits() over a sample of the generated rows and columns: 15 points on Tedge, TedgeTranspose and TedgeDegree. */
+        SAMPLED
+    }
+
+    private final TableManager tableManager;
+    private final RmatGenerator generator;
+    private final int batchSize;
+
+    /** Constructor
+     *
+     * @param tableManager TableManager holding the connector; each strategy uses its own root name.
+     * @param generator generator of the graph written for every strategy.
+     * @param batchSize edges written between flushes.
+     */
+    public SoakHarness(final TableManager tableManager, final RmatGenerator generator, final int batchSize) {
+        this.tableManager = tableManager;
+        this.generator = generator;
+        this.batchSize = batchSize;
+    }
+
+    /** Start a MiniAccumuloCluster and soak each strategy in turn.
+     *
+     * @param args scale, edgeFactor, batchSize and strategy names; all optional.
+     * @throws IOException if the cluster directory cannot be created.
+     * @throws InterruptedException if the cluster start is interrupted.
+     * @throws AccumuloException if the cluster cannot be reached.
+     * @throws AccumuloSecurityException if the root user is rejected.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException, AccumuloException, AccumuloSecurityException {
+        int scale = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int edgeFactor = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        List<Strategy> strategies = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            strategies.add(Strategy.valueOf(args[i].toUpperCase()));
+        }
+        if (strategies.isEmpty()) {
+            strategies.addAll(Arrays.asList(Strategy.values()));
+        }
+
+        File directory = Files.createTempDirectory("d4m-soak").toFile();
+        MiniAccumuloCluster cluster = new MiniAccumuloCluster(directory, PASSWORD);
+        cluster.start();
+        try {
+            Connector connector = cluster.getConnector("root", PASSWORD);
+            SoakHarness harness = new SoakHarness(new TableManager(connector, connector.tableOperations()), new RmatGenerator(scale, edgeFactor, 1), batchSize);
+            System.out.println(String.format("R-MAT scale %d, edge factor %d: %d edges in batches of %d", scale, edgeFactor, harness.generator.getEdgeCount(), batchSize));
+            System.out.println(Result.HEADER);
+            for (Strategy strategy : strategies) {
+                System.out.println(harness.run(strategy));
+            }
+        } finally {
+            cluster.stop();
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /** Create and split a table set for the strategy, ingest the graph and measure it.
+     *
+     * @param strategy split strategy.
+     * @return the measurements.
+     */
+    public Result run(final Strategy strategy) {
+        TableManager tables = tableManager.forRootName("soak" + strategy.name().toLowerCase());
+        tables.createTables();
+        split(tables, strategy);
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        long warmupBatches = Math.max(1, (long) (WARMUP * generator.getEdgeCount() / batchSize));
+        long[] sustained = new long[2];
+        long start = System.nanoTime();
+        try (D4MWriter writer = new D4MWriter(tables)) {
+            writer.open();
+            generator.generate(new TripleSink() {
+
+                private long edges = 0;
+                private long batches = 0;
+                private long batchStart = System.nanoTime();
+
+                @Override
+                public void put(final String row, final String column, final String value) {
+                    writer.put(row, column, value);
+                    if (++edges % batchSize == 0 || edges == generator.getEdgeCount()) {
+                        writer.flush();
+                        long now = System.nanoTime();
+                        latencies.record(now - batchStart);
+                        batchStart = now;
+                        if (++batches == warmupBatches) {
+                            sustained[0] = edges;
+                            sustained[1] = now;
+                        }
+                    }
+                }
+
+            });
+        }
+        long end = System.nanoTime();
+
+        long edges = generator.getEdgeCount();
+        double seconds = (end - start) / 1e9;
+        double sustainedSeconds = (end - sustained[1]) / 1e9;
+        double sustainedRate = sustained[1] == 0 || sustainedSeconds <= 0 ? edges / seconds : (edges - sustained[0]) / sustainedSeconds;
+        TabletLoad edgeLoad = new TabletLoad(tables.getSplits(tables.getEdgeTable()));
+        TabletLoad transposeLoad = new TabletLoad(tables.getSplits(tables.getTransposeTable()));
+        generator.generate((row, column, value) -> {
+            edgeLoad.add(row);
+            transposeLoad.add(column);
+        });
+        return new Result(strategy, edges, edges / seconds, sustainedRate, latencies.snapshot(), edgeLoad, transposeLoad);
+    }
+
+    private void split(final TableManager tables, final Strategy strategy) {
+        SplitPlanner planner = new SplitPlanner(tables);
+        switch (strategy) {
+            case SHA1:
+                tables.addSplitsForSha1();
+                break;
+            case HEX:
+                planner.addHexSplits(1);
+                break;
+            case SAMPLED:
+                final List<Text> rows = new ArrayList<>();
+                final List<Text> columns = new ArrayList<>();
+                long step = Math.max(1, generator.getEdgeCount() / planner.getSampleSize());
+                long[] index = new long[1];
+                generator.generate((row, column, value) -> {
+                    if (index[0]++ % step == 0) {
+                        rows.add(new Text(row));
+                        columns.add(new Text(column));
+                    }
+                });
+                SortedSet<Text> rowSplits = planner.computeSplits(rows.iterator(), 15);
+                SortedSet<Text> columnSplits = planner.computeSplits(columns.iterator(), 15);
+                tables.addSplits(tables.getEdgeTable(), rowSplits);
+                tables.addSplits(tables.getTransposeTable(), columnSplits);
+                tables.addSplits(tables.getDegreeTable(), columnSplits);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Mutations per tablet, tablets located by binary search of the split points. */
+    static class TabletLoad {
+
+        private final String[] splits;
+        private final long[] counts;
+
+        TabletLoad(final Collection<Text> splitPoints) {
+            SortedSet<String> sorted = new TreeSet<>();
+            for (Text split : splitPoints) {
+                sorted.add(split.toString());
+            }
+            splits = sorted.toArray(new String[sorted.size()]);
+            counts = new long[splits.length + 1];
+        }
+
+        /* A tablet holds rows greater than the previous split point, up to and including its own. */
+        void add(final String row) {
+            int position = Arrays.binarySearch(splits, row);
+            counts[position >= 0 ? position : -position - 1]++;
+        }
+
+        int getTablets() {
+            return counts.length;
+        }
+
+        double getSkew() {
+            long total = 0;
+            long max = 0;
+            for (long count : counts) {
+                total += count;
+                max = Math.max(max, count);
+            }
+            return total == 0 ? 1 : max / ((double) total / counts.length);
+        }
+
+    }
+
+    /** Measurements of one strategy. */
+    public static class Result {
+
+        final static String HEADER = String.format("%-8s %10s %12s %12s %9s %9s %9s %9s %14s %14s",
+                "strategy", "edges", "edges/s", "sustained/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "Tedge skew", "Transpose skew");
+
+        private final Strategy strategy;
+        private final long edges;
+        private final double throughput;
+        private final double sustainedThroughput;
+        private final LatencySnapshot latency;
+        private final TabletLoad edgeLoad;
+        private final TabletLoad transposeLoad;
+
+        Result(final Strategy strategy, final long edges, final double throughput, final double sustainedThroughput, final LatencySnapshot latency, final TabletLoad edgeLoad, final TabletLoad transposeLoad) {
+            this.strategy = strategy;
+            this.edges = edges;
+            this.throughput = throughput;
+            this.sustainedThroughput = sustainedThroughput;
+            this.latency = latency;
+            this.edgeLoad = edgeLoad;
+            this.transposeLoad = transposeLoad;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %10d %12.0f %12.0f %9.1f %9.1f %9.1f %9.1f %14s %14s",
+                    strategy, edges, throughput, sustainedThroughput,
+                    latency.getP50Millis(), latency.getP95Millis(), latency.getP99Millis(), latency.getMaxMillis(),
+                    skew(edgeLoad), skew(transposeLoad));
+        }
+
+        private static String skew(final TabletLoad load) {
+            return String.format("%.2f/%d", load.getSkew(), load.getTablets());
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measure split computation from a stream of row ids.
+ *
+ * @author david medinets
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SplitPlannerBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int numRows;
+
+    @Param({"64"})
+    public int numSplits;
+
+    private final SplitPlanner planner = new SplitPlanner();
+    private List<Text> rows = null;
+
+    /** Build the row ids.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        rows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            rows.add(new Text(String.format("%016x", random.nextLong())));
+        }
+    }
+
+    /** Sample the rows and pick the split points.
+     *
+     * @return the split points.
+     */
+    @Benchmark
+    public SortedSet<Text> computeSplits() {
+        return planner.computeSplits(rows.iterator(), numSplits);
+    }
+
+    /** Build the fixed hex prefix splits.
+     *
+     * @return the split points.
+     */
+    @Benchmark
+    public SortedSet<Text> hexSplits() {
+        return SplitPlanner.hexSplits(2);
+    }
+
+}
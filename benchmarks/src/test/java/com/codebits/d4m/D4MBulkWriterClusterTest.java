@@ -0,0 +1,117 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.minicluster.MiniAccumuloCluster;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the D4MBulkWriter class against MiniAccumuloCluster
+ *
+ * @author david
+ */
+public class D4MBulkWriterClusterTest {
+
+    private final static String PASSWORD = "secret";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File directory = null;
+    private static MiniAccumuloCluster cluster = null;
+    private static Connector connector = null;
+
+    /** Start the cluster.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     */
+    @BeforeClass
+    public static void startCluster() throws IOException, InterruptedException, AccumuloException, AccumuloSecurityException {
+        directory = Files.createTempDirectory("d4m-bulk").toFile();
+        cluster = new MiniAccumuloCluster(directory, PASSWORD);
+        cluster.start();
+        connector = cluster.getConnector("root", PASSWORD);
+    }
+
+    /** Stop the cluster.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @AfterClass
+    public static void stopCluster() throws IOException, InterruptedException {
+        cluster.stop();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /** Test imported files can be scanned and the degrees of several imports are summed.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testImportDirectories() throws TableNotFoundException {
+        TableManager tableManager = new TableManager(connector, connector.tableOperations());
+        tableManager.setRootName("bulk");
+        tableManager.createTables();
+        SortedSet<Text> splits = new TreeSet<>(Arrays.asList(new Text("m")));
+        tableManager.addSplits(tableManager.getEdgeTable(), splits);
+
+        D4MBulkWriter writer = new D4MBulkWriter(tableManager, folder.getRoot().getAbsolutePath() + "/first");
+        writer.setMaxBufferedEntries(4);
+        writer.setMaxDegreeEntries(2);
+        writer.addEdge("a1", "city|Paris");
+        writer.addEdge("z1", "city|Paris");
+        writer.addEdge("m", "city|Rome");
+        writer.addEdge("b1", "city|Paris");
+        writer.addText("a1", "some text");
+        writer.importDirectories();
+
+        writer.setWorkDirectory(folder.getRoot().getAbsolutePath() + "/second");
+        writer.addEdge("c1", "city|Paris");
+        writer.importDirectories();
+
+        D4MQuery query = new D4MQuery(tableManager);
+        AssociativeArray rows = query.getRows(Arrays.asList("a1", "m", "z1", "c1"));
+        assertEquals("1", rows.get("a1", "city|Paris"));
+        assertEquals("1", rows.get("m", "city|Rome"));
+        assertEquals("1", rows.get("z1", "city|Paris"));
+        assertEquals("1", rows.get("c1", "city|Paris"));
+        assertEquals(4, query.getColumns(Arrays.asList("city|Paris")).size());
+
+        Map<String, Long> degrees = new QueryPlanner(query).getDegrees(Arrays.asList("city|Paris", "city|Rome"));
+        assertEquals(Long.valueOf(4), degrees.get("city|Paris"));
+        assertEquals(Long.valueOf(1), degrees.get("city|Rome"));
+
+        Scanner scanner = connector.createScanner(tableManager.getTextTable(), new Authorizations());
+        int texts = 0;
+        for (Map.Entry<Key, Value> entry : scanner) {
+            assertEquals("a1", entry.getKey().getRow().toString());
+            assertEquals("some text", entry.getValue().toString());
+            texts++;
+        }
+        assertEquals(1, texts);
+    }
+
+}
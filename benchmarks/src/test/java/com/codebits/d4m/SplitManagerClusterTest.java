@@ -0,0 +1,111 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.minicluster.MiniAccumuloCluster;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests for the SplitManager class against MiniAccumuloCluster
+ *
+ * @author david
+ */
+public class SplitManagerClusterTest {
+
+    private final static String PASSWORD = "secret";
+    private final static long SECOND = 1000000000L;
+
+    private static File directory = null;
+    private static MiniAccumuloCluster cluster = null;
+    private static Connector connector = null;
+
+    /** Start the cluster.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     */
+    @BeforeClass
+    public static void startCluster() throws IOException, InterruptedException, AccumuloException, AccumuloSecurityException {
+        directory = Files.createTempDirectory("d4m-split").toFile();
+        cluster = new MiniAccumuloCluster(directory, PASSWORD);
+        cluster.start();
+        connector = cluster.getConnector("root", PASSWORD);
+    }
+
+    /** Stop the cluster.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @AfterClass
+    public static void stopCluster() throws IOException, InterruptedException {
+        cluster.stop();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /** Test a hot prefix is split into its own tablet and cold tablets added later are merged.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testRunOnce() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        TableManager tableManager = new TableManager(connector, connector.tableOperations());
+        tableManager.setRootName("split");
+        tableManager.createTables();
+        String tablename = tableManager.getEdgeTable();
+
+        WriteRateTracker tracker = new WriteRateTracker(2);
+        SplitManager instance = new SplitManager(tableManager, tracker);
+        instance.setHotWritesPerSecond(100);
+        instance.setMinColdRounds(2);
+        instance.runOnce(SECOND);
+
+        D4MWriter writer = new D4MWriter(tableManager);
+        writer.setWriteRateTracker(tracker);
+        writer.open();
+        for (int i = 0; i < 200; i++) {
+            writer.addEdge(String.format("ab%04d", i), "field|" + (i % 10));
+        }
+        writer.addEdge("zz", "field|0");
+        writer.flush();
+        SplitManager.Round hot = instance.runOnce(SECOND);
+        assertTrue(hot.getSplits() >= 2);
+        assertEquals(Arrays.asList(new Text("ab"), new Text("ac")), splits(tablename));
+
+        // split points nobody planned, around tablets nobody writes to
+        connector.tableOperations().addSplits(tablename, new TreeSet<>(Arrays.asList(new Text("x1"), new Text("x2"), new Text("x3"))));
+        assertEquals(0, instance.runOnce(SECOND).getMerges());
+        assertEquals(1, instance.runOnce(SECOND).getMerges());
+        assertEquals(Arrays.asList(new Text("ab"), new Text("ac")), splits(tablename));
+
+        writer.close();
+        AssociativeArray rows = new D4MQuery(tableManager).getRows(Arrays.asList("ab0000", "zz"));
+        assertEquals("1", rows.get("ab0000", "field|0"));
+        assertEquals("1", rows.get("zz", "field|0"));
+    }
+
+    private static List<Text> splits(final String tablename) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        List<Text> splits = new ArrayList<>(connector.tableOperations().listSplits(tablename));
+        Collections.sort(splits);
+        return splits;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.codebits.d4m;
+
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.commons.lang.Validate;
+
+/** D4M associative array.
+ *
+ * A sparse matrix whose rows and columns are indexed by strings. Rows
+ * and columns are kept in sorted order, matching the order of the
+ * Accumulo tables they are read from.
+ *
+ * @author david medinets
+ */
+public class AssociativeArray implements TripleSink {
+
+    private final SortedMap<String, SortedMap<String, String>> rows = new TreeMap<>();
+    private int size = 0;
+
+    /** Constructor
+     *
+     */
+    public AssociativeArray() {
+    }
+
+    /** Set the value of an entry.
+     *
+     * @param row row key.
+     * @param column column key.
+     * @param value entry value.
+     */
+    @Override
+    public void put(final String row, final String column, final String value) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(column, "column must not be null");
+        SortedMap<String, String> columns = rows.get(row);
+        if (columns == null) {
+            columns = new TreeMap<>();
+            rows.put(row, columns);
+        }
+        if (columns.put(column, value) == null) {
+            size++;
+        }
+    }
+
+    /** Get the value of an entry.
+     *
+     * @param row row key.
+     * @param column column key.
+     * @return the value or null if the entry is not present.
+     */
+    public String get(final String row, final String column) {
+        SortedMap<String, String> columns = rows.get(row);
+        return columns == null ? null : columns.get(column);
+    }
+
+    /** Get the entries of one row.
+     *
+     * @param row row key.
+     * @return read-only map of column to value, empty if the row is not present.
+     */
+    public SortedMap<String, String> getRow(final String row) {
+        SortedMap<String, String> columns = rows.get(row);
+        if (columns == null) {
+            return Collections.unmodifiableSortedMap(new TreeMap<String, String>());
+        }
+        return Collections.unmodifiableSortedMap(columns);
+    }
+
+    /** Get the row keys.
+     *
+     * @return read-only sorted set of row keys.
+     */
+    public SortedSet<String> getRows() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(rows.keySet()));
+    }
+
+    /** Get the column keys.
+     *
+     * @return sorted set of column keys.
+     */
+    public SortedSet<String> getColumns() {
+        SortedSet<String> columns = new TreeSet<>();
+        for (SortedMap<String, String> row : rows.values()) {
+            columns.addAll(row.keySet());
+        }
+        return columns;
+    }
+
+    /** Get the number of entries.
+     *
+     * @return the number of non-empty entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Check whether there are no entries.
+     *
+     * @return true if the array is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Build the transpose.
+     *
+     * @return a new array with rows and columns swapped.
+     */
+    public AssociativeArray transpose() {
+        AssociativeArray transpose = new AssociativeArray();
+        for (Entry<String, SortedMap<String, String>> row : rows.entrySet()) {
+            for (Entry<String, String> column : row.getValue().entrySet()) {
+                transpose.put(column.getKey(), row.getKey(), column.getValue());
+            }
+        }
+        return transpose;
+    }
+
+    /** Add all entries of another array, replacing values on collision.
+     *
+     * @param other array to copy from.
+     */
+    public void putAll(final AssociativeArray other) {
+        for (Entry<String, SortedMap<String, String>> row : other.rows.entrySet()) {
+            for (Entry<String, String> column : row.getValue().entrySet()) {
+                put(row.getKey(), column.getKey(), column.getValue());
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AssociativeArray)) {
+            return false;
+        }
+        return rows.equals(((AssociativeArray) obj).rows);
+    }
+
+    @Override
+    public int hashCode() {
+        return rows.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Entry<String, SortedMap<String, String>> row : rows.entrySet()) {
+            for (Entry<String, String> column : row.getValue().entrySet()) {
+                builder.append('(').append(row.getKey()).append(',').append(column.getKey()).append(")\t").append(column.getValue()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+}
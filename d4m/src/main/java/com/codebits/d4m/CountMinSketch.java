@@ -0,0 +1,136 @@
+package com.codebits.d4m;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** A mergeable estimate of how often each string was added.
+ *
+ * depth rows of width counters; every value increments one counter per
+ * row and its estimate is the smallest of those counters. Estimates
+ * never undercount, and overcount by at most e * total / width with
+ * probability 1 - e^-depth. Heavy-hitter columns are the ones whose
+ * estimate is a large share of getTotal(). Two sketches of the same
+ * dimensions merge by adding their counters.
+ *
+ * @author david medinets
+ */
+public class CountMinSketch {
+
+    /** First byte of the serialized form. */
+    public final static byte TAG = 2;
+
+    @Getter
+    private final int depth;
+
+    @Getter
+    private final int width;
+
+    @Getter
+    private long total = 0;
+
+    private final long[] counters;
+
+    /** Constructor
+     *
+     * @param depth number of rows, each with an independent hash.
+     * @param width number of counters per row.
+     */
+    public CountMinSketch(final int depth, final int width) {
+        Validate.isTrue(depth > 0, "depth must be positive");
+        Validate.isTrue(width > 0, "width must be positive");
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    /** Add occurrences of a string.
+     *
+     * @param value string to count.
+     * @param count number of occurrences.
+     */
+    public void add(final String value, final long count) {
+        long hash = Hashing.hash64(value);
+        for (int row = 0; row < depth; row++) {
+            counters[index(hash, row)] += count;
+        }
+        total += count;
+    }
+
+    /** Estimate the number of occurrences of a string.
+     *
+     * @param value string to look up.
+     * @return the estimate, never less than the true count.
+     */
+    public long estimate(final String value) {
+        long hash = Hashing.hash64(value);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /** Add the counters of another sketch to this one.
+     *
+     * @param other sketch of the same depth and width.
+     */
+    public void merge(final CountMinSketch other) {
+        Validate.isTrue(other.depth == depth && other.width == width, "dimensions must match");
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    /** Serialize the sketch: the tag, depth, width, total and counters.
+     *
+     * @return the serialized sketch.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 8 + counters.length * 8);
+        buffer.put(TAG).putInt(depth).putInt(width).putLong(total);
+        buffer.asLongBuffer().put(counters);
+        return buffer.array();
+    }
+
+    /** Deserialize a sketch written by toBytes.
+     *
+     * @param bytes serialized sketch.
+     * @return the sketch.
+     */
+    public static CountMinSketch fromBytes(final byte[] bytes) {
+        Validate.isTrue(bytes.length >= 17 && bytes[0] == TAG, "not a serialized CountMinSketch");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        int depth = buffer.getInt();
+        int width = buffer.getInt();
+        Validate.isTrue(bytes.length == 17 + (long) depth * width * 8, "truncated CountMinSketch");
+        CountMinSketch sketch = new CountMinSketch(depth, width);
+        sketch.total = buffer.getLong();
+        buffer.asLongBuffer().get(sketch.counters);
+        return sketch;
+    }
+
+    /* Kirsch-Mitzenmacher: the row hashes are h1 + row * h2. */
+    private int index(final long hash, final int row) {
+        int h = (int) hash + row * (int) (hash >>> 32);
+        return row * width + (h & Integer.MAX_VALUE) % width;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof CountMinSketch)) {
+            return false;
+        }
+        CountMinSketch other = (CountMinSketch) o;
+        return other.depth == depth && other.width == width && other.total == total && Arrays.equals(counters, other.counters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counters);
+    }
+
+}
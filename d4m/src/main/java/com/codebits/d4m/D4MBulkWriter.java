@@ -0,0 +1,362 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.rfile.RFile;
+import org.apache.accumulo.core.client.rfile.RFileWriter;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/** Bulk load D4M triples into Tedge, TedgeTranspose, TedgeDegree and TedgeText.
+ *
+ * Triples are buffered in memory, sorted and spilled to run files when
+ * the buffer fills. On importDirectories the runs of each table are
+ * merged, degree counts are summed, and the merged entries are written
+ * to one RFile per tablet using the table's current split points. The
+ * files are then handed to Accumulo with importDirectory, so no entry
+ * goes through a BatchWriter.
+ *
+ * The work directory must be on the file system Accumulo uses. The
+ * local file system works for MiniAccumuloCluster; set a HDFS
+ * FileSystem for a real cluster.
+ *
+ * @author david medinets
+ */
+public class D4MBulkWriter implements TripleSink {
+
+    private final static Text EMPTY_CF = new Text("");
+    private final static String TEXT_CQ = "text";
+    private final static String ONE = "1";
+
+    private final static Comparator<KeyValue> KEY_ORDER = new Comparator<KeyValue>() {
+        @Override
+        public int compare(final KeyValue a, final KeyValue b) {
+            return a.getKey().compareTo(b.getKey());
+        }
+    };
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private FileSystem fileSystem = null;
+
+    @Getter
+    @Setter
+    private String workDirectory = null;
+
+    @Getter
+    @Setter
+    private int maxBufferedEntries = 1000000;
+
+    @Getter
+    @Setter
+    private int maxDegreeEntries = 100000;
+
+    private final Charset charset = Utf8Encoder.UTF8;
+    private final Utf8Encoder encoder = new Utf8Encoder();
+    private final Text rowText = new Text();
+    private final Text columnText = new Text();
+
+    private TableBuffer edgeBuffer = null;
+    private TableBuffer transposeBuffer = null;
+    private TableBuffer degreeBuffer = null;
+    private TableBuffer textBuffer = null;
+    private DegreeAggregator degreeAggregator = null;
+    private DegreeEncoding degreeEncoding = DegreeEncoding.STRING;
+    private int bufferedEntries = 0;
+    private int fileCount = 0;
+
+    /** Constructor
+     *
+     */
+    public D4MBulkWriter() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager holding the connector and table names.
+     * @param workDirectory directory for run files and import files.
+     */
+    public D4MBulkWriter(final TableManager tableManager, final String workDirectory) {
+        this.tableManager = tableManager;
+        this.workDirectory = workDirectory;
+    }
+
+    /** Write a triple with the default value of "1".
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     */
+    public void addEdge(final String row, final String column) {
+        addEdge(row, column, ONE);
+    }
+
+    /** Write a triple.
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     * @param value value of the associative array entry.
+     */
+    public void addEdge(final String row, final String column, final String value) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(column, "column must not be null");
+        Validate.notNull(value, "value must not be null");
+        checkBuffers();
+
+        edgeBuffer.put(row, column, value);
+        transposeBuffer.put(column, row, value);
+        if (degreeAggregator.add(column, 1)) {
+            degreeAggregator.flush(degreeBuffer);
+        }
+        spillIfFull();
+    }
+
+    /** Write a triple; same as addEdge.
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     * @param value value of the associative array entry.
+     */
+    @Override
+    public void put(final String row, final String column, final String value) {
+        addEdge(row, column, value);
+    }
+
+    /** Write the raw text for a row.
+     *
+     * @param row row of the associative array, usually the sha1 of the text.
+     * @param text raw text.
+     */
+    public void addText(final String row, final String text) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(text, "text must not be null");
+        checkBuffers();
+
+        textBuffer.put(row, TEXT_CQ, text);
+        spillIfFull();
+    }
+
+    /** Merge the runs, write one file per tablet and bulk import them.
+     *
+     * The writer can be reused afterwards.
+     */
+    public void importDirectories() {
+        checkBuffers();
+        degreeAggregator.flush(degreeBuffer);
+        for (TableBuffer buffer : buffers()) {
+            buffer.spill();
+        }
+        for (TableBuffer buffer : buffers()) {
+            if (!buffer.runs.isEmpty()) {
+                buffer.writeTabletFiles();
+                buffer.importFiles();
+            }
+        }
+        if (tableManager.getDegreeCache() != null) {
+            tableManager.getDegreeCache().invalidateAll();
+        }
+        edgeBuffer = null;
+        transposeBuffer = null;
+        degreeBuffer = null;
+        textBuffer = null;
+        degreeAggregator = null;
+        bufferedEntries = 0;
+    }
+
+    private void checkBuffers() {
+        if (edgeBuffer != null) {
+            return;
+        }
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(workDirectory, "workDirectory must not be null");
+        if (fileSystem == null) {
+            try {
+                fileSystem = FileSystem.getLocal(new Configuration());
+            } catch (IOException e) {
+                throw new D4MException("Unable to open the local file system.", e);
+            }
+        }
+        edgeBuffer = new TableBuffer(tableManager.getEdgeTable(), false);
+        transposeBuffer = new TableBuffer(tableManager.getTransposeTable(), false);
+        degreeBuffer = new TableBuffer(tableManager.getDegreeTable(), true);
+        textBuffer = new TableBuffer(tableManager.getTextTable(), false);
+        degreeAggregator = new DegreeAggregator(maxDegreeEntries);
+        degreeEncoding = tableManager.getDegreeEncoding();
+    }
+
+    private TableBuffer[] buffers() {
+        return new TableBuffer[]{edgeBuffer, transposeBuffer, degreeBuffer, textBuffer};
+    }
+
+    private void spillIfFull() {
+        if (bufferedEntries >= maxBufferedEntries) {
+            for (TableBuffer buffer : buffers()) {
+                buffer.spill();
+            }
+        }
+    }
+
+    private String nextFileName(final String directory, final String prefix) {
+        return String.format("%s/%s-%06d.rf", directory, prefix, fileCount++);
+    }
+
+    /* Sorted runs and tablet files for one table. */
+    private class TableBuffer implements TripleSink {
+
+        private final String tablename;
+        private final boolean summing;
+        private final List<KeyValue> entries = new ArrayList<>();
+        private final List<String> runs = new ArrayList<>();
+        private final String runDirectory;
+        private final String fileDirectory;
+        private final String failureDirectory;
+
+        TableBuffer(final String tablename, final boolean summing) {
+            this.tablename = tablename;
+            this.summing = summing;
+            this.runDirectory = workDirectory + "/runs/" + tablename;
+            this.fileDirectory = workDirectory + "/files/" + tablename;
+            this.failureDirectory = workDirectory + "/failures/" + tablename;
+        }
+
+        @Override
+        public void put(final String row, final String column, final String value) {
+            Key key = new Key(encoder.encode(row, rowText), EMPTY_CF, encoder.encode(column, columnText), 0);
+            entries.add(new KeyValue(key, summing ? sum(Long.parseLong(value)) : encoder.newValue(value)));
+            bufferedEntries++;
+        }
+
+        void spill() {
+            if (entries.isEmpty()) {
+                return;
+            }
+            Collections.sort(entries, KEY_ORDER);
+            String run = nextFileName(runDirectory, "run");
+            try (RFileWriter writer = RFile.newWriter().to(run).withFileSystem(fileSystem).build()) {
+                for (KeyValue entry : entries) {
+                    writer.append(entry.getKey(), entry.getValue());
+                }
+            } catch (IOException e) {
+                throw new D4MException(String.format("Unable to write run file [%s]", run), e);
+            }
+            runs.add(run);
+            bufferedEntries -= entries.size();
+            entries.clear();
+        }
+
+        void writeTabletFiles() {
+            List<Text> splits = new ArrayList<>(tableManager.getSplits(tablename));
+            Collections.sort(splits);
+
+            Scanner merged = RFile.newScanner().from(runs.toArray(new String[runs.size()])).withFileSystem(fileSystem).withoutSystemIterators().build();
+            RFileWriter writer = null;
+            try {
+                int tablet = 0;
+                Text row = new Text();
+                Key pendingKey = null;
+                long pendingSum = 0;
+                Value pendingValue = null;
+                for (Entry<Key, Value> entry : merged) {
+                    Key key = entry.getKey();
+                    if (pendingKey != null && pendingKey.equals(key, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+                        if (summing) {
+                            pendingSum += degreeEncoding.decode(entry.getValue().get());
+                        }
+                        continue;
+                    }
+                    if (pendingKey != null) {
+                        writer.append(pendingKey, summing ? sum(pendingSum) : pendingValue);
+                    }
+                    key.getRow(row);
+                    if (writer == null || (tablet < splits.size() && row.compareTo(splits.get(tablet)) > 0)) {
+                        while (tablet < splits.size() && row.compareTo(splits.get(tablet)) > 0) {
+                            tablet++;
+                        }
+                        if (writer != null) {
+                            writer.close();
+                        }
+                        writer = RFile.newWriter().to(nextFileName(fileDirectory, "part")).withFileSystem(fileSystem).build();
+                    }
+                    pendingKey = new Key(key);
+                    pendingValue = new Value(entry.getValue().get(), true);
+                    pendingSum = summing ? degreeEncoding.decode(pendingValue.get()) : 0;
+                }
+                if (pendingKey != null) {
+                    writer.append(pendingKey, summing ? sum(pendingSum) : pendingValue);
+                }
+            } catch (IOException e) {
+                throw new D4MException(String.format("Unable to write import files for table [%s]", tablename), e);
+            } finally {
+                merged.close();
+                close(writer);
+            }
+            deleteRuns();
+        }
+
+        void importFiles() {
+            long start = tableManager.getMetrics().startTimer();
+            try {
+                Path failures = new Path(failureDirectory);
+                fileSystem.delete(failures, true);
+                fileSystem.mkdirs(failures);
+                tableManager.getTableOperations().importDirectory(tablename, fileDirectory, failureDirectory, true);
+                FileStatus[] failed = fileSystem.listStatus(failures);
+                if (failed != null && failed.length > 0) {
+                    throw new D4MException(String.format("%d files failed to import into table [%s]; see %s", failed.length, tablename, failureDirectory));
+                }
+                tableManager.getMetrics().recordAdmin("importDirectory", start);
+            } catch (TableNotFoundException e) {
+                throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+            } catch (IOException | AccumuloException | AccumuloSecurityException e) {
+                throw new D4MException(String.format("Unable to import files into table [%s]", tablename), e);
+            }
+        }
+
+        private void deleteRuns() {
+            try {
+                fileSystem.delete(new Path(runDirectory), true);
+            } catch (IOException e) {
+                throw new D4MException(String.format("Unable to delete run files for table [%s]", tablename), e);
+            }
+            runs.clear();
+        }
+
+        private Value sum(final long value) {
+            return degreeEncoding == DegreeEncoding.STRING ? encoder.newValue(value) : degreeEncoding.newValue(value);
+        }
+
+        private void close(final RFileWriter writer) {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    throw new D4MException(String.format("Unable to close import file for table [%s]", tablename), e);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang.Validate;
+
+/** Ingest delimiter-formatted files into the D4M tables.
+ *
+ * The first line of a file holds the field names. Every following line
+ * is a record whose first field is the row key. Each other non-empty
+ * field becomes the triple (row, fieldName + factDelimiter + fieldValue, "1").
+ * Unless they are set explicitly, the field and fact delimiters are
+ * read from TedgeMetadata, where createTables stores them.
+ *
+ * The file is memory mapped in chunks which always end on a record
+ * boundary. The chunks are parsed in parallel and the parsed triples
+ * go through a bounded queue to the sink, so parsers block when the
+ * sink falls behind instead of filling the heap. Only the calling
+ * thread writes to the sink. When the sink fails, the parsers are
+ * interrupted and stop without waiting on the queue.
+ *
+ * @author david medinets
+ */
+public class D4MFileIngest {
+
+    private final static String ONE = "1";
+    private final static List<String> END_OF_CHUNK = Collections.emptyList();
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private String fieldDelimiter = null;
+
+    @Getter
+    @Setter
+    private String factDelimiter = null;
+
+    @Getter
+    @Setter
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    @Getter
+    @Setter
+    private int chunkSize = 64 * 1024 * 1024;
+
+    @Getter
+    @Setter
+    private int queueCapacity = 64;
+
+    @Getter
+    @Setter
+    private int batchSize = 3000;
+
+    private final Charset charset = Utf8Encoder.UTF8;
+
+    /** Constructor
+     *
+     */
+    public D4MFileIngest() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager used to read the delimiters.
+     */
+    public D4MFileIngest(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Parse a file and send its triples to a sink.
+     *
+     * @param file delimiter-formatted file with a header line.
+     * @param sink receiver of the triples, usually a D4MWriter or D4MBulkWriter.
+     * @return the number of records parsed.
+     */
+    public long ingest(final File file, final TripleSink sink) {
+        Validate.notNull(file, "file must not be null");
+        Validate.notNull(sink, "sink must not be null");
+        Validate.isTrue(chunkSize > 0, "chunkSize must be positive");
+        Validate.isTrue(numThreads > 0, "numThreads must be positive");
+        final String field = fieldDelimiter != null ? fieldDelimiter : readDelimiter(true);
+        final String fact = factDelimiter != null ? factDelimiter : readDelimiter(false);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            long headerEnd = nextRecordStart(channel, 0, size);
+            if (headerEnd == 0) {
+                return 0;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+            int headerLength = header.get((int) headerEnd - 1) == '\n' ? (int) headerEnd - 1 : (int) headerEnd;
+            final String[] fieldNames = split(decode(header, 0, headerLength), field);
+
+            List<long[]> chunks = new ArrayList<>();
+            long start = headerEnd;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextRecordStart(channel, start + chunkSize, size);
+                chunks.add(new long[]{start, end});
+                start = end;
+            }
+            return run(channel, chunks, fieldNames, field, fact, sink);
+        } catch (IOException e) {
+            throw new D4MException(String.format("Unable to read file [%s]", file), e);
+        }
+    }
+
+    private long run(final FileChannel channel, final List<long[]> chunks, final String[] fieldNames, final String field, final String fact, final TripleSink sink) {
+        final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "d4m-file-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Long>> futures = new ArrayList<>();
+        try {
+            for (final long[] chunk : chunks) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        try {
+                            return parse(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]), fieldNames, field, fact, queue);
+                        } finally {
+                            // nobody drains the queue once the ingest stopped
+                            if (!stopped.get()) {
+                                queue.put(END_OF_CHUNK);
+                            }
+                        }
+                    }
+                }));
+            }
+
+            int finished = 0;
+            while (finished < chunks.size()) {
+                List<String> batch = queue.take();
+                if (batch == END_OF_CHUNK) {
+                    finished++;
+                    continue;
+                }
+                for (int i = 0; i < batch.size(); i += 3) {
+                    sink.put(batch.get(i), batch.get(i + 1), batch.get(i + 2));
+                }
+            }
+
+            long records = 0;
+            for (Future<Long> future : futures) {
+                records += future.get();
+            }
+            return records;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new D4MException("Interrupted while ingesting file.", e);
+        } catch (ExecutionException e) {
+            throw new D4MException("Unable to parse file.", e.getCause());
+        } finally {
+            stopped.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    /* Parse every record in the buffer; returns the number of records. */
+    private long parse(final MappedByteBuffer buffer, final String[] fieldNames, final String field, final String fact, final BlockingQueue<List<String>> queue) throws InterruptedException {
+        List<String> batch = new ArrayList<>(batchSize);
+        long records = 0;
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            String[] values = split(decode(buffer, lineStart, lineEnd), field);
+            if (values.length > 0 && !values[0].isEmpty()) {
+                records++;
+                String row = values[0];
+                for (int i = 1; i < values.length && i < fieldNames.length; i++) {
+                    if (!values[i].isEmpty()) {
+                        batch.add(row);
+                        batch.add(fieldNames[i] + fact + values[i]);
+                        batch.add(ONE);
+                    }
+                }
+                if (batch.size() >= batchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (!batch.isEmpty()) {
+            queue.put(batch);
+        }
+        return records;
+    }
+
+    private String decode(final ByteBuffer buffer, final int start, final int end) {
+        int length = end - start;
+        if (length > 0 && buffer.get(end - 1) == '\r') {
+            length--;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, charset);
+    }
+
+    private String[] split(final String line, final String delimiter) {
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        int index;
+        while ((index = line.indexOf(delimiter, start)) >= 0) {
+            values.add(line.substring(start, index));
+            start = index + delimiter.length();
+        }
+        values.add(line.substring(start));
+        return values.toArray(new String[values.size()]);
+    }
+
+    /* Offset just past the first newline at or after position, or size if there is none. */
+    private long nextRecordStart(final FileChannel channel, final long position, final long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long offset = position;
+        while (offset < size) {
+            window.clear();
+            int read = channel.read(window, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private String readDelimiter(final boolean field) {
+        Validate.notNull(tableManager, "tableManager must not be null when the delimiters are not set");
+        String delimiter = field ? tableManager.getFieldDelimiter() : tableManager.getFactDelimiter();
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new D4MException(String.format("D4M: RootName[%s] has no %s delimiter in the metadata table.", tableManager.getRootName(), field ? "field" : "fact"));
+        }
+        return delimiter;
+    }
+
+}
@@ -0,0 +1,441 @@
+package com.codebits.d4m;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.commons.lang.Validate;
+
+/** Registry of ingest, query and admin metrics for the D4M layer.
+ *
+ * A TableManager holds the registry and the writers and queries built
+ * on it record into it. The default is DISABLED: every record method
+ * returns after one field read, startTimer never calls System.nanoTime
+ * and D4MWriter does not wrap its BatchWriters, so disabled metrics cost
+ * next to nothing. Create an enabled registry and call register to
+ * publish it over JMX.
+ *
+ * <pre>
+ * D4MMetrics metrics = new D4MMetrics();
+ * metrics.register("ingest");
+ * tableManager.setMetrics(metrics);
+ * </pre>
+ *
+ * @author david medinets
+ */
+public class D4MMetrics implements D4MMetricsMXBean {
+
+    /** Shared registry which records nothing. */
+    public final static D4MMetrics DISABLED = new D4MMetrics(false);
+
+    private final boolean enabled;
+    private final ConcurrentMap<String, TableCounter> tables = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> scans = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> scanEntries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> admin = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> cacheHits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> cacheMisses = new ConcurrentHashMap<>();
+    private final Set<Buffer> buffers = Collections.newSetFromMap(new ConcurrentHashMap<Buffer, Boolean>());
+    private final LatencyHistogram flushes = new LatencyHistogram();
+    private volatile long startNanos = System.nanoTime();
+    private ObjectName objectName = null;
+
+    /** Constructor for an enabled registry.
+     *
+     */
+    public D4MMetrics() {
+        this(true);
+    }
+
+    private D4MMetrics(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Publish the registry on the platform MBean server.
+     *
+     * @param name value of the name key, used to tell registries apart.
+     * @return the object name the registry was registered under.
+     */
+    public synchronized ObjectName register(final String name) {
+        Validate.notNull(name, "name must not be null");
+        Validate.isTrue(objectName == null, "metrics are already registered");
+        try {
+            ObjectName candidate = new ObjectName("com.codebits.d4m:type=D4MMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+            objectName = candidate;
+            return objectName;
+        } catch (JMException e) {
+            throw new D4MException(String.format("Unable to register metrics [%s]", name), e);
+        }
+    }
+
+    /** Remove the registry from the platform MBean server.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new D4MException(String.format("Unable to unregister metrics [%s]", objectName), e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    /** Read the clock if the registry is enabled.
+     *
+     * @return System.nanoTime(), or zero when disabled.
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Record the latency of a D4MWriter flush.
+     *
+     * @param start value returned by startTimer.
+     */
+    public void recordFlush(final long start) {
+        if (enabled) {
+            flushes.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Record a completed scan.
+     *
+     * @param queryType kind of query, such as "rows" or "columns".
+     * @param start value returned by startTimer.
+     * @param entries number of entries read.
+     */
+    public void recordScan(final String queryType, final long start, final long entries) {
+        if (enabled) {
+            histogram(scans, queryType).record(System.nanoTime() - start);
+            counter(scanEntries, queryType).addAndGet(entries);
+        }
+    }
+
+    /** Record a LookupCache lookup.
+     *
+     * @param cache name of the cache, such as "degree".
+     * @param hit true if the lookup was answered from the cache.
+     */
+    public void recordCache(final String cache, final boolean hit) {
+        if (enabled) {
+            counter(hit ? cacheHits : cacheMisses, cache).incrementAndGet();
+        }
+    }
+
+    /** Record a TableManager operation.
+     *
+     * @param operation name of the operation, such as "createTables".
+     * @param start value returned by startTimer.
+     */
+    public void recordAdmin(final String operation, final long start) {
+        if (enabled) {
+            histogram(admin, operation).record(System.nanoTime() - start);
+        }
+    }
+
+    /** Wrap a BatchWriter so its mutations are counted against a table.
+     *
+     * @param tablename table the writer writes to.
+     * @param writer writer to wrap.
+     * @param buffer buffer occupancy of the owning writer, or null.
+     * @return the writer itself when disabled, otherwise a counting wrapper.
+     */
+    public BatchWriter meter(final String tablename, final BatchWriter writer, final Buffer buffer) {
+        if (!enabled) {
+            return writer;
+        }
+        TableCounter counter = tables.get(tablename);
+        if (counter == null) {
+            tables.putIfAbsent(tablename, new TableCounter());
+            counter = tables.get(tablename);
+        }
+        return new MeteredBatchWriter(writer, counter, buffer);
+    }
+
+    /** Track the buffer of a writer with the given capacity.
+     *
+     * @param capacity maxMemory of the writer.
+     * @return the buffer, or null when disabled.
+     */
+    public Buffer openBuffer(final long capacity) {
+        if (!enabled) {
+            return null;
+        }
+        Buffer buffer = new Buffer(capacity);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /** Stop tracking a buffer.
+     *
+     * @param buffer value returned by openBuffer.
+     */
+    public void closeBuffer(final Buffer buffer) {
+        if (buffer != null) {
+            buffers.remove(buffer);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getMutationCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, TableCounter> entry : tables.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().mutations.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getMutationBytes() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, TableCounter> entry : tables.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getMutationsPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        double seconds = elapsedSeconds();
+        for (Map.Entry<String, TableCounter> entry : tables.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().mutations.get() / seconds);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getBytesPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        double seconds = elapsedSeconds();
+        for (Map.Entry<String, TableCounter> entry : tables.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.get() / seconds);
+        }
+        return result;
+    }
+
+    @Override
+    public long getBufferedBytes() {
+        long pending = 0;
+        for (Buffer buffer : buffers) {
+            pending += buffer.getPending();
+        }
+        return pending;
+    }
+
+    @Override
+    public double getBufferOccupancy() {
+        long pending = 0;
+        long capacity = 0;
+        for (Buffer buffer : buffers) {
+            pending += buffer.getPending();
+            capacity += buffer.capacity;
+        }
+        return capacity == 0 ? 0 : pending / (double) capacity;
+    }
+
+    @Override
+    public LatencySnapshot getFlushLatency() {
+        return flushes.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getScanLatency() {
+        return snapshots(scans);
+    }
+
+    @Override
+    public Map<String, Long> getScanEntries() {
+        return counts(scanEntries);
+    }
+
+    @Override
+    public Map<String, Double> getScanEntriesPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : scans.entrySet()) {
+            long nanos = entry.getValue().getTotalNanos();
+            long entries = counter(scanEntries, entry.getKey()).get();
+            result.put(entry.getKey(), nanos == 0 ? 0 : entries * 1e9 / nanos);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getAdminLatency() {
+        return snapshots(admin);
+    }
+
+    @Override
+    public Map<String, Long> getCacheHits() {
+        return counts(cacheHits);
+    }
+
+    @Override
+    public Map<String, Long> getCacheMisses() {
+        return counts(cacheMisses);
+    }
+
+    @Override
+    public void reset() {
+        for (TableCounter counter : tables.values()) {
+            counter.mutations.set(0);
+            counter.bytes.set(0);
+        }
+        for (LatencyHistogram histogram : scans.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : scanEntries.values()) {
+            counter.set(0);
+        }
+        for (LatencyHistogram histogram : admin.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : cacheHits.values()) {
+            counter.set(0);
+        }
+        for (AtomicLong counter : cacheMisses.values()) {
+            counter.set(0);
+        }
+        flushes.reset();
+        startNanos = System.nanoTime();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static LatencyHistogram histogram(final ConcurrentMap<String, LatencyHistogram> map, final String key) {
+        LatencyHistogram histogram = map.get(key);
+        if (histogram == null) {
+            map.putIfAbsent(key, new LatencyHistogram());
+            histogram = map.get(key);
+        }
+        return histogram;
+    }
+
+    private static AtomicLong counter(final ConcurrentMap<String, AtomicLong> map, final String key) {
+        AtomicLong counter = map.get(key);
+        if (counter == null) {
+            map.putIfAbsent(key, new AtomicLong());
+            counter = map.get(key);
+        }
+        return counter;
+    }
+
+    private static Map<String, Long> counts(final Map<String, AtomicLong> map) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : map.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    private static Map<String, LatencySnapshot> snapshots(final Map<String, LatencyHistogram> map) {
+        Map<String, LatencySnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : map.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /** Bytes added to one writer since its last flush.
+     *
+     * The BatchWriter also flushes on its own when maxMemory fills, which
+     * the client cannot see, so the pending count is capped at the
+     * capacity and is an upper bound.
+     */
+    public static class Buffer {
+
+        private final long capacity;
+        private final AtomicLong pending = new AtomicLong();
+
+        Buffer(final long capacity) {
+            this.capacity = capacity;
+        }
+
+        void add(final long bytes) {
+            pending.addAndGet(bytes);
+        }
+
+        /** Forget the pending bytes after a flush.
+         */
+        public void clear() {
+            pending.set(0);
+        }
+
+        long getPending() {
+            return Math.min(pending.get(), capacity);
+        }
+
+    }
+
+    private static class TableCounter {
+
+        private final AtomicLong mutations = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+    }
+
+    private static class MeteredBatchWriter implements BatchWriter {
+
+        private final BatchWriter writer;
+        private final TableCounter counter;
+        private final Buffer buffer;
+
+        MeteredBatchWriter(final BatchWriter writer, final TableCounter counter, final Buffer buffer) {
+            this.writer = writer;
+            this.counter = counter;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void addMutation(final Mutation mutation) throws MutationsRejectedException {
+            writer.addMutation(mutation);
+            long bytes = mutation.numBytes();
+            counter.mutations.incrementAndGet();
+            counter.bytes.addAndGet(bytes);
+            if (buffer != null) {
+                buffer.add(bytes);
+            }
+        }
+
+        @Override
+        public void addMutations(final Iterable<Mutation> mutations) throws MutationsRejectedException {
+            for (Mutation mutation : mutations) {
+                addMutation(mutation);
+            }
+        }
+
+        @Override
+        public void flush() throws MutationsRejectedException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws MutationsRejectedException {
+            writer.close();
+        }
+
+    }
+
+}
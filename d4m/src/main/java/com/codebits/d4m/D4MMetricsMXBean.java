@@ -0,0 +1,105 @@
+package com.codebits.d4m;
+
+import java.util.Map;
+
+/** JMX view of D4MMetrics.
+ *
+ * Mutation maps are keyed by table name. Scan maps are keyed by query
+ * type (rows, rowRange, columns, columnRange, range, degrees, lookup).
+ * Admin latencies are keyed by operation (createTables, applyTableProfile,
+ * addSplits, importDirectory). Cache counts are keyed by LookupCache
+ * name (degree, property).
+ *
+ * @author david medinets
+ */
+public interface D4MMetricsMXBean {
+
+    /** Check whether the registry is enabled.
+     *
+     * @return true when the registry records anything.
+     */
+    boolean isEnabled();
+
+    /** Get mutations written per table.
+     *
+     * @return mutations written per table.
+     */
+    Map<String, Long> getMutationCounts();
+
+    /** Get serialized mutation bytes written per table.
+     *
+     * @return serialized mutation bytes written per table.
+     */
+    Map<String, Long> getMutationBytes();
+
+    /** Get mutations per second per table since the last reset.
+     *
+     * @return mutations per second per table since the last reset.
+     */
+    Map<String, Double> getMutationsPerSecond();
+
+    /** Get mutation bytes per second per table since the last reset.
+     *
+     * @return mutation bytes per second per table since the last reset.
+     */
+    Map<String, Double> getBytesPerSecond();
+
+    /** Get bytes added to open writers since their last flush.
+     *
+     * @return bytes added to open writers since their last flush.
+     */
+    long getBufferedBytes();
+
+    /** Get buffered bytes as a fraction of the open writers' maxMemory.
+     *
+     * @return buffered bytes as a fraction of the open writers' maxMemory.
+     */
+    double getBufferOccupancy();
+
+    /** Get latency of D4MWriter flushes.
+     *
+     * @return latency of D4MWriter flushes.
+     */
+    LatencySnapshot getFlushLatency();
+
+    /** Get scan latency per query type.
+     *
+     * @return scan latency per query type.
+     */
+    Map<String, LatencySnapshot> getScanLatency();
+
+    /** Get entries read per query type.
+     *
+     * @return entries read per query type.
+     */
+    Map<String, Long> getScanEntries();
+
+    /** Get entries read per second of scan time per query type.
+     *
+     * @return entries read per second of scan time per query type.
+     */
+    Map<String, Double> getScanEntriesPerSecond();
+
+    /** Get latency per TableManager operation.
+     *
+     * @return latency per TableManager operation.
+     */
+    Map<String, LatencySnapshot> getAdminLatency();
+
+    /** Get lookups answered from each LookupCache.
+     *
+     * @return hits per cache.
+     */
+    Map<String, Long> getCacheHits();
+
+    /** Get lookups each LookupCache could not answer.
+     *
+     * @return misses per cache.
+     */
+    Map<String, Long> getCacheMisses();
+
+    /** Zero every counter and histogram.
+     */
+    void reset();
+
+}
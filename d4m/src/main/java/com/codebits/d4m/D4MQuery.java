@@ -0,0 +1,318 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.ColumnSliceFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Query the D4M tables and return associative arrays.
+ *
+ * Row queries read Tedge. Column queries read TedgeTranspose so that
+ * no full scan of Tedge is needed, and the results are transposed back
+ * into (row, column) order. Every query runs through a BatchScanner so
+ * the ranges are read from the tablet servers in parallel using
+ * numQueryThreads threads.
+ *
+ * Each query can also deliver its entries to a TripleSink, such as a
+ * SparseAssociativeArray.Builder, instead of building an AssociativeArray.
+ * Results too large to hold can be streamed in bounded chunks through
+ * the ScanPublisher returned by the publish methods.
+ *
+ * Scan latency and entries read are recorded per query type in the
+ * TableManager's D4MMetrics.
+ *
+ * @author david medinets
+ */
+public class D4MQuery {
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private Authorizations authorizations = new Authorizations();
+
+    @Getter
+    @Setter
+    private int numQueryThreads = 10;
+
+    @Getter
+    @Setter
+    private long timeout = 0;
+
+    private final Charset charset = Utf8Encoder.UTF8;
+
+    /** Constructor
+     *
+     */
+    public D4MQuery() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager holding the connector and table names.
+     */
+    public D4MQuery(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Get the entries of the given rows.
+     *
+     * @param rows row keys.
+     * @return associative array holding the rows.
+     */
+    public AssociativeArray getRows(final Collection<String> rows) {
+        AssociativeArray result = new AssociativeArray();
+        getRows(rows, result);
+        return result;
+    }
+
+    /** Send the entries of the given rows to a sink.
+     *
+     * @param rows row keys.
+     * @param sink receiver of the entries.
+     */
+    public void getRows(final Collection<String> rows, final TripleSink sink) {
+        Validate.notNull(rows, "rows must not be null");
+        scan("rows", checkedTableManager().getEdgeTable(), exactRanges(rows), null, false, sink);
+    }
+
+    /** Get the entries of a range of rows.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @return associative array holding the rows.
+     */
+    public AssociativeArray getRowRange(final String startRow, final String endRow) {
+        AssociativeArray result = new AssociativeArray();
+        getRowRange(startRow, endRow, result);
+        return result;
+    }
+
+    /** Send the entries of a range of rows to a sink.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @param sink receiver of the entries.
+     */
+    public void getRowRange(final String startRow, final String endRow, final TripleSink sink) {
+        scan("rowRange", checkedTableManager().getEdgeTable(), Collections.singletonList(range(startRow, endRow)), null, false, sink);
+    }
+
+    /** Get the entries of the given columns.
+     *
+     * @param columns column keys.
+     * @return associative array holding the columns.
+     */
+    public AssociativeArray getColumns(final Collection<String> columns) {
+        AssociativeArray result = new AssociativeArray();
+        getColumns(columns, result);
+        return result;
+    }
+
+    /** Send the entries of the given columns to a sink.
+     *
+     * @param columns column keys.
+     * @param sink receiver of the entries.
+     */
+    public void getColumns(final Collection<String> columns, final TripleSink sink) {
+        Validate.notNull(columns, "columns must not be null");
+        scan("columns", checkedTableManager().getTransposeTable(), exactRanges(columns), null, true, sink);
+    }
+
+    /** Get the entries of a range of columns.
+     *
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @return associative array holding the columns.
+     */
+    public AssociativeArray getColumnRange(final String startColumn, final String endColumn) {
+        AssociativeArray result = new AssociativeArray();
+        getColumnRange(startColumn, endColumn, result);
+        return result;
+    }
+
+    /** Send the entries of a range of columns to a sink.
+     *
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @param sink receiver of the entries.
+     */
+    public void getColumnRange(final String startColumn, final String endColumn, final TripleSink sink) {
+        scan("columnRange", checkedTableManager().getTransposeTable(), Collections.singletonList(range(startColumn, endColumn)), null, true, sink);
+    }
+
+    /** Get the entries inside both a row range and a column range.
+     *
+     * Tedge is read over the row range and a ColumnSliceFilter drops
+     * columns outside the column range on the tablet servers.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @return associative array holding the matching entries.
+     */
+    public AssociativeArray getRange(final String startRow, final String endRow, final String startColumn, final String endColumn) {
+        AssociativeArray result = new AssociativeArray();
+        getRange(startRow, endRow, startColumn, endColumn, result);
+        return result;
+    }
+
+    /** Send the entries inside both a row range and a column range to a sink.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @param sink receiver of the entries.
+     */
+    public void getRange(final String startRow, final String endRow, final String startColumn, final String endColumn, final TripleSink sink) {
+        scan("range", checkedTableManager().getEdgeTable(), Collections.singletonList(range(startRow, endRow)), columnSlice(startColumn, endColumn), false, sink);
+    }
+
+    /** Stream the entries of the given rows in chunks.
+     *
+     * @param rows row keys.
+     * @return publisher of chunks of the rows; nothing is read until it is subscribed to.
+     */
+    public ScanPublisher publishRows(final Collection<String> rows) {
+        Validate.notNull(rows, "rows must not be null");
+        return new ScanPublisher(this, "streamRows", checkedTableManager().getEdgeTable(), exactRanges(rows), null, false);
+    }
+
+    /** Stream the entries of a range of rows in chunks.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @return publisher of chunks of the rows; nothing is read until it is subscribed to.
+     */
+    public ScanPublisher publishRowRange(final String startRow, final String endRow) {
+        return new ScanPublisher(this, "streamRowRange", checkedTableManager().getEdgeTable(), Collections.singletonList(range(startRow, endRow)), null, false);
+    }
+
+    /** Stream the entries of the given columns in chunks.
+     *
+     * @param columns column keys.
+     * @return publisher of chunks of the columns; nothing is read until it is subscribed to.
+     */
+    public ScanPublisher publishColumns(final Collection<String> columns) {
+        Validate.notNull(columns, "columns must not be null");
+        return new ScanPublisher(this, "streamColumns", checkedTableManager().getTransposeTable(), exactRanges(columns), null, true);
+    }
+
+    /** Stream the entries of a range of columns in chunks.
+     *
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @return publisher of chunks of the columns; nothing is read until it is subscribed to.
+     */
+    public ScanPublisher publishColumnRange(final String startColumn, final String endColumn) {
+        return new ScanPublisher(this, "streamColumnRange", checkedTableManager().getTransposeTable(), Collections.singletonList(range(startColumn, endColumn)), null, true);
+    }
+
+    /** Stream the entries inside both a row range and a column range in chunks.
+     *
+     * @param startRow first row, inclusive, or null for the start of the table.
+     * @param endRow last row, inclusive, or null for the end of the table.
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @return publisher of chunks of the matching entries; nothing is read until it is subscribed to.
+     */
+    public ScanPublisher publishRange(final String startRow, final String endRow, final String startColumn, final String endColumn) {
+        return new ScanPublisher(this, "streamRange", checkedTableManager().getEdgeTable(), Collections.singletonList(range(startRow, endRow)), columnSlice(startColumn, endColumn), false);
+    }
+
+    /** Open a BatchScanner on a table using the configured threads and authorizations.
+     *
+     * @param tablename name of the accumulo table.
+     * @return the batch scanner; the caller must close it.
+     */
+    public BatchScanner createBatchScanner(final String tablename) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        try {
+            BatchScanner scanner = tableManager.getConnector().createBatchScanner(tablename, authorizations, numQueryThreads);
+            if (timeout > 0) {
+                scanner.setTimeout(timeout, TimeUnit.MILLISECONDS);
+            }
+            return scanner;
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+    }
+
+    private void scan(final String queryType, final String tablename, final List<Range> ranges, final IteratorSetting iteratorSetting, final boolean transposed, final TripleSink sink) {
+        Validate.notNull(sink, "sink must not be null");
+        if (ranges.isEmpty()) {
+            return;
+        }
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        long entries = 0;
+        BatchScanner scanner = createBatchScanner(tablename);
+        try {
+            scanner.setRanges(ranges);
+            if (iteratorSetting != null) {
+                scanner.addScanIterator(iteratorSetting);
+            }
+            Text row = new Text();
+            Text column = new Text();
+            for (Entry<Key, Value> entry : scanner) {
+                Key key = entry.getKey();
+                key.getRow(row);
+                key.getColumnQualifier(column);
+                String value = new String(entry.getValue().get(), charset);
+                if (transposed) {
+                    sink.put(column.toString(), row.toString(), value);
+                } else {
+                    sink.put(row.toString(), column.toString(), value);
+                }
+                entries++;
+            }
+        } finally {
+            scanner.close();
+            metrics.recordScan(queryType, start, entries);
+        }
+    }
+
+    private TableManager checkedTableManager() {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        return tableManager;
+    }
+
+    private List<Range> exactRanges(final Collection<String> keys) {
+        List<Range> ranges = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            ranges.add(Range.exact(key));
+        }
+        return ranges;
+    }
+
+    private IteratorSetting columnSlice(final String startColumn, final String endColumn) {
+        IteratorSetting slice = new IteratorSetting(50, "d4mColumnSlice", ColumnSliceFilter.class);
+        ColumnSliceFilter.setSlice(slice, startColumn, true, endColumn, true);
+        return slice;
+    }
+
+    private Range range(final String start, final String end) {
+        return new Range(start == null ? null : new Text(start), true, end == null ? null : new Text(end), true);
+    }
+
+}
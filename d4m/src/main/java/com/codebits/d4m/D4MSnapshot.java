@@ -0,0 +1,428 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.function.BiConsumer;
+import lombok.Getter;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.commons.lang.Validate;
+
+/** A memory-mapped, read-only snapshot of a D4M table set.
+ *
+ * SnapshotExporter writes a snapshot as a directory of binary files,
+ * big-endian throughout:
+ *
+ * rows.dict, columns.dict, values.dict: dictionaries. The key bytes
+ * are followed by a long offset per key plus the end offset, then the
+ * key count and the position of the offsets. Row and column keys are
+ * sorted in Accumulo byte order; values are in order of first use.
+ *
+ * edges.csr: the Tedge entries in compressed sparse row form. An int
+ * column index and an int value index per entry, sorted by row and
+ * then column, followed by a long row pointer per row plus the entry
+ * count, then the row count, entry count and pointer position.
+ *
+ * degrees: a long per column of the column dictionary, from TedgeDegree.
+ *
+ * metadata.entries, text.entries: the TedgeMetadata and TedgeText
+ * entries as int-length-prefixed row, family, qualifier and value.
+ * Field counts are stored as decimal text whatever the degree encoding.
+ *
+ * Opening a snapshot maps the files; lookups read the mapped pages
+ * directly, so analysis jobs can use snapshots much larger than the
+ * Java heap. TedgeTranspose is not stored since it is the transpose of
+ * Tedge; importInto rebuilds it, and the degrees, through the writer.
+ *
+ * @author david medinets
+ */
+public class D4MSnapshot {
+
+    final static String ROWS_FILE = "rows.dict";
+    final static String COLUMNS_FILE = "columns.dict";
+    final static String VALUES_FILE = "values.dict";
+    final static String EDGES_FILE = "edges.csr";
+    final static String DEGREES_FILE = "degrees";
+    final static String METADATA_FILE = "metadata.entries";
+    final static String TEXT_FILE = "text.entries";
+
+    private final static String PROPERTY = "property";
+    private final static String FIELD_CF = "field";
+    private final static String DEGREE_ENCODING_PROPERTY_NAME = "degree.encoding";
+
+    @Getter
+    private final File directory;
+
+    private final Dictionary rows;
+    private final Dictionary columns;
+    private final Dictionary values;
+    private final MappedFile edges;
+    private final MappedFile degrees;
+    private final MappedFile metadata;
+    private final MappedFile text;
+    private final long entryCount;
+    private final long pointers;
+    private final Charset charset = Utf8Encoder.UTF8;
+
+    private D4MSnapshot(final File directory) throws IOException {
+        this.directory = directory;
+        rows = new Dictionary(new MappedFile(new File(directory, ROWS_FILE)));
+        columns = new Dictionary(new MappedFile(new File(directory, COLUMNS_FILE)));
+        values = new Dictionary(new MappedFile(new File(directory, VALUES_FILE)));
+        edges = new MappedFile(new File(directory, EDGES_FILE));
+        degrees = new MappedFile(new File(directory, DEGREES_FILE));
+        metadata = new MappedFile(new File(directory, METADATA_FILE));
+        text = new MappedFile(new File(directory, TEXT_FILE));
+        long length = edges.length();
+        Validate.isTrue(edges.getLong(length - 24) == rows.count, "edges.csr does not match rows.dict");
+        entryCount = edges.getLong(length - 16);
+        pointers = edges.getLong(length - 8);
+        Validate.isTrue(degrees.length() == 8 * columns.count, "degrees does not match columns.dict");
+    }
+
+    /** Map the files of a snapshot.
+     *
+     * @param directory directory written by SnapshotExporter.
+     * @return the snapshot.
+     */
+    public static D4MSnapshot open(final File directory) {
+        Validate.notNull(directory, "directory must not be null");
+        try {
+            return new D4MSnapshot(directory);
+        } catch (IOException e) {
+            throw new D4MException(String.format("Unable to open snapshot [%s]", directory), e);
+        }
+    }
+
+    /** Get the number of Tedge entries.
+     *
+     * @return the entry count.
+     */
+    public long size() {
+        return entryCount;
+    }
+
+    /** Get the number of rows in the row dictionary.
+     *
+     * @return the row count.
+     */
+    public int getRowCount() {
+        return (int) rows.count;
+    }
+
+    /** Get the number of columns in the column dictionary.
+     *
+     * @return the column count.
+     */
+    public int getColumnCount() {
+        return (int) columns.count;
+    }
+
+    /** Get a row key by index.
+     *
+     * @param index row index.
+     * @return the row key.
+     */
+    public String getRowKey(final int index) {
+        return rows.get(index);
+    }
+
+    /** Get a column key by index.
+     *
+     * @param index column index.
+     * @return the column key.
+     */
+    public String getColumnKey(final int index) {
+        return columns.get(index);
+    }
+
+    /** Find the index of a row key.
+     *
+     * @param row row key.
+     * @return the row index or -1 if the row is not present.
+     */
+    public int getRowIndex(final String row) {
+        return rows.find(row.getBytes(charset));
+    }
+
+    /** Find the index of a column key.
+     *
+     * @param column column key.
+     * @return the column index or -1 if the column is not present.
+     */
+    public int getColumnIndex(final String column) {
+        return columns.find(column.getBytes(charset));
+    }
+
+    /** Get the number of entries in a row.
+     *
+     * @param rowIndex row index.
+     * @return the number of entries in the row.
+     */
+    public int getRowSize(final int rowIndex) {
+        return (int) (rowPointer(rowIndex + 1) - rowPointer(rowIndex));
+    }
+
+    /** Get the degree of a column.
+     *
+     * @param columnIndex column index.
+     * @return the degree read from TedgeDegree.
+     */
+    public long getDegree(final int columnIndex) {
+        return degrees.getLong(8L * columnIndex);
+    }
+
+    /** Get the degree of a column.
+     *
+     * @param column column key.
+     * @return the degree, or zero if the column is not present.
+     */
+    public long getDegree(final String column) {
+        int index = getColumnIndex(column);
+        return index < 0 ? 0 : getDegree(index);
+    }
+
+    /** Get the value of an entry.
+     *
+     * @param row row key.
+     * @param column column key.
+     * @return the value or null if the entry is not present.
+     */
+    public String get(final String row, final String column) {
+        int rowIndex = getRowIndex(row);
+        int columnIndex = getColumnIndex(column);
+        if (rowIndex < 0 || columnIndex < 0) {
+            return null;
+        }
+        long low = rowPointer(rowIndex);
+        long high = rowPointer(rowIndex + 1);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            int found = columnIndex(middle);
+            if (found < columnIndex) {
+                low = middle + 1;
+            } else if (found > columnIndex) {
+                high = middle;
+            } else {
+                return values.get(valueIndex(middle));
+            }
+        }
+        return null;
+    }
+
+    /** Get a cursor over the entries in row, then column, order.
+     *
+     * @return a new cursor positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Write the Tedge and TedgeText entries of the snapshot through a writer.
+     *
+     * A D4MWriter or D4MBulkWriter rebuilds TedgeTranspose and
+     * TedgeDegree from the edges, in the degree encoding of the target
+     * tables:
+     *
+     * snapshot.importInto(writer, writer::addText);
+     *
+     * @param edgeSink receiver of every (row, column, value) of Tedge.
+     * @param textSink receiver of every (row, text) of TedgeText, or null to skip the documents.
+     */
+    public void importInto(final TripleSink edgeSink, final BiConsumer<String, String> textSink) {
+        Validate.notNull(edgeSink, "edgeSink must not be null");
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            edgeSink.put(cursor.getRow(), cursor.getColumn(), cursor.getValue());
+        }
+        if (textSink != null) {
+            long position = 0;
+            while (position < text.length()) {
+                byte[][] entry = new byte[4][];
+                position = readEntry(text, position, entry);
+                textSink.accept(new String(entry[0], charset), new String(entry[3], charset));
+            }
+        }
+    }
+
+    /** Write the TedgeMetadata entries of the snapshot to the metadata table of a table set.
+     *
+     * Field counts are written in the degree encoding of the target.
+     * The degree.encoding property is left as the target has it, since
+     * its combiners are set up for that encoding.
+     *
+     * @param target TableManager naming the table set to write to; its tables must exist.
+     */
+    public void importMetadata(final TableManager target) {
+        Validate.notNull(target, "target must not be null");
+        Validate.notNull(target.getConnector(), "connector must not be null");
+        String tablename = target.getMetadataTable();
+        DegreeEncoding encoding = target.getDegreeEncoding();
+        try {
+            BatchWriter writer = target.getMetrics().meter(tablename, target.getConnector().createBatchWriter(tablename, target.getMetadataBatchWriterConfig()), null);
+            try {
+                long position = 0;
+                while (position < metadata.length()) {
+                    byte[][] entry = new byte[4][];
+                    position = readEntry(metadata, position, entry);
+                    String row = new String(entry[0], charset);
+                    String family = new String(entry[1], charset);
+                    if (row.equals(PROPERTY) && family.equals(DEGREE_ENCODING_PROPERTY_NAME)) {
+                        continue;
+                    }
+                    byte[] value = entry[3];
+                    if (family.equals(FIELD_CF) && entry[2].length == 0) {
+                        value = encoding.encode(Long.parseLong(new String(value, charset)));
+                    }
+                    Mutation mutation = new Mutation(entry[0]);
+                    mutation.put(entry[1], entry[2], value);
+                    writer.addMutation(mutation);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        } catch (MutationsRejectedException e) {
+            throw new D4MException(String.format("Unable to write metadata to table [%s]", tablename), e);
+        }
+        target.invalidateLookupCache();
+    }
+
+    private long rowPointer(final int rowIndex) {
+        return edges.getLong(pointers + 8L * rowIndex);
+    }
+
+    private int columnIndex(final long position) {
+        return edges.getInt(8 * position);
+    }
+
+    private int valueIndex(final long position) {
+        return edges.getInt(8 * position + 4);
+    }
+
+    /* Read the four length-prefixed fields of an entry at position; return the position after it. */
+    private static long readEntry(final MappedFile file, final long position, final byte[][] fields) {
+        long next = position;
+        for (int i = 0; i < fields.length; i++) {
+            int length = file.getInt(next);
+            fields[i] = file.get(next + 4, length);
+            next += 4 + length;
+        }
+        return next;
+    }
+
+    /* A sorted or insertion-ordered dictionary file. */
+    private class Dictionary {
+
+        private final MappedFile file;
+        private final long count;
+        private final long offsets;
+
+        Dictionary(final MappedFile file) {
+            this.file = file;
+            this.count = file.getLong(file.length() - 16);
+            this.offsets = file.getLong(file.length() - 8);
+            Validate.isTrue(count <= Integer.MAX_VALUE, "dictionary holds too many keys");
+        }
+
+        String get(final int index) {
+            long start = file.getLong(offsets + 8L * index);
+            long end = file.getLong(offsets + 8L * index + 8);
+            return new String(file.get(start, (int) (end - start)), charset);
+        }
+
+        int find(final byte[] key) {
+            int low = 0;
+            int high = (int) count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long start = file.getLong(offsets + 8L * middle);
+                long end = file.getLong(offsets + 8L * middle + 8);
+                int comparison = file.compare(start, (int) (end - start), key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+    /** Iterate the entries without allocating per entry.
+     */
+    public class Cursor {
+
+        private int row = -1;
+        private long rowEnd = 0;
+        private long position = -1;
+
+        private Cursor() {
+        }
+
+        /** Move to the next entry.
+         *
+         * @return false when there are no more entries.
+         */
+        public boolean next() {
+            position++;
+            if (position >= entryCount) {
+                return false;
+            }
+            while (position >= rowEnd) {
+                row++;
+                rowEnd = rowPointer(row + 1);
+            }
+            return true;
+        }
+
+        /** Get the row index of the current entry.
+         *
+         * @return the row index.
+         */
+        public int getRowIndex() {
+            return row;
+        }
+
+        /** Get the column index of the current entry.
+         *
+         * @return the column index.
+         */
+        public int getColumnIndex() {
+            return columnIndex(position);
+        }
+
+        /** Get the row key of the current entry.
+         *
+         * @return the row key.
+         */
+        public String getRow() {
+            return rows.get(row);
+        }
+
+        /** Get the column key of the current entry.
+         *
+         * @return the column key.
+         */
+        public String getColumn() {
+            return columns.get(columnIndex(position));
+        }
+
+        /** Get the value of the current entry.
+         *
+         * @return the value.
+         */
+        public String getValue() {
+            return values.get(valueIndex(position));
+        }
+
+    }
+
+}
@@ -0,0 +1,633 @@
+package com.codebits.d4m;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Write D4M triples into the Tedge, TedgeTranspose, TedgeDegree and TedgeText tables.
+ *
+ * A single MultiTableBatchWriter feeds every table so that one set of
+ * buffers and write threads is shared across the whole ingest. Each
+ * triple (row, column, value) becomes an entry in Tedge, the transposed
+ * entry in TedgeTranspose and a "1" increment of the column's degree
+ * in TedgeDegree. The table names come from the TableManager.
+ *
+ * Rows, columns and values are encoded as UTF-8 by a Utf8Encoder into
+ * reused buffers, so no intermediate byte arrays are built per triple.
+ *
+ * Degree increments are summed per column on the client and sent as
+ * one mutation per column when the aggregator fills up or the writer
+ * is flushed. Set maxDegreeEntries to zero to send every increment.
+ * Degrees are encoded as the TableManager's degree encoding says, and
+ * counts in the TableManager's lookup cache are incremented as edges
+ * are written.
+ *
+ * addText(text) stores a document under the SHA-1 of its UTF-8 bytes
+ * and skips documents which are already stored. A scalable bloom
+ * filter of the SHA-1 digests answers most checks on the client; it
+ * grows with the documents added and never forgets one, so a miss
+ * always means a new document. Documents the filter may have seen are
+ * confirmed with batched point lookups in TedgeText, so a false
+ * positive never drops a document. With preloadText set, the first
+ * addText(text) loads the rows already in TedgeText into the filter so
+ * documents stored by earlier sessions are not written again; clear it
+ * when TedgeText is known to be empty to skip that scan.
+ *
+ * With maintainStatistics set, the writer keeps a FieldStatistics per
+ * field (the part of a column before the fact delimiter) and adds its
+ * sketches to TedgeMetadata when the writer is flushed, closed or holds
+ * maxStatisticsFields fields. Columns without the fact delimiter are
+ * not counted. Every writer of a table set must use the same sketch
+ * sizes, or SketchCombiner cannot merge their sketches.
+ *
+ * With a WriteRateTracker set, every entry written is counted per
+ * table and row prefix for SplitManager.
+ *
+ * When the TableManager has enabled D4MMetrics, mutations and bytes are
+ * counted per table and flush latency and buffer occupancy are recorded.
+ *
+ * @author david medinets
+ */
+public class D4MWriter implements AutoCloseable, TripleSink {
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private long maxMemory = 50000000;
+
+    @Getter
+    @Setter
+    private long maxLatency = 60000;
+
+    @Getter
+    @Setter
+    private int maxWriteThreads = 10;
+
+    @Getter
+    @Setter
+    private long timeout = 5 * 60 * 1000;
+
+    @Getter
+    @Setter
+    private int maxDegreeEntries = 100000;
+
+    @Getter
+    @Setter
+    private int textFilterEntries = 1000000;
+
+    @Getter
+    @Setter
+    private double textFilterFalsePositiveRate = 0.01;
+
+    @Getter
+    @Setter
+    private int textLookupBatchSize = 1000;
+
+    @Getter
+    @Setter
+    private boolean preloadText = true;
+
+    @Getter
+    @Setter
+    private WriteRateTracker writeRateTracker = null;
+
+    @Getter
+    @Setter
+    private boolean maintainStatistics = false;
+
+    @Getter
+    @Setter
+    private int statisticsPrecision = 12;
+
+    @Getter
+    @Setter
+    private int statisticsDepth = 4;
+
+    @Getter
+    @Setter
+    private int statisticsWidth = 1024;
+
+    @Getter
+    @Setter
+    private int maxStatisticsFields = 256;
+
+    @Getter
+    private long duplicateTexts = 0;
+
+    private final static Text EMPTY_CF = new Text("");
+    private final static Text DEGREE_CQ = new Text("degree");
+    private final static Text TEXT_CQ = new Text("text");
+    private final static Value ONE = new Value("1".getBytes(Utf8Encoder.UTF8));
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+    private final static int MAX_UNFLUSHED_TEXTS = 100000;
+
+    private final Utf8Encoder encoder = new Utf8Encoder();
+
+    private final Text row = new Text();
+    private final Text column = new Text();
+
+    private MultiTableBatchWriter multiTableBatchWriter = null;
+    private BatchWriter edgeWriter = null;
+    private BatchWriter transposeWriter = null;
+    private BatchWriter degreeWriter = null;
+    private BatchWriter textWriter = null;
+    private BatchWriter metadataWriter = null;
+    private DegreeAggregator degreeAggregator = null;
+    private DegreeEncoding degreeEncoding = DegreeEncoding.STRING;
+    private Value degreeOne = ONE;
+    private D4MMetrics metrics = D4MMetrics.DISABLED;
+    private D4MMetrics.Buffer buffer = null;
+    private String edgeTable = null;
+    private String transposeTable = null;
+    private String degreeTable = null;
+    private String textTable = null;
+    private MessageDigest sha1 = null;
+    private DigestBloomFilter textFilter = null;
+    private final Map<String, Value> pendingTexts = new LinkedHashMap<>();
+    private final Set<String> unflushedTexts = new HashSet<>();
+    private Map<String, FieldStatistics> fieldStatistics = null;
+    private String factDelimiter = null;
+    private LookupCache<String, Long> degreeCache = null;
+
+    /** Constructor
+     *
+     */
+    public D4MWriter() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager holding the connector and table names.
+     */
+    public D4MWriter(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Build the BatchWriterConfig from the memory, latency, thread and timeout settings.
+     *
+     * @return the batch writer configuration.
+     */
+    public BatchWriterConfig getBatchWriterConfig() {
+        BatchWriterConfig bwConfig = new BatchWriterConfig();
+        bwConfig.setMaxMemory(maxMemory);
+        bwConfig.setMaxLatency(maxLatency, TimeUnit.MILLISECONDS);
+        bwConfig.setMaxWriteThreads(maxWriteThreads);
+        bwConfig.setTimeout(timeout, TimeUnit.MILLISECONDS);
+        return bwConfig;
+    }
+
+    /** Open the MultiTableBatchWriter and the per-table writers.
+     *
+     * The D4M tables must already exist.
+     */
+    public void open() {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        Validate.isTrue(multiTableBatchWriter == null, "writer is already open");
+
+        degreeAggregator = maxDegreeEntries > 0 ? new DegreeAggregator(maxDegreeEntries) : null;
+        degreeEncoding = tableManager.getDegreeEncoding();
+        degreeOne = degreeEncoding == DegreeEncoding.STRING ? ONE : degreeEncoding.newValue(1);
+        degreeCache = tableManager.getDegreeCache();
+        metrics = tableManager.getMetrics();
+        multiTableBatchWriter = tableManager.getConnector().createMultiTableBatchWriter(getBatchWriterConfig());
+        try {
+            buffer = metrics.openBuffer(maxMemory);
+            edgeTable = tableManager.getEdgeTable();
+            transposeTable = tableManager.getTransposeTable();
+            degreeTable = tableManager.getDegreeTable();
+            textTable = tableManager.getTextTable();
+            edgeWriter = meter(edgeTable);
+            transposeWriter = meter(transposeTable);
+            degreeWriter = meter(degreeTable);
+            textWriter = meter(textTable);
+            if (maintainStatistics) {
+                metadataWriter = meter(tableManager.getMetadataTable());
+                String delimiter = tableManager.getFactDelimiter();
+                factDelimiter = delimiter == null ? "|" : delimiter;
+                fieldStatistics = new HashMap<>();
+            }
+        } catch (TableNotFoundException e) {
+            throw new D4MException("Unable to find D4M tables for RootName[" + tableManager.getRootName() + "]", e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException("Unable to open D4M writer.", e);
+        }
+    }
+
+    /** Write a triple with the default value of "1".
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     */
+    public void addEdge(final String row, final String column) {
+        addEdge(row, column, ONE);
+    }
+
+    /** Write a triple.
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     * @param value value of the associative array entry.
+     */
+    public void addEdge(final String row, final String column, final String value) {
+        Validate.notNull(value, "value must not be null");
+        addEdge(row, column, encoder.newValue(value));
+    }
+
+    /** Write several triples which share a row.
+     *
+     * The edge table receives a single mutation for the row.
+     *
+     * @param row row of the associative array.
+     * @param columns columns of the associative array.
+     */
+    public void addEdges(final String row, final Iterable<String> columns) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(columns, "columns must not be null");
+        checkOpen();
+
+        encoder.encode(row, this.row);
+        Mutation edge = new Mutation(this.row);
+        for (String c : columns) {
+            encoder.encode(c, column);
+            edge.put(EMPTY_CF, column, ONE);
+            track(edgeTable, row);
+            addTransposeAndDegree(row, c, ONE);
+        }
+        if (edge.size() > 0) {
+            addMutation(edgeWriter, edge);
+        }
+    }
+
+    /** Write a triple; same as addEdge.
+     *
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     * @param value value of the associative array entry.
+     */
+    @Override
+    public void put(final String row, final String column, final String value) {
+        addEdge(row, column, value);
+    }
+
+    /** Write the raw text for a row.
+     *
+     * @param row row of the associative array, usually the sha1 of the text.
+     * @param text raw text.
+     */
+    public void addText(final String row, final String text) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(text, "text must not be null");
+        checkOpen();
+
+        Mutation mutation = encoder.newMutation(row);
+        mutation.put(EMPTY_CF, TEXT_CQ, encoder.newValue(text));
+        addMutation(textWriter, mutation);
+        track(textTable, row);
+    }
+
+    /** Write a document under the SHA-1 of its text unless it is already stored.
+     *
+     * @param text raw text.
+     * @return the row of the document: the lowercase hex SHA-1 of its UTF-8 bytes.
+     */
+    public String addText(final String text) {
+        Validate.notNull(text, "text must not be null");
+        checkOpen();
+
+        int length = encoder.encode(text);
+        MessageDigest digest = sha1();
+        digest.update(encoder.getBuffer(), 0, length);
+        Value value = new Value(Arrays.copyOf(encoder.getBuffer(), length), false);
+        byte[] hash = digest.digest();
+        String row = hex(hash);
+
+        DigestBloomFilter filter = textFilter();
+        if (!filter.mightContain(hash)) {
+            filter.put(hash);
+            writeText(row, value);
+        } else if (unflushedTexts.contains(row) || pendingTexts.containsKey(row)) {
+            duplicateTexts++;
+        } else {
+            // a hit may be false, so it is confirmed in TedgeText
+            pendingTexts.put(row, value);
+            if (pendingTexts.size() >= textLookupBatchSize) {
+                resolvePendingTexts();
+            }
+        }
+        return row;
+    }
+
+    /** Load the SHA-1 rows already in TedgeText into the text filter.
+     *
+     * Only keys are read; the documents stay on the tablet servers. Rows
+     * which are not 40 hex digits are ignored. The filter grows to hold
+     * every row found. With preloadText set, the first addText(text)
+     * calls this unless it has already been called.
+     *
+     * @return the number of rows loaded.
+     */
+    public long preloadTextFilter() {
+        checkOpen();
+        textFilter = new DigestBloomFilter(textFilterEntries, textFilterFalsePositiveRate);
+        return loadTextFilter(textFilter);
+    }
+
+    /* Adds the SHA-1 rows of TedgeText to a filter; returns the number of rows added. */
+    private long loadTextFilter(final DigestBloomFilter filter) {
+        long loaded = 0;
+        BatchScanner scanner = createTextScanner();
+        try {
+            scanner.setRanges(Arrays.asList(new Range()));
+            scanner.fetchColumn(EMPTY_CF, TEXT_CQ);
+            for (Map.Entry<Key, Value> entry : scanner) {
+                byte[] hash = unhex(entry.getKey().getRow().toString());
+                if (hash != null) {
+                    filter.put(hash);
+                    loaded++;
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        return loaded;
+    }
+
+    /** Send all buffered mutations to Accumulo.
+     */
+    public void flush() {
+        checkOpen();
+        long start = metrics.startTimer();
+        try {
+            resolvePendingTexts();
+            flushDegrees();
+            flushStatistics();
+            multiTableBatchWriter.flush();
+        } catch (MutationsRejectedException e) {
+            throw new D4MException("Unable to flush D4M writer.", e);
+        }
+        unflushedTexts.clear();
+        if (buffer != null) {
+            buffer.clear();
+        }
+        metrics.recordFlush(start);
+    }
+
+    /** Flush and close the underlying writers.
+     */
+    @Override
+    public void close() {
+        if (multiTableBatchWriter == null) {
+            return;
+        }
+        try {
+            resolvePendingTexts();
+            flushDegrees();
+            flushStatistics();
+            multiTableBatchWriter.close();
+        } catch (MutationsRejectedException e) {
+            throw new D4MException("Unable to close D4M writer.", e);
+        } finally {
+            metrics.closeBuffer(buffer);
+            buffer = null;
+            pendingTexts.clear();
+            unflushedTexts.clear();
+            degreeAggregator = null;
+            fieldStatistics = null;
+            multiTableBatchWriter = null;
+            edgeWriter = null;
+            transposeWriter = null;
+            degreeWriter = null;
+            textWriter = null;
+            metadataWriter = null;
+        }
+    }
+
+    private void addEdge(final String row, final String column, final Value value) {
+        Validate.notNull(row, "row must not be null");
+        Validate.notNull(column, "column must not be null");
+        checkOpen();
+
+        encoder.encode(row, this.row);
+        encoder.encode(column, this.column);
+
+        Mutation edge = new Mutation(this.row);
+        edge.put(EMPTY_CF, this.column, value);
+        addMutation(edgeWriter, edge);
+        track(edgeTable, row);
+
+        addTransposeAndDegree(row, column, value);
+    }
+
+    /* Uses the row and column buffers already set by the caller. */
+    private void addTransposeAndDegree(final String rowName, final String columnName, final Value value) {
+        Mutation transpose = new Mutation(column);
+        transpose.put(EMPTY_CF, row, value);
+        addMutation(transposeWriter, transpose);
+        track(transposeTable, columnName);
+        track(degreeTable, columnName);
+        if (degreeCache != null) {
+            degreeCache.update(columnName, degree -> degree + 1);
+        }
+
+        if (degreeAggregator == null) {
+            Mutation degree = new Mutation(column);
+            degree.put(EMPTY_CF, DEGREE_CQ, degreeOne);
+            addMutation(degreeWriter, degree);
+        } else if (degreeAggregator.add(columnName, 1)) {
+            try {
+                flushDegrees();
+            } catch (MutationsRejectedException e) {
+                throw new D4MException("Unable to write mutation.", e);
+            }
+        }
+        if (fieldStatistics != null) {
+            addStatistics(rowName, columnName);
+        }
+    }
+
+    private void addStatistics(final String rowName, final String columnName) {
+        int end = columnName.indexOf(factDelimiter);
+        if (end <= 0) {
+            return;
+        }
+        String field = columnName.substring(0, end);
+        FieldStatistics statistics = fieldStatistics.get(field);
+        if (statistics == null) {
+            if (fieldStatistics.size() >= maxStatisticsFields) {
+                flushStatistics();
+            }
+            statistics = new FieldStatistics(field, statisticsPrecision, statisticsDepth, statisticsWidth);
+            fieldStatistics.put(field, statistics);
+        }
+        statistics.add(rowName, columnName);
+    }
+
+    private void flushStatistics() {
+        if (fieldStatistics == null) {
+            return;
+        }
+        for (FieldStatistics statistics : fieldStatistics.values()) {
+            addMutation(metadataWriter, statistics.toMutation());
+        }
+        fieldStatistics.clear();
+    }
+
+    private void writeText(final String row, final Value value) {
+        Mutation mutation = encoder.newMutation(row);
+        mutation.put(EMPTY_CF, TEXT_CQ, value);
+        addMutation(textWriter, mutation);
+        track(textTable, row);
+        if (unflushedTexts.size() >= MAX_UNFLUSHED_TEXTS) {
+            unflushedTexts.clear();
+        }
+        unflushedTexts.add(row);
+    }
+
+    /* Drop pending documents found in TedgeText and write the rest. */
+    private void resolvePendingTexts() {
+        if (pendingTexts.isEmpty()) {
+            return;
+        }
+        List<Range> ranges = new ArrayList<>(pendingTexts.size());
+        for (String row : pendingTexts.keySet()) {
+            ranges.add(Range.exact(new Text(row), EMPTY_CF, TEXT_CQ));
+        }
+        BatchScanner scanner = createTextScanner();
+        try {
+            scanner.setRanges(ranges);
+            for (Map.Entry<Key, Value> entry : scanner) {
+                if (pendingTexts.remove(entry.getKey().getRow().toString()) != null) {
+                    duplicateTexts++;
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        for (Map.Entry<String, Value> entry : pendingTexts.entrySet()) {
+            writeText(entry.getKey(), entry.getValue());
+        }
+        pendingTexts.clear();
+    }
+
+    /* Reads TedgeText keys only; SortedKeyIterator drops the documents on the server. */
+    private BatchScanner createTextScanner() {
+        String tablename = tableManager.getTextTable();
+        try {
+            BatchScanner scanner = tableManager.getConnector().createBatchScanner(tablename, new Authorizations(), maxWriteThreads);
+            scanner.addScanIterator(new IteratorSetting(100, "d4mKeysOnly", SortedKeyIterator.class));
+            return scanner;
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+    }
+
+    private DigestBloomFilter textFilter() {
+        if (textFilter == null) {
+            if (preloadText) {
+                preloadTextFilter();
+            } else {
+                textFilter = new DigestBloomFilter(textFilterEntries, textFilterFalsePositiveRate);
+            }
+        }
+        return textFilter;
+    }
+
+    private MessageDigest sha1() {
+        if (sha1 == null) {
+            try {
+                sha1 = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new D4MException("SHA-1 is not available.", e);
+            }
+        }
+        return sha1;
+    }
+
+    private static String hex(final byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /* The digest a 40 digit hex row was made from, or null for other rows. */
+    private static byte[] unhex(final String row) {
+        if (row.length() != 40) {
+            return null;
+        }
+        byte[] bytes = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            int high = Character.digit(row.charAt(i * 2), 16);
+            int low = Character.digit(row.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    private void flushDegrees() throws MutationsRejectedException {
+        if (degreeAggregator != null) {
+            degreeAggregator.flush(degreeWriter, degreeEncoding);
+        }
+    }
+
+    private void addMutation(final BatchWriter writer, final Mutation mutation) {
+        try {
+            writer.addMutation(mutation);
+        } catch (MutationsRejectedException e) {
+            throw new D4MException("Unable to write mutation.", e);
+        }
+    }
+
+    private void track(final String tablename, final String row) {
+        if (writeRateTracker != null) {
+            writeRateTracker.record(tablename, row);
+        }
+    }
+
+    private BatchWriter meter(final String tablename) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        return metrics.meter(tablename, multiTableBatchWriter.getBatchWriter(tablename), buffer);
+    }
+
+    private void checkOpen() {
+        if (multiTableBatchWriter == null) {
+            throw new D4MException("D4M writer is not open.");
+        }
+    }
+
+}
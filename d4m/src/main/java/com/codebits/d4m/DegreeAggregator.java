@@ -0,0 +1,150 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import lombok.Getter;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Sum degree increments on the client before they reach TedgeDegree.
+ *
+ * The SummingCombiner on TedgeDegree would add up every "1" on the
+ * server. Summing per column here means each column is sent as one
+ * mutation per flush instead of one mutation per edge. Counts are kept
+ * in an open-addressing map of String to primitive long so no boxing
+ * happens on the ingest path.
+ *
+ * @author david medinets
+ */
+public class DegreeAggregator {
+
+    private final static Text EMPTY_CF = new Text("");
+    private final static Text DEGREE_CQ = new Text("degree");
+    private final Utf8Encoder encoder = new Utf8Encoder();
+
+    @Getter
+    private final int maxEntries;
+
+    @Getter
+    private int size = 0;
+
+    private final String[] keys;
+    private final long[] counts;
+    private final int mask;
+
+    /** Constructor
+     *
+     * @param maxEntries number of distinct columns held before the caller must flush.
+     */
+    public DegreeAggregator(final int maxEntries) {
+        Validate.isTrue(maxEntries > 0, "maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries * 2 - 1)) << 1;
+        keys = new String[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Add to the degree of a column.
+     *
+     * @param column column whose degree changes.
+     * @param amount amount to add.
+     * @return true when the aggregator is full and should be flushed.
+     */
+    public boolean add(final String column, final long amount) {
+        Validate.notNull(column, "column must not be null");
+        int slot = column.hashCode() & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(column)) {
+                counts[slot] += amount;
+                return isFull();
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = column;
+        counts[slot] = amount;
+        size++;
+        return isFull();
+    }
+
+    /** Get the pending degree of a column.
+     *
+     * @param column column to look up.
+     * @return the summed amount not yet flushed, or zero.
+     */
+    public long get(final String column) {
+        int slot = column.hashCode() & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(column)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /** Check whether the size bound has been reached.
+     *
+     * @return true when no more distinct columns should be added.
+     */
+    public boolean isFull() {
+        return size >= maxEntries;
+    }
+
+    /** Write one STRING-encoded degree mutation per column and empty the aggregator.
+     *
+     * @param writer BatchWriter for the degree table.
+     * @throws MutationsRejectedException if Accumulo rejects a mutation.
+     */
+    public void flush(final BatchWriter writer) throws MutationsRejectedException {
+        flush(writer, DegreeEncoding.STRING);
+    }
+
+    /** Write one degree mutation per column and empty the aggregator.
+     *
+     * @param writer BatchWriter for the degree table.
+     * @param encoding encoding the degree table's combiner expects.
+     * @throws MutationsRejectedException if Accumulo rejects a mutation.
+     */
+    public void flush(final BatchWriter writer, final DegreeEncoding encoding) throws MutationsRejectedException {
+        if (size == 0) {
+            return;
+        }
+        boolean string = encoding == DegreeEncoding.STRING;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                Mutation mutation = encoder.newMutation(keys[i]);
+                mutation.put(EMPTY_CF, DEGREE_CQ, string ? encoder.newValue(counts[i]) : encoding.newValue(counts[i]));
+                writer.addMutation(mutation);
+            }
+        }
+        clear();
+    }
+
+    /** Send one (column, "degree", count) triple per column to a sink and empty the aggregator.
+     *
+     * @param sink receiver of the summed degrees.
+     */
+    public void flush(final TripleSink sink) {
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                sink.put(keys[i], DEGREE_CQ.toString(), Long.toString(counts[i]));
+            }
+        }
+        clear();
+    }
+
+    /** Discard all pending counts.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+}
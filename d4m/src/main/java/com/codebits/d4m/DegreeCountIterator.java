@@ -0,0 +1,56 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+
+/** Count the entries of each row of a TedgeTranspose into TedgeDegree.
+ *
+ * Row c of the scanned TedgeTranspose becomes the degree entry
+ * (c, "", "degree", count), written to the table named by the edgeTable
+ * option in the encoding named by the degreeEncoding option.
+ * MatrixOperations runs it over the result TedgeTranspose once the
+ * result is written, so the result table set has the degrees
+ * QueryPlanner, GraphTraversal and SnapshotExporter read.
+ *
+ * Each count is complete, so the result TedgeDegree keeps the latest
+ * count instead of summing; a retried scan writes the same count again.
+ *
+ * @author david medinets
+ */
+public class DegreeCountIterator extends RemoteWriteIterator {
+
+    /** Option naming the DegreeEncoding of the counts. */
+    public final static String DEGREE_ENCODING = "degreeEncoding";
+
+    private final static List<Text> DEGREE_COLUMN = Collections.singletonList(new Text("degree"));
+
+    private final long[] degree = new long[1];
+    private DegreeEncoding encoding = DegreeEncoding.STRING;
+
+    @Override
+    public void init(final SortedKeyValueIterator<Key, Value> source, final Map<String, String> options, final IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        if (options.containsKey(DEGREE_ENCODING)) {
+            encoding = DegreeEncoding.valueOf(options.get(DEGREE_ENCODING));
+        }
+    }
+
+    @Override
+    protected void writeRow(final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        degree[0] = count;
+        writeEdges(row, DEGREE_COLUMN, degree, 1);
+    }
+
+    @Override
+    protected byte[] encode(final long value) {
+        return encoding.encode(value);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.codebits.d4m;
+
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.TypedValueCombiner.Encoder;
+
+/** Encoding of the counts summed by the TedgeDegree and TedgeMetadata combiners.
+ *
+ * STRING keeps the decimal text earlier releases wrote; every combine
+ * parses and formats it. VARLEN and FIXEDLEN are the binary encodings
+ * of LongCombiner, which the combiner decodes without text parsing.
+ * VARLEN is smaller for the small counts most columns have; FIXEDLEN
+ * always takes eight bytes and is the cheapest to decode.
+ *
+ * The encoding is chosen with TableProfile.setDegreeEncoding when the
+ * tables are created and stored in TedgeMetadata, where writers and
+ * readers look it up. DegreeEncodingMigrator converts existing tables.
+ *
+ * @author david medinets
+ */
+public enum DegreeEncoding {
+
+    /** Decimal text, as written by earlier releases. */
+    STRING(LongCombiner.Type.STRING, LongCombiner.STRING_ENCODER),
+    /** Variable-length binary, LongCombiner.Type.VARLEN. */
+    VARLEN(LongCombiner.Type.VARLEN, LongCombiner.VAR_LEN_ENCODER),
+    /** Eight-byte binary, LongCombiner.Type.FIXEDLEN. */
+    FIXEDLEN(LongCombiner.Type.FIXEDLEN, LongCombiner.FIXED_LEN_ENCODER);
+
+    private final LongCombiner.Type type;
+    private final Encoder<Long> encoder;
+
+    private DegreeEncoding(final LongCombiner.Type type, final Encoder<Long> encoder) {
+        this.type = type;
+        this.encoder = encoder;
+    }
+
+    /** Get the combiner type matching this encoding.
+     *
+     * @return the LongCombiner type.
+     */
+    public LongCombiner.Type getType() {
+        return type;
+    }
+
+    /** Encode a count.
+     *
+     * @param count count to encode.
+     * @return the encoded bytes.
+     */
+    public byte[] encode(final long count) {
+        return encoder.encode(count);
+    }
+
+    /** Encode a count as a Value.
+     *
+     * @param count count to encode.
+     * @return the encoded value.
+     */
+    public Value newValue(final long count) {
+        return new Value(encoder.encode(count), false);
+    }
+
+    /** Decode a count.
+     *
+     * @param bytes encoded bytes.
+     * @return the count.
+     */
+    public long decode(final byte[] bytes) {
+        return encoder.decode(bytes);
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.SecurityOperations;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.TablePermission;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Rewrites the TedgeDegree and TedgeMetadata tables in another DegreeEncoding.
+ *
+ * A summing combiner cannot change its encoding in place: entries
+ * already written in the old encoding would be misread by the new
+ * one. Each table is therefore cloned into a new table, named after
+ * the old one with a "Migration" suffix, whose combiner uses the target
+ * encoding. The clone keeps the splits, settings and column visibilities
+ * of the old table, and its table permissions are copied over. A
+ * compaction of the clone with a DegreeReencodingIterator then rewrites
+ * every summed value in the target encoding on the tablet servers.
+ *
+ * The entries of both tables are counted with the user's full
+ * authorizations; if the counts differ the old table is left as it is.
+ * Otherwise the old table is renamed with a "Backup" suffix, the copy
+ * renamed to its name, and only then is the backup deleted.
+ *
+ * A migration that was interrupted can be run again. A copy left
+ * behind next to an intact table is dropped and made again; a swap
+ * that stopped half-way is finished; a table whose combiner already
+ * uses the target encoding is not copied a second time.
+ *
+ * Stop all writers of the root name before migrating. Increments
+ * written during the copy may be lost, and writers opened before the
+ * migration keep using the old encoding.
+ *
+ * @author david medinets
+ */
+public class DegreeEncodingMigrator {
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private int numQueryThreads = 4;
+
+    private final static Text EMPTY_CQ = new Text("");
+    private final static Text PROPERTY = new Text("property");
+    private final static Text DEGREE_ENCODING_PROPERTY_NAME = new Text("degree.encoding");
+    /* The option of LongCombiner naming its encoding. */
+    private final static String ENCODING_TYPE_OPTION = "type";
+
+    /** Constructor
+     *
+     */
+    public DegreeEncodingMigrator() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager naming the tables to migrate.
+     */
+    public DegreeEncodingMigrator(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Rewrite the degree and metadata tables in the target encoding.
+     *
+     * @param target encoding to convert to.
+     * @return the number of entries rewritten, or zero if the tables already use the target encoding.
+     */
+    public long migrate(final DegreeEncoding target) {
+        Validate.notNull(target, "target must not be null");
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        Validate.notNull(tableManager.getTableOperations(), "tableOperations must not be null");
+
+        finishSwap(tableManager.getDegreeTable());
+        finishSwap(tableManager.getMetadataTable());
+        tableManager.clearDegreeEncoding();
+
+        DegreeEncoding current = tableManager.getDegreeEncoding();
+        if (current == target) {
+            return 0;
+        }
+        long start = tableManager.getMetrics().startTimer();
+
+        Mutation property = new Mutation(PROPERTY);
+        property.put(DEGREE_ENCODING_PROPERTY_NAME, EMPTY_CQ, new Value(target.name().getBytes(Utf8Encoder.UTF8)));
+
+        long entries = 0;
+        DegreeEncoding degreeEncoding = getTableEncoding(tableManager.getDegreeTable(), current);
+        if (degreeEncoding != target) {
+            // not yet copied by an interrupted migration
+            entries += copy(tableManager.getDegreeTable(), Arrays.asList(tableManager.getDegreeIteratorSetting(target)), degreeEncoding, target, null);
+        }
+        entries += copy(tableManager.getMetadataTable(), Arrays.asList(tableManager.getFieldIteratorSetting(target)), current, target, property);
+
+        tableManager.clearDegreeEncoding();
+        tableManager.getMetrics().recordAdmin("migrateDegreeEncoding", start);
+        return entries;
+    }
+
+    /* Clone one table into tablename + "Migration", re-encode the summed values, then swap the copy in. */
+    private long copy(final String tablename, final List<IteratorSetting> combiners, final DegreeEncoding current, final DegreeEncoding target, final Mutation extra) {
+        TableOperations tableOperations = tableManager.getTableOperations();
+        String migrationTable = tablename + "Migration";
+        Map<String, String> properties = new HashMap<>();
+        for (IteratorSetting combiner : combiners) {
+            properties.putAll(TableProvisioner.iteratorProperties(combiner));
+        }
+        IteratorSetting reencode = new IteratorSetting(1, "d4mReencode", DegreeReencodingIterator.class);
+        reencode.addOption(DegreeReencodingIterator.FROM, current.name());
+        reencode.addOption(DegreeReencodingIterator.TO, target.name());
+        try {
+            if (tableOperations.exists(migrationTable)) {
+                // a partial copy from an interrupted migration; the original is intact
+                tableOperations.delete(migrationTable);
+            }
+            tableOperations.clone(tablename, migrationTable, true, properties, Collections.<String>emptySet());
+            tableOperations.compact(migrationTable, null, null, Collections.singletonList(reencode), true, true);
+        } catch (TableNotFoundException | TableExistsException | AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to copy table [%s] to [%s]", tablename, migrationTable), e);
+        }
+        copyPermissions(tablename, migrationTable);
+
+        Authorizations authorizations = getAuthorizations();
+        long entries = count(migrationTable, authorizations);
+        long expected = count(tablename, authorizations);
+        if (entries != expected) {
+            throw new D4MException(String.format("Table [%s] has %d entries but its copy [%s] has %d; the table was not replaced.", tablename, expected, migrationTable, entries));
+        }
+
+        if (extra != null) {
+            try {
+                BatchWriter writer = tableManager.getConnector().createBatchWriter(migrationTable, new BatchWriterConfig());
+                writer.addMutation(extra);
+                writer.close();
+            } catch (TableNotFoundException e) {
+                throw new D4MException(String.format("Unable to find table [%s]", migrationTable), e);
+            } catch (MutationsRejectedException e) {
+                throw new D4MException(String.format("Unable to write table [%s]", migrationTable), e);
+            }
+        }
+
+        String backupTable = tablename + "Backup";
+        try {
+            tableOperations.rename(tablename, backupTable);
+            tableOperations.rename(migrationTable, tablename);
+            tableOperations.delete(backupTable);
+        } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException | TableExistsException e) {
+            throw new D4MException(String.format("Unable to replace table [%s] with [%s]", tablename, migrationTable), e);
+        }
+        return entries;
+    }
+
+    /* Give every user the permissions on the copy they hold on the original. */
+    private void copyPermissions(final String tablename, final String migrationTable) {
+        SecurityOperations securityOperations = tableManager.getConnector().securityOperations();
+        try {
+            for (String user : securityOperations.listLocalUsers()) {
+                for (TablePermission permission : TablePermission.values()) {
+                    if (securityOperations.hasTablePermission(user, tablename, permission) && !securityOperations.hasTablePermission(user, migrationTable, permission)) {
+                        securityOperations.grantTablePermission(user, migrationTable, permission);
+                    }
+                }
+            }
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to copy the permissions of table [%s] to [%s]", tablename, migrationTable), e);
+        }
+    }
+
+    /* The authorizations of the connecting user, so entries with any visibility are counted. */
+    private Authorizations getAuthorizations() {
+        Connector connector = tableManager.getConnector();
+        try {
+            return connector.securityOperations().getUserAuthorizations(connector.whoami());
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to read the authorizations of user [%s]", connector.whoami()), e);
+        }
+    }
+
+    /* The number of entries of a table, as its scan iterators present them. */
+    private long count(final String tablename, final Authorizations authorizations) {
+        BatchScanner scanner;
+        try {
+            scanner = tableManager.getConnector().createBatchScanner(tablename, authorizations, numQueryThreads);
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+        long entries = 0;
+        try {
+            scanner.setRanges(Collections.singletonList(new Range()));
+            for (Iterator<Entry<Key, Value>> iterator = scanner.iterator(); iterator.hasNext(); iterator.next()) {
+                entries++;
+            }
+        } finally {
+            scanner.close();
+        }
+        return entries;
+    }
+
+    /* Finish a swap an interrupted migration left after renaming the original to its backup. */
+    private void finishSwap(final String tablename) {
+        TableOperations tableOperations = tableManager.getTableOperations();
+        String migrationTable = tablename + "Migration";
+        String backupTable = tablename + "Backup";
+        if (!tableOperations.exists(backupTable)) {
+            return;
+        }
+        try {
+            if (!tableOperations.exists(tablename)) {
+                tableOperations.rename(migrationTable, tablename);
+            } else if (tableOperations.exists(migrationTable)) {
+                throw new D4MException(String.format("Tables [%s], [%s] and [%s] all exist; resolve the interrupted migration by hand.", tablename, migrationTable, backupTable));
+            }
+            tableOperations.delete(backupTable);
+        } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException | TableExistsException e) {
+            throw new D4MException(String.format("Unable to replace table [%s] with [%s]", tablename, migrationTable), e);
+        }
+    }
+
+    /* The encoding of the summing combiner attached to a table, or fallback if it cannot be read. */
+    private DegreeEncoding getTableEncoding(final String tablename, final DegreeEncoding fallback) {
+        IteratorSetting setting;
+        try {
+            setting = tableManager.getTableOperations().getIteratorSetting(tablename, tableManager.getDegreeIteratorSetting().getName(), IteratorScope.scan);
+        } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to read the combiner of table [%s]", tablename), e);
+        }
+        String type = setting == null ? null : setting.getOptions().get(ENCODING_TYPE_OPTION);
+        for (DegreeEncoding encoding : DegreeEncoding.values()) {
+            if (encoding.getType().name().equals(type)) {
+                return encoding;
+            }
+        }
+        return fallback;
+    }
+
+}
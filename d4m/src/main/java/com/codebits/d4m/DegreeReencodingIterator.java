@@ -0,0 +1,77 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.Map;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.hadoop.io.Text;
+
+/** Re-encode the summed counts of TedgeDegree and TedgeMetadata.
+ *
+ * The degree entries (row, "", "degree") and field counts
+ * (field, "field", "") are decoded in the encoding named by the from
+ * option and encoded in the one named by the to option; every other
+ * entry passes through as it is, column visibility included.
+ *
+ * DegreeEncodingMigrator runs it in a compaction of the cloned tables,
+ * below the summing combiner, so the values are re-encoded before the
+ * combiner reads them.
+ *
+ * @author david medinets
+ */
+public class DegreeReencodingIterator extends WrappingIterator {
+
+    /** Option naming the DegreeEncoding the values are stored in. */
+    public final static String FROM = "from";
+    /** Option naming the DegreeEncoding to convert the values to. */
+    public final static String TO = "to";
+
+    private final static Text EMPTY = new Text("");
+    private final static Text DEGREE_CQ = new Text("degree");
+    private final static Text FIELD_CF = new Text("field");
+
+    private DegreeEncoding from = DegreeEncoding.STRING;
+    private DegreeEncoding to = DegreeEncoding.STRING;
+    private final Text cf = new Text();
+    private final Text cq = new Text();
+
+    @Override
+    public void init(final SortedKeyValueIterator<Key, Value> source, final Map<String, String> options, final IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        if (options.containsKey(FROM)) {
+            from = DegreeEncoding.valueOf(options.get(FROM));
+        }
+        if (options.containsKey(TO)) {
+            to = DegreeEncoding.valueOf(options.get(TO));
+        }
+    }
+
+    @Override
+    public Value getTopValue() {
+        Value value = super.getTopValue();
+        if (from == to || !isCount(super.getTopKey())) {
+            return value;
+        }
+        return to.newValue(from.decode(value.get()));
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(final IteratorEnvironment env) {
+        DegreeReencodingIterator copy = new DegreeReencodingIterator();
+        copy.setSource(getSource().deepCopy(env));
+        copy.from = from;
+        copy.to = to;
+        return copy;
+    }
+
+    /* Degree entries and field counts are the summed columns. */
+    private boolean isCount(final Key key) {
+        key.getColumnFamily(cf);
+        key.getColumnQualifier(cq);
+        return (cf.equals(EMPTY) && cq.equals(DEGREE_CQ)) || (cf.equals(FIELD_CF) && cq.equals(EMPTY));
+    }
+
+}
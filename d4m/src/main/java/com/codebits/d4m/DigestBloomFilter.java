@@ -0,0 +1,150 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** Scalable bloom filter over message digests.
+ *
+ * The keys are already cryptographic digests, so the first sixteen
+ * bytes are used directly as the two base hashes of double hashing
+ * and no further hashing is needed.
+ *
+ * The filter never forgets a key, so mightContain returning false
+ * always means the key was never added. It starts with one stage sized
+ * for expectedEntries keys; when a stage is full a new stage twice as
+ * large is added, with half the false positive rate of the one before.
+ * The rates of the stages add up to at most falsePositiveRate, and
+ * memory grows in proportion to the keys added.
+ *
+ * @author david medinets
+ */
+public class DigestBloomFilter {
+
+    @Getter
+    private final int expectedEntries;
+
+    @Getter
+    private final double falsePositiveRate;
+
+    @Getter
+    private long size = 0;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /** Constructor
+     *
+     * @param expectedEntries number of keys the first stage holds.
+     * @param falsePositiveRate target probability that mightContain is wrong.
+     */
+    public DigestBloomFilter(final int expectedEntries, final double falsePositiveRate) {
+        Validate.isTrue(expectedEntries > 0, "expectedEntries must be positive");
+        Validate.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate must be between 0 and 1");
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        clear();
+    }
+
+    /** Add a digest.
+     *
+     * @param digest digest of at least sixteen bytes.
+     */
+    public void put(final byte[] digest) {
+        Stage stage = stages.get(stages.size() - 1);
+        if (stage.size >= stage.capacity) {
+            // twice the keys at half the rate keeps the total rate below the target
+            stage = new Stage((int) Math.min(Integer.MAX_VALUE, 2L * stage.capacity), stage.falsePositiveRate / 2);
+            stages.add(stage);
+        }
+        stage.put(hash(digest, 0), hash(digest, 8));
+        size++;
+    }
+
+    /** Check whether a digest may have been added.
+     *
+     * @param digest digest of at least sixteen bytes.
+     * @return false if the digest was certainly never added.
+     */
+    public boolean mightContain(final byte[] digest) {
+        long h1 = hash(digest, 0);
+        long h2 = hash(digest, 8);
+        for (Stage stage : stages) {
+            if (stage.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Get the number of stages.
+     *
+     * @return 1 until the first stage is full, then one more each time the last fills up.
+     */
+    public int getStages() {
+        return stages.size();
+    }
+
+    /** Forget every digest and release the stages added since construction.
+     */
+    public void clear() {
+        stages.clear();
+        stages.add(new Stage(expectedEntries, falsePositiveRate / 2));
+        size = 0;
+    }
+
+    private static long hash(final byte[] digest, final int offset) {
+        long hash = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /* One fixed-size bloom filter of the chain. */
+    private static class Stage {
+
+        private final int capacity;
+        private final double falsePositiveRate;
+        private final long[] bits;
+        private final long numBits;
+        private final int numHashes;
+        private int size = 0;
+
+        Stage(final int capacity, final double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (Math.max(64, m) + 63) / 64)];
+            numBits = bits.length * 64L;
+            numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+        }
+
+        void put(final long h1, final long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                long bit = index(h1 + i * h2);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            size++;
+        }
+
+        boolean mightContain(final long h1, final long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                long bit = index(h1 + i * h2);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /* Small stages have few bits, so the probes are mixed to keep them apart. */
+        private long index(final long hash) {
+            long h = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+            h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return ((h ^ (h >>> 33)) & Long.MAX_VALUE) % numBits;
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.codebits.d4m;
+
+import java.util.Map;
+import lombok.Getter;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Approximate statistics of one field, kept as sketches in TedgeMetadata.
+ *
+ * A field is the part of a column before the fact delimiter, "city" for
+ * the column "city|Paris". Three sketches are kept in the row of the
+ * field, family "sketch":
+ *
+ * rows: a HyperLogLog of the distinct rows with a column of the field.
+ * columns: a HyperLogLog of the distinct columns of the field.
+ * frequency: a CountMinSketch of the number of entries per column.
+ *
+ * D4MWriter builds them on the client and SketchCombiner merges them on
+ * the tablet servers; TableManager.getFieldStatistics reads all three
+ * with one point lookup.
+ *
+ * @author david medinets
+ */
+public class FieldStatistics {
+
+    final static Text SKETCH_CF = new Text("sketch");
+    final static Text ROWS_CQ = new Text("rows");
+    final static Text COLUMNS_CQ = new Text("columns");
+    final static Text FREQUENCY_CQ = new Text("frequency");
+
+    @Getter
+    private final String field;
+
+    @Getter
+    private HyperLogLog rows = null;
+
+    @Getter
+    private HyperLogLog columns = null;
+
+    @Getter
+    private CountMinSketch frequencies = null;
+
+    /** Constructor
+     *
+     * @param field name of the field.
+     * @param precision precision of the two HyperLogLogs.
+     * @param depth depth of the CountMinSketch.
+     * @param width width of the CountMinSketch.
+     */
+    public FieldStatistics(final String field, final int precision, final int depth, final int width) {
+        Validate.notNull(field, "field must not be null");
+        this.field = field;
+        this.rows = new HyperLogLog(precision);
+        this.columns = new HyperLogLog(precision);
+        this.frequencies = new CountMinSketch(depth, width);
+    }
+
+    /* Statistics read from TedgeMetadata; sketches not found stay null. */
+    FieldStatistics(final String field) {
+        this.field = field;
+    }
+
+    /** Count one entry of the field.
+     *
+     * @param row row of the entry.
+     * @param column column of the entry, including the field.
+     */
+    public void add(final String row, final String column) {
+        rows.add(row);
+        columns.add(column);
+        frequencies.add(column, 1);
+    }
+
+    /** Estimate the number of distinct rows with a column of this field.
+     *
+     * @return the estimate, or zero if the sketch is missing.
+     */
+    public long getDistinctRows() {
+        return rows == null ? 0 : rows.cardinality();
+    }
+
+    /** Estimate the number of distinct columns of this field.
+     *
+     * @return the estimate, or zero if the sketch is missing.
+     */
+    public long getDistinctColumns() {
+        return columns == null ? 0 : columns.cardinality();
+    }
+
+    /** Get the number of entries counted for this field.
+     *
+     * @return the entry count, or zero if the sketch is missing.
+     */
+    public long getEntries() {
+        return frequencies == null ? 0 : frequencies.getTotal();
+    }
+
+    /** Estimate the number of entries of a column.
+     *
+     * @param column column including the field, "city|Paris".
+     * @return the estimate, never less than the true count, or zero if the sketch is missing.
+     */
+    public long estimateCount(final String column) {
+        return frequencies == null ? 0 : frequencies.estimate(column);
+    }
+
+    /** Build the mutation which adds these sketches to TedgeMetadata.
+     *
+     * @return a mutation of the field's row with the three sketches.
+     */
+    public Mutation toMutation() {
+        Mutation mutation = new Mutation(field);
+        mutation.put(SKETCH_CF, ROWS_CQ, new Value(rows.toBytes(), false));
+        mutation.put(SKETCH_CF, COLUMNS_CQ, new Value(columns.toBytes(), false));
+        mutation.put(SKETCH_CF, FREQUENCY_CQ, new Value(frequencies.toBytes(), false));
+        return mutation;
+    }
+
+    /* Take one entry of the field's sketch family. */
+    void read(final Map.Entry<Key, Value> entry) {
+        Text cq = entry.getKey().getColumnQualifier();
+        byte[] bytes = entry.getValue().get();
+        if (cq.equals(ROWS_CQ)) {
+            rows = HyperLogLog.fromBytes(bytes);
+        } else if (cq.equals(COLUMNS_CQ)) {
+            columns = HyperLogLog.fromBytes(bytes);
+        } else if (cq.equals(FREQUENCY_CQ)) {
+            frequencies = CountMinSketch.fromBytes(bytes);
+        }
+    }
+
+}
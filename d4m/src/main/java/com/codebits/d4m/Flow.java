@@ -0,0 +1,81 @@
+package com.codebits.d4m;
+
+/** Interfaces of a reactive stream with backpressure.
+ *
+ * The same interfaces, with the same methods and rules, as
+ * java.util.concurrent.Flow of Java 9 and org.reactivestreams. This
+ * library still runs on Java 8, so they are declared here; adapting a
+ * Publisher to either is a matter of delegating each method.
+ *
+ * A Subscriber gets onSubscribe once, then at most as many onNext
+ * calls as it requested through its Subscription, then onComplete or
+ * onError unless it cancelled. Calls to a Subscriber never overlap.
+ *
+ * @author david medinets
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /** Producer of items for its subscribers.
+     *
+     * @param <T> item type.
+     */
+    public interface Publisher<T> {
+
+        /** Start sending items to a subscriber.
+         *
+         * @param subscriber receiver of the items.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+
+    }
+
+    /** Receiver of items.
+     *
+     * @param <T> item type.
+     */
+    public interface Subscriber<T> {
+
+        /** Receive the subscription; nothing is sent until it is asked for items.
+         *
+         * @param subscription link to the publisher.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /** Receive one requested item.
+         *
+         * @param item the item.
+         */
+        void onNext(T item);
+
+        /** Receive the failure which ended the stream.
+         *
+         * @param throwable the failure.
+         */
+        void onError(Throwable throwable);
+
+        /** Learn that every item has been sent.
+         */
+        void onComplete();
+
+    }
+
+    /** Link between one publisher and one subscriber.
+     */
+    public interface Subscription {
+
+        /** Ask for more items.
+         *
+         * @param n number of items, positive.
+         */
+        void request(long n);
+
+        /** Stop the stream; no further items are sent.
+         */
+        void cancel();
+
+    }
+
+}
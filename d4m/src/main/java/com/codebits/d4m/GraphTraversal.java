@@ -0,0 +1,220 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Breadth-first k-hop expansion over Tedge and TedgeTranspose.
+ *
+ * Each row of Tedge is a vertex and each of its columns an out-edge.
+ * Every hop turns the frontier into batches of exact ranges read by
+ * one BatchScanner per batch, so a hop costs one parallel scan per
+ * batchSize vertices instead of one round trip per vertex. OUT reads
+ * Tedge and IN reads TedgeTranspose.
+ *
+ * Edges are handed to the listener as they are read, always in Tedge
+ * (row, column) order, and only the frontier of the next hop is held.
+ * Visited vertices are kept as 64-bit hashes in a LongHashSet; two
+ * vertex names with the same hash would be treated as one vertex,
+ * which is vanishingly rare below billions of vertices.
+ *
+ * When maxDegree is set, newly reached vertices whose TedgeDegree count
+ * is above it are reported but not expanded, so supernodes do not
+ * flood the next hop.
+ *
+ * @author david medinets
+ */
+public class GraphTraversal {
+
+    /** Which edges a hop follows. */
+    public enum Direction {
+        /** From row to column, reading Tedge. */
+        OUT,
+        /** From column to row, reading TedgeTranspose. */
+        IN
+    }
+
+    /** Receiver of the edges of each hop. */
+    public interface Listener {
+
+        /** Called for every edge read.
+         *
+         * @param hop hop number, starting at 1.
+         * @param row row of the Tedge entry.
+         * @param column column of the Tedge entry.
+         * @param value value of the Tedge entry.
+         */
+        void edge(int hop, String row, String column, String value);
+
+        /** Called when a hop has been read.
+         *
+         * @param hop hop number, starting at 1.
+         * @param frontierSize number of vertices the next hop will expand.
+         */
+        void endOfHop(int hop, int frontierSize);
+
+    }
+
+    @Getter
+    @Setter
+    private D4MQuery query = null;
+
+    @Getter
+    @Setter
+    private Direction direction = Direction.OUT;
+
+    @Getter
+    @Setter
+    private long maxDegree = Long.MAX_VALUE;
+
+    @Getter
+    @Setter
+    private int batchSize = 10000;
+
+    @Getter
+    @Setter
+    private int expectedVertices = 65536;
+
+    private final Charset charset = Utf8Encoder.UTF8;
+
+    /** Constructor
+     *
+     */
+    public GraphTraversal() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param query D4MQuery supplying the table names, scanner threads and authorizations.
+     */
+    public GraphTraversal(final D4MQuery query) {
+        this.query = query;
+    }
+
+    /** Expand the seeds and send every edge read to a sink.
+     *
+     * @param seeds vertices to start from.
+     * @param hops number of hops to expand.
+     * @param sink receiver of the edges in Tedge (row, column, value) order.
+     * @return the number of distinct vertices reached, seeds included.
+     */
+    public long traverse(final Collection<String> seeds, final int hops, final TripleSink sink) {
+        Validate.notNull(sink, "sink must not be null");
+        return traverse(seeds, hops, new Listener() {
+            @Override
+            public void edge(final int hop, final String row, final String column, final String value) {
+                sink.put(row, column, value);
+            }
+
+            @Override
+            public void endOfHop(final int hop, final int frontierSize) {
+            }
+        });
+    }
+
+    /** Expand the seeds hop by hop.
+     *
+     * @param seeds vertices to start from.
+     * @param hops number of hops to expand.
+     * @param listener receiver of the edges and hop boundaries.
+     * @return the number of distinct vertices reached, seeds included.
+     */
+    public long traverse(final Collection<String> seeds, final int hops, final Listener listener) {
+        Validate.notNull(seeds, "seeds must not be null");
+        Validate.notNull(listener, "listener must not be null");
+        Validate.isTrue(hops >= 0, "hops must not be negative");
+        Validate.isTrue(batchSize > 0, "batchSize must be positive");
+        Validate.notNull(query, "query must not be null");
+        Validate.notNull(query.getTableManager(), "tableManager must not be null");
+
+        LongHashSet visited = new LongHashSet(expectedVertices);
+        List<String> frontier = new ArrayList<>();
+        for (String seed : seeds) {
+            if (visited.add(Hashing.hash64(seed))) {
+                frontier.add(seed);
+            }
+        }
+
+        for (int hop = 1; hop <= hops && !frontier.isEmpty(); hop++) {
+            List<String> next = new ArrayList<>();
+            for (int i = 0; i < frontier.size(); i += batchSize) {
+                expand(hop, frontier.subList(i, Math.min(frontier.size(), i + batchSize)), visited, next, listener);
+            }
+            if (hop < hops) {
+                next = dropSupernodes(next);
+            }
+            listener.endOfHop(hop, hop < hops ? next.size() : 0);
+            frontier = next;
+        }
+        return visited.getSize();
+    }
+
+    /* Read the edges of one batch of frontier vertices, collecting unvisited neighbors. */
+    private void expand(final int hop, final List<String> vertices, final LongHashSet visited, final List<String> next, final Listener listener) {
+        TableManager tableManager = query.getTableManager();
+        boolean out = direction == Direction.OUT;
+        String tablename = out ? tableManager.getEdgeTable() : tableManager.getTransposeTable();
+        List<Range> ranges = new ArrayList<>(vertices.size());
+        for (String vertex : vertices) {
+            ranges.add(Range.exact(vertex));
+        }
+
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        long entries = 0;
+        BatchScanner scanner = query.createBatchScanner(tablename);
+        try {
+            scanner.setRanges(ranges);
+            Text row = new Text();
+            Text column = new Text();
+            for (Entry<Key, Value> entry : scanner) {
+                Key key = entry.getKey();
+                String vertex = key.getRow(row).toString();
+                String neighbor = key.getColumnQualifier(column).toString();
+                String value = new String(entry.getValue().get(), charset);
+                if (out) {
+                    listener.edge(hop, vertex, neighbor, value);
+                } else {
+                    listener.edge(hop, neighbor, vertex, value);
+                }
+                if (visited.add(Hashing.hash64(neighbor))) {
+                    next.add(neighbor);
+                }
+                entries++;
+            }
+        } finally {
+            scanner.close();
+            metrics.recordScan("traverse", start, entries);
+        }
+    }
+
+    private List<String> dropSupernodes(final List<String> vertices) {
+        if (maxDegree == Long.MAX_VALUE || vertices.isEmpty()) {
+            return vertices;
+        }
+        QueryPlanner planner = new QueryPlanner(query);
+        List<String> kept = new ArrayList<>(vertices.size());
+        for (int i = 0; i < vertices.size(); i += batchSize) {
+            List<String> batch = vertices.subList(i, Math.min(vertices.size(), i + batchSize));
+            Map<String, Long> degrees = planner.getDegrees(batch);
+            for (String vertex : batch) {
+                if (degrees.get(vertex) <= maxDegree) {
+                    kept.add(vertex);
+                }
+            }
+        }
+        return kept;
+    }
+
+}
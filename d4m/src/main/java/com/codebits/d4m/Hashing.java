@@ -0,0 +1,23 @@
+package com.codebits.d4m;
+
+/** 64-bit hashing of strings for the in-memory sets and sketches.
+ *
+ * @author david medinets
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /* FNV-1a over the chars with a splitmix64 finish. */
+    static long hash64(final String value) {
+        long h = 0x9E3779B97F4A7C15L ^ value.length();
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** A mergeable estimate of the number of distinct strings added.
+ *
+ * 2^precision one-byte registers keep the longest run of leading zeros
+ * seen among the hashes routed to them. The relative error is about
+ * 1.04 / sqrt(2^precision): 1.6% for the default precision of 12,
+ * which takes 4 KB. Two sketches of the same precision merge by taking
+ * the larger of each register, so sketches written by different
+ * clients can be combined on the tablet servers by SketchCombiner.
+ *
+ * @author david medinets
+ */
+public class HyperLogLog {
+
+    /** First byte of the serialized form. */
+    public final static byte TAG = 1;
+
+    @Getter
+    private final int precision;
+
+    private final byte[] registers;
+
+    /** Constructor
+     *
+     * @param precision number of bits of the hash choosing a register, from 4 to 16.
+     */
+    public HyperLogLog(final int precision) {
+        Validate.isTrue(precision >= 4 && precision <= 16, "precision must be between 4 and 16");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /** Add a string.
+     *
+     * @param value string to count.
+     */
+    public void add(final String value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /** Add a 64-bit hash.
+     *
+     * @param hash well-mixed hash of the value to count.
+     */
+    public void addHash(final long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /** Add the registers of another sketch to this one.
+     *
+     * @param other sketch of the same precision.
+     */
+    public void merge(final HyperLogLog other) {
+        Validate.isTrue(other.precision == precision, "precisions must match");
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /** Estimate the number of distinct values added.
+     *
+     * @return the estimated cardinality.
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /** Serialize the sketch: the tag, the precision and the registers.
+     *
+     * @return the serialized sketch.
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 2];
+        bytes[0] = TAG;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    /** Deserialize a sketch written by toBytes.
+     *
+     * @param bytes serialized sketch.
+     * @return the sketch.
+     */
+    public static HyperLogLog fromBytes(final byte[] bytes) {
+        Validate.isTrue(bytes.length > 2 && bytes[0] == TAG, "not a serialized HyperLogLog");
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        Validate.isTrue(bytes.length == sketch.registers.length + 2, "truncated HyperLogLog");
+        System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registers.length);
+        return sketch;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof HyperLogLog && Arrays.equals(registers, ((HyperLogLog) o).registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.codebits.d4m;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Lock-free latency histogram with power-of-two microsecond buckets.
+ *
+ * Bucket i counts latencies in [2^i, 2^(i+1)) microseconds, so
+ * percentiles are reported as the upper bound of their bucket and are
+ * accurate to within a factor of two. Recording is a few atomic adds.
+ *
+ * @author david medinets
+ */
+public class LatencyHistogram {
+
+    private final static int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Record one latency.
+     *
+     * @param nanos elapsed time in nanoseconds.
+     */
+    public void record(final long nanos) {
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /** Get the number of recorded latencies.
+     *
+     * @return the count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** Get the sum of the recorded latencies.
+     *
+     * @return the total in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /** Summarize the histogram.
+     *
+     * @return count, mean, p50, p95, p99 and max in milliseconds.
+     */
+    public LatencySnapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            total += buckets[i];
+        }
+        double mean = total == 0 ? 0 : totalNanos.get() / (double) total / 1000000;
+        return new LatencySnapshot(total, mean, percentile(buckets, total, 0.50), percentile(buckets, total, 0.95), percentile(buckets, total, 0.99), maxNanos.get() / 1000000.0);
+    }
+
+    /** Discard all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private double percentile(final long[] buckets, final long total, final double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return (1L << BUCKETS) / 1000.0;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.codebits.d4m;
+
+import java.beans.ConstructorProperties;
+import lombok.Getter;
+
+/** Summary of a LatencyHistogram; exposed over JMX as composite data.
+ *
+ * @author david medinets
+ */
+public class LatencySnapshot {
+
+    @Getter
+    private final long count;
+
+    @Getter
+    private final double meanMillis;
+
+    @Getter
+    private final double p50Millis;
+
+    @Getter
+    private final double p95Millis;
+
+    @Getter
+    private final double p99Millis;
+
+    @Getter
+    private final double maxMillis;
+
+    /** Constructor
+     *
+     * @param count number of recorded latencies.
+     * @param meanMillis mean latency.
+     * @param p50Millis median latency.
+     * @param p95Millis 95th percentile latency.
+     * @param p99Millis 99th percentile latency.
+     * @param maxMillis largest latency.
+     */
+    @ConstructorProperties({"count", "meanMillis", "p50Millis", "p95Millis", "p99Millis", "maxMillis"})
+    public LatencySnapshot(final long count, final double meanMillis, final double p50Millis, final double p95Millis, final double p99Millis, final double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** A set of primitive longs using open addressing.
+ *
+ * Each member takes one slot of a long[] kept at most half full, so a
+ * million members take 16 to 32 MB instead of the ~80 MB of a boxed
+ * HashSet. GraphTraversal stores 64-bit hashes of vertex names in it.
+ * Zero is used to mark empty slots and is stored as a separate flag.
+ *
+ * @author david medinets
+ */
+public class LongHashSet {
+
+    @Getter
+    private int size = 0;
+
+    private long[] slots;
+    private int mask;
+    private boolean containsZero = false;
+
+    /** Constructor
+     *
+     * @param expectedSize number of members held before the table grows.
+     */
+    public LongHashSet(final int expectedSize) {
+        Validate.isTrue(expectedSize >= 0, "expectedSize must not be negative");
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Add a member.
+     *
+     * @param value value to add.
+     * @return true if the value was not already a member.
+     */
+    public boolean add(final long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(value);
+        while (slots[slot] != 0) {
+            if (slots[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /** Check for a member.
+     *
+     * @param value value to look for.
+     * @return true if the value is a member.
+     */
+    public boolean contains(final long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = slot(value);
+        while (slots[slot] != 0) {
+            if (slots[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Remove all members, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    private int slot(final long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int slot = slot(value);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.codebits.d4m;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** A bounded, concurrent cache with least-recently-used eviction and a time to live.
+ *
+ * Keys are spread over segments, each an access-ordered LinkedHashMap
+ * guarded by its own lock, so concurrent lookups of different keys
+ * rarely contend. When a segment is full its least recently used entry
+ * is evicted. An entry older than the time to live is treated as a
+ * miss and dropped. Hits, misses, evictions and expirations are counted
+ * here and, when a D4MMetrics registry is set, per cache name there.
+ *
+ * TableManager keeps one for TedgeDegree counts and one for the
+ * TedgeMetadata properties; see TableManager.enableLookupCache.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ * @author david medinets
+ */
+public class LookupCache<K, V> {
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final int maxEntries;
+
+    @Getter
+    private final long ttlNanos;
+
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private volatile D4MMetrics metrics = D4MMetrics.DISABLED;
+    LongSupplier ticker = System::nanoTime;
+
+    /** Constructor
+     *
+     * @param name name the cache is reported under in D4MMetrics.
+     * @param maxEntries maximum number of entries held.
+     * @param ttl time an entry stays valid after it is put.
+     * @param unit unit of ttl.
+     */
+    @SuppressWarnings("unchecked")
+    public LookupCache(final String name, final int maxEntries, final long ttl, final TimeUnit unit) {
+        Validate.notNull(name, "name must not be null");
+        Validate.isTrue(maxEntries > 0, "maxEntries must be positive");
+        Validate.isTrue(ttl > 0, "ttl must be positive");
+        Validate.notNull(unit, "unit must not be null");
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        int count = Math.min(16, Integer.highestOneBit(Math.max(1, maxEntries / 64)));
+        int capacity = (maxEntries + count - 1) / count;
+        segments = (Segment<K, V>[]) new Segment<?, ?>[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(capacity, evictions);
+        }
+    }
+
+    /** Set the registry hits and misses are also recorded in.
+     *
+     * @param metrics registry, or D4MMetrics.DISABLED.
+     */
+    public void setMetrics(final D4MMetrics metrics) {
+        Validate.notNull(metrics, "metrics must not be null; use D4MMetrics.DISABLED");
+        this.metrics = metrics;
+    }
+
+    /** Look up a key.
+     *
+     * @param key key to look up.
+     * @return the cached value, or null if it is missing or expired.
+     */
+    public V get(final K key) {
+        Segment<K, V> segment = segment(key);
+        V value = null;
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null) {
+                if (ticker.getAsLong() - entry.created < ttlNanos) {
+                    value = entry.value;
+                } else {
+                    segment.remove(key);
+                    expirations.increment();
+                }
+            }
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        metrics.recordCache(name, value != null);
+        return value;
+    }
+
+    /** Cache a value; its time to live starts now.
+     *
+     * @param key key of the value.
+     * @param value value to cache.
+     */
+    public void put(final K key, final V value) {
+        Validate.notNull(value, "value must not be null");
+        Segment<K, V> segment = segment(key);
+        Entry<V> entry = new Entry<>(value, ticker.getAsLong());
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    /** Change a cached value in place, keeping its time to live.
+     *
+     * Keys which are not cached are left alone, so a write never
+     * caches a value which was not read.
+     *
+     * @param key key of the value.
+     * @param update function from the cached value to the new one.
+     */
+    public void update(final K key, final UnaryOperator<V> update) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null) {
+                entry.value = update.apply(entry.value);
+            }
+        }
+    }
+
+    /** Drop one key.
+     *
+     * @param key key to drop.
+     */
+    public void invalidate(final K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /** Drop every key.
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Get the number of entries held, expired ones included.
+     *
+     * @return the number of entries.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /** Get the number of lookups answered from the cache.
+     *
+     * @return the hit count.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Get the number of lookups not answered from the cache.
+     *
+     * @return the miss count.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Get the number of entries dropped to stay within maxEntries.
+     *
+     * @return the eviction count.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** Get the number of entries dropped because they outlived the time to live.
+     *
+     * @return the expiration count.
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /** Get the fraction of lookups answered from the cache.
+     *
+     * @return hits / (hits + misses), or zero before the first lookup.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    private Segment<K, V> segment(final K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static class Entry<V> {
+
+        private V value;
+        private final long created;
+
+        Entry(final V value, final long created) {
+            this.value = value;
+            this.created = created;
+        }
+
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(final int capacity, final LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/** A read-only file memory-mapped in 1 GB segments.
+ *
+ * A single MappedByteBuffer is limited to 2 GB; segments lift that
+ * limit while keeping reads zero-copy. Values are big-endian, as
+ * DataOutputStream writes them. Ints and longs stored at multiples of
+ * their size never span two segments and are read directly; others
+ * are assembled from their bytes.
+ *
+ * @author david medinets
+ */
+final class MappedFile {
+
+    private final static int SEGMENT_BITS = 30;
+    private final static long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private final static int SEGMENT_MASK = (int) (SEGMENT_SIZE - 1);
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+
+    MappedFile(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    int getInt(final long position) {
+        int offset = (int) position & SEGMENT_MASK;
+        if (offset + 4 <= SEGMENT_SIZE) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getInt(offset);
+        }
+        return ByteBuffer.wrap(get(position, 4)).getInt();
+    }
+
+    long getLong(final long position) {
+        int offset = (int) position & SEGMENT_MASK;
+        if (offset + 8 <= SEGMENT_SIZE) {
+            return segments[(int) (position >>> SEGMENT_BITS)].getLong(offset);
+        }
+        return ByteBuffer.wrap(get(position, 8)).getLong();
+    }
+
+    byte get(final long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) position & SEGMENT_MASK);
+    }
+
+    byte[] get(final long position, final int count) {
+        byte[] bytes = new byte[count];
+        int offset = (int) position & SEGMENT_MASK;
+        if (offset + count <= SEGMENT_SIZE) {
+            ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+            segment.position(offset);
+            segment.get(bytes);
+        } else {
+            for (int i = 0; i < count; i++) {
+                bytes[i] = get(position + i);
+            }
+        }
+        return bytes;
+    }
+
+    /* Compare the bytes at [position, position + count) with key, unsigned, as Accumulo orders keys. */
+    int compare(final long position, final int count, final byte[] key) {
+        int common = Math.min(count, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (get(position + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return count - key.length;
+    }
+
+}
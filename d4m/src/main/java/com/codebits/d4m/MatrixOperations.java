@@ -0,0 +1,275 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+
+/** Multiply and reduce D4M associative arrays on the tablet servers.
+ *
+ * Each operation creates a new D4M table set for its result through
+ * TableManager, replaces the versioning iterator of the result Tedge and
+ * TedgeTranspose with a scan-time PartialSumIterator, and scans the
+ * input with a RemoteWriteIterator. The
+ * iterator writes the result from the tablet servers, so the input is
+ * never sent to the client; only one progress entry per flush is.
+ *
+ * - transposeMultiply computes Tedge' * Tedge, the co-occurrence of
+ *   columns, or Tedge' * B for the Tedge of another table set;
+ * - sumRows writes the sum of every row of Tedge;
+ * - sumColumns writes the sum of every column, read from TedgeTranspose.
+ *
+ * The input, and B of transposeMultiply, are read with the configured
+ * authorizations; entries whose visibility they do not satisfy are
+ * left out of the result. Result entries are written without a
+ * visibility.
+ *
+ * The tablet servers connect back as the connector's user, so the
+ * password must be set. The iterator classes must be on the tablet
+ * servers' classpath, for example by copying the d4m jar to lib/ext.
+ *
+ * Once the result is written, one full compaction of the result Tedge
+ * and TedgeTranspose with a PartialSumIterator folds the partials of
+ * every key into a single entry, and the scan-time PartialSumIterator
+ * gives way to a SummingCombiner and the usual versioning iterator. A
+ * DegreeCountIterator over the result TedgeTranspose then fills the
+ * result TedgeDegree with the number of entries of every result column. That TedgeDegree holds final counts
+ * and does not sum, so do not add to a result table set with D4MWriter.
+ *
+ * @author david medinets
+ */
+public class MatrixOperations {
+
+    private final static String VERSIONING_ITERATOR = "vers";
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private String password = null;
+
+    @Getter
+    @Setter
+    private int numThreads = 10;
+
+    @Getter
+    @Setter
+    private long entriesPerFlush = 100000;
+
+    @Getter
+    @Setter
+    private int maxRowColumns = 10000;
+
+    @Getter
+    @Setter
+    private Authorizations authorizations = new Authorizations();
+
+    /** Constructor
+     *
+     */
+    public MatrixOperations() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager of the input table set.
+     * @param password password of the connector's user, used by the tablet servers to write the result.
+     */
+    public MatrixOperations(final TableManager tableManager, final String password) {
+        this.tableManager = tableManager;
+        this.password = password;
+    }
+
+    /** Compute the co-occurrence matrix Tedge' * Tedge.
+     *
+     * @param resultRootName root name of the new result table set.
+     * @return the number of result entries written, transpose entries included.
+     */
+    public long transposeMultiply(final String resultRootName) {
+        return transposeMultiply(null, resultRootName);
+    }
+
+    /** Compute Tedge' * B where B is the Tedge of another table set.
+     *
+     * @param other TableManager of B, or null to use this Tedge.
+     * @param resultRootName root name of the new result table set.
+     * @return the number of result entries written, transpose entries included.
+     */
+    public long transposeMultiply(final TableManager other, final String resultRootName) {
+        TableManager result = createResultTables(resultRootName);
+        IteratorSetting setting = iteratorSetting("d4mTransposeMultiply", TransposeMultiplyIterator.class, result);
+        setting.addOption(TransposeMultiplyIterator.MAX_ROW_COLUMNS, Integer.toString(maxRowColumns));
+        setting.addOption(TransposeMultiplyIterator.AUTHORIZATIONS, joinAuthorizations());
+        if (other != null) {
+            setting.addOption(TransposeMultiplyIterator.OTHER_TABLE, other.getEdgeTable());
+        }
+        long written = run("transposeMultiply", tableManager.getEdgeTable(), setting);
+        reduce(result);
+        writeDegrees(result);
+        return written;
+    }
+
+    /** Write the sum of every row of Tedge as (row, "sum", total).
+     *
+     * @param resultRootName root name of the new result table set.
+     * @return the number of result entries written, transpose entries included.
+     */
+    public long sumRows(final String resultRootName) {
+        TableManager result = createResultTables(resultRootName);
+        long written = run("sumRows", getCheckedTableManager().getEdgeTable(), iteratorSetting("d4mRowSum", RowSumIterator.class, result));
+        reduce(result);
+        writeDegrees(result);
+        return written;
+    }
+
+    /** Write the sum of every column of Tedge as (column, "sum", total).
+     *
+     * @param resultRootName root name of the new result table set.
+     * @return the number of result entries written, transpose entries included.
+     */
+    public long sumColumns(final String resultRootName) {
+        TableManager result = createResultTables(resultRootName);
+        long written = run("sumColumns", getCheckedTableManager().getTransposeTable(), iteratorSetting("d4mRowSum", RowSumIterator.class, result));
+        reduce(result);
+        writeDegrees(result);
+        return written;
+    }
+
+    private TableManager createResultTables(final String resultRootName) {
+        Validate.notNull(resultRootName, "resultRootName must not be null");
+        Validate.notNull(password, "password must not be null");
+        TableManager result = getCheckedTableManager().forRootName(resultRootName);
+        if (result.getTableOperations().exists(result.getEdgeTable())) {
+            throw new D4MException(String.format("D4M: RootName[%s] already exists; results must go to new tables.", resultRootName));
+        }
+        result.createTables();
+        IteratorSetting sum = result.getSumIteratorSetting();
+        TableOperations tableOperations = result.getTableOperations();
+        try {
+            for (String tablename : Arrays.asList(result.getEdgeTable(), result.getTransposeTable())) {
+                // partials stay apart on disk so a rewritten partial is recognized at scan time
+                tableOperations.removeIterator(tablename, VERSIONING_ITERATOR, EnumSet.allOf(IteratorScope.class));
+                tableOperations.attachIterator(tablename, sum, EnumSet.of(IteratorScope.scan));
+            }
+            // DegreeCountIterator writes complete counts
+            tableOperations.removeIterator(result.getDegreeTable(), result.getDegreeIteratorSetting().getName(), EnumSet.allOf(IteratorScope.class));
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find D4M tables for RootName[%s]", resultRootName), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to configure D4M tables for RootName[%s]", resultRootName), e);
+        }
+        return result;
+    }
+
+    private IteratorSetting iteratorSetting(final String name, final Class<? extends RemoteWriteIterator> iteratorClass, final TableManager result) {
+        Connector connector = tableManager.getConnector();
+        IteratorSetting setting = new IteratorSetting(50, name, iteratorClass);
+        setting.addOption(RemoteWriteIterator.INSTANCE, connector.getInstance().getInstanceName());
+        setting.addOption(RemoteWriteIterator.ZOOKEEPERS, connector.getInstance().getZooKeepers());
+        setting.addOption(RemoteWriteIterator.USER, connector.whoami());
+        setting.addOption(RemoteWriteIterator.PASSWORD, password);
+        setting.addOption(RemoteWriteIterator.EDGE_TABLE, result.getEdgeTable());
+        setting.addOption(RemoteWriteIterator.TRANSPOSE_TABLE, result.getTransposeTable());
+        setting.addOption(RemoteWriteIterator.ENTRIES_PER_FLUSH, Long.toString(entriesPerFlush));
+        return setting;
+    }
+
+    /* Folds the partials into one entry per key, then keeps the result reduced with a SummingCombiner. */
+    private void reduce(final TableManager result) {
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        IteratorSetting partials = result.getSumIteratorSetting();
+        IteratorSetting combiner = new IteratorSetting(10, "d4mResultSum", SummingCombiner.class);
+        LongCombiner.setEncodingType(combiner, LongCombiner.Type.STRING);
+        Combiner.setCombineAllColumns(combiner, true);
+        IteratorSetting versions = new IteratorSetting(20, VERSIONING_ITERATOR, VersioningIterator.class);
+        VersioningIterator.setMaxVersions(versions, 1);
+        TableOperations tableOperations = result.getTableOperations();
+        try {
+            for (String tablename : Arrays.asList(result.getEdgeTable(), result.getTransposeTable())) {
+                tableOperations.compact(tablename, null, null, Collections.singletonList(partials), true, true);
+                tableOperations.removeIterator(tablename, partials.getName(), EnumSet.of(IteratorScope.scan));
+                tableOperations.attachIterator(tablename, combiner);
+                tableOperations.attachIterator(tablename, versions);
+            }
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find D4M tables for RootName[%s]", result.getRootName()), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to reduce D4M tables for RootName[%s]", result.getRootName()), e);
+        }
+        metrics.recordAdmin("reduceResult", start);
+    }
+
+    /* Counts the entries of each column of the result into its TedgeDegree. */
+    private void writeDegrees(final TableManager result) {
+        IteratorSetting setting = iteratorSetting("d4mDegreeCount", DegreeCountIterator.class, result);
+        setting.addOption(RemoteWriteIterator.EDGE_TABLE, result.getDegreeTable());
+        setting.removeOption(RemoteWriteIterator.TRANSPOSE_TABLE);
+        setting.addOption(DegreeCountIterator.DEGREE_ENCODING, result.getDegreeEncoding().name());
+        run("resultDegrees", result.getTransposeTable(), setting);
+    }
+
+    /* Scans the input with the iterator and adds up the progress entries. */
+    private long run(final String operation, final String tablename, final IteratorSetting setting) {
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        long written = 0;
+        BatchScanner scanner;
+        try {
+            scanner = tableManager.getConnector().createBatchScanner(tablename, authorizations, numThreads);
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+        try {
+            scanner.setRanges(Collections.singletonList(new Range()));
+            scanner.addScanIterator(setting);
+            for (Entry<Key, Value> entry : scanner) {
+                written += Long.parseLong(new String(entry.getValue().get(), Utf8Encoder.UTF8));
+            }
+        } finally {
+            scanner.close();
+        }
+        metrics.recordAdmin(operation, start);
+        return written;
+    }
+
+    /* The authorizations in the comma-separated form of the iterator option. */
+    private String joinAuthorizations() {
+        StringBuilder joined = new StringBuilder();
+        for (byte[] authorization : authorizations.getAuthorizations()) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(new String(authorization, Utf8Encoder.UTF8));
+        }
+        return joined.toString();
+    }
+
+    private TableManager getCheckedTableManager() {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        return tableManager;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.Collection;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+
+/** Sums the partial results RemoteWriteIterator writes, counting each timestamp once.
+ *
+ * Every partial result carries a timestamp derived from the source row
+ * which produced it. Partials of different source rows are added up;
+ * a partial written again by a resumed scan has the same key and
+ * timestamp as the first copy and is counted once.
+ *
+ * The partials must stay apart on disk while the result is written, so
+ * MatrixOperations attaches this iterator to the scan scope only and
+ * removes the versioning iterator from the result tables. Once the
+ * result is complete it runs once more in a full compaction, which
+ * stores one summed entry per key, and a SummingCombiner takes over.
+ * Values are decimal text; values which are not integers count as 1.
+ *
+ * @author david medinets
+ */
+public class PartialSumIterator extends WrappingIterator {
+
+    private Key topKey = null;
+    private Value topValue = null;
+
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+
+    @Override
+    public Value getTopValue() {
+        return topValue;
+    }
+
+    @Override
+    public void next() throws IOException {
+        findTop();
+    }
+
+    @Override
+    public void seek(final Range range, final Collection<ByteSequence> columnFamilies, final boolean inclusive) throws IOException {
+        // start at the newest version so the partials of a key are never split
+        super.seek(IteratorUtil.maximizeStartKeyTimeStamp(range), columnFamilies, inclusive);
+        findTop();
+        while (hasTop() && range.beforeStartKey(topKey)) {
+            findTop();
+        }
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(final IteratorEnvironment env) {
+        PartialSumIterator copy = new PartialSumIterator();
+        copy.setSource(getSource().deepCopy(env));
+        return copy;
+    }
+
+    /* Sums the partials of the next key, skipping repeated timestamps. */
+    private void findTop() throws IOException {
+        SortedKeyValueIterator<Key, Value> source = getSource();
+        if (!source.hasTop()) {
+            topKey = null;
+            topValue = null;
+            return;
+        }
+        Key key = new Key(source.getTopKey());
+        long sum = 0;
+        long previous = 0;
+        boolean first = true;
+        while (source.hasTop() && source.getTopKey().equals(key, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+            long timestamp = source.getTopKey().getTimestamp();
+            // versions are sorted newest first, so repeated partials are adjacent
+            if (first || timestamp != previous) {
+                sum += RemoteWriteIterator.parse(source.getTopValue());
+            }
+            previous = timestamp;
+            first = false;
+            source.next();
+        }
+        topKey = key;
+        topValue = new Value(Long.toString(sum).getBytes(Utf8Encoder.UTF8));
+    }
+
+}
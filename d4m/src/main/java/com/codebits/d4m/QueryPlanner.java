@@ -0,0 +1,234 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Plan multi-column AND/OR queries using the counts in TedgeDegree.
+ *
+ * An AND query reads the degree of every column first. The column with
+ * the lowest degree is scanned from TedgeTranspose to get the candidate
+ * rows. Each remaining column, in increasing degree order, is checked
+ * against the candidates with batched point lookups in Tedge, unless
+ * its posting list is smaller than the candidate set in which case it
+ * is scanned from TedgeTranspose and intersected. A hub column is
+ * therefore never read in full while a rarer column is in the query.
+ *
+ * @author david medinets
+ */
+public class QueryPlanner {
+
+    private final static Text EMPTY_CF = new Text("");
+    private final static Text DEGREE_CQ = new Text("degree");
+
+    @Getter
+    @Setter
+    private D4MQuery query = null;
+
+    @Getter
+    @Setter
+    private int lookupBatchSize = 10000;
+
+    private final Charset charset = Utf8Encoder.UTF8;
+
+    /** Constructor
+     *
+     */
+    public QueryPlanner() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param query D4MQuery supplying the table names, scanner threads and authorizations.
+     */
+    public QueryPlanner(final D4MQuery query) {
+        this.query = query;
+    }
+
+    /** Read the degree of each column from TedgeDegree.
+     *
+     * When the TableManager has a lookup cache, cached columns are not
+     * scanned and the columns read are cached.
+     *
+     * @param columns column keys.
+     * @return map of column to degree; columns without a degree entry map to zero.
+     */
+    public Map<String, Long> getDegrees(final Collection<String> columns) {
+        Validate.notNull(columns, "columns must not be null");
+        Map<String, Long> degrees = new HashMap<>();
+        for (String column : columns) {
+            degrees.put(column, 0L);
+        }
+        if (columns.isEmpty()) {
+            return degrees;
+        }
+        TableManager tableManager = getCheckedQuery().getTableManager();
+        LookupCache<String, Long> cache = tableManager.getDegreeCache();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String column : columns) {
+            Long degree = cache == null ? null : cache.get(column);
+            if (degree == null) {
+                missing.add(column);
+            } else {
+                degrees.put(column, degree);
+            }
+        }
+        if (missing.isEmpty()) {
+            return degrees;
+        }
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        DegreeEncoding encoding = tableManager.getDegreeEncoding();
+        long entries = 0;
+        BatchScanner scanner = query.createBatchScanner(tableManager.getDegreeTable());
+        try {
+            List<Range> ranges = new ArrayList<>(missing.size());
+            for (String column : missing) {
+                ranges.add(Range.exact(column));
+            }
+            scanner.setRanges(ranges);
+            scanner.fetchColumn(EMPTY_CF, DEGREE_CQ);
+            for (Entry<Key, Value> entry : scanner) {
+                String column = entry.getKey().getRow().toString();
+                long degree = encoding.decode(entry.getValue().get());
+                degrees.put(column, degrees.get(column) + degree);
+                entries++;
+            }
+        } finally {
+            scanner.close();
+            metrics.recordScan("degrees", start, entries);
+        }
+        if (cache != null) {
+            for (String column : missing) {
+                cache.put(column, degrees.get(column));
+            }
+        }
+        return degrees;
+    }
+
+    /** Find the rows holding every one of the given columns.
+     *
+     * @param columns column keys which must all be present.
+     * @return associative array of the matching rows restricted to the given columns.
+     */
+    public AssociativeArray and(final Collection<String> columns) {
+        Validate.notNull(columns, "columns must not be null");
+        AssociativeArray result = new AssociativeArray();
+        if (columns.isEmpty()) {
+            return result;
+        }
+
+        final Map<String, Long> degrees = getDegrees(columns);
+        List<String> order = new ArrayList<>(new LinkedHashSet<>(columns));
+        Collections.sort(order, new Comparator<String>() {
+            @Override
+            public int compare(final String a, final String b) {
+                return Long.compare(degrees.get(a), degrees.get(b));
+            }
+        });
+        if (degrees.get(order.get(0)) == 0) {
+            return result;
+        }
+
+        AssociativeArray candidates = getCheckedQuery().getColumns(Collections.singletonList(order.get(0)));
+        result.putAll(candidates);
+        Set<String> rows = new LinkedHashSet<>(candidates.getRows());
+
+        for (String column : order.subList(1, order.size())) {
+            if (rows.isEmpty()) {
+                break;
+            }
+            AssociativeArray found;
+            if (degrees.get(column) <= rows.size()) {
+                found = query.getColumns(Collections.singletonList(column));
+            } else {
+                found = lookup(rows, column);
+            }
+            Set<String> matched = new LinkedHashSet<>();
+            for (String row : rows) {
+                String value = found.get(row, column);
+                if (value != null) {
+                    matched.add(row);
+                    result.put(row, column, value);
+                }
+            }
+            rows = matched;
+        }
+
+        AssociativeArray restricted = new AssociativeArray();
+        for (String row : rows) {
+            for (Entry<String, String> entry : result.getRow(row).entrySet()) {
+                restricted.put(row, entry.getKey(), entry.getValue());
+            }
+        }
+        return restricted;
+    }
+
+    /** Find the rows holding any of the given columns.
+     *
+     * @param columns column keys of which at least one must be present.
+     * @return associative array of the matching rows restricted to the given columns.
+     */
+    public AssociativeArray or(final Collection<String> columns) {
+        Validate.notNull(columns, "columns must not be null");
+        return getCheckedQuery().getColumns(new LinkedHashSet<>(columns));
+    }
+
+    /* Point lookups of (row, column) in Tedge, lookupBatchSize ranges per scanner. */
+    private AssociativeArray lookup(final Collection<String> rows, final String column) {
+        AssociativeArray found = new AssociativeArray();
+        List<Range> ranges = new ArrayList<>(Math.min(rows.size(), lookupBatchSize));
+        for (String row : rows) {
+            ranges.add(Range.exact(row, "", column));
+            if (ranges.size() == lookupBatchSize) {
+                lookup(ranges, found);
+                ranges.clear();
+            }
+        }
+        if (!ranges.isEmpty()) {
+            lookup(ranges, found);
+        }
+        return found;
+    }
+
+    private void lookup(final List<Range> ranges, final AssociativeArray found) {
+        D4MMetrics metrics = query.getTableManager().getMetrics();
+        long start = metrics.startTimer();
+        long entries = 0;
+        BatchScanner scanner = query.createBatchScanner(query.getTableManager().getEdgeTable());
+        try {
+            scanner.setRanges(new ArrayList<>(ranges));
+            for (Entry<Key, Value> entry : scanner) {
+                Key key = entry.getKey();
+                found.put(key.getRow().toString(), key.getColumnQualifier().toString(), new String(entry.getValue().get(), charset));
+                entries++;
+            }
+        } finally {
+            scanner.close();
+            metrics.recordScan("lookup", start, entries);
+        }
+    }
+
+    private D4MQuery getCheckedQuery() {
+        Validate.notNull(query, "query must not be null");
+        Validate.notNull(query.getTableManager(), "tableManager must not be null");
+        return query;
+    }
+
+}
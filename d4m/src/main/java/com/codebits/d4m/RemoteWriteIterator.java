@@ -0,0 +1,331 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.ClientConfiguration;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.ZooKeeperInstance;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+
+/** Base of the server-side iterators which write their results to another D4M table set.
+ *
+ * The iterator reads its source one row at a time and hands the
+ * columns and values of each row to writeRow. The subclass writes
+ * result entries with writeEdges and writeTransposes. They go through
+ * a MultiTableBatchWriter opened on the tablet server into the result
+ * Tedge and TedgeTranspose. D4M tables leave the column family
+ * empty; adjacent entries of a source row with the same column
+ * qualifier, such as two visibilities, are added up before writeRow
+ * sees them.
+ *
+ * Several rows and tablets add to the same result entry, so every
+ * partial result is written with a timestamp derived from its source
+ * row and kept as its own version. PartialSumIterator adds up the
+ * partials of different source rows when the result is scanned.
+ *
+ * Only progress reaches the scanning client. After at most
+ * entriesPerFlush result entries, or at the end of the range, the
+ * writer is flushed and closed and one entry (lastRow, "", "d4mProgress")
+ * is returned whose value is the number of result entries written.
+ * When the scan resumes after that key, the rest of lastRow is skipped.
+ * A scan which fails and is retried from an earlier progress key writes
+ * some partials again; they repeat the key and timestamp of the first
+ * copy, so the result is unchanged, but the progress counts include
+ * them.
+ *
+ * Values are parsed as longs; values which are not integers count as 1.
+ *
+ * The connection options, including the password, are part of the
+ * iterator setting and are visible to users who can list scan
+ * iterators. Use a dedicated account for server-side computation.
+ *
+ * @author david medinets
+ */
+public abstract class RemoteWriteIterator implements SortedKeyValueIterator<Key, Value> {
+
+    /** Option naming the Accumulo instance. */
+    public final static String INSTANCE = "instance";
+    /** Option holding the ZooKeeper hosts. */
+    public final static String ZOOKEEPERS = "zookeepers";
+    /** Option holding the user the results are written as. */
+    public final static String USER = "user";
+    /** Option holding the password of the user. */
+    public final static String PASSWORD = "password";
+    /** Option naming the result edge table. */
+    public final static String EDGE_TABLE = "edgeTable";
+    /** Option naming the result transpose table; optional for iterators which write no transposes. */
+    public final static String TRANSPOSE_TABLE = "transposeTable";
+    /** Option holding the number of result entries written between progress entries. */
+    public final static String ENTRIES_PER_FLUSH = "entriesPerFlush";
+
+    final static Text PROGRESS_CQ = new Text("d4mProgress");
+    private final static Text EMPTY_CF = new Text("");
+
+    private SortedKeyValueIterator<Key, Value> source = null;
+    private Map<String, String> options = null;
+    private long entriesPerFlush = 100000;
+
+    private Connector connector = null;
+    private MultiTableBatchWriter multiTableBatchWriter = null;
+    private BatchWriter edgeWriter = null;
+    private BatchWriter transposeWriter = null;
+    private long written = 0;
+    private long partialTimestamp = 0;
+
+    private Key topKey = null;
+    private Value topValue = null;
+
+    private final List<Text> columns = new ArrayList<>();
+    private long[] values = new long[64];
+
+    @Override
+    public void init(final SortedKeyValueIterator<Key, Value> source, final Map<String, String> options, final IteratorEnvironment env) throws IOException {
+        this.source = source;
+        this.options = options;
+        if (options.containsKey(ENTRIES_PER_FLUSH)) {
+            entriesPerFlush = Long.parseLong(options.get(ENTRIES_PER_FLUSH));
+        }
+    }
+
+    @Override
+    public boolean hasTop() {
+        return topKey != null;
+    }
+
+    @Override
+    public void seek(final Range range, final Collection<ByteSequence> columnFamilies, final boolean inclusive) throws IOException {
+        Range seekRange = range;
+        if (range.getStartKey() != null && !range.isStartKeyInclusive()) {
+            Key nextRow = range.getStartKey().followingKey(PartialKey.ROW);
+            if (range.afterEndKey(nextRow)) {
+                topKey = null;
+                return;
+            }
+            seekRange = new Range(nextRow, true, range.getEndKey(), range.isEndKeyInclusive());
+        }
+        source.seek(seekRange, columnFamilies, inclusive);
+        next();
+    }
+
+    @Override
+    public void next() throws IOException {
+        topKey = null;
+        topValue = null;
+        written = 0;
+        Text row = null;
+        while (source.hasTop() && written < entriesPerFlush) {
+            row = source.getTopKey().getRow();
+            partialTimestamp = partialTimestamp(row);
+            int count = readRow(row);
+            writeRow(row, columns, values, count);
+        }
+        if (row != null) {
+            closeWriter();
+            topKey = new Key(row, EMPTY_CF, PROGRESS_CQ);
+            topValue = new Value(Long.toString(written).getBytes(Utf8Encoder.UTF8));
+        }
+    }
+
+    @Override
+    public Key getTopKey() {
+        return topKey;
+    }
+
+    @Override
+    public Value getTopValue() {
+        return topValue;
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key, Value> deepCopy(final IteratorEnvironment env) {
+        throw new UnsupportedOperationException("RemoteWriteIterator writes to other tables and cannot be copied.");
+    }
+
+    /** Write the results of one row.
+     *
+     * @param row row of the source entries.
+     * @param columns column qualifiers of the row, in order.
+     * @param values values of the row, parallel to columns.
+     * @param count number of columns in the row.
+     * @throws IOException if a result cannot be written.
+     */
+    protected abstract void writeRow(Text row, List<Text> columns, long[] values, int count) throws IOException;
+
+    /** Write the result entries (row, columns[i], values[i]) to the result edge table.
+     *
+     * @param row row of the result entries.
+     * @param columns columns of the result entries.
+     * @param values values of the result entries.
+     * @param count number of entries to write.
+     * @throws IOException if the write is rejected.
+     */
+    protected void writeEdges(final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        openWriter();
+        write(edgeWriter, row, columns, values, count);
+    }
+
+    /** Write the result entries (row, columns[i], values[i]) to the result transpose table.
+     *
+     * @param row row of the transposed entries, the column of the result.
+     * @param columns columns of the transposed entries, the rows of the result.
+     * @param values values of the result entries.
+     * @param count number of entries to write.
+     * @throws IOException if the write is rejected.
+     */
+    protected void writeTransposes(final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        openWriter();
+        write(transposeWriter, row, columns, values, count);
+    }
+
+    /** Get the option map the iterator was initialized with.
+     *
+     * @return the iterator options.
+     */
+    protected Map<String, String> getOptions() {
+        return options;
+    }
+
+    /** Get a connector to the instance named in the options.
+     *
+     * @return the connector, created on first use.
+     * @throws IOException if the instance cannot be reached.
+     */
+    protected Connector getConnector() throws IOException {
+        if (connector == null) {
+            ClientConfiguration configuration = ClientConfiguration.create().withInstance(options.get(INSTANCE)).withZkHosts(options.get(ZOOKEEPERS));
+            try {
+                connector = new ZooKeeperInstance(configuration).getConnector(options.get(USER), new PasswordToken(options.get(PASSWORD)));
+            } catch (AccumuloException | AccumuloSecurityException e) {
+                throw new IOException("Unable to connect to " + options.get(INSTANCE), e);
+            }
+        }
+        return connector;
+    }
+
+    /** Open the writer of the result tables; tests override this.
+     *
+     * @return a writer able to reach the result edge and transpose tables.
+     * @throws IOException if the instance cannot be reached.
+     */
+    protected MultiTableBatchWriter createWriter() throws IOException {
+        return getConnector().createMultiTableBatchWriter(new BatchWriterConfig());
+    }
+
+    /** The timestamp of the partial results written for a source row.
+     *
+     * @param row row of the source entries.
+     * @return a non-negative timestamp which depends only on the row.
+     */
+    static long partialTimestamp(final Text row) {
+        return Hashing.hash64(row.toString()) & Long.MAX_VALUE;
+    }
+
+    /* Copies the source row into columns and values, adding up repeated qualifiers; returns the number of columns. */
+    private int readRow(final Text row) throws IOException {
+        columns.clear();
+        int count = 0;
+        while (source.hasTop() && source.getTopKey().compareRow(row) == 0) {
+            Text column = source.getTopKey().getColumnQualifier();
+            if (count > 0 && columns.get(count - 1).equals(column)) {
+                // another visibility of the column; one partial per column and row
+                values[count - 1] += parse(source.getTopValue());
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                columns.add(column);
+                values[count++] = parse(source.getTopValue());
+            }
+            source.next();
+        }
+        return count;
+    }
+
+    /** Encode a result value.
+     *
+     * @param value value of a result entry.
+     * @return the value as decimal text; subclasses may choose another encoding.
+     */
+    protected byte[] encode(final long value) {
+        return Long.toString(value).getBytes(Utf8Encoder.UTF8);
+    }
+
+    /** Parse a value as a long.
+     *
+     * @param value value of a source entry.
+     * @return the value, or 1 if it is not an integer.
+     */
+    protected static long parse(final Value value) {
+        try {
+            return Long.parseLong(new String(value.get(), Utf8Encoder.UTF8));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private void write(final BatchWriter writer, final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        Mutation mutation = new Mutation(row);
+        for (int i = 0; i < count; i++) {
+            mutation.put(EMPTY_CF, columns.get(i), partialTimestamp, new Value(encode(values[i]), false));
+        }
+        try {
+            writer.addMutation(mutation);
+        } catch (MutationsRejectedException e) {
+            throw new IOException("Unable to write result mutation.", e);
+        }
+        written += count;
+    }
+
+    private void openWriter() throws IOException {
+        if (multiTableBatchWriter == null) {
+            multiTableBatchWriter = createWriter();
+            try {
+                edgeWriter = multiTableBatchWriter.getBatchWriter(options.get(EDGE_TABLE));
+                if (options.containsKey(TRANSPOSE_TABLE)) {
+                    transposeWriter = multiTableBatchWriter.getBatchWriter(options.get(TRANSPOSE_TABLE));
+                }
+            } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException e) {
+                throw new IOException("Unable to open the result tables.", e);
+            }
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (multiTableBatchWriter == null) {
+            return;
+        }
+        try {
+            multiTableBatchWriter.close();
+        } catch (MutationsRejectedException e) {
+            throw new IOException("Unable to write result mutations.", e);
+        } finally {
+            multiTableBatchWriter = null;
+            edgeWriter = null;
+            transposeWriter = null;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.codebits.d4m;
+
+import java.util.SplittableRandom;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang.Validate;
+
+/** Generate repeatable power-law graphs as D4M triples.
+ *
+ * R-MAT, the recursive matrix model of the Graph500 Kronecker
+ * generator: each edge picks one quadrant of the 2^scale by 2^scale
+ * adjacency matrix with probabilities a, b, c and 1 - a - b - c, then
+ * one quadrant of that quadrant, scale times. The further a is from
+ * 0.25 the more skewed the degrees; the Graph500 defaults of 0.57,
+ * 0.19 and 0.19 give a power law. The same seed and settings always
+ * produce the same edges.
+ *
+ * Vertex v is written as a fixed-width lowercase hex string, shifted
+ * left to fill the width when scale is not a multiple of four so the
+ * ids span the whole hex key space, as sha1 rows do. Edge
+ * (u, v) becomes the triple (u, field|v, 1), so the edge table holds
+ * the adjacency matrix and the degree table the in-degrees. Without
+ * scrambling the high-degree vertices are the low ids and share row
+ * prefixes; scrambling maps the ids through a fixed permutation, as
+ * Graph500 does, so hot vertices spread over the key space.
+ *
+ * @author david medinets
+ */
+public class RmatGenerator {
+
+    @Getter
+    @Setter
+    private int scale = 16;
+
+    @Getter
+    @Setter
+    private int edgeFactor = 16;
+
+    @Getter
+    @Setter
+    private double a = 0.57;
+
+    @Getter
+    @Setter
+    private double b = 0.19;
+
+    @Getter
+    @Setter
+    private double c = 0.19;
+
+    @Getter
+    @Setter
+    private long seed = 1;
+
+    @Getter
+    @Setter
+    private boolean scramble = true;
+
+    @Getter
+    @Setter
+    private String field = "out";
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+    private final static String ONE = "1";
+
+    /** Constructor
+     *
+     */
+    public RmatGenerator() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param scale log2 of the number of vertices, from 1 to 62.
+     * @param edgeFactor edges per vertex.
+     * @param seed seed of the random sequence.
+     */
+    public RmatGenerator(final int scale, final int edgeFactor, final long seed) {
+        this.scale = scale;
+        this.edgeFactor = edgeFactor;
+        this.seed = seed;
+    }
+
+    /** Get the number of vertices.
+     *
+     * @return 2^scale.
+     */
+    public long getVertexCount() {
+        return 1L << scale;
+    }
+
+    /** Get the number of edges generate writes.
+     *
+     * @return edgeFactor * 2^scale.
+     */
+    public long getEdgeCount() {
+        return edgeFactor * getVertexCount();
+    }
+
+    /** Write getEdgeCount() edges to a sink.
+     *
+     * Duplicate edges are written again; sinks keep one entry per
+     * (row, column).
+     *
+     * @param sink receiver of the triples, such as a D4MWriter.
+     */
+    public void generate(final TripleSink sink) {
+        generate(getEdgeCount(), sink);
+    }
+
+    /** Write edges to a sink.
+     *
+     * @param edges number of edges.
+     * @param sink receiver of the triples, such as a D4MWriter.
+     */
+    public void generate(final long edges, final TripleSink sink) {
+        Validate.notNull(sink, "sink must not be null");
+        Validate.isTrue(scale > 0 && scale < 63, "scale must be between 1 and 62");
+        Validate.isTrue(a >= 0 && b >= 0 && c >= 0 && a + b + c <= 1, "a, b and c must be probabilities with a sum of at most 1");
+        Validate.notNull(field, "field must not be null");
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = (scale + 3) / 4;
+        int padding = 4 * width - scale;
+        char[] row = new char[width];
+        char[] column = new char[field.length() + 1 + width];
+        field.getChars(0, field.length(), column, 0);
+        column[field.length()] = '|';
+        long[] edge = new long[2];
+        for (long i = 0; i < edges; i++) {
+            nextEdge(random, edge);
+            hex(vertex(edge[0]) << padding, row, 0, width);
+            hex(vertex(edge[1]) << padding, column, field.length() + 1, width);
+            sink.put(new String(row), new String(column), ONE);
+        }
+    }
+
+    /* Choose one quadrant per level; edge[0] is the source, edge[1] the destination. */
+    void nextEdge(final SplittableRandom random, final long[] edge) {
+        double ab = a + b;
+        double abc = ab + c;
+        long source = 0;
+        long destination = 0;
+        for (int level = 0; level < scale; level++) {
+            double r = random.nextDouble();
+            source <<= 1;
+            destination <<= 1;
+            if (r >= ab) {
+                source |= 1;
+            }
+            if ((r >= a && r < ab) || r >= abc) {
+                destination |= 1;
+            }
+        }
+        edge[0] = source;
+        edge[1] = destination;
+    }
+
+    /* The label of a vertex: itself, or its image under a bijection of [0, 2^scale). */
+    long vertex(final long id) {
+        if (!scramble) {
+            return id;
+        }
+        long mask = getVertexCount() - 1;
+        long v = ((id ^ 0x2545f4914f6cdd1dL) * 0x9e3779b97f4a7c15L) & mask;
+        v ^= v >>> (scale / 2 + 1);
+        v = (v * 0xbf58476d1ce4e5b9L) & mask;
+        v ^= v >>> (scale / 2 + 1);
+        return v;
+    }
+
+    private static void hex(final long value, final char[] out, final int offset, final int width) {
+        long v = value;
+        for (int i = offset + width - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (v & 15)];
+            v >>>= 4;
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.io.Text;
+
+/** Sum each row of the scanned table on its tablet servers.
+ *
+ * Row r becomes the result entry (r, "sum", total) and the transpose
+ * entry ("sum", r, total). Scanning Tedge gives row sums; scanning
+ * TedgeTranspose gives column sums, the value-weighted degrees.
+ *
+ * @author david medinets
+ */
+public class RowSumIterator extends RemoteWriteIterator {
+
+    private final static Text SUM = new Text("sum");
+    private final static List<Text> SUM_COLUMN = Collections.singletonList(SUM);
+
+    private final long[] total = new long[1];
+
+    @Override
+    protected void writeRow(final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        total[0] = sum;
+        writeEdges(row, SUM_COLUMN, total, 1);
+        writeTransposes(SUM, Collections.singletonList(row), total, 1);
+    }
+
+}
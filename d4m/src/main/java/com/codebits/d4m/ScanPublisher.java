@@ -0,0 +1,273 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Stream the result of a D4MQuery in bounded chunks with backpressure.
+ *
+ * Each subscription scans the table on its own thread. Entries are
+ * collected into AssociativeArray chunks of at most chunkSize entries,
+ * and up to prefetchChunks chunks are read ahead while the subscriber
+ * processes the current one; once they are queued the scan waits until
+ * the subscriber requests more. The ranges are read rangesPerScan at
+ * a time, each group by its own BatchScanner, so a large list of keys
+ * never has all of its ranges in flight at once.
+ *
+ * Cancelling the subscription closes the open scanner immediately and
+ * drops the queued chunks. Scan latency and entries read are recorded
+ * in the TableManager's D4MMetrics when the scan ends.
+ *
+ * Publishers are built by the publish methods of D4MQuery; every
+ * subscription runs the scan again.
+ *
+ * @author david medinets
+ */
+public class ScanPublisher implements Flow.Publisher<AssociativeArray> {
+
+    @Getter
+    @Setter
+    private int chunkSize = 10000;
+
+    @Getter
+    @Setter
+    private int prefetchChunks = 4;
+
+    @Getter
+    @Setter
+    private int rangesPerScan = 1000;
+
+    @Getter
+    @Setter
+    private ExecutorService executor = null;
+
+    private final D4MQuery query;
+    private final String queryType;
+    private final String tablename;
+    private final List<Range> ranges;
+    private final IteratorSetting iteratorSetting;
+    private final boolean transposed;
+
+    ScanPublisher(final D4MQuery query, final String queryType, final String tablename, final List<Range> ranges, final IteratorSetting iteratorSetting, final boolean transposed) {
+        this.query = query;
+        this.queryType = queryType;
+        this.tablename = tablename;
+        this.ranges = ranges;
+        this.iteratorSetting = iteratorSetting;
+        this.transposed = transposed;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super AssociativeArray> subscriber) {
+        Validate.notNull(subscriber, "subscriber must not be null");
+        Validate.isTrue(chunkSize > 0, "chunkSize must be positive");
+        Validate.isTrue(prefetchChunks > 0, "prefetchChunks must be positive");
+        Validate.isTrue(rangesPerScan > 0, "rangesPerScan must be positive");
+        ScanSubscription subscription = new ScanSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private class ScanSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super AssociativeArray> subscriber;
+        private final BlockingQueue<AssociativeArray> queue = new ArrayBlockingQueue<>(prefetchChunks);
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final Charset charset = Utf8Encoder.UTF8;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private boolean terminated = false;
+        private BatchScanner scanner = null;
+        private Future<?> producer = null;
+
+        ScanSubscription(final Flow.Subscriber<? super AssociativeArray> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("request must be positive"));
+                return;
+            }
+            long current;
+            do {
+                current = demand.get();
+            } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stop();
+            drain();
+        }
+
+        void start() {
+            if (cancelled || error.get() != null) {
+                return;
+            }
+            final ExecutorService pool = executor != null ? executor : Executors.newSingleThreadExecutor();
+            synchronized (this) {
+                producer = pool.submit(() -> {
+                    try {
+                        produce();
+                    } finally {
+                        if (pool != executor) {
+                            pool.shutdown();
+                        }
+                    }
+                });
+            }
+            if (cancelled) {
+                stop();
+            }
+        }
+
+        private void produce() {
+            D4MMetrics metrics = query.getTableManager().getMetrics();
+            long start = metrics.startTimer();
+            long entries = 0;
+            try {
+                Text row = new Text();
+                Text column = new Text();
+                AssociativeArray chunk = new AssociativeArray();
+                for (int i = 0; i < ranges.size() && !cancelled; i += rangesPerScan) {
+                    BatchScanner batchScanner = open(ranges.subList(i, Math.min(ranges.size(), i + rangesPerScan)));
+                    if (batchScanner == null) {
+                        break;
+                    }
+                    try {
+                        for (Entry<Key, Value> entry : batchScanner) {
+                            Key key = entry.getKey();
+                            key.getRow(row);
+                            key.getColumnQualifier(column);
+                            String value = new String(entry.getValue().get(), charset);
+                            if (transposed) {
+                                chunk.put(column.toString(), row.toString(), value);
+                            } else {
+                                chunk.put(row.toString(), column.toString(), value);
+                            }
+                            entries++;
+                            if (chunk.size() >= chunkSize) {
+                                emit(chunk);
+                                chunk = new AssociativeArray();
+                            }
+                        }
+                    } finally {
+                        closeScanner();
+                    }
+                }
+                if (!chunk.isEmpty() && !cancelled) {
+                    emit(chunk);
+                }
+                done = true;
+            } catch (InterruptedException | RuntimeException e) {
+                if (!cancelled) {
+                    fail(e);
+                }
+            } finally {
+                metrics.recordScan(queryType, start, entries);
+            }
+            drain();
+        }
+
+        private synchronized BatchScanner open(final List<Range> group) {
+            if (cancelled) {
+                return null;
+            }
+            scanner = query.createBatchScanner(tablename);
+            scanner.setRanges(group);
+            if (iteratorSetting != null) {
+                scanner.addScanIterator(iteratorSetting);
+            }
+            return scanner;
+        }
+
+        private synchronized void closeScanner() {
+            if (scanner != null) {
+                scanner.close();
+                scanner = null;
+            }
+        }
+
+        private void emit(final AssociativeArray chunk) throws InterruptedException {
+            queue.put(chunk);
+            drain();
+        }
+
+        private void stop() {
+            synchronized (this) {
+                if (producer != null) {
+                    producer.cancel(true);
+                }
+            }
+            closeScanner();
+        }
+
+        private void fail(final Throwable throwable) {
+            if (error.compareAndSet(null, throwable)) {
+                stop();
+            }
+            drain();
+        }
+
+        /* Deliver queued chunks up to the demand; only one thread delivers at a time. */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (true) {
+                if (terminated || cancelled) {
+                    queue.clear();
+                } else if (error.get() != null) {
+                    terminated = true;
+                    queue.clear();
+                    subscriber.onError(error.get());
+                } else {
+                    while (demand.get() > 0 && !cancelled && error.get() == null) {
+                        AssociativeArray chunk = queue.poll();
+                        if (chunk == null) {
+                            break;
+                        }
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        subscriber.onNext(chunk);
+                    }
+                    if (done && queue.isEmpty() && !cancelled && error.get() == null) {
+                        terminated = true;
+                        subscriber.onComplete();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
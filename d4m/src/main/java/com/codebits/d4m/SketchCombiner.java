@@ -0,0 +1,74 @@
+package com.codebits.d4m;
+
+import java.util.Iterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+
+/** Merges the HyperLogLog and CountMinSketch values of a key on the tablet servers.
+ *
+ * The first byte of each value says which sketch it holds. The first
+ * value decides the kind of the result; later values of another kind
+ * or other dimensions, and malformed values, cannot be merged and are
+ * dropped, so one misconfigured writer never stops compactions of the
+ * table. A first value which is not a sketch is passed through.
+ *
+ * TableManager attaches it to the "sketch" family of TedgeMetadata.
+ *
+ * @author david medinets
+ */
+public class SketchCombiner extends Combiner {
+
+    @Override
+    public Value reduce(final Key key, final Iterator<Value> iter) {
+        Value first = iter.next();
+        HyperLogLog hyperLogLog = hyperLogLog(first.get(), null);
+        if (hyperLogLog != null) {
+            while (iter.hasNext()) {
+                HyperLogLog other = hyperLogLog(iter.next().get(), hyperLogLog);
+                if (other != null) {
+                    hyperLogLog.merge(other);
+                }
+            }
+            return new Value(hyperLogLog.toBytes(), false);
+        }
+        CountMinSketch countMinSketch = countMinSketch(first.get(), null);
+        if (countMinSketch != null) {
+            while (iter.hasNext()) {
+                CountMinSketch other = countMinSketch(iter.next().get(), countMinSketch);
+                if (other != null) {
+                    countMinSketch.merge(other);
+                }
+            }
+            return new Value(countMinSketch.toBytes(), false);
+        }
+        return first;
+    }
+
+    /* The HyperLogLog in bytes, or null if they hold none mergeable with like. */
+    private static HyperLogLog hyperLogLog(final byte[] bytes, final HyperLogLog like) {
+        if (bytes.length == 0 || bytes[0] != HyperLogLog.TAG) {
+            return null;
+        }
+        try {
+            HyperLogLog sketch = HyperLogLog.fromBytes(bytes);
+            return like == null || like.getPrecision() == sketch.getPrecision() ? sketch : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /* The CountMinSketch in bytes, or null if they hold none mergeable with like. */
+    private static CountMinSketch countMinSketch(final byte[] bytes, final CountMinSketch like) {
+        if (bytes.length == 0 || bytes[0] != CountMinSketch.TAG) {
+            return null;
+        }
+        try {
+            CountMinSketch sketch = CountMinSketch.fromBytes(bytes);
+            return like == null || (like.getDepth() == sketch.getDepth() && like.getWidth() == sketch.getWidth()) ? sketch : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.codebits.d4m;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Export a D4M table set to a binary snapshot directory.
+ *
+ * Each table is read once, in key order, and streamed to its files.
+ * While Tedge is read, the column dictionary is held in memory to turn
+ * column keys into indexes, and so are up to maxValueDictionarySize
+ * distinct values so repeated values are stored once. Values seen
+ * after the dictionary is full are stored with every entry that has
+ * them, so weights or timestamps do not grow the heap. TedgeDegree is read first and names
+ * the columns, so every column of Tedge must have a degree. Keys and
+ * values are copied as bytes, without text encoding.
+ *
+ * Snapshots have no column visibilities, and importing one writes
+ * every entry unlabeled. So that restricted data is never exported
+ * where anyone could read it, an entry with a column visibility stops
+ * the export with a D4MException; the authorizations only decide which
+ * entries the scans can see.
+ *
+ * See D4MSnapshot for the file layout and for reading and importing
+ * a snapshot.
+ *
+ * @author david medinets
+ */
+public class SnapshotExporter {
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private Authorizations authorizations = new Authorizations();
+
+    @Getter
+    @Setter
+    private int batchSize = 10000;
+
+    @Getter
+    @Setter
+    private int maxValueDictionarySize = 1 << 16;
+
+    private final static Text EMPTY_CF = new Text("");
+    private final static Text DEGREE_CQ = new Text("degree");
+    private final static Text FIELD_CF = new Text("field");
+
+    /** Constructor
+     *
+     */
+    public SnapshotExporter() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager naming the table set to export.
+     */
+    public SnapshotExporter(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Write a snapshot of the table set.
+     *
+     * Writers should be stopped first; entries written during the
+     * export may or may not be included, and degrees may not match
+     * the edges.
+     *
+     * @param directory directory to write the snapshot files to; created if missing.
+     * @return the snapshot, mapped.
+     */
+    public D4MSnapshot export(final File directory) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        Validate.notNull(directory, "directory must not be null");
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        try {
+            Files.createDirectories(directory.toPath());
+            DegreeEncoding encoding = tableManager.getDegreeEncoding();
+            Map<Text, Integer> columnIds = exportDegrees(directory, encoding);
+            exportEdges(directory, columnIds);
+            exportEntries(tableManager.getMetadataTable(), new File(directory, D4MSnapshot.METADATA_FILE), encoding);
+            exportEntries(tableManager.getTextTable(), new File(directory, D4MSnapshot.TEXT_FILE), null);
+        } catch (IOException e) {
+            throw new D4MException(String.format("Unable to write snapshot to [%s]", directory), e);
+        }
+        metrics.recordAdmin("exportSnapshot", start);
+        return D4MSnapshot.open(directory);
+    }
+
+    /* Write the column dictionary and degree vector; return the index of each column. */
+    private Map<Text, Integer> exportDegrees(final File directory, final DegreeEncoding encoding) throws IOException {
+        Map<Text, Integer> columnIds = new HashMap<>();
+        Scanner scanner = createScanner(tableManager.getDegreeTable());
+        scanner.fetchColumn(EMPTY_CF, DEGREE_CQ);
+        try (DictionaryWriter columns = new DictionaryWriter(new File(directory, D4MSnapshot.COLUMNS_FILE));
+                DataOutputStream degrees = open(new File(directory, D4MSnapshot.DEGREES_FILE))) {
+            Text column = null;
+            long degree = 0;
+            for (Entry<Key, Value> entry : scanner) {
+                checkVisibility(tableManager.getDegreeTable(), entry.getKey());
+                Text row = entry.getKey().getRow();
+                if (!row.equals(column)) {
+                    if (column != null) {
+                        degrees.writeLong(degree);
+                    }
+                    column = row;
+                    degree = 0;
+                    columnIds.put(column, columns.add(column.getBytes(), column.getLength()));
+                }
+                degree += encoding.decode(entry.getValue().get());
+            }
+            if (column != null) {
+                degrees.writeLong(degree);
+            }
+        } finally {
+            scanner.close();
+        }
+        return columnIds;
+    }
+
+    private void exportEdges(final File directory, final Map<Text, Integer> columnIds) throws IOException {
+        Map<ByteBuffer, Integer> valueIds = new HashMap<>();
+        File pointerFile = new File(directory, D4MSnapshot.EDGES_FILE + ".pointers");
+        Scanner scanner = createScanner(tableManager.getEdgeTable());
+        try (DictionaryWriter rows = new DictionaryWriter(new File(directory, D4MSnapshot.ROWS_FILE));
+                DictionaryWriter values = new DictionaryWriter(new File(directory, D4MSnapshot.VALUES_FILE));
+                DataOutputStream edges = open(new File(directory, D4MSnapshot.EDGES_FILE))) {
+            long rowCount = 0;
+            long entryCount = 0;
+            try (DataOutputStream pointers = open(pointerFile)) {
+                Text previous = new Text();
+                Text row = new Text();
+                Text column = new Text();
+                for (Entry<Key, Value> entry : scanner) {
+                    Key key = entry.getKey();
+                    checkVisibility(tableManager.getEdgeTable(), key);
+                    key.getRow(row);
+                    if (rowCount == 0 || !row.equals(previous)) {
+                        rows.add(row.getBytes(), row.getLength());
+                        pointers.writeLong(entryCount);
+                        previous.set(row);
+                        rowCount++;
+                    }
+                    key.getColumnQualifier(column);
+                    Integer columnId = columnIds.get(column);
+                    if (columnId == null) {
+                        throw new D4MException(String.format("Column [%s] of table [%s] has no degree in table [%s]", column, tableManager.getEdgeTable(), tableManager.getDegreeTable()));
+                    }
+                    ByteBuffer value = ByteBuffer.wrap(entry.getValue().get());
+                    Integer valueId = valueIds.get(value);
+                    if (valueId == null) {
+                        valueId = values.add(value.array(), value.array().length);
+                        if (valueIds.size() < maxValueDictionarySize) {
+                            valueIds.put(value, valueId);
+                        }
+                    }
+                    edges.writeInt(columnId);
+                    edges.writeInt(valueId);
+                    entryCount++;
+                }
+                pointers.writeLong(entryCount);
+            }
+            long pointersStart = 8 * entryCount;
+            Files.copy(pointerFile.toPath(), edges);
+            edges.writeLong(rowCount);
+            edges.writeLong(entryCount);
+            edges.writeLong(pointersStart);
+        } finally {
+            scanner.close();
+            Files.deleteIfExists(pointerFile.toPath());
+        }
+    }
+
+    /* Copy every entry of a table; with an encoding, field counts are written as decimal text. */
+    private void exportEntries(final String tablename, final File file, final DegreeEncoding encoding) throws IOException {
+        Scanner scanner = createScanner(tablename);
+        try (DataOutputStream out = open(file)) {
+            Text row = new Text();
+            Text family = new Text();
+            Text qualifier = new Text();
+            for (Entry<Key, Value> entry : scanner) {
+                Key key = entry.getKey();
+                checkVisibility(tablename, key);
+                key.getRow(row);
+                key.getColumnFamily(family);
+                key.getColumnQualifier(qualifier);
+                byte[] value = entry.getValue().get();
+                if (encoding != null && family.equals(FIELD_CF) && qualifier.getLength() == 0) {
+                    value = DegreeEncoding.STRING.encode(encoding.decode(value));
+                }
+                write(out, row.getBytes(), row.getLength());
+                write(out, family.getBytes(), family.getLength());
+                write(out, qualifier.getBytes(), qualifier.getLength());
+                write(out, value, value.length);
+            }
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /* Snapshots cannot keep a visibility, so labeled entries are refused rather than exported unlabeled. */
+    private static void checkVisibility(final String tablename, final Key key) {
+        if (key.getColumnVisibilityData().length() > 0) {
+            throw new D4MException(String.format("Entry [%s] of table [%s] has a column visibility; snapshots cannot keep visibilities.", key, tablename));
+        }
+    }
+
+    private Scanner createScanner(final String tablename) {
+        try {
+            Scanner scanner = tableManager.getConnector().createScanner(tablename, authorizations);
+            scanner.setBatchSize(batchSize);
+            return scanner;
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+    }
+
+    private static DataOutputStream open(final File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    }
+
+    private static void write(final DataOutputStream out, final byte[] bytes, final int length) throws IOException {
+        out.writeInt(length);
+        out.write(bytes, 0, length);
+    }
+
+    /* Streams keys to a dictionary file, holding the offsets in a side file until close. */
+    private static class DictionaryWriter implements Closeable {
+
+        private final DataOutputStream out;
+        private final DataOutputStream offsets;
+        private final File offsetFile;
+        private long position = 0;
+        private int count = 0;
+
+        DictionaryWriter(final File file) throws IOException {
+            offsetFile = new File(file.getPath() + ".offsets");
+            out = open(file);
+            offsets = open(offsetFile);
+        }
+
+        int add(final byte[] key, final int length) throws IOException {
+            Validate.isTrue(count < Integer.MAX_VALUE, "dictionary is full");
+            offsets.writeLong(position);
+            out.write(key, 0, length);
+            position += length;
+            return count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                offsets.writeLong(position);
+                offsets.close();
+                while (position % 8 != 0) {
+                    out.write(0);
+                    position++;
+                }
+                Files.copy(offsetFile.toPath(), out);
+                out.writeLong(count);
+                out.writeLong(position);
+                out.close();
+            } finally {
+                Files.deleteIfExists(offsetFile.toPath());
+            }
+        }
+
+    }
+
+}
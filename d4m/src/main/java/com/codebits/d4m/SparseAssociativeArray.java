@@ -0,0 +1,498 @@
+package com.codebits.d4m;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.Validate;
+
+/** Compact, read-only D4M associative array in compressed sparse row form.
+ *
+ * Row, column and value strings are dictionary encoded: each distinct
+ * string is held once and entries refer to it by index. Entries are
+ * stored as two int arrays (column index and value index) addressed by
+ * a row pointer array, so each non-empty entry costs eight bytes plus
+ * its share of the dictionaries. The int arrays can live in direct
+ * ByteBuffers, outside the Java heap, for results with millions of
+ * entries.
+ *
+ * Rows and columns are sorted. Within a row the entries are sorted by
+ * column.
+ *
+ * @author david medinets
+ */
+public class SparseAssociativeArray {
+
+    private final String[] rowKeys;
+    private final String[] columnKeys;
+    private final String[] valueKeys;
+    private final IntBuffer rowPointers;
+    private final IntBuffer columnIndexes;
+    private final IntBuffer valueIndexes;
+    private final boolean direct;
+
+    private SparseAssociativeArray(final String[] rowKeys, final String[] columnKeys, final String[] valueKeys,
+            final IntBuffer rowPointers, final IntBuffer columnIndexes, final IntBuffer valueIndexes, final boolean direct) {
+        this.rowKeys = rowKeys;
+        this.columnKeys = columnKeys;
+        this.valueKeys = valueKeys;
+        this.rowPointers = rowPointers;
+        this.columnIndexes = columnIndexes;
+        this.valueIndexes = valueIndexes;
+        this.direct = direct;
+    }
+
+    /** Get the number of entries.
+     *
+     * @return the number of non-empty entries.
+     */
+    public int size() {
+        return columnIndexes.limit();
+    }
+
+    /** Check whether there are no entries.
+     *
+     * @return true if the array is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Check whether the entry arrays are held in direct buffers.
+     *
+     * @return true if the entry arrays are off the Java heap.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /** Get the number of rows in the row dictionary.
+     *
+     * @return the row count.
+     */
+    public int getRowCount() {
+        return rowKeys.length;
+    }
+
+    /** Get the number of columns in the column dictionary.
+     *
+     * @return the column count.
+     */
+    public int getColumnCount() {
+        return columnKeys.length;
+    }
+
+    /** Get a row key by index.
+     *
+     * @param index row index.
+     * @return the row key.
+     */
+    public String getRowKey(final int index) {
+        return rowKeys[index];
+    }
+
+    /** Get a column key by index.
+     *
+     * @param index column index.
+     * @return the column key.
+     */
+    public String getColumnKey(final int index) {
+        return columnKeys[index];
+    }
+
+    /** Find the index of a row key.
+     *
+     * @param row row key.
+     * @return the row index or -1 if the row is not present.
+     */
+    public int getRowIndex(final String row) {
+        int index = Arrays.binarySearch(rowKeys, row);
+        return index < 0 ? -1 : index;
+    }
+
+    /** Find the index of a column key.
+     *
+     * @param column column key.
+     * @return the column index or -1 if the column is not present.
+     */
+    public int getColumnIndex(final String column) {
+        int index = Arrays.binarySearch(columnKeys, column);
+        return index < 0 ? -1 : index;
+    }
+
+    /** Get the number of entries in a row.
+     *
+     * @param rowIndex row index.
+     * @return the number of entries in the row.
+     */
+    public int getRowSize(final int rowIndex) {
+        return rowPointers.get(rowIndex + 1) - rowPointers.get(rowIndex);
+    }
+
+    /** Get the value of an entry.
+     *
+     * @param row row key.
+     * @param column column key.
+     * @return the value or null if the entry is not present.
+     */
+    public String get(final String row, final String column) {
+        int rowIndex = getRowIndex(row);
+        int columnIndex = getColumnIndex(column);
+        if (rowIndex < 0 || columnIndex < 0) {
+            return null;
+        }
+        int position = find(rowPointers.get(rowIndex), rowPointers.get(rowIndex + 1), columnIndex);
+        return position < 0 ? null : valueKeys[valueIndexes.get(position)];
+    }
+
+    /** Build the transpose.
+     *
+     * The dictionaries are shared with this array; only the entry
+     * arrays are rebuilt, with a counting sort on the column indexes.
+     *
+     * @return a new array with rows and columns swapped.
+     */
+    public SparseAssociativeArray transpose() {
+        int size = size();
+        IntBuffer pointers = allocate(columnKeys.length + 1, direct);
+        for (int i = 0; i < size; i++) {
+            int column = columnIndexes.get(i);
+            pointers.put(column + 1, pointers.get(column + 1) + 1);
+        }
+        for (int column = 0; column < columnKeys.length; column++) {
+            pointers.put(column + 1, pointers.get(column + 1) + pointers.get(column));
+        }
+        int[] next = new int[columnKeys.length];
+        for (int column = 0; column < columnKeys.length; column++) {
+            next[column] = pointers.get(column);
+        }
+        IntBuffer rows = allocate(size, direct);
+        IntBuffer values = allocate(size, direct);
+        for (int row = 0; row < rowKeys.length; row++) {
+            for (int i = rowPointers.get(row); i < rowPointers.get(row + 1); i++) {
+                int position = next[columnIndexes.get(i)]++;
+                rows.put(position, row);
+                values.put(position, valueIndexes.get(i));
+            }
+        }
+        return new SparseAssociativeArray(columnKeys, rowKeys, valueKeys, pointers, rows, values, direct);
+    }
+
+    /** Extract the entries inside a row range and a column range.
+     *
+     * @param startRow first row, inclusive, or null for the first row.
+     * @param endRow last row, inclusive, or null for the last row.
+     * @param startColumn first column, inclusive, or null for the first column.
+     * @param endColumn last column, inclusive, or null for the last column.
+     * @return a new array holding the matching entries.
+     */
+    public SparseAssociativeArray subMatrix(final String startRow, final String endRow, final String startColumn, final String endColumn) {
+        int firstRow = lowerBound(rowKeys, startRow);
+        int lastRow = upperBound(rowKeys, endRow);
+        int firstColumn = lowerBound(columnKeys, startColumn);
+        int lastColumn = Math.max(firstColumn, upperBound(columnKeys, endColumn));
+        int rowCount = Math.max(0, lastRow - firstRow);
+
+        IntBuffer pointers = allocate(rowCount + 1, direct);
+        int size = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int start = rowPointers.get(firstRow + row);
+            int end = rowPointers.get(firstRow + row + 1);
+            size += lowerBound(start, end, lastColumn) - lowerBound(start, end, firstColumn);
+            pointers.put(row + 1, size);
+        }
+        IntBuffer columns = allocate(size, direct);
+        IntBuffer values = allocate(size, direct);
+        int position = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int start = rowPointers.get(firstRow + row);
+            int end = rowPointers.get(firstRow + row + 1);
+            int stop = lowerBound(start, end, lastColumn);
+            for (int i = lowerBound(start, end, firstColumn); i < stop; i++) {
+                columns.put(position, columnIndexes.get(i) - firstColumn);
+                values.put(position, valueIndexes.get(i));
+                position++;
+            }
+        }
+        return new SparseAssociativeArray(
+                Arrays.copyOfRange(rowKeys, firstRow, firstRow + rowCount),
+                Arrays.copyOfRange(columnKeys, firstColumn, lastColumn),
+                valueKeys, pointers, columns, values, direct);
+    }
+
+    /** Get a cursor over the entries in row, then column, order.
+     *
+     * @return a new cursor positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** Copy the entries into a map-based associative array.
+     *
+     * @return a new AssociativeArray.
+     */
+    public AssociativeArray toAssociativeArray() {
+        AssociativeArray result = new AssociativeArray();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            result.put(cursor.getRow(), cursor.getColumn(), cursor.getValue());
+        }
+        return result;
+    }
+
+    /* Position of columnIndex in [start, end) or -1. */
+    private int find(final int start, final int end, final int columnIndex) {
+        int position = lowerBound(start, end, columnIndex);
+        return position < end && columnIndexes.get(position) == columnIndex ? position : -1;
+    }
+
+    /* First position in [start, end) whose column index is not less than columnIndex. */
+    private int lowerBound(final int start, final int end, final int columnIndex) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columnIndexes.get(middle) < columnIndex) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(final String[] keys, final String key) {
+        if (key == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static int upperBound(final String[] keys, final String key) {
+        if (key == null) {
+            return keys.length;
+        }
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -index - 1 : index + 1;
+    }
+
+    private static IntBuffer allocate(final int size, final boolean direct) {
+        if (direct) {
+            return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return IntBuffer.allocate(size);
+    }
+
+    /** Iterate the entries without allocating per entry.
+     */
+    public class Cursor {
+
+        private int row = 0;
+        private int position = -1;
+
+        private Cursor() {
+        }
+
+        /** Move to the next entry.
+         *
+         * @return false when there are no more entries.
+         */
+        public boolean next() {
+            position++;
+            if (position >= size()) {
+                return false;
+            }
+            while (position >= rowPointers.get(row + 1)) {
+                row++;
+            }
+            return true;
+        }
+
+        /** Get the row index of the current entry.
+         *
+         * @return the row index.
+         */
+        public int getRowIndex() {
+            return row;
+        }
+
+        /** Get the column index of the current entry.
+         *
+         * @return the column index.
+         */
+        public int getColumnIndex() {
+            return columnIndexes.get(position);
+        }
+
+        /** Get the row key of the current entry.
+         *
+         * @return the row key.
+         */
+        public String getRow() {
+            return rowKeys[row];
+        }
+
+        /** Get the column key of the current entry.
+         *
+         * @return the column key.
+         */
+        public String getColumn() {
+            return columnKeys[columnIndexes.get(position)];
+        }
+
+        /** Get the value of the current entry.
+         *
+         * @return the value.
+         */
+        public String getValue() {
+            return valueKeys[valueIndexes.get(position)];
+        }
+
+    }
+
+    /** Collect triples in any order and build a SparseAssociativeArray.
+     *
+     * When the same (row, column) is put more than once the last value wins.
+     */
+    public static class Builder implements TripleSink {
+
+        private final Map<String, Integer> rowIds = new HashMap<>();
+        private final Map<String, Integer> columnIds = new HashMap<>();
+        private final Map<String, Integer> valueIds = new HashMap<>();
+        private final List<String> rows = new ArrayList<>();
+        private final List<String> columns = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] entryRows = new int[1024];
+        private int[] entryColumns = new int[1024];
+        private int[] entryValues = new int[1024];
+        private int count = 0;
+        private boolean direct = false;
+
+        /** Constructor
+         *
+         */
+        public Builder() {
+        }
+
+        /** Choose whether the built array keeps its entries in direct buffers.
+         *
+         * @param direct true to allocate the entry arrays off the Java heap.
+         * @return this builder.
+         */
+        public Builder setDirect(final boolean direct) {
+            this.direct = direct;
+            return this;
+        }
+
+        /** Add a triple.
+         *
+         * @param row row key.
+         * @param column column key.
+         * @param value entry value.
+         */
+        @Override
+        public void put(final String row, final String column, final String value) {
+            Validate.notNull(row, "row must not be null");
+            Validate.notNull(column, "column must not be null");
+            Validate.notNull(value, "value must not be null");
+            if (count == entryRows.length) {
+                int capacity = count * 2;
+                entryRows = Arrays.copyOf(entryRows, capacity);
+                entryColumns = Arrays.copyOf(entryColumns, capacity);
+                entryValues = Arrays.copyOf(entryValues, capacity);
+            }
+            entryRows[count] = id(rowIds, rows, row);
+            entryColumns[count] = id(columnIds, columns, column);
+            entryValues[count] = id(valueIds, values, value);
+            count++;
+        }
+
+        /** Build the array.
+         *
+         * @return a new SparseAssociativeArray.
+         */
+        public SparseAssociativeArray build() {
+            String[] rowKeys = rows.toArray(new String[rows.size()]);
+            String[] columnKeys = columns.toArray(new String[columns.size()]);
+            String[] valueKeys = values.toArray(new String[values.size()]);
+            int[] rowRank = rank(rowKeys);
+            int[] columnRank = rank(columnKeys);
+
+            // counting sort of the entries by row rank, stable in insertion order
+            int[] rowStart = new int[rowKeys.length + 1];
+            for (int i = 0; i < count; i++) {
+                rowStart[rowRank[entryRows[i]] + 1]++;
+            }
+            for (int row = 0; row < rowKeys.length; row++) {
+                rowStart[row + 1] += rowStart[row];
+            }
+            long[] sorted = new long[count];
+            int[] next = Arrays.copyOf(rowStart, rowKeys.length);
+            for (int i = 0; i < count; i++) {
+                sorted[next[rowRank[entryRows[i]]]++] = ((long) columnRank[entryColumns[i]] << 32) | i;
+            }
+
+            // sort each row by column rank, then keep the last value of duplicate columns
+            IntBuffer pointers = allocate(rowKeys.length + 1, direct);
+            int size = 0;
+            for (int row = 0; row < rowKeys.length; row++) {
+                Arrays.sort(sorted, rowStart[row], rowStart[row + 1]);
+                for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+                    boolean duplicate = i + 1 < rowStart[row + 1] && (sorted[i + 1] >>> 32) == (sorted[i] >>> 32);
+                    if (!duplicate) {
+                        sorted[size++] = sorted[i];
+                    }
+                }
+                pointers.put(row + 1, size);
+            }
+            IntBuffer columnIndexes = allocate(size, direct);
+            IntBuffer valueIndexes = allocate(size, direct);
+            for (int i = 0; i < size; i++) {
+                columnIndexes.put(i, (int) (sorted[i] >>> 32));
+                valueIndexes.put(i, entryValues[(int) sorted[i]]);
+            }
+
+            Arrays.sort(rowKeys);
+            Arrays.sort(columnKeys);
+            return new SparseAssociativeArray(rowKeys, columnKeys, valueKeys, pointers, columnIndexes, valueIndexes, direct);
+        }
+
+        private static int id(final Map<String, Integer> ids, final List<String> keys, final String key) {
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = keys.size();
+                ids.put(key, id);
+                keys.add(key);
+            }
+            return id;
+        }
+
+        /* rank[id] is the position of keys[id] once the keys are sorted. */
+        private static int[] rank(final String[] keys) {
+            Integer[] order = new Integer[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer a, final Integer b) {
+                    return keys[a].compareTo(keys[b]);
+                }
+            });
+            int[] rank = new int[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                rank[order[i]] = i;
+            }
+            return rank;
+        }
+
+    }
+
+}
@@ -0,0 +1,497 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Split hot row ranges and merge cold, tiny tablets of the D4M tables.
+ *
+ * addSplitsForSha1 and SplitPlanner split a table once. SplitManager
+ * keeps adjusting the splits while the workload drifts. Each round it
+ * drains the per-prefix write counts a D4MWriter recorded in a
+ * WriteRateTracker and then, for the five tables of the TableManager:
+ *
+ * - isolates every prefix written faster than hotWritesPerSecond in
+ *   its own tablet by splitting at the prefix and at the first row
+ *   after it. Hottest prefixes go first, at most maxSplitsPerRound
+ *   split points per round, through TableManager.addSplits so split
+ *   points which already exist are skipped;
+ * - merges runs of adjacent tablets written slower than
+ *   coldWritesPerSecond whose files add up to at most maxMergeSize
+ *   bytes, at most maxMergesPerRound merges per round.
+ *
+ * A tablet only counts as cold once it has been seen cold, with files
+ * of the same size, for minColdRounds rounds in a row, so tablets whose
+ * data has not been compacted yet are left alone. Merges never cross a
+ * planned split point: the splits a table already had when the manager
+ * first saw it, such as those of addSplitsForSha1 or SplitPlanner, the
+ * splits the manager added itself and splits passed to protectSplits.
+ *
+ * TableOperations only reports disk usage per table, so tablet sizes
+ * are read from the file entries of the accumulo.metadata table, as
+ * Accumulo's own merge utility does. The user needs read access to
+ * that table.
+ *
+ * Rounds run on a background thread every intervalMillis after start,
+ * or on demand with runOnce. Rows with the same prefix always share a
+ * tablet unless they split on their own, so choose the tracker's
+ * prefixLength to match the row keys: 2 or 3 for sha1 rows.
+ *
+ * @author david medinets
+ */
+public class SplitManager implements AutoCloseable {
+
+    private final static Logger LOG = Logger.getLogger(SplitManager.class.getName());
+    private final static String METADATA_TABLE = "accumulo.metadata";
+    private final static Text TABLET_CF = new Text("~tab");
+    private final static Text PREV_ROW_CQ = new Text("~pr");
+    private final static Text FILE_CF = new Text("file");
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private WriteRateTracker writeRateTracker = null;
+
+    @Getter
+    @Setter
+    private long intervalMillis = 60000;
+
+    @Getter
+    @Setter
+    private double hotWritesPerSecond = 1000;
+
+    @Getter
+    @Setter
+    private double coldWritesPerSecond = 1;
+
+    @Getter
+    @Setter
+    private long maxMergeSize = 64 * 1024 * 1024;
+
+    @Getter
+    @Setter
+    private int maxSplitsPerRound = 16;
+
+    @Getter
+    @Setter
+    private int maxMergesPerRound = 1;
+
+    @Getter
+    @Setter
+    private int minColdRounds = 3;
+
+    @Getter
+    @Setter
+    private int batchSize = 256;
+
+    private final AtomicLong splitsAdded = new AtomicLong();
+    private final Map<String, Set<Text>> plannedSplits = new HashMap<>();
+    private Map<Text, ColdHistory> coldHistory = new HashMap<>();
+    private final AtomicLong mergesDone = new AtomicLong();
+    private final Object roundLock = new Object();
+    private ScheduledExecutorService scheduler = null;
+    private long lastRound = System.nanoTime();
+
+    /** Constructor
+     *
+     */
+    public SplitManager() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager holding the connector and table names.
+     * @param writeRateTracker tracker the D4MWriter records its writes in.
+     */
+    public SplitManager(final TableManager tableManager, final WriteRateTracker writeRateTracker) {
+        this.tableManager = tableManager;
+        this.writeRateTracker = writeRateTracker;
+    }
+
+    /** Run a round every intervalMillis on a background thread.
+     *
+     * A failed round is logged and the next round runs as scheduled.
+     */
+    public synchronized void start() {
+        Validate.isTrue(scheduler == null, "split manager is already started");
+        Validate.isTrue(intervalMillis > 0, "intervalMillis must be positive");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "d4m-split-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Split manager round failed.", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stop the background thread, waiting for a running round to end.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler = null;
+        }
+    }
+
+    /** Run one round using the write counts recorded since the previous round.
+     *
+     * @return the split points added and merges done in this round.
+     */
+    public Round runOnce() {
+        synchronized (roundLock) {
+            long now = System.nanoTime();
+            long elapsed = now - lastRound;
+            lastRound = now;
+            return runOnce(elapsed);
+        }
+    }
+
+    /** Get the total number of split points added.
+     *
+     * @return split points added since construction.
+     */
+    public long getSplitsAdded() {
+        return splitsAdded.get();
+    }
+
+    /** Get the total number of merges done.
+     *
+     * @return merges done since construction.
+     */
+    public long getMergesDone() {
+        return mergesDone.get();
+    }
+
+    /** Keep split points from being merged away.
+     *
+     * Splits a table has when the manager first sees it are kept
+     * already; use this for split points planned after the manager
+     * started.
+     *
+     * @param tablename table the split points belong to.
+     * @param splits split points no merge may remove.
+     */
+    public void protectSplits(final String tablename, final Collection<Text> splits) {
+        Validate.notNull(tablename, "tablename must not be null");
+        Validate.notNull(splits, "splits must not be null");
+        synchronized (roundLock) {
+            plannedSplits(tablename).addAll(splits);
+        }
+    }
+
+    /* Package-private so tests can fix the length of the round. */
+    Round runOnce(final long elapsedNanos) {
+        synchronized (roundLock) {
+            return round(elapsedNanos);
+        }
+    }
+
+    private Round round(final long elapsedNanos) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(writeRateTracker, "writeRateTracker must not be null");
+        double seconds = Math.max(elapsedNanos, 1000000L) / 1e9;
+
+        Map<String, NavigableMap<Text, Long>> writes = new HashMap<>();
+        for (String tablename : tableManager.getTableNames()) {
+            // splits present before the first round were planned
+            plannedSplits(tablename);
+            NavigableMap<Text, Long> prefixes = new TreeMap<>();
+            for (Entry<String, Long> entry : writeRateTracker.drain(tablename).entrySet()) {
+                prefixes.put(new Text(entry.getKey()), entry.getValue());
+            }
+            writes.put(tablename, prefixes);
+        }
+
+        Round round = new Round();
+        round.splits = split(writes, seconds);
+        round.merges = merge(writes, seconds);
+        splitsAdded.addAndGet(round.splits);
+        mergesDone.addAndGet(round.merges);
+        return round;
+    }
+
+    private int split(final Map<String, NavigableMap<Text, Long>> writes, final double seconds) {
+        List<HotPrefix> hot = new ArrayList<>();
+        for (Entry<String, NavigableMap<Text, Long>> table : writes.entrySet()) {
+            for (Entry<Text, Long> prefix : table.getValue().entrySet()) {
+                if (prefix.getValue() / seconds >= hotWritesPerSecond) {
+                    hot.add(new HotPrefix(table.getKey(), prefix.getKey(), prefix.getValue()));
+                }
+            }
+        }
+        Collections.sort(hot);
+
+        Map<String, Set<Text>> existingSplits = new HashMap<>();
+        Map<String, SortedSet<Text>> splits = new HashMap<>();
+        int added = 0;
+        for (HotPrefix prefix : hot) {
+            if (added >= maxSplitsPerRound) {
+                break;
+            }
+            Set<Text> existing = existingSplits.computeIfAbsent(prefix.tablename, k -> new HashSet<>(tableManager.getSplits(k)));
+            SortedSet<Text> tableSplits = splits.computeIfAbsent(prefix.tablename, k -> new TreeSet<>());
+            for (Text candidate : new Text[]{prefix.prefix, successor(prefix.prefix)}) {
+                if (added < maxSplitsPerRound && candidate != null && !existing.contains(candidate) && tableSplits.add(candidate)) {
+                    added++;
+                }
+            }
+        }
+
+        int total = 0;
+        for (Entry<String, SortedSet<Text>> entry : splits.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                total += tableManager.addSplits(entry.getKey(), entry.getValue(), batchSize);
+                plannedSplits(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+        return total;
+    }
+
+    private int merge(final Map<String, NavigableMap<Text, Long>> writes, final double seconds) {
+        Map<Text, ColdHistory> history = new HashMap<>();
+        int merges = 0;
+        for (String tablename : tableManager.getTableNames()) {
+            NavigableMap<Text, Long> prefixes = writes.get(tablename);
+            Set<Text> planned = plannedSplits(tablename);
+            List<Tablet> run = new ArrayList<>();
+            long runSize = 0;
+            for (Tablet tablet : tablets(tablename)) {
+                boolean mergeable = false;
+                if (tablet.size <= maxMergeSize && writes(prefixes, tablet) / seconds < coldWritesPerSecond) {
+                    ColdHistory previous = coldHistory.get(tablet.metadataRow);
+                    int rounds = previous != null && previous.size == tablet.size ? previous.rounds + 1 : 1;
+                    history.put(tablet.metadataRow, new ColdHistory(rounds, tablet.size));
+                    mergeable = rounds >= minColdRounds;
+                }
+                if (merges >= maxMergesPerRound) {
+                    continue;
+                }
+                if (!mergeable || runSize + tablet.size > maxMergeSize) {
+                    merges += mergeRun(tablename, run);
+                    runSize = 0;
+                }
+                if (mergeable) {
+                    run.add(tablet);
+                    runSize += tablet.size;
+                }
+                if (tablet.endRow != null && planned.contains(tablet.endRow)) {
+                    // the run may not reach past a planned split point
+                    merges += mergeRun(tablename, run);
+                    runSize = 0;
+                }
+            }
+            if (merges < maxMergesPerRound) {
+                merges += mergeRun(tablename, run);
+            }
+        }
+        coldHistory = history;
+        return merges;
+    }
+
+    /* Merge a run of two or more tablets and empty it; returns the merges done. */
+    private int mergeRun(final String tablename, final List<Tablet> run) {
+        int merges = 0;
+        if (run.size() > 1) {
+            tableManager.merge(tablename, run.get(0).prevEndRow, run.get(run.size() - 1).endRow);
+            merges++;
+        }
+        run.clear();
+        return merges;
+    }
+
+    private Set<Text> plannedSplits(final String tablename) {
+        return plannedSplits.computeIfAbsent(tablename, k -> new HashSet<>(tableManager.getSplits(k)));
+    }
+
+    /* Writes to prefixes whose rows overlap the tablet (prevEndRow, endRow]. */
+    private long writes(final NavigableMap<Text, Long> prefixes, final Tablet tablet) {
+        if (prefixes.isEmpty()) {
+            return 0;
+        }
+        NavigableMap<Text, Long> candidates = prefixes;
+        if (tablet.prevEndRow != null) {
+            Text floor = prefixes.floorKey(tablet.prevEndRow);
+            if (floor != null) {
+                candidates = candidates.tailMap(floor, true);
+            }
+        }
+        if (tablet.endRow != null) {
+            candidates = candidates.headMap(tablet.endRow, true);
+        }
+        long total = 0;
+        for (Entry<Text, Long> entry : candidates.entrySet()) {
+            Text next = successor(entry.getKey());
+            if (tablet.prevEndRow == null || next == null || next.compareTo(tablet.prevEndRow) > 0) {
+                total += entry.getValue();
+            }
+        }
+        return total;
+    }
+
+    /* Tablets of a table in row order, with the bytes of their files. */
+    private List<Tablet> tablets(final String tablename) {
+        String tableId = tableManager.getTableOperations().tableIdMap().get(tablename);
+        if (tableId == null) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename));
+        }
+        Scanner scanner;
+        try {
+            scanner = tableManager.getConnector().createScanner(METADATA_TABLE, new Authorizations());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", METADATA_TABLE), e);
+        }
+        List<Tablet> tablets = new ArrayList<>();
+        try {
+            scanner.setRange(new Range(new Text(tableId + ";"), true, new Text(tableId + "<"), true));
+            scanner.fetchColumn(TABLET_CF, PREV_ROW_CQ);
+            scanner.fetchColumnFamily(FILE_CF);
+            Tablet tablet = null;
+            Text row = new Text();
+            Text family = new Text();
+            for (Entry<Key, Value> entry : scanner) {
+                entry.getKey().getRow(row);
+                if (tablet == null || !row.equals(tablet.metadataRow)) {
+                    tablet = new Tablet(row, tableId.length());
+                    tablets.add(tablet);
+                }
+                if (entry.getKey().getColumnFamily(family).equals(FILE_CF)) {
+                    tablet.size += fileSize(entry.getValue());
+                } else {
+                    tablet.prevEndRow = prevEndRow(entry.getValue());
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        return tablets;
+    }
+
+    /* File entries hold "size,entries". */
+    private static long fileSize(final Value value) {
+        String encoded = new String(value.get(), Utf8Encoder.UTF8);
+        int comma = encoded.indexOf(',');
+        return Long.parseLong(comma < 0 ? encoded : encoded.substring(0, comma));
+    }
+
+    /* Previous end rows are a flag byte, 0 for none, followed by the row. */
+    private static Text prevEndRow(final Value value) {
+        byte[] bytes = value.get();
+        if (bytes.length == 0 || bytes[0] == 0) {
+            return null;
+        }
+        return new Text(Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    /* The first row after every row starting with prefix, or null if there is none. */
+    static Text successor(final Text prefix) {
+        byte[] bytes = Arrays.copyOf(prefix.getBytes(), prefix.getLength());
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] != (byte) 0xff) {
+                bytes[i]++;
+                return new Text(Arrays.copyOf(bytes, i + 1));
+            }
+        }
+        return null;
+    }
+
+    /** Changes made by one round. */
+    public static class Round {
+
+        @Getter
+        private int splits = 0;
+
+        @Getter
+        private int merges = 0;
+
+    }
+
+    private static class HotPrefix implements Comparable<HotPrefix> {
+
+        private final String tablename;
+        private final Text prefix;
+        private final long writes;
+
+        HotPrefix(final String tablename, final Text prefix, final long writes) {
+            this.tablename = tablename;
+            this.prefix = prefix;
+            this.writes = writes;
+        }
+
+        @Override
+        public int compareTo(final HotPrefix other) {
+            return Long.compare(other.writes, writes);
+        }
+
+    }
+
+    private static class ColdHistory {
+
+        private final int rounds;
+        private final long size;
+
+        ColdHistory(final int rounds, final long size) {
+            this.rounds = rounds;
+            this.size = size;
+        }
+
+    }
+
+    private static class Tablet {
+
+        private final Text metadataRow;
+        private final Text endRow;
+        private Text prevEndRow = null;
+        private long size = 0;
+
+        Tablet(final Text metadataRow, final int tableIdLength) {
+            this.metadataRow = new Text(metadataRow);
+            byte[] bytes = metadataRow.getBytes();
+            this.endRow = bytes[tableIdLength] == '<' ? null : new Text(Arrays.copyOfRange(bytes, tableIdLength + 1, metadataRow.getLength()));
+        }
+
+    }
+
+}
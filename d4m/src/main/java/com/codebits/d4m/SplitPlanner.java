@@ -0,0 +1,453 @@
+package com.codebits.d4m;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Compute split points for the D4M tables.
+ *
+ * Hex splits suit tables whose rows are sha1 values (Tedge and
+ * TedgeText when the README conventions are followed). Sampled splits
+ * suit everything else, including TedgeTranspose and TedgeDegree whose
+ * rows are column names. Sampling is done per entry rather than per
+ * row, so busy rows pull split points towards themselves and the
+ * resulting tablets hold roughly the same number of entries.
+ *
+ * A table is sampled across its whole key space: the scan budget is
+ * shared out over sample ranges, the existing tablets cut into at
+ * least minSampleRanges pieces, and only the first entries of each
+ * range are read. The entry counts of each tablet's files, read from
+ * accumulo.metadata, weight the rows of its ranges by the entries
+ * they stand for, so a dense tablet pulls split points towards itself
+ * even though only part of it was read. Pieces of one tablet share its
+ * count evenly. Without read access to accumulo.metadata every range
+ * has the same weight and dense ranges are under-weighted.
+ *
+ * @author david medinets
+ */
+public class SplitPlanner {
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+    private final static int KEY_WINDOW = 8;
+    private final static String METADATA_TABLE = "accumulo.metadata";
+    private final static Text FILE_CF = new Text("file");
+    private final static Logger LOG = Logger.getLogger(SplitPlanner.class.getName());
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private int sampleSize = 100000;
+
+    @Getter
+    @Setter
+    private long maxEntriesScanned = 10000000;
+
+    @Getter
+    @Setter
+    private int minSampleRanges = 64;
+
+    @Getter
+    @Setter
+    private int batchSize = 256;
+
+    @Getter
+    @Setter
+    private long seed = 0;
+
+    /** Constructor
+     *
+     */
+    public SplitPlanner() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager holding the connector and table names.
+     */
+    public SplitPlanner(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Compute hex split points of a fixed prefix length.
+     *
+     * A depth of 1 gives 15 split points (16 tablets), 2 gives 255
+     * (256 tablets) and 3 gives 4095 (4096 tablets).
+     *
+     * @param depth number of hex characters in each split point, 1 to 4.
+     * @return the split points.
+     */
+    public static SortedSet<Text> hexSplits(final int depth) {
+        Validate.isTrue(depth > 0 && depth <= 4, "depth must be between 1 and 4");
+        SortedSet<Text> splits = new TreeSet<>();
+        int count = 1 << (4 * depth);
+        char[] buffer = new char[depth];
+        for (int i = 1; i < count; i++) {
+            int n = i;
+            for (int j = depth - 1; j >= 0; j--) {
+                buffer[j] = HEX[n & 0xf];
+                n >>>= 4;
+            }
+            splits.add(new Text(new String(buffer)));
+        }
+        return splits;
+    }
+
+    /** Compute evenly loaded split points from a stream of row keys.
+     *
+     * A row appearing several times in the stream carries proportionally
+     * more weight. At most sampleSize rows are kept in memory.
+     *
+     * @param rows row keys, one per entry.
+     * @param numSplits number of split points wanted.
+     * @return at most numSplits distinct split points.
+     */
+    public SortedSet<Text> computeSplits(final Iterator<Text> rows, final int numSplits) {
+        Validate.notNull(rows, "rows must not be null");
+        Validate.isTrue(numSplits > 0, "numSplits must be positive");
+        Reservoir reservoir = new Reservoir(sampleSize, seed);
+        while (rows.hasNext()) {
+            reservoir.offer(rows.next());
+        }
+        return reservoir.quantiles(numSplits);
+    }
+
+    /** Compute evenly loaded split points by sampling an existing table.
+     *
+     * At most maxEntriesScanned entries are read, spread over the
+     * sample ranges of the table and weighted by the size of their
+     * tablets.
+     *
+     * @param tablename name of the accumulo table.
+     * @param numSplits number of split points wanted.
+     * @return at most numSplits distinct split points.
+     */
+    public SortedSet<Text> computeSplits(final String tablename, final int numSplits) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        Validate.isTrue(numSplits > 0, "numSplits must be positive");
+
+        Reservoir reservoir = new Reservoir(sampleSize, seed);
+        Scanner scanner;
+        try {
+            scanner = tableManager.getConnector().createScanner(tablename, new Authorizations());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        }
+        try {
+            Map<Range, Long> ranges = sampleRanges(scanner, tablename);
+            long budget = Math.max(1, maxEntriesScanned / Math.max(1, ranges.size()));
+            Text row = new Text();
+            for (Entry<Range, Long> range : ranges.entrySet()) {
+                // each row read stands for weight rows of the range
+                double weight = Math.max(1.0, (double) range.getValue() / budget);
+                scanner.setRange(range.getKey());
+                long scanned = 0;
+                for (Entry<Key, Value> entry : scanner) {
+                    if (scanned++ >= budget) {
+                        break;
+                    }
+                    reservoir.offer(entry.getKey().getRow(row), weight);
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        return reservoir.quantiles(numSplits);
+    }
+
+    /* The tablets of a table, each cut into enough pieces to give at least minSampleRanges ranges, with the entries estimated for each piece. */
+    private Map<Range, Long> sampleRanges(final Scanner scanner, final String tablename) {
+        List<Text> splits = new ArrayList<>(tableManager.getSplits(tablename));
+        Collections.sort(splits);
+        Map<Text, Long> entries = tabletEntries(tablename);
+        int tablets = splits.size() + 1;
+        int pieces = Math.max(1, (minSampleRanges + tablets - 1) / tablets);
+        Map<Range, Long> ranges = new LinkedHashMap<>();
+        List<Range> tabletRanges = new ArrayList<>();
+        Text start = null;
+        for (int i = 0; i <= splits.size(); i++) {
+            Text end = i < splits.size() ? splits.get(i) : null;
+            Range tablet = new Range(start, false, end, true);
+            tabletRanges.clear();
+            if (pieces == 1) {
+                tabletRanges.add(tablet);
+            } else {
+                divide(scanner, tablet, pieces, tabletRanges);
+            }
+            Long tabletEntries = entries.get(end);
+            for (Range range : tabletRanges) {
+                ranges.put(range, tabletEntries == null ? 0 : tabletEntries / tabletRanges.size());
+            }
+            start = end;
+        }
+        return ranges;
+    }
+
+    /* Entries in the files of each tablet of a table, keyed by end row (null for the last tablet); empty if accumulo.metadata cannot be read. */
+    private Map<Text, Long> tabletEntries(final String tablename) {
+        Map<Text, Long> entries = new HashMap<>();
+        String tableId = tableManager.getTableOperations().tableIdMap().get(tablename);
+        if (tableId == null) {
+            return entries;
+        }
+        Scanner scanner;
+        try {
+            scanner = tableManager.getConnector().createScanner(METADATA_TABLE, new Authorizations());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", METADATA_TABLE), e);
+        }
+        try {
+            scanner.setRange(new Range(new Text(tableId + ";"), true, new Text(tableId + "<"), true));
+            scanner.fetchColumnFamily(FILE_CF);
+            for (Entry<Key, Value> entry : scanner) {
+                byte[] row = entry.getKey().getRowData().toArray();
+                Text end = row[tableId.length()] == '<' ? null : new Text(Arrays.copyOfRange(row, tableId.length() + 1, row.length));
+                Long total = entries.get(end);
+                entries.put(end, (total == null ? 0 : total) + fileEntries(entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            // the scanner reports a missing permission while iterating
+            LOG.log(Level.FINE, String.format("Unable to read the tablets of [%s]; sampling unweighted", tablename), e);
+            entries.clear();
+        } finally {
+            scanner.close();
+        }
+        return entries;
+    }
+
+    /* File entries hold "size,entries". */
+    private static long fileEntries(final Value value) {
+        String encoded = new String(value.get(), Utf8Encoder.UTF8);
+        int comma = encoded.indexOf(',');
+        return comma < 0 ? 0 : Long.parseLong(encoded.substring(comma + 1));
+    }
+
+    /* Cut the rows between the first and last row of a tablet into pieces of equal key space. */
+    private void divide(final Scanner scanner, final Range tablet, final int pieces, final List<Range> ranges) {
+        Text first = firstRow(scanner, tablet);
+        if (first == null) {
+            return;
+        }
+        Text last = tablet.getEndKey() == null ? lastRow(scanner, first) : tablet.getEndKey().getRow();
+        byte[] low = first.copyBytes();
+        byte[] high = last.copyBytes();
+        int prefix = 0;
+        while (prefix < low.length && prefix < high.length && low[prefix] == high[prefix]) {
+            prefix++;
+        }
+        BigInteger lowValue = new BigInteger(1, window(low, prefix));
+        BigInteger span = new BigInteger(1, window(high, prefix)).subtract(lowValue);
+        Text start = first;
+        boolean startInclusive = true;
+        for (int i = 1; i < pieces; i++) {
+            BigInteger point = lowValue.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(pieces)));
+            Text end = row(low, prefix, point);
+            if (end.compareTo(start) > 0 && end.compareTo(last) < 0) {
+                ranges.add(new Range(start, startInclusive, end, false));
+                start = end;
+                startInclusive = true;
+            }
+        }
+        // the last row of the table is only known to KEY_WINDOW bytes
+        ranges.add(new Range(start, startInclusive, tablet.getEndKey() == null ? null : last, true));
+    }
+
+    /* The first row in a range, or null if the range is empty. */
+    private static Text firstRow(final Scanner scanner, final Range range) {
+        scanner.setRange(range);
+        for (Entry<Key, Value> entry : scanner) {
+            return entry.getKey().getRow();
+        }
+        return null;
+    }
+
+    /* The last row of the table, found a byte at a time by seeking, cut KEY_WINDOW bytes past the length of first. */
+    private static Text lastRow(final Scanner scanner, final Text first) {
+        int length = 0;
+        byte[] candidate = new byte[first.getLength() + KEY_WINDOW];
+        while (length < candidate.length) {
+            int low = 0;
+            int high = 255;
+            if (!hasRowFrom(scanner, candidate, length, 0)) {
+                break;
+            }
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (hasRowFrom(scanner, candidate, length, middle)) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            candidate[length++] = (byte) low;
+        }
+        return new Text(Arrays.copyOf(candidate, length));
+    }
+
+    /* Whether some row is at or after prefix followed by next. */
+    private static boolean hasRowFrom(final Scanner scanner, final byte[] prefix, final int length, final int next) {
+        byte[] start = Arrays.copyOf(prefix, length + 1);
+        start[length] = (byte) next;
+        return firstRow(scanner, new Range(new Text(start), null)) != null;
+    }
+
+    /* KEY_WINDOW bytes of a row after the common prefix, padded with zeros. */
+    private static byte[] window(final byte[] row, final int prefix) {
+        byte[] window = new byte[KEY_WINDOW];
+        System.arraycopy(row, prefix, window, 0, Math.max(0, Math.min(KEY_WINDOW, row.length - prefix)));
+        return window;
+    }
+
+    /* The common prefix followed by the KEY_WINDOW bytes of value, trailing zeros dropped. */
+    private static Text row(final byte[] low, final int prefix, final BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] window = new byte[KEY_WINDOW];
+        int length = Math.min(bytes.length, KEY_WINDOW);
+        System.arraycopy(bytes, bytes.length - length, window, KEY_WINDOW - length, length);
+        int end = KEY_WINDOW;
+        while (end > 0 && window[end - 1] == 0) {
+            end--;
+        }
+        byte[] row = Arrays.copyOf(low, prefix + end);
+        System.arraycopy(window, 0, row, prefix, end);
+        return new Text(row);
+    }
+
+    /** Split Tedge and TedgeText on hex prefixes of the given depth.
+     *
+     * @param depth number of hex characters in each split point, 1 to 4.
+     */
+    public void addHexSplits(final int depth) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        SortedSet<Text> splits = hexSplits(depth);
+        tableManager.addSplits(tableManager.getEdgeTable(), splits, batchSize);
+        tableManager.addSplits(tableManager.getTextTable(), splits, batchSize);
+    }
+
+    /** Split Tedge, TedgeTranspose, TedgeDegree and TedgeText from their current contents.
+     *
+     * Tables with too little data to sample get fewer split points.
+     *
+     * @param numSplits number of split points wanted per table.
+     */
+    public void addSampledSplits(final int numSplits) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        String[] tablenames = {
+            tableManager.getEdgeTable(),
+            tableManager.getTransposeTable(),
+            tableManager.getDegreeTable(),
+            tableManager.getTextTable()
+        };
+        for (String tablename : tablenames) {
+            SortedSet<Text> splits = computeSplits(tablename, numSplits);
+            if (!splits.isEmpty()) {
+                tableManager.addSplits(tablename, splits, batchSize);
+            }
+        }
+    }
+
+    /* Uniform reservoir sample (Algorithm R) over a stream of weighted rows. */
+    private static class Reservoir {
+
+        private final List<Sampled> sample;
+        private final int capacity;
+        private final Random random;
+        private long seen = 0;
+
+        Reservoir(final int capacity, final long seed) {
+            Validate.isTrue(capacity > 0, "sampleSize must be positive");
+            this.capacity = capacity;
+            this.sample = new ArrayList<>(Math.min(capacity, 1024));
+            this.random = new Random(seed);
+        }
+
+        void offer(final Text row) {
+            offer(row, 1.0);
+        }
+
+        void offer(final Text row, final double weight) {
+            seen++;
+            if (sample.size() < capacity) {
+                sample.add(new Sampled(new Text(row), weight));
+            } else {
+                long slot = (long) (random.nextDouble() * seen);
+                if (slot < capacity) {
+                    Sampled sampled = sample.get((int) slot);
+                    sampled.row.set(row);
+                    sampled.weight = weight;
+                }
+            }
+        }
+
+        /* Split points at equal steps of the cumulative weight of the sorted sample. */
+        SortedSet<Text> quantiles(final int numSplits) {
+            SortedSet<Text> splits = new TreeSet<>();
+            if (sample.isEmpty()) {
+                return splits;
+            }
+            Collections.sort(sample);
+            double total = 0;
+            for (Sampled sampled : sample) {
+                total += sampled.weight;
+            }
+            int tablets = numSplits + 1;
+            int split = 1;
+            double cumulative = 0;
+            for (int index = 0; index < sample.size() && split < tablets; index++) {
+                // a row is a split point once the rows before it hold the next share of the weight
+                while (split < tablets && cumulative >= total * split / tablets) {
+                    if (index > 0) {
+                        splits.add(sample.get(index).row);
+                    }
+                    split++;
+                }
+                cumulative += sample.get(index).weight;
+            }
+            return splits;
+        }
+
+    }
+
+    private static class Sampled implements Comparable<Sampled> {
+
+        private final Text row;
+        private double weight;
+
+        Sampled(final Text row, final double weight) {
+            this.row = row;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(final Sampled other) {
+            return row.compareTo(other.row);
+        }
+
+    }
+
+}
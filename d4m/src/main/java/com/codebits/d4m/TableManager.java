@@ -0,0 +1,653 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.Validate;
+import org.apache.hadoop.io.Text;
+
+/** Methods to create Accumulo tables for D4M schema.
+ *
+ * @author david medinets
+ */
+public class TableManager {
+
+    @Getter
+    private String rootName = "edge";
+    
+    @Getter
+    @Setter
+    private Connector connector = null;
+
+    @Setter
+    @Getter
+    private TableOperations tableOperations = null;
+
+    @Setter
+    @Getter
+    private TableProfile tableProfile = new TableProfile();
+
+    @Getter
+    private D4MMetrics metrics = D4MMetrics.DISABLED;
+
+    private final static Text EMPTY_CQ = new Text("");
+    private final static Text FIELD_DELIMITER_PROPERTY_NAME = new Text("field.delimiter");
+    private final static Text FACT_DELIMITER_PROPERTY_NAME = new Text("fact.delimiter");
+    private final static Text DEGREE_ENCODING_PROPERTY_NAME = new Text("degree.encoding");
+    private final static Text PROPERTY = new Text("property");
+    private final Charset charset = Utf8Encoder.UTF8;
+    private DegreeEncoding degreeEncoding = null;
+
+    @Getter
+    private LookupCache<String, Long> degreeCache = null;
+
+    @Getter
+    private LookupCache<String, Optional<String>> propertyCache = null;
+
+    /** Constructor
+     *
+     */
+    public TableManager() {
+    }
+
+    /** Constructor with client-override of defaults.
+     * 
+     * @param connector Connector to Accumulo.
+     */
+    public TableManager(final Connector connector) {
+        this.connector = connector;
+        this.tableOperations = connector.tableOperations();
+    }
+
+    /** Constructor with client-override of defaults.
+     * 
+     * TableOperations can be passed in to allow mocks during testing.
+     *
+     * @param connector Connector to Accumulo.
+     * @param tableOperations TableOperations object.
+     */
+    public TableManager(final Connector connector, final TableOperations tableOperations) {
+        this.connector = connector;
+        this.tableOperations = tableOperations;
+    }
+
+    /** Change the root of the D4M table names.
+     *
+     * The degree encoding and the cached degrees and properties read
+     * for the previous root are forgotten so they are read again from
+     * the tables of the new root.
+     *
+     * @param rootName string used to build D4M table names.
+     */
+    public void setRootName(final String rootName) {
+        this.rootName = rootName;
+        degreeEncoding = null;
+        invalidateLookupCache();
+    }
+
+    /** Create D4M tables with a different root table name.
+     * 
+     * Five Accumulo tables support D4M. This method lets
+     * you change the root of the table names.
+     * 
+     * T[root], T[root]Transpose, T[root]Degree, T[root]Metadata, T[root]Text
+     * 
+     * @param rootName string used to build D4M table names.
+     */
+    public void createTables(final String rootName) {
+        setRootName(rootName);
+        createTables();
+    }
+
+    /** Create D4M tables with a different root table name and table profile.
+     * 
+     * @param rootName string used to build D4M table names.
+     * @param tableProfile table properties applied when the tables are created.
+     */
+    public void createTables(final String rootName, final TableProfile tableProfile) {
+        setTableProfile(tableProfile);
+        createTables(rootName);
+    }
+
+    /** Create D4M tables.
+     *
+     * Five Accumulo tables support D4M. This method creates them
+     * using the default root (unless the caller changes that default).
+     * Each table is created with the properties from the table profile.
+     * 
+     * Tedge, TedgeTranspose, TedgeDegree, TedgeMetadata, TedgeText
+     */
+    public void createTables() {
+        Validate.notNull(connector, "connector must not be null");
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        Validate.notNull(tableProfile, "tableProfile must not be null");
+        long start = metrics.startTimer();
+
+        int isEdgePresent = tableOperations.exists(getEdgeTable()) ? 1 : 0;
+        int isTransposePresent = tableOperations.exists(getTransposeTable()) ? 1 : 0;
+        int isDegreePresent = tableOperations.exists(getDegreeTable()) ? 1 : 0;
+        int isMetatablePresent = tableOperations.exists(getMetadataTable()) ? 1 : 0;
+        int isTextPresent = tableOperations.exists(getTextTable()) ? 1 : 0;
+
+        int tableCount = isEdgePresent + isTransposePresent + isDegreePresent + isMetatablePresent + isTextPresent;
+
+        if (tableCount > 0 && tableCount < 5) {
+            throw inconsistentState();
+        }
+
+        if (tableCount == 5) {
+            // assume the tables are correct.
+            metrics.recordAdmin("createTables", start);
+            return;
+        }
+
+        try {
+            tableOperations.create(getEdgeTable(), newTableConfiguration(tableProfile.getEdgeProperties()));
+            tableOperations.create(getTransposeTable(), newTableConfiguration(tableProfile.getTransposeProperties()));
+            tableOperations.create(getDegreeTable(), newTableConfiguration(tableProfile.getDegreeProperties()));
+            tableOperations.create(getMetadataTable(), newTableConfiguration(tableProfile.getMetadataProperties()));
+            tableOperations.create(getTextTable(), newTableConfiguration(tableProfile.getTextProperties()));
+
+            tableOperations.attachIterator(getDegreeTable(), getDegreeIteratorSetting());
+            tableOperations.attachIterator(getMetadataTable(), getFieldIteratorSetting());
+            tableOperations.attachIterator(getMetadataTable(), getSketchIteratorSetting());
+
+            BatchWriter writer = metrics.meter(getMetadataTable(), connector.createBatchWriter(getMetadataTable(), getMetadataBatchWriterConfig()), null);
+            writer.addMutation(getDelimiterMutation());
+            writer.close();
+            degreeEncoding = tableProfile.getDegreeEncoding();
+            invalidateLookupCache();
+            metrics.recordAdmin("createTables", start);
+        } catch (AccumuloException | AccumuloSecurityException | TableExistsException | TableNotFoundException e) {
+            throw new D4MException("Error creating tables.", e);
+        }
+
+    }
+
+    /** Build a TableManager for another root name.
+     *
+     * The copy shares the connector, table operations, table profile
+     * and metrics of this TableManager.
+     *
+     * @param rootName string used to build D4M table names.
+     * @return the new TableManager.
+     */
+    public TableManager forRootName(final String rootName) {
+        TableManager copy = new TableManager(connector, tableOperations);
+        copy.setRootName(rootName);
+        copy.setTableProfile(tableProfile);
+        copy.setMetrics(metrics);
+        return copy;
+    }
+
+    /** Get the names of the five D4M tables.
+     *
+     * @return edge, transpose, degree, metadata and text table names, in that order.
+     */
+    public List<String> getTableNames() {
+        return Arrays.asList(getEdgeTable(), getTransposeTable(), getDegreeTable(), getMetadataTable(), getTextTable());
+    }
+
+    /** Read the field delimiter from the metadata table.
+     *
+     * @return the field delimiter, or null if it is not set.
+     */
+    public String getFieldDelimiter() {
+        return getMetadataProperty(FIELD_DELIMITER_PROPERTY_NAME);
+    }
+
+    /** Read the fact delimiter from the metadata table.
+     *
+     * @return the fact delimiter, or null if it is not set.
+     */
+    public String getFactDelimiter() {
+        return getMetadataProperty(FACT_DELIMITER_PROPERTY_NAME);
+    }
+
+    /** Read the encoding of the degree and field counts from the metadata table.
+     *
+     * The value is read once and cached. Tables created before the
+     * encoding was stored use STRING.
+     *
+     * @return the degree encoding.
+     */
+    public DegreeEncoding getDegreeEncoding() {
+        if (degreeEncoding == null) {
+            String name = getMetadataProperty(DEGREE_ENCODING_PROPERTY_NAME);
+            degreeEncoding = name == null ? DegreeEncoding.STRING : DegreeEncoding.valueOf(name);
+        }
+        return degreeEncoding;
+    }
+
+    /** Read the sketches of a field from the metadata table.
+     *
+     * One point lookup returns the row and column cardinalities and
+     * the column frequencies that D4MWriter maintains.
+     *
+     * @param field name of the field, the part of a column before the fact delimiter.
+     * @return the statistics, or null if no sketches are stored for the field.
+     */
+    public FieldStatistics getFieldStatistics(final String field) {
+        Validate.notNull(field, "field must not be null");
+        Validate.notNull(connector, "connector must not be null");
+        Scanner scanner;
+        try {
+            scanner = connector.createScanner(getMetadataTable(), new Authorizations());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", getMetadataTable()), e);
+        }
+        try {
+            scanner.setRange(Range.exact(new Text(field), FieldStatistics.SKETCH_CF));
+            FieldStatistics statistics = null;
+            for (Map.Entry<Key, Value> entry : scanner) {
+                if (statistics == null) {
+                    statistics = new FieldStatistics(field);
+                }
+                statistics.read(entry);
+            }
+            return statistics;
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /** Attach the sketch combiner to a metadata table created by an earlier release.
+     *
+     * Tables created by this release already have it. Without it only
+     * the latest sketch written for a field would be kept.
+     */
+    public void attachSketchCombiner() {
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        IteratorSetting setting = getSketchIteratorSetting();
+        try {
+            if (not(tableOperations.listIterators(getMetadataTable()).containsKey(setting.getName()))) {
+                tableOperations.attachIterator(getMetadataTable(), setting);
+            }
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", getMetadataTable()), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to attach the sketch combiner to table [%s]", getMetadataTable()), e);
+        }
+    }
+
+    /* Forget the cached encoding after DegreeEncodingMigrator changes it. */
+    void clearDegreeEncoding() {
+        degreeEncoding = null;
+        if (propertyCache != null) {
+            propertyCache.invalidateAll();
+        }
+    }
+
+    /** Cache TedgeDegree counts and TedgeMetadata properties on the client.
+     *
+     * QueryPlanner.getDegrees, and everything built on it, answers
+     * cached columns without a scan. D4MWriters opened afterwards add
+     * their degree increments to cached counts; D4MBulkWriter drops the
+     * cached counts when it imports. Writes by other clients are seen
+     * once an entry outlives the time to live.
+     *
+     * @param maxDegrees maximum number of degree counts held.
+     * @param ttl time a cached entry stays valid.
+     * @param unit unit of ttl.
+     */
+    public void enableLookupCache(final int maxDegrees, final long ttl, final TimeUnit unit) {
+        degreeCache = new LookupCache<>("degree", maxDegrees, ttl, unit);
+        degreeCache.setMetrics(metrics);
+        propertyCache = new LookupCache<>("property", 64, ttl, unit);
+        propertyCache.setMetrics(metrics);
+    }
+
+    /** Stop caching lookups.
+     */
+    public void disableLookupCache() {
+        degreeCache = null;
+        propertyCache = null;
+    }
+
+    /** Drop every cached degree count and property.
+     *
+     * Call this after the tables were changed by other means than this
+     * library's writers.
+     */
+    public void invalidateLookupCache() {
+        if (degreeCache != null) {
+            degreeCache.invalidateAll();
+        }
+        if (propertyCache != null) {
+            propertyCache.invalidateAll();
+        }
+    }
+
+    /** Apply the table profile to existing D4M tables.
+     *
+     * Use this to bring tables created before a profile change, or
+     * with an older version of this library, up to date. Properties
+     * take effect for files written after the change; compact the
+     * tables to rewrite existing files.
+     */
+    public void applyTableProfile() {
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        Validate.notNull(tableProfile, "tableProfile must not be null");
+        long start = metrics.startTimer();
+        setProperties(getEdgeTable(), tableProfile.getEdgeProperties());
+        setProperties(getTransposeTable(), tableProfile.getTransposeProperties());
+        setProperties(getDegreeTable(), tableProfile.getDegreeProperties());
+        setProperties(getMetadataTable(), tableProfile.getMetadataProperties());
+        setProperties(getTextTable(), tableProfile.getTextProperties());
+        metrics.recordAdmin("applyTableProfile", start);
+    }
+
+    /** Pre-split the Tedge and TedgeText tables. 
+     * 
+     * Helpful when sha1 is used as row value.
+     */
+    
+    public void addSplitsForSha1() {
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        String hexadecimal = "123456789abcde";
+        SortedSet<Text> edgeSplits = new TreeSet<>();
+        SortedSet<Text> textSplits = new TreeSet<>();
+        Collection<Text> existingEdgeSplits = getSplits(getEdgeTable());
+        Collection<Text> existingTextSplits = getSplits(getTextTable());
+        
+        for (byte b : hexadecimal.getBytes(charset)) {
+            Text splitPoint = new Text(new byte[]{b});
+            if (not(existingEdgeSplits.contains(splitPoint))) {
+                edgeSplits.add(splitPoint);
+            }
+            if (not(existingTextSplits.contains(splitPoint))) {
+                textSplits.add(splitPoint);
+            }
+        }
+
+        addSplits(getEdgeTable(), edgeSplits);
+        addSplits(getTextTable(), textSplits);
+    }
+    
+    /** Pre-split the Tedge and TedgeText tables. 
+     *
+     * @param tablename name of the accumulo table
+     * @param splits set of splits to add
+     */
+    public void addSplits(final String tablename, final SortedSet<Text> splits) {
+        long start = metrics.startTimer();
+        try {
+            tableOperations.addSplits(tablename, splits);
+            metrics.recordAdmin("addSplits", start);
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to add splits to table [%s]", tablename), e);
+        }
+    }
+
+    /** Add splits to a table in bounded batches.
+     *
+     * Split points which already exist are skipped. Each batch is
+     * passed to addSplits so a large split set does not tie up the
+     * master in one request.
+     *
+     * @param tablename name of the accumulo table
+     * @param splits set of splits to add
+     * @param batchSize maximum number of splits per addSplits call
+     * @return the number of splits added
+     */
+    public int addSplits(final String tablename, final SortedSet<Text> splits, final int batchSize) {
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        Validate.isTrue(batchSize > 0, "batchSize must be positive");
+        Set<Text> existingSplits = new HashSet<>(getSplits(tablename));
+        SortedSet<Text> batch = new TreeSet<>();
+        int added = 0;
+        for (Text splitPoint : splits) {
+            if (existingSplits.contains(splitPoint)) {
+                continue;
+            }
+            batch.add(splitPoint);
+            if (batch.size() == batchSize) {
+                addSplits(tablename, batch);
+                added += batch.size();
+                batch = new TreeSet<>();
+            }
+        }
+        if (not(batch.isEmpty())) {
+            addSplits(tablename, batch);
+            added += batch.size();
+        }
+        return added;
+    }
+
+    /** Merge the tablets of a table which overlap a row range.
+     *
+     * @param tablename name of the accumulo table
+     * @param start exclusive start row, or null for the beginning of the table
+     * @param end inclusive end row, or null for the end of the table
+     */
+    public void merge(final String tablename, final Text start, final Text end) {
+        Validate.notNull(tableOperations, "tableOperations must not be null");
+        long begin = metrics.startTimer();
+        try {
+            tableOperations.merge(tablename, start, end);
+            metrics.recordAdmin("merge", begin);
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to merge tablets of table [%s]", tablename), e);
+        }
+    }
+
+    /** Set the metrics registry used by this TableManager and the writers and queries built on it.
+     *
+     * @param metrics registry, or D4MMetrics.DISABLED to record nothing.
+     */
+    public void setMetrics(final D4MMetrics metrics) {
+        Validate.notNull(metrics, "metrics must not be null; use D4MMetrics.DISABLED");
+        this.metrics = metrics;
+        if (degreeCache != null) {
+            degreeCache.setMetrics(metrics);
+            propertyCache.setMetrics(metrics);
+        }
+    }
+
+    /** Get the current split points of a table.
+     *
+     * @param tablename name of the accumulo table
+     * @return the split points
+     */
+    public Collection<Text> getSplits(final String tablename) {
+        try {
+            return tableOperations.listSplits(tablename);
+        } catch (TableNotFoundException | AccumuloSecurityException | AccumuloException e) {
+            throw new D4MException("Error reading splits.", e);
+        }
+    }
+
+    /** Get the edge table name.
+     *
+     * @return the edge table name
+     */
+    public String getEdgeTable() {
+        return "T" + getRootName();
+    }
+
+    /** Get the transpose table name.
+     *
+     * @return the transpose table name
+     */
+    public String getTransposeTable() {
+        return "T" + getRootName() + "Transpose";
+    }
+
+    /** Get the degree table name.
+     *
+     * @return the degree table name
+     */
+    public String getDegreeTable() {
+        return "T" + getRootName() + "Degree";
+    }
+
+    /** Get the text table name.
+     *
+     * @return the text table name
+     */
+    public String getTextTable() {
+        return "T" + getRootName() + "Text";
+    }
+
+    /** Get the metadata table name.
+     *
+     * @return the metadata table name
+     */
+    public String getMetadataTable() {
+        return "T" + getRootName() + "Metadata";
+    }
+
+    private String getMetadataProperty(final Text propertyName) {
+        LookupCache<String, Optional<String>> cache = propertyCache;
+        if (cache == null) {
+            return readMetadataProperty(propertyName);
+        }
+        Optional<String> value = cache.get(propertyName.toString());
+        if (value == null) {
+            value = Optional.ofNullable(readMetadataProperty(propertyName));
+            cache.put(propertyName.toString(), value);
+        }
+        return value.orElse(null);
+    }
+
+    private String readMetadataProperty(final Text propertyName) {
+        Validate.notNull(connector, "connector must not be null");
+        Scanner scanner;
+        try {
+            scanner = connector.createScanner(getMetadataTable(), new Authorizations());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", getMetadataTable()), e);
+        }
+        try {
+            scanner.setRange(Range.exact(PROPERTY, propertyName, EMPTY_CQ));
+            for (Map.Entry<Key, Value> entry : scanner) {
+                return new String(entry.getValue().get(), charset);
+            }
+            return null;
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /* Sums the degree column of TedgeDegree. */
+    IteratorSetting getDegreeIteratorSetting() {
+        return getDegreeIteratorSetting(tableProfile.getDegreeEncoding());
+    }
+
+    IteratorSetting getDegreeIteratorSetting(final DegreeEncoding encoding) {
+        IteratorSetting degreeIteratorSetting = new IteratorSetting(7, SummingCombiner.class);
+        SummingCombiner.setEncodingType(degreeIteratorSetting, encoding.getType());
+        SummingCombiner.setColumns(degreeIteratorSetting, Collections.singletonList(new IteratorSetting.Column("", "degree")));
+        return degreeIteratorSetting;
+    }
+
+    /* Sums the partial results in the result tables of MatrixOperations. */
+    IteratorSetting getSumIteratorSetting() {
+        return new IteratorSetting(7, "d4mSum", PartialSumIterator.class);
+    }
+
+    /* Sums the field counts of TedgeMetadata. */
+    IteratorSetting getFieldIteratorSetting() {
+        return getFieldIteratorSetting(tableProfile.getDegreeEncoding());
+    }
+
+    IteratorSetting getFieldIteratorSetting(final DegreeEncoding encoding) {
+        IteratorSetting fieldIteratorSetting = new IteratorSetting(7, SummingCombiner.class);
+        SummingCombiner.setEncodingType(fieldIteratorSetting, encoding.getType());
+        SummingCombiner.setColumns(fieldIteratorSetting, Collections.singletonList(new IteratorSetting.Column("field", "")));
+        return fieldIteratorSetting;
+    }
+
+    /* Merges the field sketches of TedgeMetadata. */
+    IteratorSetting getSketchIteratorSetting() {
+        IteratorSetting sketchIteratorSetting = new IteratorSetting(8, "d4mSketch", SketchCombiner.class);
+        Combiner.setColumns(sketchIteratorSetting, Collections.singletonList(new IteratorSetting.Column(FieldStatistics.SKETCH_CF)));
+        return sketchIteratorSetting;
+    }
+
+    /* The field and fact delimiters and the degree encoding stored in TedgeMetadata. */
+    Mutation getDelimiterMutation() {
+        /*
+         * This code sets the default values. If you want to change them,
+         * you can over-write the metadata entries instead of changing
+         * the values here.
+         */
+        Value defaultFieldDelimiter = new Value("\t".getBytes(charset));
+        Value defaultFactDelimiter = new Value("|".getBytes(charset));
+
+        Mutation mutation = new Mutation(PROPERTY);
+        mutation.put(FIELD_DELIMITER_PROPERTY_NAME, EMPTY_CQ, defaultFieldDelimiter);
+        mutation.put(FACT_DELIMITER_PROPERTY_NAME, EMPTY_CQ, defaultFactDelimiter);
+        mutation.put(DEGREE_ENCODING_PROPERTY_NAME, EMPTY_CQ, new Value(tableProfile.getDegreeEncoding().name().getBytes(charset)));
+        return mutation;
+    }
+
+    /* Settings for the single metadata write made when tables are created. */
+    BatchWriterConfig getMetadataBatchWriterConfig() {
+        BatchWriterConfig bwConfig = new BatchWriterConfig();
+        bwConfig.setMaxLatency(10000, TimeUnit.MINUTES);
+        bwConfig.setMaxMemory(10000000);
+        bwConfig.setMaxWriteThreads(5);
+        bwConfig.setTimeout(5, TimeUnit.MINUTES);
+        return bwConfig;
+    }
+
+    /* Raised when some, but not all, of the five tables exist. */
+    D4MException inconsistentState() {
+        return new D4MException("D4M: RootName[" + getRootName() + "] Inconsistent state - one or more D4M tables is missing.");
+    }
+
+    private NewTableConfiguration newTableConfiguration(final Map<String, String> properties) {
+        return new NewTableConfiguration().setProperties(properties);
+    }
+
+    private void setProperties(final String tablename, final Map<String, String> properties) {
+        try {
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                tableOperations.setProperty(tablename, property.getKey(), property.getValue());
+            }
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to set properties on table [%s]", tablename), e);
+        }
+    }
+
+    private boolean not(final boolean b) {
+        return !b;
+    }
+    
+}
@@ -0,0 +1,102 @@
+package com.codebits.d4m;
+
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.hadoop.io.compress.SnappyCodec;
+
+/** Accumulo table properties applied to each D4M table.
+ *
+ * The default profile enables bloom filters on the tables read by
+ * exact row (Tedge, TedgeTranspose and TedgeDegree), uses smaller data
+ * blocks where point lookups dominate, keeps TedgeDegree blocks in the
+ * block cache, uses large blocks for TedgeText and puts the "field"
+ * family of TedgeMetadata in its own locality group.
+ *
+ * Accumulo 1.10 offers the gz, snappy, lzo and none codecs, and gz is
+ * already its default, so no stronger codec than gz exists for
+ * TedgeText. Instead, when the Hadoop native snappy codec is loaded,
+ * Tedge, TedgeTranspose and TedgeDegree use snappy, which is cheaper to
+ * decompress on point lookups, and TedgeText keeps gz. The tablet
+ * servers need the same native libraries as the client; remove the
+ * table.file.compress.type entries if they lack them.
+ *
+ * Every map is mutable; put or remove entries to override a default.
+ *
+ * degreeEncoding selects how the TedgeDegree and TedgeMetadata
+ * combiners store their counts. It defaults to STRING, as in earlier
+ * releases; VARLEN or FIXEDLEN save the combiners from parsing text.
+ *
+ * @author david medinets
+ */
+public class TableProfile {
+
+    @Getter
+    private final Map<String, String> edgeProperties = new TreeMap<>();
+
+    @Getter
+    private final Map<String, String> transposeProperties = new TreeMap<>();
+
+    @Getter
+    private final Map<String, String> degreeProperties = new TreeMap<>();
+
+    @Getter
+    private final Map<String, String> metadataProperties = new TreeMap<>();
+
+    @Getter
+    private final Map<String, String> textProperties = new TreeMap<>();
+
+    @Getter
+    @Setter
+    private DegreeEncoding degreeEncoding = DegreeEncoding.STRING;
+
+    /** Constructor with the default performance settings.
+     *
+     */
+    public TableProfile() {
+        this(SnappyCodec.isNativeCodeLoaded());
+    }
+
+    /* Package-private so tests can choose the codec of the lookup tables. */
+    TableProfile(final boolean snappy) {
+        edgeProperties.put(Property.TABLE_BLOOM_ENABLED.getKey(), "true");
+        edgeProperties.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE.getKey(), "64K");
+
+        transposeProperties.put(Property.TABLE_BLOOM_ENABLED.getKey(), "true");
+        transposeProperties.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE.getKey(), "64K");
+
+        degreeProperties.put(Property.TABLE_BLOOM_ENABLED.getKey(), "true");
+        degreeProperties.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE.getKey(), "32K");
+        degreeProperties.put(Property.TABLE_BLOCKCACHE_ENABLED.getKey(), "true");
+
+        if (snappy) {
+            edgeProperties.put(Property.TABLE_FILE_COMPRESSION_TYPE.getKey(), "snappy");
+            transposeProperties.put(Property.TABLE_FILE_COMPRESSION_TYPE.getKey(), "snappy");
+            degreeProperties.put(Property.TABLE_FILE_COMPRESSION_TYPE.getKey(), "snappy");
+        }
+
+        metadataProperties.put(Property.TABLE_LOCALITY_GROUP_PREFIX.getKey() + "field", "field");
+        metadataProperties.put(Property.TABLE_LOCALITY_GROUPS.getKey(), "field");
+
+        textProperties.put(Property.TABLE_FILE_COMPRESSION_TYPE.getKey(), "gz");
+        textProperties.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE.getKey(), "256K");
+        textProperties.put(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE_INDEX.getKey(), "256K");
+    }
+
+    /** Build a profile which leaves every table at the Accumulo defaults.
+     *
+     * @return a profile with no properties.
+     */
+    public static TableProfile accumuloDefaults() {
+        TableProfile profile = new TableProfile();
+        profile.edgeProperties.clear();
+        profile.transposeProperties.clear();
+        profile.degreeProperties.clear();
+        profile.metadataProperties.clear();
+        profile.textProperties.clear();
+        return profile;
+    }
+
+}
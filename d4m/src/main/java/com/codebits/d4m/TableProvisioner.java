@@ -0,0 +1,297 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.commons.lang.Validate;
+
+/** Create the D4M tables of many root names concurrently.
+ *
+ * TableManager.createTables provisions one root name with sequential
+ * calls. This class provisions many root names at once:
+ *
+ * - the existing tables of every root name come from one
+ *   TableOperations.list() call instead of five exists calls per root;
+ * - the five tables of each root are created concurrently, and the
+ *   summing combiners are passed as table properties of the create
+ *   call rather than attached afterwards;
+ * - the delimiters of every new metadata table go through one shared
+ *   MultiTableBatchWriter, flushed once at the end. If that flush is
+ *   rejected, the delimiters of each new root name are written again
+ *   with a BatchWriter of its own, so only the root names whose
+ *   metadata cannot be written are reported as FAILED.
+ *
+ * Root names with all five tables are left alone. Root names with some
+ * but not all tables are reported as INCONSISTENT, as createTables
+ * would. A failure in one root name does not stop the others.
+ *
+ * @author david medinets
+ */
+public class TableProvisioner {
+
+    /** Outcome of provisioning one root name. */
+    public enum Status {
+        /** The five tables were created. */
+        CREATED,
+        /** The five tables already existed. */
+        EXISTS,
+        /** Some, but not all, of the five tables existed. */
+        INCONSISTENT,
+        /** A create or metadata write failed. */
+        FAILED
+    }
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private int numThreads = 16;
+
+    @Getter
+    @Setter
+    private ExecutorService executor = null;
+
+    /** Constructor
+     *
+     */
+    public TableProvisioner() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager whose connector, table profile and metrics are used for every root name.
+     */
+    public TableProvisioner(final TableManager tableManager) {
+        this.tableManager = tableManager;
+    }
+
+    /** Provision root names and wait for all of them.
+     *
+     * @param rootNames root names to provision.
+     * @return result per root name, in the order given.
+     */
+    public Map<String, Result> provision(final Collection<String> rootNames) {
+        Map<String, CompletableFuture<Result>> futures = provisionAsync(rootNames);
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Result>> entry : futures.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().join());
+        }
+        return results;
+    }
+
+    /** Start provisioning root names.
+     *
+     * The futures never complete exceptionally; failures are reported
+     * in the Result.
+     *
+     * @param rootNames root names to provision.
+     * @return future result per root name, in the order given.
+     */
+    public Map<String, CompletableFuture<Result>> provisionAsync(final Collection<String> rootNames) {
+        Validate.notNull(rootNames, "rootNames must not be null");
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getConnector(), "connector must not be null");
+        Validate.notNull(tableManager.getTableOperations(), "tableOperations must not be null");
+        Validate.notNull(tableManager.getTableProfile(), "tableProfile must not be null");
+
+        final D4MMetrics metrics = tableManager.getMetrics();
+        final long start = metrics.startTimer();
+        final ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(numThreads);
+        final TableOperations tableOperations = tableManager.getTableOperations();
+        final MultiTableBatchWriter metadataWriter = tableManager.getConnector().createMultiTableBatchWriter(tableManager.getMetadataBatchWriterConfig());
+
+        CompletableFuture<Set<String>> existing = CompletableFuture.supplyAsync(() -> tableOperations.list(), pool);
+
+        Map<String, TableManager> roots = new HashMap<>();
+        Map<String, CompletableFuture<Result>> prepared = new LinkedHashMap<>();
+        for (String rootName : new LinkedHashSet<>(rootNames)) {
+            TableManager root = tableManager.forRootName(rootName);
+            roots.put(rootName, root);
+            prepared.put(rootName, existing
+                    .thenCompose(tables -> provisionRoot(root, tables, metadataWriter, pool))
+                    .exceptionally(e -> new Result(rootName, Status.FAILED, cause(e))));
+        }
+
+        CompletableFuture<Throwable> flushed = CompletableFuture
+                .allOf(prepared.values().toArray(new CompletableFuture<?>[prepared.size()]))
+                .thenRunAsync(() -> closeMetadataWriter(metadataWriter), pool)
+                .handle((v, e) -> e == null ? null : cause(e));
+
+        Map<String, CompletableFuture<Result>> results = new LinkedHashMap<>();
+        List<CompletableFuture<Result>> all = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Result>> entry : prepared.entrySet()) {
+            TableManager root = roots.get(entry.getKey());
+            CompletableFuture<Result> result = entry.getValue().thenCombineAsync(flushed, (r, flushError) -> {
+                if (r.getStatus() == Status.CREATED && flushError != null) {
+                    // the shared flush does not say which root names it failed for
+                    return rewriteDelimiters(root, r);
+                }
+                return r;
+            }, pool);
+            results.put(entry.getKey(), result);
+            all.add(result);
+        }
+
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[all.size()])).whenComplete((v, e) -> {
+            metrics.recordAdmin("provision", start);
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        });
+        return results;
+    }
+
+    private CompletableFuture<Result> provisionRoot(final TableManager root, final Set<String> existing, final MultiTableBatchWriter metadataWriter, final ExecutorService pool) {
+        String rootName = root.getRootName();
+        int present = 0;
+        for (String tablename : root.getTableNames()) {
+            if (existing.contains(tablename)) {
+                present++;
+            }
+        }
+        if (present == 5) {
+            return CompletableFuture.completedFuture(new Result(rootName, Status.EXISTS, null));
+        }
+        if (present > 0) {
+            return CompletableFuture.completedFuture(new Result(rootName, Status.INCONSISTENT, root.inconsistentState()));
+        }
+
+        TableProfile profile = root.getTableProfile();
+        Map<String, String> degreeProperties = new HashMap<>(profile.getDegreeProperties());
+        degreeProperties.putAll(iteratorProperties(root.getDegreeIteratorSetting()));
+        Map<String, String> metadataProperties = new HashMap<>(profile.getMetadataProperties());
+        metadataProperties.putAll(iteratorProperties(root.getFieldIteratorSetting()));
+        metadataProperties.putAll(iteratorProperties(root.getSketchIteratorSetting()));
+
+        CompletableFuture<?>[] creates = {
+            create(root, root.getEdgeTable(), profile.getEdgeProperties(), pool),
+            create(root, root.getTransposeTable(), profile.getTransposeProperties(), pool),
+            create(root, root.getDegreeTable(), degreeProperties, pool),
+            create(root, root.getMetadataTable(), metadataProperties, pool)
+                .thenRun(() -> writeDelimiters(root, metadataWriter)),
+            create(root, root.getTextTable(), profile.getTextProperties(), pool)
+        };
+        return CompletableFuture.allOf(creates).thenApply(v -> new Result(rootName, Status.CREATED, null));
+    }
+
+    private CompletableFuture<Void> create(final TableManager root, final String tablename, final Map<String, String> properties, final ExecutorService pool) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                root.getTableOperations().create(tablename, new NewTableConfiguration().setProperties(properties));
+            } catch (AccumuloException | AccumuloSecurityException | TableExistsException e) {
+                throw new D4MException(String.format("Unable to create table [%s]", tablename), e);
+            }
+        }, pool);
+    }
+
+    private void writeDelimiters(final TableManager root, final MultiTableBatchWriter metadataWriter) {
+        String tablename = root.getMetadataTable();
+        try {
+            root.getMetrics().meter(tablename, metadataWriter.getBatchWriter(tablename), null).addMutation(root.getDelimiterMutation());
+        } catch (TableNotFoundException e) {
+            throw new D4MException(String.format("Unable to find table [%s]", tablename), e);
+        } catch (AccumuloException | AccumuloSecurityException e) {
+            throw new D4MException(String.format("Unable to write metadata to table [%s]", tablename), e);
+        }
+    }
+
+    /* Write the delimiters of one root name alone, after the shared flush failed. */
+    private Result rewriteDelimiters(final TableManager root, final Result result) {
+        String tablename = root.getMetadataTable();
+        try {
+            BatchWriter writer = root.getMetrics().meter(tablename, root.getConnector().createBatchWriter(tablename, root.getMetadataBatchWriterConfig()), null);
+            writer.addMutation(root.getDelimiterMutation());
+            writer.close();
+            return result;
+        } catch (TableNotFoundException e) {
+            return new Result(result.getRootName(), Status.FAILED, new D4MException(String.format("Unable to find table [%s]", tablename), e));
+        } catch (MutationsRejectedException e) {
+            return new Result(result.getRootName(), Status.FAILED, new D4MException(String.format("Unable to write metadata to table [%s]", tablename), e));
+        }
+    }
+
+    private void closeMetadataWriter(final MultiTableBatchWriter metadataWriter) {
+        try {
+            metadataWriter.close();
+        } catch (MutationsRejectedException e) {
+            throw new D4MException("Unable to write metadata.", e);
+        }
+    }
+
+    /* The table properties TableOperations.attachIterator would set, for every scope. */
+    static Map<String, String> iteratorProperties(final IteratorSetting setting) {
+        Map<String, String> properties = new HashMap<>();
+        for (IteratorScope scope : IteratorScope.values()) {
+            String prefix = String.format("%s%s.%s", Property.TABLE_ITERATOR_PREFIX.getKey(), scope.name().toLowerCase(), setting.getName());
+            properties.put(prefix, setting.getPriority() + "," + setting.getIteratorClass());
+            for (Map.Entry<String, String> option : setting.getOptions().entrySet()) {
+                properties.put(prefix + ".opt." + option.getKey(), option.getValue());
+            }
+        }
+        return properties;
+    }
+
+    private static Throwable cause(final Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /** Result of provisioning one root name.
+     */
+    public static class Result {
+
+        @Getter
+        private final String rootName;
+
+        @Getter
+        private final Status status;
+
+        @Getter
+        private final Throwable cause;
+
+        Result(final String rootName, final Status status, final Throwable cause) {
+            this.rootName = rootName;
+            this.status = status;
+            this.cause = cause;
+        }
+
+        /** Check whether the root name has all five tables.
+         *
+         * @return true for CREATED and EXISTS.
+         */
+        public boolean isSuccess() {
+            return status == Status.CREATED || status == Status.EXISTS;
+        }
+
+        @Override
+        public String toString() {
+            return rootName + ": " + status + (cause == null ? "" : " (" + cause.getMessage() + ")");
+        }
+
+    }
+
+}
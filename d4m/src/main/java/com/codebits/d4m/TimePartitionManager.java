@@ -0,0 +1,372 @@
+package com.codebits.d4m;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.commons.lang.Validate;
+
+/** Keep one D4M table set per time bucket.
+ *
+ * Edges are routed by timestamp to the table set of their bucket, whose
+ * root name is the prefix, an underscore and the bucket's UTC start:
+ * edge_20261016 for daily buckets, so Tedge_20261016,
+ * Tedge_20261016Transpose and so on. Queries over a time range fan out
+ * to the buckets which overlap it in parallel and merge their results.
+ *
+ * Aged data is removed by enforceRetention, which deletes the whole
+ * table sets of buckets older than the retention instead of deleting
+ * entries from one large table set.
+ *
+ * TimePartitionedWriter writes through this class.
+ *
+ * @author david medinets
+ */
+public class TimePartitionManager {
+
+    /** Length of one time bucket. */
+    public enum Granularity {
+        /** One table set per UTC hour, edge_2026101613. */
+        HOUR("uuuuMMddHH", ChronoUnit.HOURS),
+        /** One table set per UTC day, edge_20261016. */
+        DAY("uuuuMMdd", ChronoUnit.DAYS);
+
+        private final DateTimeFormatter formatter;
+        private final ChronoUnit unit;
+
+        Granularity(final String pattern, final ChronoUnit unit) {
+            this.formatter = new DateTimeFormatterBuilder()
+                    .appendPattern(pattern)
+                    .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+                    .toFormatter()
+                    .withZone(ZoneOffset.UTC);
+            this.unit = unit;
+        }
+
+        /** Get the length of a bucket.
+         *
+         * @return milliseconds per bucket.
+         */
+        public long getMillis() {
+            return unit.getDuration().toMillis();
+        }
+
+        /** Get the start of the bucket holding a timestamp.
+         *
+         * @param timestamp milliseconds since the epoch.
+         * @return milliseconds since the epoch at the start of the bucket.
+         */
+        public long truncate(final long timestamp) {
+            return Instant.ofEpochMilli(timestamp).truncatedTo(unit).toEpochMilli();
+        }
+
+        String format(final long timestamp) {
+            return formatter.format(Instant.ofEpochMilli(timestamp));
+        }
+
+        long parse(final String bucket) {
+            return Instant.from(formatter.parse(bucket)).toEpochMilli();
+        }
+
+    }
+
+    @Getter
+    @Setter
+    private TableManager tableManager = null;
+
+    @Getter
+    @Setter
+    private String prefix = "edge";
+
+    @Getter
+    @Setter
+    private Granularity granularity = Granularity.DAY;
+
+    @Getter
+    @Setter
+    private int retention = 90;
+
+    @Getter
+    @Setter
+    private int numThreads = 8;
+
+    @Getter
+    @Setter
+    private ExecutorService executor = null;
+
+    private final Map<String, TableManager> partitions = new ConcurrentHashMap<>();
+
+    /** Constructor
+     *
+     */
+    public TimePartitionManager() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param tableManager TableManager whose connector, table profile and metrics are used for every bucket.
+     * @param prefix root name shared by the buckets.
+     */
+    public TimePartitionManager(final TableManager tableManager, final String prefix) {
+        this.tableManager = tableManager;
+        this.prefix = prefix;
+    }
+
+    /** Get the root name of the bucket holding a timestamp.
+     *
+     * @param timestamp milliseconds since the epoch.
+     * @return the root name, edge_20261016.
+     */
+    public String getRootName(final long timestamp) {
+        return prefix + "_" + granularity.format(timestamp);
+    }
+
+    /** Get the start of a bucket from its root name.
+     *
+     * @param rootName root name of the bucket.
+     * @return milliseconds since the epoch, or -1 if rootName is not a bucket of this prefix and granularity.
+     */
+    public long getBucketStart(final String rootName) {
+        if (!rootName.startsWith(prefix + "_")) {
+            return -1;
+        }
+        String bucket = rootName.substring(prefix.length() + 1);
+        try {
+            long start = granularity.parse(bucket);
+            return granularity.format(start).equals(bucket) ? start : -1;
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /** Get the TableManager of a bucket without creating its tables.
+     *
+     * @param rootName root name of the bucket.
+     * @return the TableManager, shared by every caller.
+     */
+    public TableManager getPartition(final String rootName) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        return partitions.computeIfAbsent(rootName, tableManager::forRootName);
+    }
+
+    /** Get the TableManager of the bucket holding a timestamp, creating its tables if needed.
+     *
+     * @param timestamp milliseconds since the epoch.
+     * @return the TableManager of the bucket.
+     */
+    public TableManager createPartition(final long timestamp) {
+        TableManager partition = getPartition(getRootName(timestamp));
+        partition.createTables();
+        return partition;
+    }
+
+    /** List the buckets which have an edge table.
+     *
+     * @return root names, oldest first.
+     */
+    public List<String> listPartitions() {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getTableOperations(), "tableOperations must not be null");
+        TreeSet<String> rootNames = new TreeSet<>();
+        for (String tablename : tableManager.getTableOperations().list()) {
+            if (tablename.startsWith("T") && getBucketStart(tablename.substring(1)) >= 0) {
+                rootNames.add(tablename.substring(1));
+            }
+        }
+        return new ArrayList<>(rootNames);
+    }
+
+    /** List the buckets which overlap a time range.
+     *
+     * @param from first timestamp, inclusive.
+     * @param to last timestamp, inclusive.
+     * @return root names, oldest first.
+     */
+    public List<String> listPartitions(final long from, final long to) {
+        Validate.isTrue(from <= to, "from must not be after to");
+        long first = granularity.truncate(from);
+        List<String> rootNames = new ArrayList<>();
+        for (String rootName : listPartitions()) {
+            long start = getBucketStart(rootName);
+            if (start >= first && start <= to) {
+                rootNames.add(rootName);
+            }
+        }
+        return rootNames;
+    }
+
+    /** Run a query on every bucket of a time range in parallel and merge the results.
+     *
+     * Results are merged oldest bucket first, so when buckets disagree
+     * about an entry the newest bucket's value is kept.
+     *
+     * @param from first timestamp, inclusive.
+     * @param to last timestamp, inclusive.
+     * @param query query to run on the D4MQuery of each bucket.
+     * @return the merged associative array.
+     */
+    public AssociativeArray query(final long from, final long to, final Function<D4MQuery, AssociativeArray> query) {
+        Validate.notNull(query, "query must not be null");
+        AssociativeArray result = new AssociativeArray();
+        for (AssociativeArray partial : fanOut(from, to, partition -> query.apply(new D4MQuery(partition)))) {
+            result.putAll(partial);
+        }
+        return result;
+    }
+
+    /** Get the entries of the given rows in every bucket of a time range.
+     *
+     * @param from first timestamp, inclusive.
+     * @param to last timestamp, inclusive.
+     * @param rows row keys.
+     * @return associative array holding the rows.
+     */
+    public AssociativeArray getRows(final long from, final long to, final Collection<String> rows) {
+        return query(from, to, q -> q.getRows(rows));
+    }
+
+    /** Get the entries of the given columns in every bucket of a time range.
+     *
+     * @param from first timestamp, inclusive.
+     * @param to last timestamp, inclusive.
+     * @param columns column keys.
+     * @return associative array holding the columns.
+     */
+    public AssociativeArray getColumns(final long from, final long to, final Collection<String> columns) {
+        return query(from, to, q -> q.getColumns(columns));
+    }
+
+    /** Read the degree of each column summed over the buckets of a time range.
+     *
+     * @param from first timestamp, inclusive.
+     * @param to last timestamp, inclusive.
+     * @param columns column keys.
+     * @return map of column to degree; columns without a degree entry map to zero.
+     */
+    public Map<String, Long> getDegrees(final long from, final long to, final Collection<String> columns) {
+        Validate.notNull(columns, "columns must not be null");
+        Map<String, Long> degrees = new LinkedHashMap<>();
+        for (String column : columns) {
+            degrees.put(column, 0L);
+        }
+        for (Map<String, Long> partial : fanOut(from, to, partition -> new QueryPlanner(new D4MQuery(partition)).getDegrees(columns))) {
+            for (Map.Entry<String, Long> entry : partial.entrySet()) {
+                degrees.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        return degrees;
+    }
+
+    /** Get the start of the oldest bucket kept by the retention.
+     *
+     * @param now current time in milliseconds since the epoch.
+     * @return milliseconds since the epoch; buckets starting earlier are deleted by enforceRetention.
+     */
+    public long getRetentionStart(final long now) {
+        Validate.isTrue(retention > 0, "retention must be positive");
+        return granularity.truncate(now) - (retention - 1) * granularity.getMillis();
+    }
+
+    /** Delete the table sets of buckets older than the retention.
+     *
+     * The bucket holding now and the retention - 1 buckets before it
+     * are kept. Every table of an older bucket is deleted, including
+     * the remains of a bucket whose tables are only partly present.
+     *
+     * @param now current time in milliseconds since the epoch.
+     * @return root names of the deleted buckets, oldest first.
+     */
+    public List<String> enforceRetention(final long now) {
+        Validate.notNull(tableManager, "tableManager must not be null");
+        Validate.notNull(tableManager.getTableOperations(), "tableOperations must not be null");
+        Validate.isTrue(retention > 0, "retention must be positive");
+        D4MMetrics metrics = tableManager.getMetrics();
+        long start = metrics.startTimer();
+        long oldest = getRetentionStart(now);
+        TableOperations tableOperations = tableManager.getTableOperations();
+
+        TreeSet<String> expired = new TreeSet<>();
+        List<String> tablenames = new ArrayList<>();
+        for (String tablename : tableOperations.list()) {
+            for (String suffix : new String[]{"Transpose", "Degree", "Metadata", "Text", ""}) {
+                if (!tablename.startsWith("T") || !tablename.endsWith(suffix)) {
+                    continue;
+                }
+                String rootName = tablename.substring(1, tablename.length() - suffix.length());
+                long bucketStart = getBucketStart(rootName);
+                if (bucketStart >= 0) {
+                    if (bucketStart < oldest) {
+                        expired.add(rootName);
+                        tablenames.add(tablename);
+                    }
+                    break;
+                }
+            }
+        }
+        for (String tablename : tablenames) {
+            try {
+                tableOperations.delete(tablename);
+            } catch (TableNotFoundException e) {
+                // deleted by another client.
+            } catch (AccumuloException | AccumuloSecurityException e) {
+                throw new D4MException(String.format("Unable to delete table [%s]", tablename), e);
+            }
+        }
+        for (String rootName : expired) {
+            partitions.remove(rootName);
+        }
+        metrics.recordAdmin("enforceRetention", start);
+        return new ArrayList<>(expired);
+    }
+
+    private <T> List<T> fanOut(final long from, final long to, final Function<TableManager, T> task) {
+        List<String> rootNames = listPartitions(from, to);
+        if (rootNames.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(Math.min(numThreads, rootNames.size()));
+        try {
+            List<CompletableFuture<T>> futures = new ArrayList<>(rootNames.size());
+            for (String rootName : rootNames) {
+                TableManager partition = getPartition(rootName);
+                futures.add(CompletableFuture.supplyAsync(() -> task.apply(partition), pool));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        }
+    }
+
+}
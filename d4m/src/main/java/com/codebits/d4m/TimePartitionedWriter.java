@@ -0,0 +1,182 @@
+package com.codebits.d4m;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang.Validate;
+
+/** Route edges by timestamp to the table set of their time bucket.
+ *
+ * One D4MWriter is opened per bucket the first time an edge of that
+ * bucket is written; its tables are created if they do not exist. At
+ * most maxOpenWriters writers stay open; when another bucket is
+ * needed the least recently used writer is closed, so a bucket which
+ * keeps receiving late edges keeps its writer.
+ *
+ * Edges older than the retention of the partition manager, judged
+ * against clock, are dropped and counted in expiredEdges; writing them
+ * would recreate a bucket that enforceRetention has deleted or is
+ * about to delete.
+ *
+ * Writers are built by writerFactory, so callers can set the batch
+ * writer and statistics options of every bucket's writer.
+ *
+ * @author david medinets
+ */
+public class TimePartitionedWriter implements AutoCloseable {
+
+    @Getter
+    @Setter
+    private TimePartitionManager partitionManager = null;
+
+    @Getter
+    @Setter
+    private Function<TableManager, D4MWriter> writerFactory = D4MWriter::new;
+
+    @Getter
+    @Setter
+    private int maxOpenWriters = 4;
+
+    @Getter
+    @Setter
+    private LongSupplier clock = System::currentTimeMillis;
+
+    @Getter
+    private long expiredEdges = 0;
+
+    // access order, so the first entry is the least recently used writer
+    private final LinkedHashMap<String, D4MWriter> writers = new LinkedHashMap<>(16, 0.75f, true);
+    private long retentionStart = Long.MIN_VALUE;
+    private long retentionValidUntil = Long.MIN_VALUE;
+
+    /** Constructor
+     *
+     */
+    public TimePartitionedWriter() {
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param partitionManager TimePartitionManager naming and creating the buckets.
+     */
+    public TimePartitionedWriter(final TimePartitionManager partitionManager) {
+        this.partitionManager = partitionManager;
+    }
+
+    /** Write a triple with the default value of "1" to the bucket of a timestamp.
+     *
+     * @param timestamp time of the edge in milliseconds since the epoch.
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     */
+    public void addEdge(final long timestamp, final String row, final String column) {
+        if (isExpired(timestamp)) {
+            expiredEdges++;
+        } else {
+            getWriter(timestamp).addEdge(row, column);
+        }
+    }
+
+    /** Write a triple to the bucket of a timestamp.
+     *
+     * @param timestamp time of the edge in milliseconds since the epoch.
+     * @param row row of the associative array.
+     * @param column column of the associative array.
+     * @param value value of the associative array.
+     */
+    public void addEdge(final long timestamp, final String row, final String column, final String value) {
+        if (isExpired(timestamp)) {
+            expiredEdges++;
+        } else {
+            getWriter(timestamp).addEdge(row, column, value);
+        }
+    }
+
+    /** Get the open writer of the bucket holding a timestamp, opening it if needed.
+     *
+     * @param timestamp milliseconds since the epoch.
+     * @return the writer of the bucket.
+     * @throws D4MException if the timestamp is older than the retention.
+     */
+    public D4MWriter getWriter(final long timestamp) {
+        Validate.notNull(partitionManager, "partitionManager must not be null");
+        Validate.isTrue(maxOpenWriters > 0, "maxOpenWriters must be positive");
+        if (isExpired(timestamp)) {
+            throw new D4MException(String.format("Timestamp [%d] is older than the retention", timestamp));
+        }
+        String rootName = partitionManager.getRootName(timestamp);
+        D4MWriter writer = writers.get(rootName);
+        if (writer == null) {
+            while (writers.size() >= maxOpenWriters) {
+                Iterator<D4MWriter> eldest = writers.values().iterator();
+                D4MWriter evicted = eldest.next();
+                eldest.remove();
+                evicted.close();
+            }
+            writer = writerFactory.apply(partitionManager.createPartition(timestamp));
+            writer.open();
+            writers.put(rootName, writer);
+        }
+        return writer;
+    }
+
+    /** Check whether a timestamp falls before the oldest bucket kept by the retention.
+     *
+     * @param timestamp milliseconds since the epoch.
+     * @return true if edges of the timestamp are dropped.
+     */
+    public boolean isExpired(final long timestamp) {
+        Validate.notNull(partitionManager, "partitionManager must not be null");
+        if (timestamp >= retentionStart) {
+            long now = clock.getAsLong();
+            if (now >= retentionValidUntil) {
+                // the cutoff only moves when a new bucket starts
+                retentionStart = partitionManager.getRetentionStart(now);
+                retentionValidUntil = partitionManager.getGranularity().truncate(now) + partitionManager.getGranularity().getMillis();
+            }
+        }
+        return timestamp < retentionStart;
+    }
+
+    /** Get the number of open bucket writers.
+     *
+     * @return the number of open writers.
+     */
+    public int getOpenWriters() {
+        return writers.size();
+    }
+
+    /** Send all buffered mutations of every open bucket to Accumulo.
+     */
+    public void flush() {
+        for (D4MWriter writer : writers.values()) {
+            writer.flush();
+        }
+    }
+
+    /** Flush and close the writers of every open bucket.
+     */
+    @Override
+    public void close() {
+        D4MException failure = null;
+        Iterator<D4MWriter> iterator = writers.values().iterator();
+        while (iterator.hasNext()) {
+            D4MWriter writer = iterator.next();
+            iterator.remove();
+            try {
+                writer.close();
+            } catch (D4MException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+
+/** Compute C = A' * B on the tablet servers of A.
+ *
+ * A is the table being scanned. For every row r of A and every pair of
+ * columns (a, b), with a from row r of A and b from row r of B, the
+ * partial product A(r,a) * B(r,b) is written to C(a,b) and to the
+ * transpose entry (b,a). Each partial product carries a timestamp
+ * derived from r, so the partials of different rows stay apart on disk
+ * and a row written again by a retried scan repeats its own partials.
+ * PartialSumIterator adds up the partials of each entry, counting each
+ * timestamp once: at scan time while the result is written, and in the
+ * compaction MatrixOperations runs when it is complete.
+ *
+ * Without the otherTable option B is A itself, so every pair of
+ * columns in the row is written: the co-occurrence matrix A'A.
+ * Otherwise row r of B is read with a point scan from the tablet
+ * server. Rows with more than maxRowColumns entries in A or B are
+ * skipped, since they would write the square of their width.
+ *
+ * @author david medinets
+ */
+public class TransposeMultiplyIterator extends RemoteWriteIterator {
+
+    /** Option naming B when it is not the scanned table. */
+    public final static String OTHER_TABLE = "otherTable";
+    /** Option holding the comma-separated authorizations used to read B. */
+    public final static String AUTHORIZATIONS = "authorizations";
+    /** Option holding the widest row multiplied; 0 for no limit. */
+    public final static String MAX_ROW_COLUMNS = "maxRowColumns";
+
+    private String otherTable = null;
+    private Authorizations authorizations = null;
+    private int maxRowColumns = 0;
+    private Scanner otherScanner = null;
+
+    private final List<Text> otherColumns = new ArrayList<>();
+    private long[] otherValues = new long[64];
+    private long[] products = new long[64];
+
+    @Override
+    public void init(final SortedKeyValueIterator<Key, Value> source, final Map<String, String> options, final IteratorEnvironment env) throws IOException {
+        super.init(source, options, env);
+        otherTable = options.get(OTHER_TABLE);
+        String auths = options.get(AUTHORIZATIONS);
+        authorizations = auths == null || auths.isEmpty() ? new Authorizations() : new Authorizations(auths.split(","));
+        if (options.containsKey(MAX_ROW_COLUMNS)) {
+            maxRowColumns = Integer.parseInt(options.get(MAX_ROW_COLUMNS));
+        }
+    }
+
+    @Override
+    protected void writeRow(final Text row, final List<Text> columns, final long[] values, final int count) throws IOException {
+        if (tooWide(count)) {
+            return;
+        }
+        List<Text> bColumns = columns;
+        long[] bValues = values;
+        int bCount = count;
+        if (otherTable != null) {
+            bCount = readOtherRow(row);
+            if (bCount == 0 || tooWide(bCount)) {
+                return;
+            }
+            bColumns = otherColumns;
+            bValues = otherValues;
+        }
+
+        products = ensure(products, Math.max(count, bCount));
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < bCount; j++) {
+                products[j] = values[i] * bValues[j];
+            }
+            writeEdges(columns.get(i), bColumns, products, bCount);
+        }
+        for (int j = 0; j < bCount; j++) {
+            for (int i = 0; i < count; i++) {
+                products[i] = bValues[j] * values[i];
+            }
+            writeTransposes(bColumns.get(j), columns, products, count);
+        }
+    }
+
+    private boolean tooWide(final int count) {
+        return maxRowColumns > 0 && count > maxRowColumns;
+    }
+
+    /* Copies row r of B into otherColumns and otherValues; returns the number of entries. */
+    private int readOtherRow(final Text row) throws IOException {
+        if (otherScanner == null) {
+            try {
+                otherScanner = getConnector().createScanner(otherTable, authorizations);
+            } catch (TableNotFoundException e) {
+                throw new IOException(String.format("Unable to find table [%s]", otherTable), e);
+            }
+        }
+        otherScanner.setRange(Range.exact(row));
+        otherColumns.clear();
+        int count = 0;
+        for (Entry<Key, Value> entry : otherScanner) {
+            otherValues = ensure(otherValues, count + 1);
+            otherColumns.add(entry.getKey().getColumnQualifier());
+            otherValues[count++] = parse(entry.getValue());
+        }
+        return count;
+    }
+
+    private static long[] ensure(final long[] array, final int size) {
+        if (array.length >= size) {
+            return array;
+        }
+        long[] larger = new long[Math.max(size, array.length * 2)];
+        System.arraycopy(array, 0, larger, 0, array.length);
+        return larger;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.codebits.d4m;
+
+/** Receiver of (row, column, value) triples read from the D4M tables.
+ *
+ * @author david medinets
+ */
+public interface TripleSink {
+
+    /** Accept one triple.
+     *
+     * @param row row key.
+     * @param column column key.
+     * @param value entry value.
+     */
+    void put(String row, String column, String value);
+
+}
@@ -0,0 +1,167 @@
+package com.codebits.d4m;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+
+/** UTF-8 encoder for D4M rows, columns and values on the write path.
+ *
+ * String.getBytes and Text.set(String) allocate a new array (and a
+ * CharsetEncoder buffer) for every call. This encoder writes into one
+ * scratch array that grows as needed and is reused, then copies the
+ * bytes straight into a reusable Text or a new Mutation, so encoding
+ * a key allocates nothing. The encoding is always UTF-8, whatever the
+ * platform default charset is. Unpaired surrogates are written as '?',
+ * as String.getBytes does.
+ *
+ * An encoder is not thread-safe; use one per writer, or forThread.
+ *
+ * @author david medinets
+ */
+public class Utf8Encoder {
+
+    /** Charset of every key and value written by this library. */
+    public final static Charset UTF8 = StandardCharsets.UTF_8;
+
+    private final static ThreadLocal<Utf8Encoder> ENCODERS = new ThreadLocal<Utf8Encoder>() {
+        @Override
+        protected Utf8Encoder initialValue() {
+            return new Utf8Encoder();
+        }
+    };
+
+    private byte[] buffer = new byte[256];
+    private int length = 0;
+
+    /** Get the encoder of the current thread.
+     *
+     * @return an encoder only used by the calling thread.
+     */
+    public static Utf8Encoder forThread() {
+        return ENCODERS.get();
+    }
+
+    /** Encode characters into the scratch buffer.
+     *
+     * @param chars characters to encode.
+     * @return the number of bytes written; see getBuffer.
+     */
+    public int encode(final CharSequence chars) {
+        int size = chars.length();
+        ensureCapacity(size * 3);
+        byte[] bytes = buffer;
+        int position = 0;
+        int i = 0;
+        while (i < size && chars.charAt(i) < 0x80) {
+            bytes[position++] = (byte) chars.charAt(i++);
+        }
+        while (i < size) {
+            char c = chars.charAt(i++);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i < size && Character.isLowSurrogate(chars.charAt(i))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(i++));
+                bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xe0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        length = position;
+        return length;
+    }
+
+    /** Encode characters into a reusable Text.
+     *
+     * @param chars characters to encode.
+     * @param target Text which receives the bytes; its buffer is reused.
+     * @return target.
+     */
+    public Text encode(final CharSequence chars, final Text target) {
+        encode(chars);
+        target.set(buffer, 0, length);
+        return target;
+    }
+
+    /** Start a mutation for a row.
+     *
+     * @param row row to encode.
+     * @return a new mutation holding a copy of the encoded row.
+     */
+    public Mutation newMutation(final CharSequence row) {
+        encode(row);
+        return new Mutation(buffer, 0, length);
+    }
+
+    /** Encode characters into a new Value.
+     *
+     * Value has no offset or length, so this allocates exactly one
+     * array of the encoded size.
+     *
+     * @param chars characters to encode.
+     * @return a Value owning the encoded bytes.
+     */
+    public Value newValue(final CharSequence chars) {
+        encode(chars);
+        return new Value(Arrays.copyOf(buffer, length), false);
+    }
+
+    /** Encode a number in decimal into a new Value.
+     *
+     * @param number number to encode, as Long.toString would.
+     * @return a Value owning the encoded digits.
+     */
+    public Value newValue(final long number) {
+        if (number == Long.MIN_VALUE) {
+            return newValue(Long.toString(number));
+        }
+        ensureCapacity(20);
+        long remaining = Math.abs(number);
+        int position = buffer.length;
+        do {
+            buffer[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (number < 0) {
+            buffer[--position] = '-';
+        }
+        return new Value(Arrays.copyOfRange(buffer, position, buffer.length), false);
+    }
+
+    /** Get the scratch buffer holding the last encoding.
+     *
+     * The contents are only valid until the next call on this encoder.
+     *
+     * @return the scratch buffer.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /** Get the number of bytes of the last encoding.
+     *
+     * @return the encoded length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        }
+    }
+
+}
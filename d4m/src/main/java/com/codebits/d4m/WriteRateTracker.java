@@ -0,0 +1,125 @@
+package com.codebits.d4m;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.apache.commons.lang.Validate;
+
+/** Count writes per table and row prefix.
+ *
+ * A D4MWriter with a tracker records every entry it writes under the
+ * first prefixLength characters of the entry's row. SplitManager drains
+ * the counts on another thread to find hot and cold row ranges, so
+ * recording and draining are thread-safe. Writes recorded while a
+ * table is being drained may land in the next round.
+ *
+ * @author david medinets
+ */
+public class WriteRateTracker {
+
+    @Getter
+    private final int prefixLength;
+
+    private final ConcurrentMap<String, ConcurrentMap<Prefix, LongAdder>> counts = new ConcurrentHashMap<>();
+    private final ThreadLocal<Prefix> probes = ThreadLocal.withInitial(Prefix::new);
+
+    /** Constructor
+     *
+     */
+    public WriteRateTracker() {
+        this(2);
+    }
+
+    /** Constructor with client-override of defaults.
+     *
+     * @param prefixLength number of leading row characters writes are grouped by.
+     */
+    public WriteRateTracker(final int prefixLength) {
+        Validate.isTrue(prefixLength > 0, "prefixLength must be positive");
+        this.prefixLength = prefixLength;
+    }
+
+    /** Record one write.
+     *
+     * @param tablename name of the accumulo table written to.
+     * @param row row of the entry.
+     */
+    public void record(final String tablename, final String row) {
+        ConcurrentMap<Prefix, LongAdder> table = counts.get(tablename);
+        if (table == null) {
+            table = counts.computeIfAbsent(tablename, k -> new ConcurrentHashMap<>());
+        }
+        // the probe hashes the prefix in place; a copy is only made for a new prefix
+        Prefix probe = probes.get().of(row, Math.min(row.length(), prefixLength));
+        LongAdder count = table.get(probe);
+        if (count == null) {
+            count = table.computeIfAbsent(probe.copy(), k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /** Remove and return the counts of a table.
+     *
+     * @param tablename name of the accumulo table.
+     * @return writes per row prefix since the last drain.
+     */
+    public Map<String, Long> drain(final String tablename) {
+        ConcurrentMap<Prefix, LongAdder> table = counts.remove(tablename);
+        if (table == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> drained = new HashMap<>(table.size() * 2);
+        for (Map.Entry<Prefix, LongAdder> entry : table.entrySet()) {
+            drained.put(entry.getKey().toString(), entry.getValue().sum());
+        }
+        return drained;
+    }
+
+    /* The first length characters of a row, hashed like the String they stand for. */
+    private static final class Prefix {
+
+        private String row = "";
+        private int length = 0;
+        private int hash = 0;
+
+        Prefix of(final String row, final int length) {
+            this.row = row;
+            this.length = length;
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + row.charAt(i);
+            }
+            this.hash = h;
+            return this;
+        }
+
+        Prefix copy() {
+            return new Prefix().of(toString(), length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Prefix)) {
+                return false;
+            }
+            Prefix prefix = (Prefix) other;
+            return length == prefix.length && hash == prefix.hash && row.regionMatches(0, prefix.row, 0, length);
+        }
+
+        @Override
+        public String toString() {
+            return row.length() == length ? row : row.substring(0, length);
+        }
+
+    }
+
+}
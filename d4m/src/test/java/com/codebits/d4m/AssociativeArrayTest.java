@@ -0,0 +1,45 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the AssociativeArray class
+ *
+ * @author david
+ */
+public class AssociativeArrayTest {
+
+    /** Test put and get
+     */
+    @Test
+    public void testPut() {
+        AssociativeArray instance = new AssociativeArray();
+        instance.put("r1", "c1", "1");
+        instance.put("r1", "c2", "2");
+        instance.put("r2", "c1", "3");
+        instance.put("r2", "c1", "4");
+        assertEquals(3, instance.size());
+        assertEquals("2", instance.get("r1", "c2"));
+        assertEquals("4", instance.get("r2", "c1"));
+        assertNull(instance.get("r3", "c1"));
+        assertEquals(new TreeSet<>(Arrays.asList("r1", "r2")), instance.getRows());
+        assertEquals(new TreeSet<>(Arrays.asList("c1", "c2")), instance.getColumns());
+        assertTrue(instance.getRow("r3").isEmpty());
+    }
+
+    /** Test transpose
+     */
+    @Test
+    public void testTranspose() {
+        AssociativeArray instance = new AssociativeArray();
+        instance.put("r1", "c1", "1");
+        instance.put("r1", "c2", "2");
+        AssociativeArray transpose = instance.transpose();
+        assertEquals("2", transpose.get("c2", "r1"));
+        assertEquals(2, transpose.size());
+        assertEquals(instance, transpose.transpose());
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the CountMinSketch class
+ *
+ * @author david
+ */
+public class CountMinSketchTest {
+
+    /** Test estimates never undercount and heavy hitters stand out.
+     */
+    @Test
+    public void testEstimate() {
+        CountMinSketch instance = new CountMinSketch(4, 1024);
+        instance.add("city|Paris", 5000);
+        for (int i = 0; i < 10000; i++) {
+            instance.add("city|c" + i, 1);
+        }
+        assertEquals(15000, instance.getTotal());
+        long paris = instance.estimate("city|Paris");
+        assertTrue(paris >= 5000 && paris < 5000 + 15000 * Math.E / 1024);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(instance.estimate("city|c" + i) >= 1);
+        }
+        assertEquals(0, new CountMinSketch(4, 1024).estimate("city|Paris"));
+    }
+
+    /** Test merged sketches add their counts and survive serialization.
+     */
+    @Test
+    public void testMerge() {
+        CountMinSketch left = new CountMinSketch(3, 64);
+        CountMinSketch right = new CountMinSketch(3, 64);
+        left.add("a", 2);
+        right.add("a", 3);
+        right.add("b", 1);
+        left.merge(CountMinSketch.fromBytes(right.toBytes()));
+        assertEquals(5, left.estimate("a"));
+        assertEquals(6, left.getTotal());
+        assertEquals(left, CountMinSketch.fromBytes(left.toBytes()));
+    }
+
+    /** Test a truncated value is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromBytes_truncated() {
+        byte[] bytes = new CountMinSketch(3, 64).toBytes();
+        CountMinSketch.fromBytes(Arrays.copyOf(bytes, bytes.length - 8));
+    }
+
+}
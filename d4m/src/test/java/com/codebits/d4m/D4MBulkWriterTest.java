@@ -0,0 +1,127 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.client.rfile.RFile;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MBulkWriter class
+ *
+ * @author david
+ */
+public class D4MBulkWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Connector mockConnector = mock(Connector.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+
+    private D4MBulkWriter instance = null;
+    private String workDirectory = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockTableOperations.listSplits(anyString())).thenReturn(new ArrayList<Text>());
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("m")));
+        workDirectory = folder.getRoot().getAbsolutePath();
+        instance = new D4MBulkWriter(new TableManager(mockConnector, mockTableOperations), workDirectory);
+        instance.setMaxBufferedEntries(4);
+        instance.setMaxDegreeEntries(2);
+    }
+
+    /** Test the writer produces one sorted file per tablet and imports each table.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testImportDirectories() throws Exception {
+        instance.addEdge("z1", "city|Paris");
+        instance.addEdge("a1", "city|Paris");
+        instance.addEdge("m", "city|Rome");
+        instance.addEdge("a1", "city|Paris");
+        instance.addEdge("b1", "city|Paris");
+        instance.addText("a1", "some text");
+        instance.importDirectories();
+
+        verify(mockTableOperations).importDirectory("Tedge", workDirectory + "/files/Tedge", workDirectory + "/failures/Tedge", true);
+        verify(mockTableOperations).importDirectory("TedgeTranspose", workDirectory + "/files/TedgeTranspose", workDirectory + "/failures/TedgeTranspose", true);
+        verify(mockTableOperations).importDirectory("TedgeDegree", workDirectory + "/files/TedgeDegree", workDirectory + "/failures/TedgeDegree", true);
+        verify(mockTableOperations).importDirectory("TedgeText", workDirectory + "/files/TedgeText", workDirectory + "/failures/TedgeText", true);
+
+        List<File> edgeFiles = rfiles("Tedge");
+        assertEquals(2, edgeFiles.size());
+        assertEquals(Arrays.asList("a1 city|Paris", "b1 city|Paris", "m city|Rome"), read(edgeFiles.get(0), false));
+        assertEquals(Arrays.asList("z1 city|Paris"), read(edgeFiles.get(1), false));
+
+        List<File> degreeFiles = rfiles("TedgeDegree");
+        assertEquals(1, degreeFiles.size());
+        assertEquals(Arrays.asList("city|Paris degree 4", "city|Rome degree 1"), read(degreeFiles.get(0), true));
+
+        assertFalse(new File(workDirectory, "runs/Tedge").exists());
+    }
+
+    /** Test nothing is imported when nothing was written.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testImportDirectories_with_no_entries() throws Exception {
+        instance.importDirectories();
+        verify(mockTableOperations, never()).importDirectory(anyString(), anyString(), anyString(), anyBoolean());
+    }
+
+    private List<File> rfiles(final String tablename) {
+        List<File> files = new ArrayList<>();
+        for (File file : new File(workDirectory, "files/" + tablename).listFiles()) {
+            if (file.getName().endsWith(".rf")) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private List<String> read(final File file, final boolean withValue) throws IOException {
+        List<String> entries = new ArrayList<>();
+        Scanner scanner = RFile.newScanner().from(file.getAbsolutePath()).withFileSystem(FileSystem.getLocal(new Configuration())).build();
+        for (Entry<Key, Value> entry : scanner) {
+            String s = entry.getKey().getRow() + " " + entry.getKey().getColumnQualifier();
+            entries.add(withValue ? s + " " + entry.getValue() : s);
+        }
+        scanner.close();
+        return entries;
+    }
+
+}
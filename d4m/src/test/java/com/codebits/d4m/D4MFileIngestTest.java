@@ -0,0 +1,177 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MFileIngest class
+ *
+ * @author david
+ */
+public class D4MFileIngestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+
+    private D4MFileIngest instance = null;
+
+    /** Setup instance for each test.
+     */
+    @Before
+    public void setup() {
+        instance = new D4MFileIngest(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test a file split into many chunks yields every triple exactly once.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testIngest_many_chunks() throws IOException {
+        StringBuilder content = new StringBuilder("id\tcity\tcolor\n");
+        AssociativeArray expected = new AssociativeArray();
+        for (int i = 0; i < 500; i++) {
+            content.append("r").append(i).append("\tcity").append(i % 7).append("\t");
+            expected.put("r" + i, "city|city" + (i % 7), "1");
+            if (i % 3 != 0) {
+                content.append("red");
+                expected.put("r" + i, "color|red", "1");
+            }
+            content.append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        File file = write(content.toString());
+
+        instance.setFieldDelimiter("\t");
+        instance.setFactDelimiter("|");
+        instance.setChunkSize(100);
+        instance.setNumThreads(3);
+        instance.setQueueCapacity(2);
+        instance.setBatchSize(6);
+        AssociativeArray actual = new AssociativeArray();
+        assertEquals(500, instance.ingest(file, actual));
+        assertEquals(expected, actual);
+    }
+
+    /** Test the delimiters are read from the metadata table when not set.
+     *
+     * @throws IOException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testIngest_metadata_delimiters() throws IOException, TableNotFoundException {
+        Scanner fieldScanner = mock(Scanner.class);
+        Scanner factScanner = mock(Scanner.class);
+        when(fieldScanner.iterator()).thenReturn(Arrays.asList(entry("field.delimiter", ",")).iterator());
+        when(factScanner.iterator()).thenReturn(Arrays.asList(entry("fact.delimiter", ":")).iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(fieldScanner, factScanner);
+
+        AssociativeArray actual = new AssociativeArray();
+        assertEquals(2, instance.ingest(write("id,city\nr1,Paris\nr2,\n"), actual));
+        assertEquals(1, actual.size());
+        assertEquals("1", actual.get("r1", "city:Paris"));
+    }
+
+    /** Test an empty file has no records.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testIngest_empty_file() throws IOException {
+        instance.setFieldDelimiter("\t");
+        instance.setFactDelimiter("|");
+        assertEquals(0, instance.ingest(write(""), new AssociativeArray()));
+    }
+
+    /** Test a failing sink surfaces as a D4MException.
+     *
+     * @throws IOException
+     */
+    @Test(expected = D4MException.class)
+    public void testIngest_sink_failure() throws IOException {
+        instance.setFieldDelimiter("\t");
+        instance.setFactDelimiter("|");
+        instance.ingest(write("id\tcity\nr1\tParis\n"), new TripleSink() {
+            @Override
+            public void put(String row, String column, String value) {
+                throw new D4MException("sink failed");
+            }
+        });
+    }
+
+    /** Test parsers blocked on a full queue end when the sink fails.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Test
+    public void testIngest_sink_failure_stops_parsers() throws IOException, InterruptedException {
+        StringBuilder content = new StringBuilder("id\tcity\n");
+        for (int i = 0; i < 500; i++) {
+            content.append("r").append(i).append("\tcity").append(i).append("\n");
+        }
+        instance.setFieldDelimiter("\t");
+        instance.setFactDelimiter("|");
+        instance.setChunkSize(100);
+        instance.setNumThreads(3);
+        instance.setQueueCapacity(1);
+        instance.setBatchSize(3);
+        try {
+            instance.ingest(write(content.toString()), new TripleSink() {
+                @Override
+                public void put(String row, String column, String value) {
+                    throw new D4MException("sink failed");
+                }
+            });
+            fail("expected D4MException");
+        } catch (D4MException e) {
+            assertEquals("sink failed", e.getMessage());
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (parserThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, parserThreads());
+    }
+
+    private int parserThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().equals("d4m-file-ingest")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Map.Entry<Key, Value> entry(final String property, final String delimiter) {
+        return new AbstractMap.SimpleEntry<>(new Key("property", property, ""), new Value(delimiter.getBytes()));
+    }
+
+    private File write(final String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+        return file;
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.codebits.d4m;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MMetrics class
+ *
+ * @author david
+ */
+public class D4MMetricsTest {
+
+    Connector mockConnector = mock(Connector.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockWriter = mock(BatchWriter.class);
+
+    private D4MMetrics instance = null;
+    private TableManager tableManager = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockConnector.createMultiTableBatchWriter(any(BatchWriterConfig.class))).thenReturn(mockMultiTableBatchWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter(anyString())).thenReturn(mockWriter);
+        instance = new D4MMetrics();
+        tableManager = new TableManager(mockConnector, mockTableOperations);
+        tableManager.setMetrics(instance);
+    }
+
+    /** Remove the registry from JMX after each test.
+     */
+    @After
+    public void teardown() {
+        instance.unregister();
+    }
+
+    /** Test the writer counts mutations per table and records flushes.
+     */
+    @Test
+    public void testWriterMetrics() {
+        D4MWriter writer = new D4MWriter(tableManager);
+        writer.setMaxDegreeEntries(0);
+        writer.setMaxMemory(1000000);
+        writer.open();
+        writer.addEdge("r1", "city|Paris");
+        writer.addEdge("r2", "city|Paris");
+        writer.addText("r1", "some text");
+
+        assertEquals(Long.valueOf(2), instance.getMutationCounts().get("Tedge"));
+        assertEquals(Long.valueOf(2), instance.getMutationCounts().get("TedgeTranspose"));
+        assertEquals(Long.valueOf(2), instance.getMutationCounts().get("TedgeDegree"));
+        assertEquals(Long.valueOf(1), instance.getMutationCounts().get("TedgeText"));
+        assertTrue(instance.getMutationBytes().get("Tedge") > 0);
+        assertTrue(instance.getBufferedBytes() > 0);
+        assertTrue(instance.getBufferOccupancy() > 0);
+
+        writer.flush();
+        assertEquals(0, instance.getBufferedBytes());
+        assertEquals(1, instance.getFlushLatency().getCount());
+
+        writer.close();
+        assertEquals(0.0, instance.getBufferOccupancy(), 0.0);
+    }
+
+    /** Test admin calls, scans and cache lookups are recorded by name.
+     */
+    @Test
+    public void testAdminAndScanMetrics() {
+        tableManager.addSplits("Tedge", new TreeSet<>(Arrays.asList(new Text("m"))));
+        instance.recordScan("rows", instance.startTimer(), 42);
+        instance.recordCache("degree", true);
+        instance.recordCache("degree", false);
+        instance.recordCache("degree", true);
+
+        assertEquals(1, instance.getAdminLatency().get("addSplits").getCount());
+        assertEquals(1, instance.getScanLatency().get("rows").getCount());
+        assertEquals(Long.valueOf(42), instance.getScanEntries().get("rows"));
+        assertEquals(Long.valueOf(2), instance.getCacheHits().get("degree"));
+        assertEquals(Long.valueOf(1), instance.getCacheMisses().get("degree"));
+
+        instance.reset();
+        assertEquals(0, instance.getAdminLatency().get("addSplits").getCount());
+        assertEquals(Long.valueOf(0), instance.getScanEntries().get("rows"));
+        assertEquals(Long.valueOf(0), instance.getCacheHits().get("degree"));
+    }
+
+    /** Test the disabled registry records nothing and does not wrap writers.
+     */
+    @Test
+    public void testDisabled() {
+        D4MMetrics disabled = D4MMetrics.DISABLED;
+        assertFalse(disabled.isEnabled());
+        assertEquals(0, disabled.startTimer());
+        assertSame(mockWriter, disabled.meter("Tedge", mockWriter, null));
+        assertNull(disabled.openBuffer(1000));
+        disabled.recordScan("rows", 0, 10);
+        assertTrue(disabled.getScanLatency().isEmpty());
+    }
+
+    /** Test the registry is readable over JMX.
+     *
+     * @throws JMException
+     */
+    @Test
+    public void testRegister() throws JMException {
+        instance.recordScan("columns", instance.startTimer(), 5);
+        ObjectName name = instance.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(name));
+        assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+
+        TabularData latency = (TabularData) server.getAttribute(name, "ScanLatency");
+        CompositeData row = latency.get(new Object[]{"columns"});
+        assertEquals(1L, ((CompositeData) row.get("value")).get("count"));
+
+        instance.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+
+    /** Test a null registry is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetMetrics_null() {
+        tableManager.setMetrics(null);
+    }
+
+}
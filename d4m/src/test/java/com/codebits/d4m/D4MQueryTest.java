@@ -0,0 +1,135 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MQuery class
+ *
+ * @author david
+ */
+public class D4MQueryTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    BatchScanner mockBatchScanner = mock(BatchScanner.class);
+
+    private D4MQuery instance = null;
+
+    /** Setup instance for each test.
+     */
+    @Before
+    public void setup() {
+        instance = new D4MQuery(new TableManager(mockConnector, mockTableOperations));
+        instance.setNumQueryThreads(4);
+    }
+
+    /** Test GetRows reads Tedge with one range per row.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetRows() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), eq(4))).thenReturn(mockBatchScanner);
+        when(mockBatchScanner.iterator()).thenReturn(entries("r1", "c1", "r1", "c2", "r2", "c1").iterator());
+
+        AssociativeArray result = instance.getRows(Arrays.asList("r1", "r2"));
+        assertEquals(3, result.size());
+        assertEquals("1", result.get("r1", "c2"));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mockBatchScanner).setRanges(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertTrue(captor.getValue().contains(Range.exact("r1")));
+        verify(mockBatchScanner).close();
+    }
+
+    /** Test GetColumns reads TedgeTranspose and transposes the result.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetColumns() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), eq(4))).thenReturn(mockBatchScanner);
+        when(mockBatchScanner.iterator()).thenReturn(entries("c1", "r1", "c1", "r2").iterator());
+
+        AssociativeArray result = instance.getColumns(Arrays.asList("c1"));
+        assertEquals(2, result.size());
+        assertEquals("1", result.get("r2", "c1"));
+        verify(mockConnector, never()).createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt());
+    }
+
+    /** Test GetColumnRange into a sparse array builder.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetColumnRange_with_sink() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), eq(4))).thenReturn(mockBatchScanner);
+        when(mockBatchScanner.iterator()).thenReturn(entries("c1", "r1", "c2", "r1").iterator());
+
+        SparseAssociativeArray.Builder builder = new SparseAssociativeArray.Builder();
+        instance.getColumnRange("c1", "c2", builder);
+        SparseAssociativeArray result = builder.build();
+        assertEquals(2, result.size());
+        assertEquals("1", result.get("r1", "c2"));
+    }
+
+    /** Test GetRange adds a column slice filter.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetRange() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), eq(4))).thenReturn(mockBatchScanner);
+        when(mockBatchScanner.iterator()).thenReturn(entries("r1", "c1").iterator());
+
+        AssociativeArray result = instance.getRange("r0", "r9", "c0", "c5");
+        assertEquals(1, result.size());
+        verify(mockBatchScanner).addScanIterator(any(IteratorSetting.class));
+    }
+
+    /** Test an empty row list does not scan.
+     */
+    @Test
+    public void testGetRows_with_no_rows() {
+        assertTrue(instance.getRows(new ArrayList<String>()).isEmpty());
+        verifyZeroInteractions(mockConnector);
+    }
+
+    /** Test a missing table is reported.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testGetRowRange_with_missing_table() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), eq(4))).thenThrow(TableNotFoundException.class);
+        instance.getRowRange(null, null);
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 2) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], "", keys[i + 1]), new Value("1".getBytes())));
+        }
+        return entries;
+    }
+
+}
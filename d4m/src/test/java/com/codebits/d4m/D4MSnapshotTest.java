@@ -0,0 +1,125 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MSnapshot class
+ *
+ * @author david
+ */
+public class D4MSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+
+    private D4MSnapshot instance = null;
+
+    /** Export a snapshot from mocked tables for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        Scanner propertyScanner = scanner(entries());
+        Scanner metadataScanner = scanner(entries(
+                "city", "field", "", "2",
+                "property", "degree.encoding", "", "STRING",
+                "property", "field.delimiter", "", ",",
+                "city", "sketch", "rows", "x"));
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(propertyScanner, metadataScanner);
+        Scanner edgeScanner = scanner(entries("r1", "", "city|Paris", "1", "r2", "", "city|Paris", "1"));
+        when(mockConnector.createScanner(eq("Tedge"), any(Authorizations.class))).thenReturn(edgeScanner);
+        Scanner degreeScanner = scanner(entries("city|Paris", "", "degree", "2"));
+        when(mockConnector.createScanner(eq("TedgeDegree"), any(Authorizations.class))).thenReturn(degreeScanner);
+        Scanner textScanner = scanner(entries("abc", "", "text", "hello world"));
+        when(mockConnector.createScanner(eq("TedgeText"), any(Authorizations.class))).thenReturn(textScanner);
+        instance = new SnapshotExporter(new TableManager(mockConnector, mockTableOperations)).export(folder.getRoot());
+    }
+
+    /** Test the edges and documents are replayed through the sinks.
+     */
+    @Test
+    public void testImportInto() {
+        AssociativeArray edges = new AssociativeArray();
+        Map<String, String> texts = new HashMap<>();
+        instance.importInto(edges, texts::put);
+        assertEquals(2, edges.size());
+        assertEquals("1", edges.get("r2", "city|Paris"));
+        assertEquals("hello world", texts.get("abc"));
+
+        SparseAssociativeArray.Builder builder = new SparseAssociativeArray.Builder();
+        instance.importInto(builder, null);
+        assertEquals(2, builder.build().size());
+    }
+
+    /** Test metadata is written in the target encoding, keeping the target's degree.encoding.
+     *
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testImportMetadata() throws TableNotFoundException, MutationsRejectedException {
+        Connector targetConnector = mock(Connector.class);
+        BatchWriter mockWriter = mock(BatchWriter.class);
+        Scanner propertyScanner = scanner(entries("property", "degree.encoding", "", "FIXEDLEN"));
+        when(targetConnector.createScanner(eq("TcopyMetadata"), any(Authorizations.class))).thenReturn(propertyScanner);
+        when(targetConnector.createBatchWriter(eq("TcopyMetadata"), any(BatchWriterConfig.class))).thenReturn(mockWriter);
+        TableManager target = new TableManager(targetConnector, mockTableOperations);
+        target.setRootName("copy");
+
+        instance.importMetadata(target);
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockWriter, times(3)).addMutation(captor.capture());
+        verify(mockWriter).close();
+        Map<String, byte[]> written = new HashMap<>();
+        for (Mutation mutation : captor.getAllValues()) {
+            ColumnUpdate update = mutation.getUpdates().get(0);
+            written.put(new String(mutation.getRow()) + "/" + new String(update.getColumnFamily()), update.getValue());
+        }
+        assertEquals(2, DegreeEncoding.FIXEDLEN.decode(written.get("city/field")));
+        assertEquals(",", new String(written.get("property/field.delimiter")));
+        assertEquals("x", new String(written.get("city/sketch")));
+        assertFalse(written.containsKey("property/degree.encoding"));
+    }
+
+    private Scanner scanner(final List<Entry<Key, Value>> entries) {
+        Scanner scanner = mock(Scanner.class);
+        when(scanner.iterator()).thenReturn(entries.iterator());
+        return scanner;
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 4) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], keys[i + 1], keys[i + 2]), new Value(keys[i + 3].getBytes())));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,396 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the D4MWriter class
+ *
+ * @author david
+ */
+public class D4MWriterTest {
+
+    private final static String HELLO_SHA1 = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+
+    Connector mockConnector = mock(Connector.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockEdgeWriter = mock(BatchWriter.class);
+    BatchWriter mockTransposeWriter = mock(BatchWriter.class);
+    BatchWriter mockDegreeWriter = mock(BatchWriter.class);
+    BatchWriter mockTextWriter = mock(BatchWriter.class);
+
+    private D4MWriter instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockConnector.createMultiTableBatchWriter(any(BatchWriterConfig.class))).thenReturn(mockMultiTableBatchWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("Tedge")).thenReturn(mockEdgeWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("TedgeTranspose")).thenReturn(mockTransposeWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("TedgeDegree")).thenReturn(mockDegreeWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("TedgeText")).thenReturn(mockTextWriter);
+        instance = new D4MWriter(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test the batch writer config reflects the settings.
+     */
+    @Test
+    public void testGetBatchWriterConfig() {
+        instance.setMaxMemory(1000);
+        instance.setMaxWriteThreads(3);
+        BatchWriterConfig bwConfig = instance.getBatchWriterConfig();
+        assertEquals(1000, bwConfig.getMaxMemory());
+        assertEquals(3, bwConfig.getMaxWriteThreads());
+    }
+
+    /** Test AddEdge writes to the edge, transpose and degree tables.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddEdge() throws MutationsRejectedException {
+        instance.setMaxDegreeEntries(0);
+        instance.open();
+        instance.addEdge("r1", "city|Paris");
+
+        Mutation edge = captureOne(mockEdgeWriter);
+        assertEquals("r1", new String(edge.getRow()));
+        assertEquals("city|Paris", new String(edge.getUpdates().get(0).getColumnQualifier()));
+
+        Mutation transpose = captureOne(mockTransposeWriter);
+        assertEquals("city|Paris", new String(transpose.getRow()));
+        assertEquals("r1", new String(transpose.getUpdates().get(0).getColumnQualifier()));
+
+        Mutation degree = captureOne(mockDegreeWriter);
+        assertEquals("city|Paris", new String(degree.getRow()));
+        ColumnUpdate update = degree.getUpdates().get(0);
+        assertEquals("degree", new String(update.getColumnQualifier()));
+        assertEquals("1", new String(update.getValue()));
+
+        verifyZeroInteractions(mockTextWriter);
+    }
+
+    /** Test AddEdges writes a single edge mutation for the row.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddEdges() throws MutationsRejectedException {
+        instance.open();
+        instance.addEdges("r1", Arrays.asList("a|1", "b|2", "c|3"));
+
+        instance.flush();
+        Mutation edge = captureOne(mockEdgeWriter);
+        assertEquals(3, edge.size());
+        verify(mockTransposeWriter, times(3)).addMutation(any(Mutation.class));
+        verify(mockDegreeWriter, times(3)).addMutation(any(Mutation.class));
+    }
+
+    /** Test field sketches are kept per field and written to the metadata table on flush.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddEdge_maintains_statistics() throws AccumuloException, AccumuloSecurityException, TableNotFoundException, MutationsRejectedException {
+        BatchWriter mockMetadataWriter = mock(BatchWriter.class);
+        when(mockMultiTableBatchWriter.getBatchWriter("TedgeMetadata")).thenReturn(mockMetadataWriter);
+        instance.setMaintainStatistics(true);
+        instance.open();
+        instance.addEdge("r1", "city|Paris");
+        instance.addEdge("r2", "city|Paris");
+        instance.addEdge("r2", "city|Rome");
+        instance.addEdges("r3", Arrays.asList("name|bob", "untyped"));
+        verifyZeroInteractions(mockMetadataWriter);
+
+        instance.flush();
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockMetadataWriter, times(2)).addMutation(captor.capture());
+        FieldStatistics city = null;
+        for (Mutation mutation : captor.getAllValues()) {
+            assertEquals(3, mutation.size());
+            if ("city".equals(new String(mutation.getRow()))) {
+                city = new FieldStatistics("city");
+                for (ColumnUpdate update : mutation.getUpdates()) {
+                    assertEquals("sketch", new String(update.getColumnFamily()));
+                    city.read(new AbstractMap.SimpleEntry<>(new Key("city", "sketch", new String(update.getColumnQualifier())), new Value(update.getValue())));
+                }
+            }
+        }
+        assertNotNull(city);
+        assertEquals(2, city.getDistinctRows());
+        assertEquals(2, city.getDistinctColumns());
+        assertEquals(3, city.getEntries());
+        assertEquals(2, city.estimateCount("city|Paris"));
+    }
+
+    /** Test degree counts in the lookup cache are incremented as edges are written.
+     */
+    @Test
+    public void testAddEdge_increments_cached_degree() {
+        instance.getTableManager().enableLookupCache(1000, 1, TimeUnit.MINUTES);
+        LookupCache<String, Long> cache = instance.getTableManager().getDegreeCache();
+        cache.put("city|Paris", 5L);
+        instance.open();
+        instance.addEdge("r1", "city|Paris");
+        instance.addEdges("r2", Arrays.asList("city|Paris", "city|Rome"));
+        assertEquals(Long.valueOf(7), cache.get("city|Paris"));
+        assertNull(cache.get("city|Rome"));
+    }
+
+    /** Test degree increments are summed per column until flush.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddEdge_aggregates_degree() throws MutationsRejectedException {
+        instance.open();
+        instance.addEdge("r1", "city|Paris");
+        instance.addEdge("r2", "city|Paris");
+        instance.addEdge("r3", "city|Paris");
+        verifyZeroInteractions(mockDegreeWriter);
+
+        instance.flush();
+        Mutation degree = captureOne(mockDegreeWriter);
+        assertEquals("city|Paris", new String(degree.getRow()));
+        assertEquals("3", new String(degree.getUpdates().get(0).getValue()));
+        verify(mockMultiTableBatchWriter).flush();
+    }
+
+    /** Test a full degree aggregator is flushed while writing.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddEdge_flushes_full_degree_aggregator() throws MutationsRejectedException {
+        instance.setMaxDegreeEntries(2);
+        instance.open();
+        instance.addEdge("r1", "a|1");
+        verifyZeroInteractions(mockDegreeWriter);
+        instance.addEdge("r1", "b|2");
+        verify(mockDegreeWriter, times(2)).addMutation(any(Mutation.class));
+    }
+
+    /** Test AddText writes to the text table only.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testAddText() throws MutationsRejectedException {
+        instance.open();
+        instance.addText("abc123", "some text");
+
+        Mutation text = captureOne(mockTextWriter);
+        assertEquals("abc123", new String(text.getRow()));
+        assertEquals("some text", new String(text.getUpdates().get(0).getValue()));
+        verifyZeroInteractions(mockEdgeWriter, mockTransposeWriter, mockDegreeWriter);
+    }
+
+    /** Test addText stores a document once under its SHA-1.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddText_content_addressed() throws MutationsRejectedException, TableNotFoundException {
+        BatchScanner mockScanner = mock(BatchScanner.class);
+        Map.Entry<Key, Value> stored = new AbstractMap.SimpleEntry<>(new Key(HELLO_SHA1, "", "text"), new Value(new byte[0]));
+        when(mockScanner.iterator()).thenReturn(new ArrayList<Map.Entry<Key, Value>>().iterator(), Arrays.asList(stored).iterator());
+        when(mockConnector.createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        instance.open();
+
+        assertEquals(HELLO_SHA1, instance.addText("hello"));
+        assertEquals(HELLO_SHA1, instance.addText("hello"));
+        assertEquals(1, instance.getDuplicateTexts());
+        instance.flush();
+
+        instance.addText("hello");
+        instance.flush();
+        assertEquals(2, instance.getDuplicateTexts());
+
+        Mutation text = captureOne(mockTextWriter);
+        assertEquals(HELLO_SHA1, new String(text.getRow()));
+        assertEquals("hello", new String(text.getUpdates().get(0).getValue()));
+    }
+
+    /** Test new documents skip the lookup after the filter outgrows its first stage.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddText_filter_grows() throws MutationsRejectedException, TableNotFoundException {
+        BatchScanner mockScanner = mock(BatchScanner.class);
+        Map.Entry<Key, Value> stored = new AbstractMap.SimpleEntry<>(new Key(HELLO_SHA1, "", "text"), new Value(new byte[0]));
+        when(mockScanner.iterator()).thenReturn(new ArrayList<Map.Entry<Key, Value>>().iterator(), Arrays.asList(stored).iterator());
+        when(mockConnector.createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        instance.setTextFilterEntries(1);
+        instance.open();
+
+        instance.addText("hello");
+        instance.addText("world");
+        instance.flush();
+        verify(mockTextWriter, times(2)).addMutation(any(Mutation.class));
+        verify(mockConnector, times(1)).createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt());
+
+        instance.addText("hello");
+        instance.flush();
+        assertEquals(1, instance.getDuplicateTexts());
+        verify(mockTextWriter, times(2)).addMutation(any(Mutation.class));
+    }
+
+    /** Test the first addText seeds the filter so documents of earlier sessions are not rewritten.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddText_preloads_filter() throws MutationsRejectedException, TableNotFoundException {
+        BatchScanner mockScanner = mock(BatchScanner.class);
+        Map.Entry<Key, Value> stored = new AbstractMap.SimpleEntry<>(new Key(HELLO_SHA1, "", "text"), new Value(new byte[0]));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(stored).iterator(), Arrays.asList(stored).iterator());
+        when(mockConnector.createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        instance.open();
+
+        instance.addText("hello");
+        instance.flush();
+        assertEquals(1, instance.getDuplicateTexts());
+        verifyZeroInteractions(mockTextWriter);
+    }
+
+    /** Test a writer without preloading trusts filter misses.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddText_without_preload() throws MutationsRejectedException, TableNotFoundException {
+        instance.setPreloadText(false);
+        instance.open();
+
+        assertEquals(HELLO_SHA1, instance.addText("hello"));
+        assertEquals(HELLO_SHA1, new String(captureOne(mockTextWriter).getRow()));
+        verify(mockConnector, never()).createBatchScanner(anyString(), any(Authorizations.class), anyInt());
+    }
+
+    /** Test preloading more rows than the first stage holds grows the filter.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testPreloadTextFilter_grows() throws MutationsRejectedException, TableNotFoundException {
+        BatchScanner mockScanner = mock(BatchScanner.class);
+        Map.Entry<Key, Value> hello = new AbstractMap.SimpleEntry<>(new Key(HELLO_SHA1, "", "text"), new Value(new byte[0]));
+        Map.Entry<Key, Value> other = new AbstractMap.SimpleEntry<>(new Key("0123456789abcdef0123456789abcdef01234567", "", "text"), new Value(new byte[0]));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(hello, other).iterator());
+        when(mockConnector.createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        instance.setTextFilterEntries(1);
+        instance.open();
+
+        assertEquals(2, instance.preloadTextFilter());
+        verify(mockScanner).close();
+
+        instance.addText("world");
+        verify(mockTextWriter).addMutation(any(Mutation.class));
+    }
+
+    /** Test a filter hit which is not in TedgeText is still written.
+     *
+     * @throws MutationsRejectedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddText_false_positive() throws MutationsRejectedException, TableNotFoundException {
+        BatchScanner mockScanner = mock(BatchScanner.class);
+        Map.Entry<Key, Value> stored = new AbstractMap.SimpleEntry<>(new Key(HELLO_SHA1, "", "text"), new Value(new byte[0]));
+        Map.Entry<Key, Value> other = new AbstractMap.SimpleEntry<>(new Key("not-a-sha1", "", "text"), new Value(new byte[0]));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(stored, other).iterator(), new ArrayList<Map.Entry<Key, Value>>().iterator());
+        when(mockConnector.createBatchScanner(eq("TedgeText"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        instance.open();
+
+        assertEquals(1, instance.preloadTextFilter());
+        instance.addText("hello");
+        verifyZeroInteractions(mockTextWriter);
+        instance.flush();
+
+        assertEquals(0, instance.getDuplicateTexts());
+        assertEquals(HELLO_SHA1, new String(captureOne(mockTextWriter).getRow()));
+    }
+
+    /** Test close flushes through the multi table batch writer.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testClose() throws MutationsRejectedException {
+        instance.open();
+        instance.close();
+        instance.close();
+        verify(mockMultiTableBatchWriter).close();
+    }
+
+    /** Test writing before open fails.
+     */
+    @Test(expected = D4MException.class)
+    public void testAddEdge_before_open() {
+        instance.addEdge("r1", "c1");
+    }
+
+    /** Test open with a missing table.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testOpen_with_missing_table() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMultiTableBatchWriter.getBatchWriter("Tedge")).thenThrow(TableNotFoundException.class);
+        instance.open();
+    }
+
+    private Mutation captureOne(final BatchWriter writer) throws MutationsRejectedException {
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(writer).addMutation(captor.capture());
+        List<Mutation> values = captor.getAllValues();
+        assertEquals(1, values.size());
+        return values.get(0);
+    }
+
+}
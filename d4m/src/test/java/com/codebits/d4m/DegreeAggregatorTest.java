@@ -0,0 +1,93 @@
+package com.codebits.d4m;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.data.Mutation;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the DegreeAggregator class
+ *
+ * @author david
+ */
+public class DegreeAggregatorTest {
+
+    /** Test increments to the same column are summed.
+     */
+    @Test
+    public void testAdd() {
+        DegreeAggregator instance = new DegreeAggregator(10);
+        assertFalse(instance.add("a", 1));
+        assertFalse(instance.add("a", 4));
+        assertFalse(instance.add("b", 1));
+        assertEquals(5, instance.get("a"));
+        assertEquals(1, instance.get("b"));
+        assertEquals(0, instance.get("c"));
+        assertEquals(2, instance.getSize());
+    }
+
+    /** Test the size bound is reported.
+     */
+    @Test
+    public void testAdd_reports_full() {
+        DegreeAggregator instance = new DegreeAggregator(3);
+        assertFalse(instance.add("a", 1));
+        assertFalse(instance.add("b", 1));
+        assertTrue(instance.add("c", 1));
+        assertTrue(instance.isFull());
+    }
+
+    /** Test flush writes one mutation per column and empties the aggregator.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testFlush() throws MutationsRejectedException {
+        BatchWriter mockBatchWriter = mock(BatchWriter.class);
+        DegreeAggregator instance = new DegreeAggregator(100);
+        for (int i = 0; i < 1000; i++) {
+            instance.add("col" + (i % 10), 1);
+        }
+        instance.flush(mockBatchWriter);
+
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockBatchWriter, times(10)).addMutation(captor.capture());
+        for (Mutation mutation : captor.getAllValues()) {
+            assertEquals("degree", new String(mutation.getUpdates().get(0).getColumnQualifier()));
+            assertEquals("100", new String(mutation.getUpdates().get(0).getValue()));
+        }
+        assertEquals(0, instance.getSize());
+        assertEquals(0, instance.get("col1"));
+
+        instance.flush(mockBatchWriter);
+        verifyNoMoreInteractions(mockBatchWriter);
+    }
+
+    /** Test flush writes counts in the requested encoding.
+     *
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testFlush_with_encoding() throws MutationsRejectedException {
+        BatchWriter mockBatchWriter = mock(BatchWriter.class);
+        DegreeAggregator instance = new DegreeAggregator(100);
+        instance.add("a", 300);
+        instance.flush(mockBatchWriter, DegreeEncoding.FIXEDLEN);
+
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockBatchWriter).addMutation(captor.capture());
+        byte[] value = captor.getValue().getUpdates().get(0).getValue();
+        assertEquals(8, value.length);
+        assertEquals(300, DegreeEncoding.FIXEDLEN.decode(value));
+    }
+
+    /** Test a non-positive bound is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_with_zero_entries() {
+        new DegreeAggregator(0);
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the DegreeCountIterator class
+ *
+ * @author david
+ */
+public class DegreeCountIteratorTest {
+
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockDegreeWriter = mock(BatchWriter.class);
+
+    /** Test each transpose row becomes one degree entry in the requested encoding.
+     *
+     * @throws IOException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testDegreeCount() throws IOException, AccumuloException, AccumuloSecurityException, TableNotFoundException, MutationsRejectedException {
+        when(mockMultiTableBatchWriter.getBatchWriter("TresultDegree")).thenReturn(mockDegreeWriter);
+        SortedMap<Key, Value> source = new TreeMap<>();
+        source.put(new Key("a", "", "r1"), new Value("4".getBytes()));
+        source.put(new Key("a", "", "r2"), new Value("1".getBytes()));
+        source.put(new Key("b", "", "r1"), new Value("2".getBytes()));
+        Map<String, String> options = new HashMap<>();
+        options.put(RemoteWriteIterator.EDGE_TABLE, "TresultDegree");
+        options.put(DegreeCountIterator.DEGREE_ENCODING, "VARLEN");
+
+        DegreeCountIterator instance = new DegreeCountIterator() {
+            @Override
+            protected MultiTableBatchWriter createWriter() {
+                return mockMultiTableBatchWriter;
+            }
+        };
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+        assertEquals("2", instance.getTopValue().toString());
+        verify(mockMultiTableBatchWriter, never()).getBatchWriter(null);
+
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockDegreeWriter, times(2)).addMutation(captor.capture());
+        List<Mutation> degrees = captor.getAllValues();
+        ColumnUpdate update = degrees.get(0).getUpdates().get(0);
+        assertEquals("a", new String(degrees.get(0).getRow()));
+        assertEquals("degree", new String(update.getColumnQualifier()));
+        assertEquals(2, DegreeEncoding.VARLEN.decode(update.getValue()));
+        assertEquals("b", new String(degrees.get(1).getRow()));
+        assertEquals(1, DegreeEncoding.VARLEN.decode(degrees.get(1).getUpdates().get(0).getValue()));
+    }
+
+}
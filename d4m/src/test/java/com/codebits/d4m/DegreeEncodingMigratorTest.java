@@ -0,0 +1,209 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.SecurityOperations;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.TablePermission;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.*;
+
+/** Tests for the DegreeEncodingMigrator class
+ *
+ * @author david
+ */
+public class DegreeEncodingMigratorTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    SecurityOperations mockSecurityOperations = mock(SecurityOperations.class);
+    Scanner mockPropertyScanner = mock(Scanner.class);
+    BatchWriter mockMetadataWriter = mock(BatchWriter.class);
+    Map<String, Integer> entries = new HashMap<>();
+
+    private DegreeEncodingMigrator instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockPropertyScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockPropertyScanner);
+        when(mockConnector.createBatchScanner(anyString(), any(Authorizations.class), anyInt())).thenAnswer(invocation -> scanner((String) invocation.getArguments()[0]));
+        when(mockConnector.createBatchWriter(eq("TedgeMetadataMigration"), any(BatchWriterConfig.class))).thenReturn(mockMetadataWriter);
+        when(mockConnector.securityOperations()).thenReturn(mockSecurityOperations);
+        when(mockConnector.whoami()).thenReturn("root");
+        when(mockSecurityOperations.getUserAuthorizations("root")).thenReturn(new Authorizations("secret"));
+        when(mockSecurityOperations.listLocalUsers()).thenReturn(new HashSet<>(Arrays.asList("root", "reader")));
+        when(mockSecurityOperations.hasTablePermission("reader", "TedgeDegree", TablePermission.READ)).thenReturn(Boolean.TRUE);
+        entries.put("TedgeDegree", 2);
+        entries.put("TedgeDegreeMigration", 2);
+        entries.put("TedgeMetadata", 3);
+        entries.put("TedgeMetadataMigration", 3);
+        instance = new DegreeEncodingMigrator(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test migrate clones, re-encodes on the servers and swaps the copies in.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMigrate() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException, MutationsRejectedException {
+        assertEquals(5, instance.migrate(DegreeEncoding.VARLEN));
+
+        ArgumentCaptor<Map> properties = ArgumentCaptor.forClass(Map.class);
+        verify(mockTableOperations).clone(eq("TedgeDegree"), eq("TedgeDegreeMigration"), eq(true), properties.capture(), anySet());
+        assertEquals("VARLEN", properties.getValue().get("table.iterator.scan.SummingCombiner.opt.type"));
+
+        ArgumentCaptor<List> iterators = ArgumentCaptor.forClass(List.class);
+        verify(mockTableOperations).compact(eq("TedgeDegreeMigration"), isNull(Text.class), isNull(Text.class), iterators.capture(), eq(true), eq(true));
+        IteratorSetting reencode = (IteratorSetting) iterators.getValue().get(0);
+        assertEquals(DegreeReencodingIterator.class.getName(), reencode.getIteratorClass());
+        assertEquals("STRING", reencode.getOptions().get(DegreeReencodingIterator.FROM));
+        assertEquals("VARLEN", reencode.getOptions().get(DegreeReencodingIterator.TO));
+        verify(mockConnector, times(4)).createBatchScanner(anyString(), eq(new Authorizations("secret")), anyInt());
+        verify(mockSecurityOperations).grantTablePermission("reader", "TedgeDegreeMigration", TablePermission.READ);
+
+        ArgumentCaptor<Mutation> metadata = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockMetadataWriter).addMutation(metadata.capture());
+        ColumnUpdate property = metadata.getValue().getUpdates().get(0);
+        assertEquals("degree.encoding", new String(property.getColumnFamily()));
+        assertEquals("VARLEN", new String(property.getValue()));
+
+        InOrder inOrder = inOrder(mockTableOperations);
+        inOrder.verify(mockTableOperations).rename("TedgeDegree", "TedgeDegreeBackup");
+        inOrder.verify(mockTableOperations).rename("TedgeDegreeMigration", "TedgeDegree");
+        inOrder.verify(mockTableOperations).delete("TedgeDegreeBackup");
+        inOrder.verify(mockTableOperations).rename("TedgeMetadata", "TedgeMetadataBackup");
+        inOrder.verify(mockTableOperations).rename("TedgeMetadataMigration", "TedgeMetadata");
+        inOrder.verify(mockTableOperations).delete("TedgeMetadataBackup");
+        verify(mockTableOperations, never()).delete("TedgeDegree");
+        verify(mockTableOperations, never()).delete("TedgeMetadata");
+    }
+
+    /** Test a copy with another number of entries does not replace the table.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testMigrate_count_mismatch() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        entries.put("TedgeDegreeMigration", 1);
+        try {
+            instance.migrate(DegreeEncoding.VARLEN);
+            fail("expected D4MException");
+        } catch (D4MException e) {
+            assertTrue(e.getMessage().contains("was not replaced"));
+        }
+        verify(mockTableOperations, never()).rename(anyString(), anyString());
+        verify(mockTableOperations, never()).delete(anyString());
+    }
+
+    /** Test nothing is copied when the tables already use the target encoding.
+     */
+    @Test
+    public void testMigrate_to_current_encoding() throws AccumuloException, AccumuloSecurityException, TableNotFoundException, TableExistsException {
+        assertEquals(0, instance.migrate(DegreeEncoding.STRING));
+        verify(mockTableOperations, never()).clone(anyString(), anyString(), anyBoolean(), anyMapOf(String.class, String.class), anySetOf(String.class));
+        verify(mockTableOperations, never()).rename(anyString(), anyString());
+        verify(mockTableOperations, never()).delete(anyString());
+    }
+
+    /** Test a migration interrupted between the two renames of TedgeMetadata is finished.
+     *
+     * The degree table was already swapped in, so it is not copied again.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testMigrate_resumes_interrupted_swap() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeMetadataBackup")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeMetadataMigration")).thenReturn(Boolean.TRUE);
+        Entry<Key, Value> encoding = new SimpleEntry<>(new Key("property", "degree.encoding", ""), new Value("VARLEN".getBytes()));
+        when(mockPropertyScanner.iterator()).thenReturn(Arrays.asList(encoding).iterator());
+
+        assertEquals(0, instance.migrate(DegreeEncoding.VARLEN));
+
+        InOrder inOrder = inOrder(mockTableOperations);
+        inOrder.verify(mockTableOperations).rename("TedgeMetadataMigration", "TedgeMetadata");
+        inOrder.verify(mockTableOperations).delete("TedgeMetadataBackup");
+        verify(mockTableOperations, never()).clone(anyString(), anyString(), anyBoolean(), anyMapOf(String.class, String.class), anySetOf(String.class));
+        verify(mockTableOperations, never()).rename(eq("TedgeDegreeMigration"), anyString());
+    }
+
+    /** Test the degree table is not copied again when its combiner already uses the target encoding.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testMigrate_skips_migrated_degree_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        IteratorSetting varlen = new TableManager().getDegreeIteratorSetting(DegreeEncoding.VARLEN);
+        when(mockTableOperations.getIteratorSetting("TedgeDegree", "SummingCombiner", IteratorScope.scan)).thenReturn(varlen);
+        when(mockTableOperations.exists("TedgeMetadataMigration")).thenReturn(Boolean.TRUE);
+
+        instance.migrate(DegreeEncoding.VARLEN);
+
+        verify(mockTableOperations, never()).clone(eq("TedgeDegree"), anyString(), anyBoolean(), anyMapOf(String.class, String.class), anySetOf(String.class));
+        InOrder inOrder = inOrder(mockTableOperations);
+        inOrder.verify(mockTableOperations).delete("TedgeMetadataMigration");
+        inOrder.verify(mockTableOperations).clone(eq("TedgeMetadata"), eq("TedgeMetadataMigration"), eq(true), anyMapOf(String.class, String.class), anySetOf(String.class));
+    }
+
+    /* A batch scanner returning as many entries as the table has. */
+    private BatchScanner scanner(final String tablename) {
+        List<Entry<Key, Value>> rows = new ArrayList<>();
+        for (int i = 0; i < entries.get(tablename); i++) {
+            rows.add(new SimpleEntry<>(new Key("r" + i), new Value("1".getBytes())));
+        }
+        BatchScanner scanner = mock(BatchScanner.class);
+        when(scanner.iterator()).thenReturn(rows.iterator());
+        return scanner;
+    }
+
+}
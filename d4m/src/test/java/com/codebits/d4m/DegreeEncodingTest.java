@@ -0,0 +1,37 @@
+package com.codebits.d4m;
+
+import org.apache.accumulo.core.iterators.LongCombiner;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the DegreeEncoding enum
+ *
+ * @author david
+ */
+public class DegreeEncodingTest {
+
+    /** Test every encoding decodes what it encodes.
+     */
+    @Test
+    public void testRoundTrip() {
+        for (DegreeEncoding encoding : DegreeEncoding.values()) {
+            for (long count : new long[]{0, 1, 127, 128, 1L << 40, Long.MAX_VALUE}) {
+                assertEquals(count, encoding.decode(encoding.encode(count)));
+                assertEquals(count, encoding.decode(encoding.newValue(count).get()));
+            }
+        }
+    }
+
+    /** Test the encodings match the combiner types and their sizes.
+     */
+    @Test
+    public void testEncodings() {
+        assertEquals(LongCombiner.Type.STRING, DegreeEncoding.STRING.getType());
+        assertEquals(LongCombiner.Type.VARLEN, DegreeEncoding.VARLEN.getType());
+        assertEquals(LongCombiner.Type.FIXEDLEN, DegreeEncoding.FIXEDLEN.getType());
+        assertEquals("42", new String(DegreeEncoding.STRING.encode(42)));
+        assertEquals(1, DegreeEncoding.VARLEN.encode(42).length);
+        assertEquals(8, DegreeEncoding.FIXEDLEN.encode(42).length);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the DegreeReencodingIterator class
+ *
+ * @author david
+ */
+public class DegreeReencodingIteratorTest {
+
+    /** Test the counts are re-encoded and other entries, visibilities included, are kept.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReencode() throws IOException {
+        SortedMap<Key, Value> source = new TreeMap<>();
+        source.put(new Key("city", "field", "", "secret"), new Value("12".getBytes()));
+        source.put(new Key("city|Paris", "", "degree", "secret"), new Value("300".getBytes()));
+        source.put(new Key("property", "field.delimiter", ""), new Value("\t".getBytes()));
+        Map<String, String> options = new HashMap<>();
+        options.put(DegreeReencodingIterator.FROM, "STRING");
+        options.put(DegreeReencodingIterator.TO, "VARLEN");
+        DegreeReencodingIterator instance = new DegreeReencodingIterator();
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+
+        assertEquals("secret", instance.getTopKey().getColumnVisibility().toString());
+        assertEquals(12, DegreeEncoding.VARLEN.decode(instance.getTopValue().get()));
+        instance.next();
+        assertEquals("secret", instance.getTopKey().getColumnVisibility().toString());
+        assertEquals(300, DegreeEncoding.VARLEN.decode(instance.getTopValue().get()));
+        instance.next();
+        assertEquals("\t", instance.getTopValue().toString());
+        instance.next();
+        assertFalse(instance.hasTop());
+    }
+
+}
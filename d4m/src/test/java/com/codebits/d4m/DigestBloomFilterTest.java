@@ -0,0 +1,72 @@
+package com.codebits.d4m;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the DigestBloomFilter class
+ *
+ * @author david
+ */
+public class DigestBloomFilterTest {
+
+    /** Test added digests are always found and the false positive rate is near the target.
+     *
+     * @throws NoSuchAlgorithmException
+     */
+    @Test
+    public void testMightContain() throws NoSuchAlgorithmException {
+        DigestBloomFilter instance = new DigestBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            instance.put(sha1(i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(instance.mightContain(sha1(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (instance.mightContain(sha1(i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 200);
+    }
+
+    /** Test the filter adds a stage when full and keeps every digest.
+     *
+     * @throws NoSuchAlgorithmException
+     */
+    @Test
+    public void testPut_grows_when_full() throws NoSuchAlgorithmException {
+        DigestBloomFilter instance = new DigestBloomFilter(2, 0.01);
+        instance.put(sha1(1));
+        instance.put(sha1(2));
+        assertEquals(1, instance.getStages());
+        for (int i = 3; i <= 1000; i++) {
+            instance.put(sha1(i));
+        }
+        assertEquals(1000, instance.getSize());
+        assertTrue(instance.getStages() > 1);
+        for (int i = 1; i <= 1000; i++) {
+            assertTrue(instance.mightContain(sha1(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 1001; i <= 11000; i++) {
+            if (instance.mightContain(sha1(i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 200);
+
+        instance.clear();
+        assertEquals(0, instance.getSize());
+        assertEquals(1, instance.getStages());
+    }
+
+    private byte[] sha1(final int i) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-1").digest(ByteBuffer.allocate(4).putInt(i).array());
+    }
+
+}
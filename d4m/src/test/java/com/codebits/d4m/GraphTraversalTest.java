@@ -0,0 +1,138 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the GraphTraversal class
+ *
+ * @author david
+ */
+public class GraphTraversalTest {
+
+    Connector mockConnector = mock(Connector.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    BatchScanner mockDegreeScanner = mock(BatchScanner.class);
+    BatchScanner mockTransposeScanner = mock(BatchScanner.class);
+    BatchScanner mockEdgeScanner1 = mock(BatchScanner.class);
+    BatchScanner mockEdgeScanner2 = mock(BatchScanner.class);
+
+    private GraphTraversal instance = null;
+    private final List<String> edges = new ArrayList<>();
+    private final List<Integer> frontiers = new ArrayList<>();
+
+    private final GraphTraversal.Listener listener = new GraphTraversal.Listener() {
+        @Override
+        public void edge(final int hop, final String row, final String column, final String value) {
+            edges.add(hop + ":" + row + "->" + column);
+        }
+
+        @Override
+        public void endOfHop(final int hop, final int frontierSize) {
+            frontiers.add(frontierSize);
+        }
+    };
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockConnector.createBatchScanner(eq("TedgeDegree"), any(Authorizations.class), anyInt())).thenReturn(mockDegreeScanner);
+        when(mockConnector.createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), anyInt())).thenReturn(mockTransposeScanner);
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt())).thenReturn(mockEdgeScanner1, mockEdgeScanner2);
+        instance = new GraphTraversal(new D4MQuery(new TableManager(mockConnector, mockTableOperations)));
+    }
+
+    /** Test two hops of out-edges; d is reached twice but expanded once.
+     */
+    @Test
+    public void testTraverse_out() {
+        when(mockEdgeScanner1.iterator()).thenReturn(entries("a", "b", "1", "a", "c", "1").iterator());
+        when(mockEdgeScanner2.iterator()).thenReturn(entries("b", "d", "1", "c", "d", "1", "c", "a", "1").iterator());
+
+        assertEquals(4, instance.traverse(Arrays.asList("a"), 2, listener));
+        assertEquals(Arrays.asList("1:a->b", "1:a->c", "2:b->d", "2:c->d", "2:c->a"), edges);
+        assertEquals(Arrays.asList(2, 0), frontiers);
+        assertEquals(Arrays.asList(Range.exact("b"), Range.exact("c")), capturedRanges(mockEdgeScanner2));
+        verify(mockDegreeScanner, never()).setRanges(anyCollectionOf(Range.class));
+    }
+
+    /** Test in-edges are read from TedgeTranspose and reported in Tedge order.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testTraverse_in() throws TableNotFoundException {
+        when(mockTransposeScanner.iterator()).thenReturn(entries("d", "b", "1").iterator());
+        instance.setDirection(GraphTraversal.Direction.IN);
+
+        assertEquals(2, instance.traverse(Arrays.asList("d"), 1, listener));
+        assertEquals(Arrays.asList("1:b->d"), edges);
+        verify(mockConnector, never()).createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt());
+    }
+
+    /** Test vertices above maxDegree are reported but not expanded.
+     */
+    @Test
+    public void testTraverse_skips_supernodes() {
+        when(mockEdgeScanner1.iterator()).thenReturn(entries("a", "hub", "1", "a", "c", "1").iterator());
+        when(mockDegreeScanner.iterator()).thenReturn(entries("hub", "degree", "5000", "c", "degree", "3").iterator());
+        when(mockEdgeScanner2.iterator()).thenReturn(entries("c", "d", "1").iterator());
+        instance.setMaxDegree(100);
+
+        assertEquals(4, instance.traverse(Arrays.asList("a"), 2, listener));
+        assertEquals(Arrays.asList("1:a->hub", "1:a->c", "2:c->d"), edges);
+        assertEquals(Arrays.asList(Range.exact("c")), capturedRanges(mockEdgeScanner2));
+    }
+
+    /** Test the frontier is split into batches of exact ranges.
+     */
+    @Test
+    public void testTraverse_batches() {
+        when(mockEdgeScanner1.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockEdgeScanner2.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        instance.setBatchSize(2);
+
+        assertEquals(3, instance.traverse(Arrays.asList("a", "b", "c", "a"), 1, listener));
+        assertEquals(Arrays.asList(Range.exact("a"), Range.exact("b")), capturedRanges(mockEdgeScanner1));
+        assertEquals(Arrays.asList(Range.exact("c")), capturedRanges(mockEdgeScanner2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Range> capturedRanges(final BatchScanner scanner) {
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(scanner).setRanges(captor.capture());
+        return new ArrayList<Range>(captor.getValue());
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 3) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], "", keys[i + 1]), new Value(keys[i + 2].getBytes())));
+        }
+        return entries;
+    }
+
+}
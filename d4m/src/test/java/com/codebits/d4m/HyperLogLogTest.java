@@ -0,0 +1,52 @@
+package com.codebits.d4m;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the HyperLogLog class
+ *
+ * @author david
+ */
+public class HyperLogLogTest {
+
+    /** Test the estimate is close for small and large cardinalities and ignores repeats.
+     */
+    @Test
+    public void testCardinality() {
+        HyperLogLog instance = new HyperLogLog(12);
+        assertEquals(0, instance.cardinality());
+        for (int i = 0; i < 100; i++) {
+            instance.add("v" + i);
+            instance.add("v" + i);
+        }
+        assertEquals(100, instance.cardinality(), 2);
+        for (int i = 100; i < 100000; i++) {
+            instance.add("v" + i);
+        }
+        assertEquals(100000, instance.cardinality(), 100000 * 0.05);
+    }
+
+    /** Test merged sketches estimate the union and survive serialization.
+     */
+    @Test
+    public void testMerge() {
+        HyperLogLog left = new HyperLogLog(10);
+        HyperLogLog right = new HyperLogLog(10);
+        HyperLogLog all = new HyperLogLog(10);
+        for (int i = 0; i < 20000; i++) {
+            (i % 2 == 0 ? left : right).add("v" + i);
+            all.add("v" + i);
+        }
+        left.merge(HyperLogLog.fromBytes(right.toBytes()));
+        assertEquals(all, left);
+        assertEquals(all.cardinality(), left.cardinality());
+    }
+
+    /** Test sketches of different precision cannot be merged.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMerge_with_other_precision() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.codebits.d4m;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the LatencyHistogram class
+ *
+ * @author david
+ */
+public class LatencyHistogramTest {
+
+    /** Test percentiles land on the upper bound of their bucket.
+     */
+    @Test
+    public void testSnapshot() {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            instance.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        instance.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        LatencySnapshot snapshot = instance.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(0.128, snapshot.getP50Millis(), 0.0);
+        assertEquals(0.128, snapshot.getP99Millis(), 0.0);
+        assertEquals(50.0, snapshot.getMaxMillis(), 0.0);
+        assertEquals((99 * 0.1 + 50) / 100, snapshot.getMeanMillis(), 1e-9);
+
+        instance.reset();
+        assertEquals(0, instance.snapshot().getCount());
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.codebits.d4m;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the LongHashSet class
+ *
+ * @author david
+ */
+public class LongHashSetTest {
+
+    /** Test members survive growth, including zero.
+     */
+    @Test
+    public void testAddAndContains() {
+        LongHashSet instance = new LongHashSet(4);
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(instance.add(i * 31));
+        }
+        assertFalse(instance.add(0));
+        assertFalse(instance.add(31 * 9999));
+        assertEquals(10000, instance.getSize());
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(instance.contains(i * 31));
+        }
+        assertFalse(instance.contains(1));
+
+        instance.clear();
+        assertEquals(0, instance.getSize());
+        assertFalse(instance.contains(0));
+        assertFalse(instance.contains(31));
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.codebits.d4m;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the LookupCache class
+ *
+ * @author david
+ */
+public class LookupCacheTest {
+
+    /** Test hits and misses are counted and the least recently used entry is evicted.
+     */
+    @Test
+    public void testGet_evicts_least_recently_used() {
+        LookupCache<String, Long> instance = new LookupCache<>("degree", 2, 1, TimeUnit.MINUTES);
+        assertNull(instance.get("a"));
+        instance.put("a", 1L);
+        instance.put("b", 2L);
+        assertEquals(Long.valueOf(1), instance.get("a"));
+        instance.put("c", 3L);
+        assertNull(instance.get("b"));
+        assertEquals(Long.valueOf(1), instance.get("a"));
+        assertEquals(Long.valueOf(3), instance.get("c"));
+        assertEquals(2, instance.getSize());
+        assertEquals(1, instance.getEvictions());
+        assertEquals(3, instance.getHits());
+        assertEquals(2, instance.getMisses());
+        assertEquals(0.6, instance.getHitRate(), 1e-9);
+    }
+
+    /** Test entries expire after the time to live and updates keep it.
+     */
+    @Test
+    public void testGet_expires() {
+        final AtomicLong now = new AtomicLong();
+        LookupCache<String, Long> instance = new LookupCache<>("degree", 100, 10, TimeUnit.NANOSECONDS);
+        instance.ticker = now::get;
+        instance.put("a", 1L);
+        now.set(5);
+        instance.update("a", degree -> degree + 1);
+        instance.update("b", degree -> degree + 1);
+        assertEquals(Long.valueOf(2), instance.get("a"));
+        assertNull(instance.get("b"));
+        now.set(10);
+        assertNull(instance.get("a"));
+        assertEquals(1, instance.getExpirations());
+        assertEquals(0, instance.getSize());
+    }
+
+    /** Test invalidation and recording in D4MMetrics.
+     */
+    @Test
+    public void testInvalidate() {
+        D4MMetrics metrics = new D4MMetrics();
+        LookupCache<Integer, String> instance = new LookupCache<>("property", 1000, 1, TimeUnit.MINUTES);
+        instance.setMetrics(metrics);
+        for (int i = 0; i < 1000; i++) {
+            instance.put(i, "v" + i);
+        }
+        instance.invalidate(7);
+        assertNull(instance.get(7));
+        assertEquals("v8", instance.get(8));
+        instance.invalidateAll();
+        assertEquals(0, instance.getSize());
+        assertEquals(Long.valueOf(1), metrics.getCacheHits().get("property"));
+        assertEquals(Long.valueOf(1), metrics.getCacheMisses().get("property"));
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Instance;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.*;
+
+/** Tests for the MatrixOperations class
+ *
+ * @author david
+ */
+public class MatrixOperationsTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    Instance mockInstance = mock(Instance.class);
+    BatchScanner mockScanner = mock(BatchScanner.class);
+    BatchScanner mockDegreeScanner = mock(BatchScanner.class);
+    BatchWriter mockMetadataWriter = mock(BatchWriter.class);
+
+    private MatrixOperations instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockConnector.getInstance()).thenReturn(mockInstance);
+        when(mockConnector.whoami()).thenReturn("root");
+        when(mockInstance.getInstanceName()).thenReturn("test");
+        when(mockInstance.getZooKeepers()).thenReturn("localhost:2181");
+        when(mockConnector.createBatchWriter(eq("TresultMetadata"), any(BatchWriterConfig.class))).thenReturn(mockMetadataWriter);
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt())).thenReturn(mockScanner);
+        Entry<Key, Value> first = new SimpleEntry<>(new Key("r1", "", "d4mProgress"), new Value("5".getBytes()));
+        Entry<Key, Value> second = new SimpleEntry<>(new Key("r9", "", "d4mProgress"), new Value("7".getBytes()));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(first, second).iterator());
+        when(mockConnector.createBatchScanner(eq("TresultTranspose"), any(Authorizations.class), anyInt())).thenReturn(mockDegreeScanner);
+        when(mockDegreeScanner.iterator()).thenReturn(Arrays.asList(first).iterator());
+        instance = new MatrixOperations(new TableManager(mockConnector, mockTableOperations), "secret");
+    }
+
+    /** Test transposeMultiply creates the result tables and sums the progress entries.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testTransposeMultiply() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        assertEquals(12, instance.transposeMultiply("result"));
+
+        EnumSet<IteratorScope> scan = EnumSet.of(IteratorScope.scan);
+        verify(mockTableOperations).attachIterator(eq("Tresult"), any(IteratorSetting.class), eq(scan));
+        verify(mockTableOperations).attachIterator(eq("TresultTranspose"), any(IteratorSetting.class), eq(scan));
+        verify(mockTableOperations).removeIterator("Tresult", "vers", EnumSet.allOf(IteratorScope.class));
+        verify(mockTableOperations).removeIterator("TresultTranspose", "vers", EnumSet.allOf(IteratorScope.class));
+        ArgumentCaptor<IteratorSetting> setting = ArgumentCaptor.forClass(IteratorSetting.class);
+        verify(mockScanner).addScanIterator(setting.capture());
+        assertEquals(TransposeMultiplyIterator.class.getName(), setting.getValue().getIteratorClass());
+        assertEquals("Tresult", setting.getValue().getOptions().get(RemoteWriteIterator.EDGE_TABLE));
+        assertEquals("secret", setting.getValue().getOptions().get(RemoteWriteIterator.PASSWORD));
+        assertFalse(setting.getValue().getOptions().containsKey(TransposeMultiplyIterator.OTHER_TABLE));
+        verify(mockScanner).close();
+    }
+
+    /** Test the partials are folded by one compaction and a summing combiner takes over.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReduceResult() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        instance.transposeMultiply("result");
+
+        for (String tablename : Arrays.asList("Tresult", "TresultTranspose")) {
+            ArgumentCaptor<List> iterators = ArgumentCaptor.forClass(List.class);
+            verify(mockTableOperations).compact(eq(tablename), isNull(Text.class), isNull(Text.class), iterators.capture(), eq(true), eq(true));
+            assertEquals(PartialSumIterator.class.getName(), ((IteratorSetting) iterators.getValue().get(0)).getIteratorClass());
+            verify(mockTableOperations).removeIterator(tablename, "d4mSum", EnumSet.of(IteratorScope.scan));
+            ArgumentCaptor<IteratorSetting> settings = ArgumentCaptor.forClass(IteratorSetting.class);
+            verify(mockTableOperations, times(2)).attachIterator(eq(tablename), settings.capture());
+            assertEquals(SummingCombiner.class.getName(), settings.getAllValues().get(0).getIteratorClass());
+            assertEquals("vers", settings.getAllValues().get(1).getName());
+        }
+        InOrder inOrder = inOrder(mockTableOperations, mockDegreeScanner);
+        inOrder.verify(mockTableOperations).compact(eq("TresultTranspose"), isNull(Text.class), isNull(Text.class), anyList(), eq(true), eq(true));
+        inOrder.verify(mockDegreeScanner).addScanIterator(any(IteratorSetting.class));
+    }
+
+    /** Test the configured authorizations read A and are passed on for B.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testTransposeMultiply_authorizations() throws TableNotFoundException {
+        instance.setAuthorizations(new Authorizations("a", "b"));
+        instance.transposeMultiply(new TableManager(mockConnector, mockTableOperations), "result");
+
+        verify(mockConnector).createBatchScanner(eq("Tedge"), eq(new Authorizations("a", "b")), anyInt());
+        ArgumentCaptor<IteratorSetting> setting = ArgumentCaptor.forClass(IteratorSetting.class);
+        verify(mockScanner).addScanIterator(setting.capture());
+        String authorizations = setting.getValue().getOptions().get(TransposeMultiplyIterator.AUTHORIZATIONS);
+        assertEquals(new Authorizations("a", "b"), new Authorizations(authorizations.split(",")));
+    }
+
+    /** Test the result TedgeDegree is filled from the result TedgeTranspose.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testResultDegrees() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        assertEquals(12, instance.sumRows("result"));
+
+        verify(mockTableOperations).removeIterator("TresultDegree", "SummingCombiner", EnumSet.allOf(IteratorScope.class));
+        ArgumentCaptor<IteratorSetting> setting = ArgumentCaptor.forClass(IteratorSetting.class);
+        verify(mockDegreeScanner).addScanIterator(setting.capture());
+        assertEquals(DegreeCountIterator.class.getName(), setting.getValue().getIteratorClass());
+        assertEquals("TresultDegree", setting.getValue().getOptions().get(RemoteWriteIterator.EDGE_TABLE));
+        assertFalse(setting.getValue().getOptions().containsKey(RemoteWriteIterator.TRANSPOSE_TABLE));
+        assertEquals("STRING", setting.getValue().getOptions().get(DegreeCountIterator.DEGREE_ENCODING));
+        verify(mockDegreeScanner).close();
+    }
+
+    /** Test results are never added to an existing table set.
+     */
+    @Test(expected = D4MException.class)
+    public void testSumRows_existing_result() {
+        when(mockTableOperations.exists("Tresult")).thenReturn(true);
+        instance.sumRows("result");
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.system.MultiIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the PartialSumIterator class
+ *
+ * @author david
+ */
+public class PartialSumIteratorTest {
+
+    /** Test partials of different timestamps are added and a repeated partial is counted once.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSum() throws IOException {
+        SortedMap<Key, Value> source = new TreeMap<>();
+        source.put(new Key("a", "", "b", 30), new Value("2".getBytes()));
+        source.put(new Key("a", "", "b", 20), new Value("3".getBytes()));
+        source.put(new Key("a", "", "c", 10), new Value("4".getBytes()));
+        PartialSumIterator instance = new PartialSumIterator();
+        instance.init(new SortedMapIterator(source), null, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+
+        assertEquals(new Key("a", "", "b", 30), instance.getTopKey());
+        assertEquals("5", instance.getTopValue().toString());
+        instance.next();
+        assertEquals(new Key("a", "", "c", 10), instance.getTopKey());
+        assertEquals("4", instance.getTopValue().toString());
+        instance.next();
+        assertFalse(instance.hasTop());
+    }
+
+    /** Test the same partial written twice is counted once.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRepeatedPartial() throws IOException {
+        List<SortedKeyValueIterator<Key, Value>> copies = new ArrayList<>();
+        copies.add(new SortedMapIterator(partials()));
+        copies.add(new SortedMapIterator(partials()));
+        PartialSumIterator instance = new PartialSumIterator();
+        instance.init(new MultiIterator(copies, false), null, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+
+        assertEquals("5", instance.getTopValue().toString());
+        instance.next();
+        assertFalse(instance.hasTop());
+    }
+
+    /** Test a seek into the middle of the versions of a key skips that key.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSeekPastKey() throws IOException {
+        SortedMap<Key, Value> source = partials();
+        source.put(new Key("a", "", "c", 10), new Value("4".getBytes()));
+        PartialSumIterator instance = new PartialSumIterator();
+        instance.init(new SortedMapIterator(source), null, null);
+        instance.seek(new Range(new Key("a", "", "b", 30), false, null, true), new ArrayList<ByteSequence>(), false);
+
+        assertEquals(new Key("a", "", "c", 10), instance.getTopKey());
+        assertEquals("4", instance.getTopValue().toString());
+    }
+
+    private SortedMap<Key, Value> partials() {
+        SortedMap<Key, Value> source = new TreeMap<>();
+        source.put(new Key("a", "", "b", 30), new Value("2".getBytes()));
+        source.put(new Key("a", "", "b", 20), new Value("3".getBytes()));
+        return source;
+    }
+
+}
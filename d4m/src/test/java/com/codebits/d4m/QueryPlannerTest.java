@@ -0,0 +1,154 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the QueryPlanner class
+ *
+ * @author david
+ */
+public class QueryPlannerTest {
+
+    Connector mockConnector = mock(Connector.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    BatchScanner mockDegreeScanner = mock(BatchScanner.class);
+    BatchScanner mockTransposeScanner = mock(BatchScanner.class);
+    BatchScanner mockEdgeScanner1 = mock(BatchScanner.class);
+    BatchScanner mockEdgeScanner2 = mock(BatchScanner.class);
+
+    private QueryPlanner instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockConnector.createBatchScanner(eq("TedgeDegree"), any(Authorizations.class), anyInt())).thenReturn(mockDegreeScanner);
+        when(mockConnector.createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), anyInt())).thenReturn(mockTransposeScanner);
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt())).thenReturn(mockEdgeScanner1, mockEdgeScanner2);
+        instance = new QueryPlanner(new D4MQuery(new TableManager(mockConnector, mockTableOperations)));
+    }
+
+    /** Test GetDegrees
+     */
+    @Test
+    public void testGetDegrees() {
+        when(mockDegreeScanner.iterator()).thenReturn(entries("c1", "degree", "5", "c2", "degree", "7").iterator());
+        Map<String, Long> degrees = instance.getDegrees(Arrays.asList("c1", "c2", "c3"));
+        assertEquals(Long.valueOf(5), degrees.get("c1"));
+        assertEquals(Long.valueOf(7), degrees.get("c2"));
+        assertEquals(Long.valueOf(0), degrees.get("c3"));
+        verify(mockDegreeScanner).close();
+    }
+
+    /** Test GetDegrees records the entries read rather than the columns asked for.
+     */
+    @Test
+    public void testGetDegrees_metrics() {
+        D4MMetrics metrics = new D4MMetrics();
+        instance.getQuery().getTableManager().setMetrics(metrics);
+        when(mockDegreeScanner.iterator()).thenReturn(entries("c1", "degree", "5", "c2", "degree", "7").iterator());
+        instance.getDegrees(Arrays.asList("c1", "c2", "c3", "c4"));
+        assertEquals(Long.valueOf(2), metrics.getScanEntries().get("degrees"));
+    }
+
+    /** Test GetDegrees answers cached columns without a scan and caches the columns read.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetDegrees_cached() throws TableNotFoundException {
+        TableManager tableManager = instance.getQuery().getTableManager();
+        tableManager.enableLookupCache(1000, 1, TimeUnit.MINUTES);
+        tableManager.getDegreeCache().put("c1", 9L);
+        when(mockDegreeScanner.iterator()).thenReturn(entries("c2", "degree", "7").iterator());
+
+        Map<String, Long> degrees = instance.getDegrees(Arrays.asList("c1", "c2", "c3"));
+        assertEquals(Long.valueOf(9), degrees.get("c1"));
+        assertEquals(Long.valueOf(7), degrees.get("c2"));
+        assertEquals(Long.valueOf(0), degrees.get("c3"));
+        ArgumentCaptor<Collection> ranges = ArgumentCaptor.forClass(Collection.class);
+        verify(mockDegreeScanner).setRanges(ranges.capture());
+        assertEquals(2, ranges.getValue().size());
+
+        degrees = instance.getDegrees(Arrays.asList("c2", "c3"));
+        assertEquals(Long.valueOf(7), degrees.get("c2"));
+        assertEquals(Long.valueOf(0), degrees.get("c3"));
+        verify(mockConnector, times(1)).createBatchScanner(eq("TedgeDegree"), any(Authorizations.class), anyInt());
+        assertEquals(3, tableManager.getDegreeCache().getHits());
+    }
+
+    /** Test And scans the rarest column and looks up the others.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAnd() throws TableNotFoundException {
+        when(mockDegreeScanner.iterator()).thenReturn(entries("hub", "degree", "1000", "rare", "degree", "2", "mid", "degree", "100").iterator());
+        when(mockTransposeScanner.iterator()).thenReturn(entries("rare", "r1", "1", "rare", "r2", "1").iterator());
+        when(mockEdgeScanner1.iterator()).thenReturn(entries("r1", "mid", "1", "r2", "mid", "1").iterator());
+        when(mockEdgeScanner2.iterator()).thenReturn(entries("r2", "hub", "1").iterator());
+
+        AssociativeArray result = instance.and(Arrays.asList("hub", "rare", "mid"));
+        assertEquals(1, result.getRows().size());
+        assertEquals("1", result.get("r2", "hub"));
+        assertEquals("1", result.get("r2", "rare"));
+        assertEquals("1", result.get("r2", "mid"));
+        assertNull(result.get("r1", "rare"));
+        verify(mockConnector, times(1)).createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), anyInt());
+        verify(mockConnector, times(2)).createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt());
+    }
+
+    /** Test And with a column of zero degree does no scans.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAnd_with_missing_column() throws TableNotFoundException {
+        when(mockDegreeScanner.iterator()).thenReturn(entries("c1", "degree", "5").iterator());
+        assertTrue(instance.and(Arrays.asList("c1", "c2")).isEmpty());
+        verify(mockConnector, never()).createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), anyInt());
+    }
+
+    /** Test Or reads all columns from the transpose table.
+     */
+    @Test
+    public void testOr() {
+        when(mockTransposeScanner.iterator()).thenReturn(entries("c1", "r1", "1", "c2", "r2", "1").iterator());
+        AssociativeArray result = instance.or(Arrays.asList("c1", "c2"));
+        assertEquals(2, result.size());
+        assertEquals("1", result.get("r2", "c2"));
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 3) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], "", keys[i + 1]), new Value(keys[i + 2].getBytes())));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the RmatGenerator class
+ *
+ * @author david
+ */
+public class RmatGeneratorTest {
+
+    /** Test triples are left-aligned, fixed-width hex vertices and the same seed repeats the graph.
+     */
+    @Test
+    public void testGenerate_repeatable() {
+        RmatGenerator instance = new RmatGenerator(10, 4, 7);
+        assertEquals(1024, instance.getVertexCount());
+        assertEquals(4096, instance.getEdgeCount());
+        final List<String> first = new ArrayList<>();
+        instance.generate((row, column, value) -> {
+            assertTrue(row.matches("[0-9a-f]{2}[048c]"));
+            assertTrue(column.matches("out\\|[0-9a-f]{3}"));
+            assertEquals("1", value);
+            first.add(row + " " + column);
+        });
+        assertEquals(4096, first.size());
+        final List<String> second = new ArrayList<>();
+        instance.generate((row, column, value) -> second.add(row + " " + column));
+        assertEquals(first, second);
+        final List<String> other = new ArrayList<>();
+        new RmatGenerator(10, 4, 8).generate((row, column, value) -> other.add(row + " " + column));
+        assertNotEquals(first, other);
+    }
+
+    /** Test the default probabilities give a skewed out-degree and uniform ones do not.
+     */
+    @Test
+    public void testGenerate_skew() {
+        RmatGenerator instance = new RmatGenerator(12, 16, 1);
+        assertTrue(maxOutDegree(instance) > 20 * 16);
+        instance.setA(0.25);
+        instance.setB(0.25);
+        instance.setC(0.25);
+        assertTrue(maxOutDegree(instance) < 3 * 16);
+    }
+
+    /** Test scrambling permutes the vertex ids.
+     */
+    @Test
+    public void testVertex_bijection() {
+        RmatGenerator instance = new RmatGenerator(9, 1, 1);
+        Set<Long> images = new HashSet<>();
+        for (long id = 0; id < instance.getVertexCount(); id++) {
+            long image = instance.vertex(id);
+            assertTrue(image >= 0 && image < instance.getVertexCount());
+            images.add(image);
+        }
+        assertEquals(512, images.size());
+        assertNotEquals(0, instance.vertex(0));
+        instance.setScramble(false);
+        assertEquals(5, instance.vertex(5));
+    }
+
+    /** Test probabilities summing past one are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerate_invalid_probabilities() {
+        RmatGenerator instance = new RmatGenerator(4, 1, 1);
+        instance.setA(0.9);
+        instance.generate((row, column, value) -> {
+        });
+    }
+
+    private static int maxOutDegree(final RmatGenerator instance) {
+        final Map<String, Integer> degrees = new HashMap<>();
+        instance.generate((row, column, value) -> degrees.merge(row, 1, Integer::sum));
+        int max = 0;
+        for (int degree : degrees.values()) {
+            max = Math.max(max, degree);
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the RowSumIterator class
+ *
+ * @author david
+ */
+public class RowSumIteratorTest {
+
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockEdgeWriter = mock(BatchWriter.class);
+    BatchWriter mockTransposeWriter = mock(BatchWriter.class);
+
+    /** Test each row is summed, counting non-numeric values as 1.
+     *
+     * @throws IOException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testRowSum() throws IOException, AccumuloException, AccumuloSecurityException, TableNotFoundException, MutationsRejectedException {
+        when(mockMultiTableBatchWriter.getBatchWriter("Tresult")).thenReturn(mockEdgeWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("TresultTranspose")).thenReturn(mockTransposeWriter);
+        SortedMap<Key, Value> source = new TreeMap<>();
+        source.put(new Key("r1", "", "a"), new Value("1".getBytes()));
+        source.put(new Key("r1", "", "b"), new Value("2".getBytes()));
+        source.put(new Key("r1", "", "c"), new Value("x".getBytes()));
+        Map<String, String> options = new HashMap<>();
+        options.put(RemoteWriteIterator.EDGE_TABLE, "Tresult");
+        options.put(RemoteWriteIterator.TRANSPOSE_TABLE, "TresultTranspose");
+
+        RowSumIterator instance = new RowSumIterator() {
+            @Override
+            protected MultiTableBatchWriter createWriter() {
+                return mockMultiTableBatchWriter;
+            }
+        };
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+        assertEquals("2", instance.getTopValue().toString());
+
+        ArgumentCaptor<Mutation> edge = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockEdgeWriter).addMutation(edge.capture());
+        ColumnUpdate update = edge.getValue().getUpdates().get(0);
+        assertEquals("r1", new String(edge.getValue().getRow()));
+        assertEquals("sum", new String(update.getColumnQualifier()));
+        assertEquals("4", new String(update.getValue()));
+
+        ArgumentCaptor<Mutation> transpose = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockTransposeWriter).addMutation(transpose.capture());
+        assertEquals("sum", new String(transpose.getValue().getRow()));
+        assertEquals("r1", new String(transpose.getValue().getUpdates().get(0).getColumnQualifier()));
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the ScanPublisher class
+ *
+ * @author david
+ */
+public class ScanPublisherTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    BatchScanner mockBatchScanner = mock(BatchScanner.class);
+
+    private D4MQuery query = null;
+
+    /** Setup query for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockConnector.createBatchScanner(anyString(), any(Authorizations.class), anyInt())).thenReturn(mockBatchScanner);
+        query = new D4MQuery(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test chunks are only sent as they are requested and the stream completes.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testSubscribe_with_backpressure() throws InterruptedException {
+        when(mockBatchScanner.iterator()).thenReturn(entries("r1", "c1", "r1", "c2", "r2", "c1", "r3", "c1", "r4", "c1").iterator());
+        ScanPublisher publisher = query.publishRowRange("r1", "r4");
+        publisher.setChunkSize(2);
+        publisher.setPrefetchChunks(1);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(1, subscriber.chunks.size());
+        assertEquals(2, subscriber.chunks.get(0).size());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.completed);
+        assertEquals(3, subscriber.chunks.size());
+        assertEquals(1, subscriber.chunks.get(2).size());
+        assertEquals("1", subscriber.chunks.get(2).get("r4", "c1"));
+        verify(mockBatchScanner).close();
+    }
+
+    /** Test the ranges are read by one scanner per group and columns are transposed back.
+     *
+     * @throws InterruptedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testSubscribe_ranges_per_scan() throws InterruptedException, TableNotFoundException {
+        when(mockBatchScanner.iterator()).thenReturn(entries("c1", "r1").iterator(), entries("c3", "r2").iterator());
+        ScanPublisher publisher = query.publishColumns(Arrays.asList("c1", "c2", "c3"));
+        publisher.setRangesPerScan(2);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        assertTrue(subscriber.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.completed);
+        assertEquals(1, subscriber.chunks.size());
+        assertEquals("1", subscriber.chunks.get(0).get("r2", "c3"));
+        ArgumentCaptor<Collection> ranges = ArgumentCaptor.forClass(Collection.class);
+        verify(mockBatchScanner, times(2)).setRanges(ranges.capture());
+        assertEquals(2, ranges.getAllValues().get(0).size());
+        assertEquals(1, ranges.getAllValues().get(1).size());
+        verify(mockConnector, times(2)).createBatchScanner(eq("TedgeTranspose"), any(Authorizations.class), anyInt());
+        verify(mockBatchScanner, times(2)).close();
+    }
+
+    /** Test cancelling closes the scanner of an endless scan and ends the stream silently.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        when(mockBatchScanner.iterator()).thenReturn(new Iterator<Entry<Key, Value>>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Entry<Key, Value> next() {
+                return new SimpleEntry<>(new Key("r" + row++, "", "c1"), new Value("1".getBytes()));
+            }
+        });
+        ScanPublisher publisher = query.publishRowRange(null, null);
+        publisher.setChunkSize(1);
+        publisher.setPrefetchChunks(1);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+
+        subscriber.subscription.cancel();
+        verify(mockBatchScanner, timeout(5000)).close();
+        subscriber.subscription.request(1);
+        Thread.sleep(50);
+        assertEquals(1, subscriber.chunks.size());
+        assertEquals(1, subscriber.finished.getCount());
+    }
+
+    /** Test a request for no chunks and a failed scan are both reported through onError.
+     *
+     * @throws InterruptedException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testSubscribe_errors() throws InterruptedException, TableNotFoundException {
+        when(mockBatchScanner.iterator()).thenReturn(entries("r1", "c1").iterator());
+        TestSubscriber subscriber = new TestSubscriber();
+        query.publishRows(Arrays.asList("r1")).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+
+        when(mockConnector.createBatchScanner(eq("Tedge"), any(Authorizations.class), anyInt())).thenThrow(new TableNotFoundException(null, "Tedge", null));
+        subscriber = new TestSubscriber();
+        query.publishRows(Arrays.asList("r1")).subscribe(subscriber);
+        assertTrue(subscriber.finished.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof D4MException);
+        assertTrue(subscriber.chunks.isEmpty());
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 2) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], "", keys[i + 1]), new Value("1".getBytes())));
+        }
+        return entries;
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<AssociativeArray> {
+
+        private final List<AssociativeArray> chunks = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Flow.Subscription subscription = null;
+        private volatile boolean completed = false;
+        private volatile Throwable error = null;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(final AssociativeArray item) {
+            chunks.add(item);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            finished.countDown();
+        }
+
+    }
+
+}
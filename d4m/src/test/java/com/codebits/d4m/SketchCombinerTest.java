@@ -0,0 +1,71 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/** Tests for the SketchCombiner class
+ *
+ * @author david
+ */
+public class SketchCombinerTest {
+
+    /** Test sketches of one key are merged and other columns are left alone.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMerge() throws IOException {
+        HyperLogLog rows1 = new HyperLogLog(8);
+        HyperLogLog rows2 = new HyperLogLog(8);
+        rows1.add("r1");
+        rows2.add("r2");
+        CountMinSketch frequency1 = new CountMinSketch(2, 16);
+        CountMinSketch frequency2 = new CountMinSketch(2, 16);
+        frequency1.add("city|Paris", 2);
+        frequency2.add("city|Paris", 3);
+
+        TreeMap<Key, Value> data = new TreeMap<>();
+        data.put(new Key("city", "field", "", 1), new Value("1".getBytes()));
+        data.put(new Key("city", "field", "", 2), new Value("2".getBytes()));
+        data.put(new Key("city", "sketch", "frequency", 3), new Value(frequency1.toBytes()));
+        data.put(new Key("city", "sketch", "frequency", 2), new Value(frequency2.toBytes()));
+        data.put(new Key("city", "sketch", "frequency", 1), new Value(new CountMinSketch(3, 16).toBytes()));
+        data.put(new Key("city", "sketch", "rows", 3), new Value(rows1.toBytes()));
+        data.put(new Key("city", "sketch", "rows", 2), new Value(rows2.toBytes()));
+        data.put(new Key("city", "sketch", "rows", 1), new Value(new byte[]{HyperLogLog.TAG, 8, 0}));
+
+        SketchCombiner instance = new SketchCombiner();
+        IteratorSetting setting = new IteratorSetting(8, SketchCombiner.class);
+        Combiner.setColumns(setting, Collections.singletonList(new IteratorSetting.Column("sketch")));
+        IteratorEnvironment env = mock(IteratorEnvironment.class);
+        when(env.getIteratorScope()).thenReturn(IteratorScope.scan);
+        instance.init(new SortedMapIterator(data), setting.getOptions(), env);
+        instance.seek(new Range(), Collections.emptyList(), false);
+
+        assertEquals("field", instance.getTopKey().getColumnFamily().toString());
+        instance.next();
+        assertEquals("field", instance.getTopKey().getColumnFamily().toString());
+        instance.next();
+        assertEquals("frequency", instance.getTopKey().getColumnQualifier().toString());
+        CountMinSketch frequency = CountMinSketch.fromBytes(instance.getTopValue().get());
+        assertEquals(5, frequency.estimate("city|Paris"));
+        instance.next();
+        assertEquals("rows", instance.getTopKey().getColumnQualifier().toString());
+        assertEquals(2, HyperLogLog.fromBytes(instance.getTopValue().get()).cardinality());
+        instance.next();
+        assertFalse(instance.hasTop());
+    }
+
+}
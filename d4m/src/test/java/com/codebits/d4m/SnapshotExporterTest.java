@@ -0,0 +1,160 @@
+package com.codebits.d4m;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.*;
+
+/** Tests for the SnapshotExporter class
+ *
+ * @author david
+ */
+public class SnapshotExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    Scanner mockPropertyScanner = mock(Scanner.class);
+    Scanner mockEdgeScanner = mock(Scanner.class);
+    Scanner mockDegreeScanner = mock(Scanner.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    Scanner mockTextScanner = mock(Scanner.class);
+
+    private SnapshotExporter instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockPropertyScanner.iterator()).thenReturn(entries("property", "degree.encoding", "", "VARLEN").iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockPropertyScanner, mockMetadataScanner);
+        when(mockConnector.createScanner(eq("Tedge"), any(Authorizations.class))).thenReturn(mockEdgeScanner);
+        when(mockConnector.createScanner(eq("TedgeDegree"), any(Authorizations.class))).thenReturn(mockDegreeScanner);
+        when(mockConnector.createScanner(eq("TedgeText"), any(Authorizations.class))).thenReturn(mockTextScanner);
+        when(mockEdgeScanner.iterator()).thenReturn(entries(
+                "r1", "", "city|Paris", "1",
+                "r1", "", "name|Ann", "1",
+                "r2", "", "city|Paris", "2",
+                "r3", "", "city|Rome", "1").iterator());
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockTextScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        instance = new SnapshotExporter(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test the edges, dictionaries and degrees are written and can be read back from the mapped files.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testExport() throws IOException {
+        List<Entry<Key, Value>> degrees = new ArrayList<>();
+        degrees.add(new SimpleEntry<>(new Key("city|Paris", "", "degree"), DegreeEncoding.VARLEN.newValue(2)));
+        degrees.add(new SimpleEntry<>(new Key("city|Rome", "", "degree"), DegreeEncoding.VARLEN.newValue(1)));
+        degrees.add(new SimpleEntry<>(new Key("name|Ann", "", "degree"), DegreeEncoding.VARLEN.newValue(1)));
+        when(mockDegreeScanner.iterator()).thenReturn(degrees.iterator());
+
+        File directory = new File(folder.getRoot(), "snapshot");
+        D4MSnapshot snapshot = instance.export(directory);
+        assertEquals(4, snapshot.size());
+        assertEquals(3, snapshot.getRowCount());
+        assertEquals(3, snapshot.getColumnCount());
+        assertEquals("r2", snapshot.getRowKey(1));
+        assertEquals(2, snapshot.getColumnIndex("name|Ann"));
+        assertEquals(-1, snapshot.getColumnIndex("name|Bob"));
+        assertEquals(2, snapshot.getRowSize(0));
+        assertEquals(2, snapshot.getDegree("city|Paris"));
+        assertEquals(0, snapshot.getDegree("city|Oslo"));
+        assertEquals("2", snapshot.get("r2", "city|Paris"));
+        assertNull(snapshot.get("r2", "city|Rome"));
+        assertEquals(7, directory.list().length);
+
+        D4MSnapshot.Cursor cursor = snapshot.cursor();
+        StringBuilder entries = new StringBuilder();
+        while (cursor.next()) {
+            entries.append(cursor.getRow()).append(' ').append(cursor.getColumn()).append(' ').append(cursor.getValue()).append(';');
+        }
+        assertEquals("r1 city|Paris 1;r1 name|Ann 1;r2 city|Paris 2;r3 city|Rome 1;", entries.toString());
+        verify(mockEdgeScanner).close();
+        verify(mockDegreeScanner).close();
+    }
+
+    /** Test values past the dictionary limit are stored per entry and read back unchanged.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testExport_value_dictionary_limit() throws IOException {
+        List<Entry<Key, Value>> degrees = new ArrayList<>();
+        degrees.add(new SimpleEntry<>(new Key("city|Paris", "", "degree"), DegreeEncoding.VARLEN.newValue(2)));
+        degrees.add(new SimpleEntry<>(new Key("city|Rome", "", "degree"), DegreeEncoding.VARLEN.newValue(1)));
+        degrees.add(new SimpleEntry<>(new Key("name|Ann", "", "degree"), DegreeEncoding.VARLEN.newValue(1)));
+        when(mockDegreeScanner.iterator()).thenReturn(degrees.iterator());
+        instance.setMaxValueDictionarySize(0);
+
+        D4MSnapshot snapshot = instance.export(new File(folder.getRoot(), "snapshot"));
+        assertEquals("1", snapshot.get("r1", "city|Paris"));
+        assertEquals("2", snapshot.get("r2", "city|Paris"));
+        assertEquals("1", snapshot.get("r3", "city|Rome"));
+        File values = new File(new File(folder.getRoot(), "snapshot"), D4MSnapshot.VALUES_FILE);
+        // one value per entry: 4 bytes padded to 8, 5 offsets, count and length
+        assertEquals(8 + 5 * 8 + 8 + 8, values.length());
+    }
+
+    /** Test an edge whose column has no degree stops the export.
+     */
+    @Test
+    public void testExport_without_degree() {
+        when(mockDegreeScanner.iterator()).thenReturn(entries("city|Paris", "", "degree", "2").iterator());
+        try {
+            instance.export(folder.getRoot());
+            fail("missing degree was not reported");
+        } catch (D4MException e) {
+            assertTrue(e.getMessage().contains("name|Ann"));
+        }
+    }
+
+    /** Test an entry with a column visibility stops the export.
+     */
+    @Test
+    public void testExport_with_visibility() {
+        when(mockDegreeScanner.iterator()).thenReturn(entries("city|Paris", "", "degree", "2", "city|Rome", "", "degree", "1", "name|Ann", "", "degree", "1").iterator());
+        List<Entry<Key, Value>> edges = entries("r1", "", "city|Paris", "1");
+        edges.add(new SimpleEntry<>(new Key("r2", "", "city|Rome", "secret"), new Value("1".getBytes())));
+        when(mockEdgeScanner.iterator()).thenReturn(edges.iterator());
+        try {
+            instance.export(folder.getRoot());
+            fail("labeled entry was exported");
+        } catch (D4MException e) {
+            assertTrue(e.getMessage().contains("column visibility"));
+        }
+        verify(mockEdgeScanner).close();
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 4) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], keys[i + 1], keys[i + 2]), new Value(keys[i + 3].getBytes())));
+        }
+        return entries;
+    }
+
+}
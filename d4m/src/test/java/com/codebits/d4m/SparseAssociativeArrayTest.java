@@ -0,0 +1,99 @@
+package com.codebits.d4m;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the SparseAssociativeArray class
+ *
+ * @author david
+ */
+public class SparseAssociativeArrayTest {
+
+    private SparseAssociativeArray build(final boolean direct) {
+        SparseAssociativeArray.Builder builder = new SparseAssociativeArray.Builder().setDirect(direct);
+        builder.put("r2", "c3", "5");
+        builder.put("r1", "c2", "2");
+        builder.put("r1", "c1", "1");
+        builder.put("r3", "c1", "1");
+        builder.put("r2", "c1", "3");
+        builder.put("r1", "c2", "4");
+        return builder.build();
+    }
+
+    /** Test the builder sorts keys and keeps the last duplicate value.
+     */
+    @Test
+    public void testBuild() {
+        SparseAssociativeArray instance = build(false);
+        assertEquals(5, instance.size());
+        assertEquals(3, instance.getRowCount());
+        assertEquals(3, instance.getColumnCount());
+        assertEquals("r1", instance.getRowKey(0));
+        assertEquals("c3", instance.getColumnKey(2));
+        assertEquals("4", instance.get("r1", "c2"));
+        assertEquals("5", instance.get("r2", "c3"));
+        assertNull(instance.get("r3", "c2"));
+        assertNull(instance.get("r9", "c1"));
+        assertEquals(2, instance.getRowSize(1));
+        assertFalse(instance.isDirect());
+    }
+
+    /** Test the cursor visits entries in row, then column, order.
+     */
+    @Test
+    public void testCursor() {
+        SparseAssociativeArray.Cursor cursor = build(false).cursor();
+        StringBuilder visited = new StringBuilder();
+        while (cursor.next()) {
+            visited.append(cursor.getRow()).append(cursor.getColumn()).append('=').append(cursor.getValue()).append(' ');
+        }
+        assertEquals("r1c1=1 r1c2=4 r2c1=3 r2c3=5 r3c1=1 ", visited.toString());
+    }
+
+    /** Test transpose with direct buffers.
+     */
+    @Test
+    public void testTranspose() {
+        SparseAssociativeArray instance = build(true);
+        SparseAssociativeArray transpose = instance.transpose();
+        assertTrue(transpose.isDirect());
+        assertEquals(5, transpose.size());
+        assertEquals("4", transpose.get("c2", "r1"));
+        assertEquals("3", transpose.get("c1", "r2"));
+        assertEquals(instance.toAssociativeArray().transpose(), transpose.toAssociativeArray());
+        assertEquals(instance.toAssociativeArray(), transpose.transpose().toAssociativeArray());
+    }
+
+    /** Test subMatrix
+     */
+    @Test
+    public void testSubMatrix() {
+        SparseAssociativeArray sub = build(false).subMatrix("r2", null, "c1", "c2");
+        assertEquals(2, sub.getRowCount());
+        assertEquals(2, sub.size());
+        assertEquals("3", sub.get("r2", "c1"));
+        assertEquals("1", sub.get("r3", "c1"));
+        assertNull(sub.get("r2", "c3"));
+        assertNull(sub.get("r1", "c1"));
+    }
+
+    /** Test subMatrix with a range holding no keys.
+     */
+    @Test
+    public void testSubMatrix_with_empty_range() {
+        SparseAssociativeArray sub = build(false).subMatrix("x", "z", null, null);
+        assertEquals(0, sub.getRowCount());
+        assertTrue(sub.isEmpty());
+        assertFalse(sub.cursor().next());
+    }
+
+    /** Test an empty builder.
+     */
+    @Test
+    public void testBuild_with_no_entries() {
+        SparseAssociativeArray instance = new SparseAssociativeArray.Builder().build();
+        assertTrue(instance.isEmpty());
+        assertTrue(instance.transpose().isEmpty());
+    }
+
+}
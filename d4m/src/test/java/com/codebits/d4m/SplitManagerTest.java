@@ -0,0 +1,262 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/** Tests for the SplitManager class
+ *
+ * @author david
+ */
+public class SplitManagerTest {
+
+    private final static long ONE_SECOND = 1000000000L;
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    Scanner mockScanner = mock(Scanner.class);
+
+    private WriteRateTracker tracker = null;
+    private SplitManager instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Before
+    public void setup() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        TableManager tableManager = new TableManager(mockConnector, mockTableOperations);
+        Map<String, String> tableIds = new HashMap<>();
+        tableIds.put("Tedge", "1");
+        tableIds.put("TedgeTranspose", "2");
+        tableIds.put("TedgeDegree", "3");
+        tableIds.put("TedgeMetadata", "4");
+        tableIds.put("TedgeText", "5");
+        when(mockTableOperations.tableIdMap()).thenReturn(tableIds);
+        when(mockTableOperations.listSplits(anyString())).thenReturn(new ArrayList<Text>());
+        when(mockConnector.createScanner(eq("accumulo.metadata"), any(Authorizations.class))).thenReturn(mockScanner);
+        when(mockScanner.iterator()).thenReturn(new ArrayList<Map.Entry<Key, Value>>().iterator());
+
+        tracker = new WriteRateTracker(2);
+        instance = new SplitManager(tableManager, tracker);
+        instance.setHotWritesPerSecond(1000);
+        instance.setMaxMergeSize(1000);
+    }
+
+    /** Test a hot prefix is isolated in its own tablet.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_splits_hot_prefix() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        record("Tedge", "ab123", 2000);
+        record("Tedge", "cd1", 1);
+
+        SplitManager.Round round = instance.runOnce(ONE_SECOND);
+
+        assertEquals(2, round.getSplits());
+        assertEquals(2, instance.getSplitsAdded());
+        verify(mockTableOperations).addSplits("Tedge", splits("ab", "ac"));
+        verify(mockTableOperations, never()).merge(anyString(), any(Text.class), any(Text.class));
+    }
+
+    /** Test existing split points are skipped and the per-round limit holds.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_split_limit() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("ab")));
+        instance.setMaxSplitsPerRound(1);
+        record("Tedge", "ab1", 3000);
+        record("Tedge", "cd1", 2000);
+
+        assertEquals(1, instance.runOnce(ONE_SECOND).getSplits());
+        verify(mockTableOperations).addSplits("Tedge", splits("ac"));
+    }
+
+    /** Test adjacent cold, tiny tablets are merged once they stayed cold for minColdRounds rounds.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_merges_cold_tablets() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        scanTedgeTablets(100);
+        instance.setMinColdRounds(2);
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        verify(mockTableOperations, never()).merge(anyString(), any(Text.class), any(Text.class));
+
+        SplitManager.Round round = instance.runOnce(ONE_SECOND);
+
+        assertEquals(0, round.getSplits());
+        assertEquals(1, round.getMerges());
+        verify(mockTableOperations).merge("Tedge", null, new Text("d"));
+    }
+
+    /** Test a tablet whose files change size starts its cold rounds again.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_waits_for_stable_size() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        scanTedgeTablets(100, 200, 200);
+        instance.setMinColdRounds(2);
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        assertEquals(1, instance.runOnce(ONE_SECOND).getMerges());
+    }
+
+    /** Test tablets which are still written are not merged.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_skips_written_tablets() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        scanTedgeTablets(100);
+        instance.setMinColdRounds(1);
+        record("Tedge", "c1", 10);
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        verify(mockTableOperations, never()).merge(anyString(), any(Text.class), any(Text.class));
+    }
+
+    /** Test splits a table had before the first round are never merged away.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_keeps_planned_splits() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("b"), new Text("d"), new Text("f")));
+        scanTedgeTablets(100);
+        instance.setMinColdRounds(1);
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        verify(mockTableOperations, never()).merge(anyString(), any(Text.class), any(Text.class));
+    }
+
+    /** Test protected and self-added split points are never merged away.
+     *
+     * @throws TableNotFoundException
+     * @throws AccumuloSecurityException
+     * @throws AccumuloException
+     */
+    @Test
+    public void testRunOnce_keeps_protected_splits() throws TableNotFoundException, AccumuloSecurityException, AccumuloException {
+        scanTedgeTablets(100);
+        instance.setMinColdRounds(1);
+        instance.protectSplits("Tedge", Arrays.asList(new Text("b")));
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+
+        instance = new SplitManager(instance.getTableManager(), tracker);
+        instance.setMinColdRounds(1);
+        instance.setMaxMergeSize(1000);
+        record("Tedge", "b", 2000);
+        instance.runOnce(ONE_SECOND);
+        verify(mockTableOperations).addSplits("Tedge", splits("b", "c"));
+
+        assertEquals(0, instance.runOnce(ONE_SECOND).getMerges());
+        verify(mockTableOperations, never()).merge(anyString(), any(Text.class), any(Text.class));
+    }
+
+    /** Test the successor of a prefix.
+     */
+    @Test
+    public void testSuccessor() {
+        assertEquals(new Text("ac"), SplitManager.successor(new Text("ab")));
+        assertEquals(new Text(new byte[]{'b'}), SplitManager.successor(new Text(new byte[]{'a', (byte) 0xff})));
+        assertNull(SplitManager.successor(new Text(new byte[]{(byte) 0xff})));
+    }
+
+    /* Scans of Tedge see its tablets, with the tiny tablets at the given size in each round; other tables have none. */
+    private void scanTedgeTablets(final long... sizes) {
+        final Range[] range = new Range[1];
+        final int[] round = new int[1];
+        doAnswer(invocation -> {
+            range[0] = (Range) invocation.getArguments()[0];
+            return null;
+        }).when(mockScanner).setRange(any(Range.class));
+        when(mockScanner.iterator()).thenAnswer(invocation -> {
+            if (!range[0].getStartKey().getRow().toString().startsWith("1;")) {
+                return new ArrayList<Map.Entry<Key, Value>>().iterator();
+            }
+            return tedgeTablets(sizes[Math.min(round[0]++, sizes.length - 1)]);
+        });
+    }
+
+    /* Tablets (-inf,b] and (b,d] are tiny, (d,f] is large and (f,+inf) is empty. */
+    private Iterator<Map.Entry<Key, Value>> tedgeTablets(final long size) {
+        List<Map.Entry<Key, Value>> entries = new ArrayList<>();
+        entries.add(file("1;b", size));
+        entries.add(prevRow("1;b", null));
+        entries.add(file("1;d", size));
+        entries.add(prevRow("1;d", "b"));
+        entries.add(file("1;f", 1000000));
+        entries.add(prevRow("1;f", "d"));
+        entries.add(prevRow("1<", "f"));
+        return entries.iterator();
+    }
+
+    private Map.Entry<Key, Value> file(final String row, final long size) {
+        return new AbstractMap.SimpleEntry<>(new Key(row, "file", "hdfs://x/" + row), new Value((size + ",10").getBytes(Utf8Encoder.UTF8)));
+    }
+
+    private Map.Entry<Key, Value> prevRow(final String row, final String prevRow) {
+        byte[] value = prevRow == null ? new byte[]{0} : ("\u0001" + prevRow).getBytes(Utf8Encoder.UTF8);
+        return new AbstractMap.SimpleEntry<>(new Key(row, "~tab", "~pr"), new Value(value));
+    }
+
+    private void record(final String tablename, final String row, final int count) {
+        for (int i = 0; i < count; i++) {
+            tracker.record(tablename, row);
+        }
+    }
+
+    private SortedSet<Text> splits(final String... splits) {
+        SortedSet<Text> set = new TreeSet<>();
+        for (String split : splits) {
+            set.add(new Text(split));
+        }
+        return set;
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Tests for the SplitPlanner class
+ *
+ * @author david
+ */
+public class SplitPlannerTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+
+    private SplitPlanner instance = null;
+
+    /** Setup instance for each test.
+     */
+    @Before
+    public void setup() {
+        instance = new SplitPlanner(new TableManager(mockConnector, mockTableOperations));
+    }
+
+    /** Test hex splits for each depth.
+     */
+    @Test
+    public void testHexSplits() {
+        assertEquals(15, SplitPlanner.hexSplits(1).size());
+        assertEquals(255, SplitPlanner.hexSplits(2).size());
+        assertEquals(4095, SplitPlanner.hexSplits(3).size());
+        assertEquals(new Text("01"), SplitPlanner.hexSplits(2).first());
+        assertEquals(new Text("ff"), SplitPlanner.hexSplits(2).last());
+    }
+
+    /** Test hex splits reject an unsupported depth.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testHexSplits_with_zero_depth() {
+        SplitPlanner.hexSplits(0);
+    }
+
+    /** Test sampled splits divide uniform rows evenly.
+     */
+    @Test
+    public void testComputeSplits() {
+        List<Text> rows = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            rows.add(new Text(String.format("%05d", i)));
+        }
+        SortedSet<Text> splits = instance.computeSplits(rows.iterator(), 3);
+        assertEquals(new TreeSet<>(Arrays.asList(new Text("02500"), new Text("05000"), new Text("07500"))), splits);
+    }
+
+    /** Test sampled splits follow the load rather than the distinct rows.
+     */
+    @Test
+    public void testComputeSplits_with_skewed_rows() {
+        List<Text> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Text(String.format("a%03d", i)));
+        }
+        for (int i = 0; i < 300; i++) {
+            rows.add(new Text(String.format("b%03d", i)));
+        }
+        SortedSet<Text> splits = instance.computeSplits(rows.iterator(), 3);
+        assertEquals(new Text("b000"), splits.first());
+        assertEquals(3, splits.size());
+    }
+
+    /** Test sampled splits from an empty stream.
+     */
+    @Test
+    public void testComputeSplits_with_no_rows() {
+        assertTrue(instance.computeSplits(new ArrayList<Text>().iterator(), 3).isEmpty());
+    }
+
+    /** Test sampling a table reads from every tablet, not only the start of the table.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testComputeSplits_samples_every_tablet() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        stubTable("Tedge", 1000);
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("r0250"), new Text("r0500"), new Text("r0750")));
+        instance.setMaxEntriesScanned(400);
+        instance.setMinSampleRanges(4);
+
+        List<Text> splits = new ArrayList<>(instance.computeSplits("Tedge", 3));
+        assertEquals(3, splits.size());
+        assertTrue(splits.get(0).toString().compareTo("r0200") > 0);
+        assertTrue(splits.get(2).toString().compareTo("r0700") > 0);
+    }
+
+    /** Test sampling a table with one tablet spreads the reads over its key space.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testComputeSplits_divides_single_tablet() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        stubTable("TedgeTranspose", 1000);
+        when(mockTableOperations.listSplits("TedgeTranspose")).thenReturn(new ArrayList<Text>());
+        instance.setMaxEntriesScanned(160);
+        instance.setMinSampleRanges(16);
+
+        List<Text> splits = new ArrayList<>(instance.computeSplits("TedgeTranspose", 3));
+        assertEquals(3, splits.size());
+        assertTrue(splits.get(0).toString().compareTo("r0100") > 0);
+        assertTrue(splits.get(2).toString().compareTo("r0600") > 0);
+    }
+
+    /** Test sampling weights each tablet by the entries of its files.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testComputeSplits_weights_tablets_by_size() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 9000; i++) {
+            rows.add(String.format("a%04d", i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            rows.add(String.format("b%04d", i));
+        }
+        stubTable("Tedge", rows);
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("b")));
+        when(mockTableOperations.tableIdMap()).thenReturn(Collections.singletonMap("Tedge", "1"));
+        Scanner metadata = mock(Scanner.class);
+        when(metadata.iterator()).thenReturn(Arrays.<Map.Entry<Key, Value>>asList(
+                new AbstractMap.SimpleEntry<>(new Key("1;b", "file", "hdfs://t-1/A1.rf"), new Value("90000,9000".getBytes())),
+                new AbstractMap.SimpleEntry<>(new Key("1<", "file", "hdfs://t-2/A2.rf"), new Value("10000,1000".getBytes()))).iterator());
+        when(mockConnector.createScanner(eq("accumulo.metadata"), any(Authorizations.class))).thenReturn(metadata);
+        instance.setMaxEntriesScanned(2000);
+        instance.setMinSampleRanges(2);
+
+        SortedSet<Text> splits = instance.computeSplits("Tedge", 3);
+        assertEquals(3, splits.size());
+        assertTrue(splits.last().toString().startsWith("a0"));
+        verify(metadata).fetchColumnFamily(new Text("file"));
+    }
+
+    /* A scanner over rows r0000, r0001, ... which honours setRange. */
+    private void stubTable(final String tablename, final int rows) throws TableNotFoundException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            names.add(String.format("r%04d", i));
+        }
+        stubTable(tablename, names);
+    }
+
+    /* A scanner over the given rows which honours setRange. */
+    private void stubTable(final String tablename, final List<String> rows) throws TableNotFoundException {
+        final SortedMap<Key, Value> data = new TreeMap<>();
+        for (String row : rows) {
+            data.put(new Key(row, "", "a"), new Value("1".getBytes()));
+        }
+        final Range[] range = {new Range()};
+        Scanner scanner = mock(Scanner.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                range[0] = (Range) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(scanner).setRange(any(Range.class));
+        when(scanner.iterator()).thenAnswer(new Answer<Iterator<Map.Entry<Key, Value>>>() {
+            @Override
+            public Iterator<Map.Entry<Key, Value>> answer(final InvocationOnMock invocation) {
+                List<Map.Entry<Key, Value>> entries = new ArrayList<>();
+                for (Map.Entry<Key, Value> entry : data.entrySet()) {
+                    if (range[0].contains(entry.getKey())) {
+                        entries.add(entry);
+                    }
+                }
+                return entries.iterator();
+            }
+        });
+        when(mockConnector.createScanner(eq(tablename), any(Authorizations.class))).thenReturn(scanner);
+    }
+
+    /** Test AddHexSplits skips existing splits and applies the rest in batches.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddHexSplits() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("01")));
+        when(mockTableOperations.listSplits("TedgeText")).thenReturn(new ArrayList<Text>());
+        instance.setBatchSize(100);
+        instance.addHexSplits(2);
+        verify(mockTableOperations, times(3)).addSplits(matches("Tedge"), any(SortedSet.class));
+        verify(mockTableOperations, times(3)).addSplits(matches("TedgeText"), any(SortedSet.class));
+    }
+
+}
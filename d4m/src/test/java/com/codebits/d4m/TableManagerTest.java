@@ -0,0 +1,565 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the TableManager class
+ *
+ * @author david
+ */
+public class TableManagerTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+
+    private TableManager instance = null;
+
+    /** Setup instance for each test.
+     */
+    @Before
+    public void setup() {
+        instance = new TableManager();
+        instance.setConnector(mockConnector);
+        instance.setTableOperations(mockTableOperations);
+    }
+
+    /** Test constructor with Connector and Table operations
+     */
+    @Test
+    public void testConstructorWithConnectorAndTableOperations() {
+        instance = new TableManager(mockConnector, mockTableOperations);
+        assertEquals(mockConnector, instance.getConnector());
+        assertEquals(mockTableOperations, instance.getTableOperations());
+    }
+    
+    /** Test CreateTables with Root Name
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testCreateTablesWithRootName() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("TTEST")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TTESTTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TTESTDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TTESTMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TTESTText")).thenReturn(Boolean.FALSE);
+
+        BatchWriterConfig bwConfig = new BatchWriterConfig();
+        bwConfig.setMaxLatency(10000, TimeUnit.MINUTES);
+        bwConfig.setMaxMemory(10000000);
+        bwConfig.setMaxWriteThreads(5);
+        bwConfig.setTimeout(5, TimeUnit.MINUTES);
+
+        BatchWriter mockBatchWriter = mock(BatchWriter.class);
+        when(mockConnector.createBatchWriter("TTESTMetadata", bwConfig)).thenReturn(mockBatchWriter);
+        instance.createTables("TEST");
+        verify(mockTableOperations, times(5)).exists(any(String.class));
+        verify(mockTableOperations).create(eq("TTEST"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TTESTTranspose"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TTESTDegree"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TTESTMetadata"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TTESTText"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).attachIterator(matches("TTESTDegree"), any(IteratorSetting.class));
+        verify(mockTableOperations, times(2)).attachIterator(matches("TTESTMetadata"), any(IteratorSetting.class));
+        verifyNoMoreInteractions(mockTableOperations);
+
+        verify(mockBatchWriter).addMutation(any(Mutation.class));
+        verify(mockBatchWriter).close();
+        verifyNoMoreInteractions(mockBatchWriter);
+    }
+    
+    /** Test CreateTables
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testCreateTables() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.FALSE);
+
+        BatchWriterConfig bwConfig = new BatchWriterConfig();
+        bwConfig.setMaxLatency(10000, TimeUnit.MINUTES);
+        bwConfig.setMaxMemory(10000000);
+        bwConfig.setMaxWriteThreads(5);
+        bwConfig.setTimeout(5, TimeUnit.MINUTES);
+
+        BatchWriter mockBatchWriter = mock(BatchWriter.class);
+        when(mockConnector.createBatchWriter("TedgeMetadata", bwConfig)).thenReturn(mockBatchWriter);
+
+        instance.createTables();
+        verify(mockTableOperations, times(5)).exists(any(String.class));
+        verify(mockTableOperations).create(eq("Tedge"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TedgeTranspose"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TedgeDegree"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TedgeMetadata"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).create(eq("TedgeText"), any(NewTableConfiguration.class));
+        verify(mockTableOperations).attachIterator(matches("TedgeDegree"), any(IteratorSetting.class));
+        verify(mockTableOperations, times(2)).attachIterator(matches("TedgeMetadata"), any(IteratorSetting.class));
+        verifyNoMoreInteractions(mockTableOperations);
+
+        verify(mockBatchWriter).addMutation(any(Mutation.class));
+        verify(mockBatchWriter).close();
+        verifyNoMoreInteractions(mockBatchWriter);
+    }
+    
+    /** Test CreateTables passes the profile properties to each table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testCreateTables_with_profile() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockConnector.createBatchWriter(eq("TedgeMetadata"), any(BatchWriterConfig.class))).thenReturn(mock(BatchWriter.class));
+        TableProfile profile = new TableProfile();
+        profile.getTextProperties().put("table.file.compress.type", "snappy");
+        instance.createTables("edge", profile);
+
+        ArgumentCaptor<NewTableConfiguration> captor = ArgumentCaptor.forClass(NewTableConfiguration.class);
+        verify(mockTableOperations).create(eq("TedgeText"), captor.capture());
+        assertEquals("snappy", captor.getValue().getProperties().get("table.file.compress.type"));
+        verify(mockTableOperations).create(eq("TedgeDegree"), captor.capture());
+        assertEquals("true", captor.getValue().getProperties().get("table.bloom.enabled"));
+        verify(mockTableOperations).create(eq("TedgeMetadata"), captor.capture());
+        assertEquals("field", captor.getValue().getProperties().get("table.groups.enabled"));
+    }
+
+    /** Test ApplyTableProfile sets each property on the existing tables
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     */
+    @Test
+    public void testApplyTableProfile() throws AccumuloException, AccumuloSecurityException {
+        instance.setTableProfile(TableProfile.accumuloDefaults());
+        instance.getTableProfile().getEdgeProperties().put("table.bloom.enabled", "true");
+        instance.applyTableProfile();
+        verify(mockTableOperations).setProperty("Tedge", "table.bloom.enabled", "true");
+        verifyNoMoreInteractions(mockTableOperations);
+    }
+
+    /** Test CreateTable can handle AccumuloException
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = AccumuloException.class)
+    public void testCreateTableHandlesAccumuloException() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenThrow(AccumuloException.class);
+        instance.createTables();
+    }
+
+    /** Test AddSplitsForSha1
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddSplitsForSha1() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(new ArrayList<Text>());
+        when(mockTableOperations.listSplits("TedgeText")).thenReturn(new ArrayList<Text>());
+        instance.addSplitsForSha1();
+        verify(mockTableOperations).listSplits(matches("Tedge"));
+        verify(mockTableOperations).listSplits(matches("TedgeText"));
+        verify(mockTableOperations).addSplits(matches("Tedge"), any(SortedSet.class));
+        verify(mockTableOperations).addSplits(matches("TedgeText"), any(SortedSet.class));
+        verifyNoMoreInteractions(mockTableOperations);
+    }
+
+    /** Test AddSplits in batches skips existing split points
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddSplits_in_batches() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockTableOperations.listSplits("Tedge")).thenReturn(Arrays.asList(new Text("b")));
+        SortedSet<Text> splits = new TreeSet<>(Arrays.asList(new Text("a"), new Text("b"), new Text("c"), new Text("d")));
+        assertEquals(3, instance.addSplits("Tedge", splits, 2));
+        verify(mockTableOperations).listSplits("Tedge");
+        verify(mockTableOperations).addSplits("Tedge", new TreeSet<>(Arrays.asList(new Text("a"), new Text("c"))));
+        verify(mockTableOperations).addSplits("Tedge", new TreeSet<>(Arrays.asList(new Text("d"))));
+        verifyNoMoreInteractions(mockTableOperations);
+    }
+
+    /** Test CreateTables with all existing does nothing
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testCreateTables_with_all_existing_does_nothing() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.TRUE);
+        instance.createTables();
+        verify(mockTableOperations).exists("Tedge");
+        verify(mockTableOperations).exists("TedgeTranspose");
+        verify(mockTableOperations).exists("TedgeDegree");
+        verify(mockTableOperations).exists("TedgeMetadata");
+        verify(mockTableOperations).exists("TedgeText");
+        verifyNoMoreInteractions(mockTableOperations);
+    }
+
+    /** Test CreateTables with just edge table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testCreateTables_with_just_edge_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.FALSE);
+        instance.createTables();
+    }
+
+    /** Test CreateTables with just transpose table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testCreateTables_with_just_transpose_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.FALSE);
+        instance.createTables();
+    }
+
+    /** Test CreateTables with just degree table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testCreateTables_with_just_degree_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.FALSE);
+        instance.createTables();
+    }
+
+    /** Test CreateTables with just field table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testCreateTables_with_just_field_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.TRUE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.FALSE);
+        instance.createTables();
+    }
+
+    /** Test CreateTables with just text table
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = D4MException.class)
+    public void testCreateTables_with_just_text_table() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        when(mockTableOperations.exists("Tedge")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeTranspose")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeDegree")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeMetadata")).thenReturn(Boolean.FALSE);
+        when(mockTableOperations.exists("TedgeText")).thenReturn(Boolean.TRUE);
+        instance.createTables();
+    }
+
+    /** Test CreateTables with null tableOperation
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateTables_with_null_tableOperation() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        instance.setTableOperations(null);
+        instance.createTables();
+    }
+
+    /** Test getFieldDelimiter reads the property row of the metadata table.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetFieldDelimiter() throws TableNotFoundException {
+        Scanner mockScanner = mock(Scanner.class);
+        Map.Entry<Key, Value> entry = new AbstractMap.SimpleEntry<>(new Key("property", "field.delimiter", ""), new Value("\t".getBytes()));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(entry).iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockScanner);
+        assertEquals("\t", instance.getFieldDelimiter());
+        verify(mockScanner).setRange(Range.exact(new Text("property"), new Text("field.delimiter"), new Text("")));
+        verify(mockScanner).close();
+    }
+
+    /** Test properties, missing ones included, are read once while the lookup cache is enabled.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetFieldDelimiter_cached() throws TableNotFoundException {
+        Scanner mockScanner = mock(Scanner.class);
+        Map.Entry<Key, Value> entry = new AbstractMap.SimpleEntry<>(new Key("property", "field.delimiter", ""), new Value("\t".getBytes()));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(entry).iterator(), new ArrayList<Map.Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockScanner);
+        instance.enableLookupCache(1000, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("\t", instance.getFieldDelimiter());
+            assertNull(instance.getFactDelimiter());
+        }
+        verify(mockConnector, times(2)).createScanner(eq("TedgeMetadata"), any(Authorizations.class));
+        assertEquals(4, instance.getPropertyCache().getHits());
+
+        instance.invalidateLookupCache();
+        instance.getFactDelimiter();
+        verify(mockConnector, times(3)).createScanner(eq("TedgeMetadata"), any(Authorizations.class));
+    }
+
+    /** Test cached properties of one root are not returned for another.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetFieldDelimiter_cached_per_root() throws TableNotFoundException {
+        Scanner mockEdgeScanner = mock(Scanner.class);
+        Scanner mockOtherScanner = mock(Scanner.class);
+        when(mockEdgeScanner.iterator()).thenReturn(Arrays.asList(entry("field.delimiter", "\t")).iterator());
+        when(mockOtherScanner.iterator()).thenReturn(Arrays.asList(entry("field.delimiter", ",")).iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockEdgeScanner);
+        when(mockConnector.createScanner(eq("TotherMetadata"), any(Authorizations.class))).thenReturn(mockOtherScanner);
+        instance.enableLookupCache(1000, 1, TimeUnit.MINUTES);
+
+        assertEquals("\t", instance.getFieldDelimiter());
+        instance.setRootName("other");
+        assertEquals(",", instance.getFieldDelimiter());
+    }
+
+    /** Test getFactDelimiter returns null when the property is missing.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetFactDelimiter_missing() throws TableNotFoundException {
+        Scanner mockScanner = mock(Scanner.class);
+        when(mockScanner.iterator()).thenReturn(new ArrayList<Map.Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockScanner);
+        assertNull(instance.getFactDelimiter());
+    }
+
+    /** Test CreateTables records the profile's degree encoding and uses it for both combiners
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testCreateTables_with_degree_encoding() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        BatchWriter mockBatchWriter = mock(BatchWriter.class);
+        when(mockConnector.createBatchWriter(eq("TedgeMetadata"), any(BatchWriterConfig.class))).thenReturn(mockBatchWriter);
+        TableProfile profile = new TableProfile();
+        profile.setDegreeEncoding(DegreeEncoding.VARLEN);
+        instance.createTables("edge", profile);
+
+        ArgumentCaptor<IteratorSetting> settings = ArgumentCaptor.forClass(IteratorSetting.class);
+        verify(mockTableOperations, times(3)).attachIterator(anyString(), settings.capture());
+        int summing = 0;
+        for (IteratorSetting setting : settings.getAllValues()) {
+            if (setting.getIteratorClass().equals(SummingCombiner.class.getName())) {
+                assertEquals("VARLEN", setting.getOptions().get("type"));
+                summing++;
+            }
+        }
+        assertEquals(2, summing);
+
+        ArgumentCaptor<Mutation> mutation = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockBatchWriter).addMutation(mutation.capture());
+        boolean found = false;
+        for (ColumnUpdate update : mutation.getValue().getUpdates()) {
+            if ("degree.encoding".equals(new String(update.getColumnFamily()))) {
+                assertEquals("VARLEN", new String(update.getValue()));
+                found = true;
+            }
+        }
+        assertTrue(found);
+        assertEquals(DegreeEncoding.VARLEN, instance.getDegreeEncoding());
+        verify(mockConnector, never()).createScanner(anyString(), any(Authorizations.class));
+    }
+
+    /** Test getDegreeEncoding reads the metadata property once and defaults to STRING.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetDegreeEncoding() throws TableNotFoundException {
+        Scanner mockScanner = mock(Scanner.class);
+        Map.Entry<Key, Value> entry = new AbstractMap.SimpleEntry<>(new Key("property", "degree.encoding", ""), new Value("FIXEDLEN".getBytes()));
+        when(mockScanner.iterator()).thenReturn(Arrays.asList(entry).iterator(), new ArrayList<Map.Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockScanner);
+        assertEquals(DegreeEncoding.FIXEDLEN, instance.getDegreeEncoding());
+        assertEquals(DegreeEncoding.FIXEDLEN, instance.getDegreeEncoding());
+        verify(mockConnector, times(1)).createScanner(eq("TedgeMetadata"), any(Authorizations.class));
+
+        instance.clearDegreeEncoding();
+        assertEquals(DegreeEncoding.STRING, instance.getDegreeEncoding());
+    }
+
+    /** Test the degree encoding is read again when switching between existing root names.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetDegreeEncodingAfterRootNameChange() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+        for (String table : Arrays.asList("Ta", "TaTranspose", "TaDegree", "TaMetadata", "TaText", "Tb", "TbTranspose", "TbDegree", "TbMetadata", "TbText")) {
+            when(mockTableOperations.exists(table)).thenReturn(Boolean.TRUE);
+        }
+        Scanner scannerA = mock(Scanner.class);
+        Map.Entry<Key, Value> entryA = new AbstractMap.SimpleEntry<>(new Key("property", "degree.encoding", ""), new Value("VARLEN".getBytes()));
+        when(scannerA.iterator()).thenReturn(Arrays.asList(entryA).iterator());
+        when(mockConnector.createScanner(eq("TaMetadata"), any(Authorizations.class))).thenReturn(scannerA);
+        Scanner scannerB = mock(Scanner.class);
+        Map.Entry<Key, Value> entryB = new AbstractMap.SimpleEntry<>(new Key("property", "degree.encoding", ""), new Value("FIXEDLEN".getBytes()));
+        when(scannerB.iterator()).thenReturn(Arrays.asList(entryB).iterator());
+        when(mockConnector.createScanner(eq("TbMetadata"), any(Authorizations.class))).thenReturn(scannerB);
+
+        instance.createTables("a");
+        assertEquals(DegreeEncoding.VARLEN, instance.getDegreeEncoding());
+        instance.createTables("b");
+        assertEquals(DegreeEncoding.FIXEDLEN, instance.getDegreeEncoding());
+
+        when(scannerA.iterator()).thenReturn(Arrays.asList(entryA).iterator());
+        instance.setRootName("a");
+        assertEquals(DegreeEncoding.VARLEN, instance.getDegreeEncoding());
+        verify(mockTableOperations, never()).create(anyString(), any(NewTableConfiguration.class));
+    }
+
+    /** Test getFieldStatistics reads the sketches of a field with one lookup.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetFieldStatistics() throws TableNotFoundException {
+        FieldStatistics written = new FieldStatistics("city", 12, 4, 256);
+        written.add("r1", "city|Paris");
+        written.add("r2", "city|Paris");
+        written.add("r2", "city|Rome");
+        List<Map.Entry<Key, Value>> entries = new ArrayList<>();
+        for (ColumnUpdate update : written.toMutation().getUpdates()) {
+            entries.add(new AbstractMap.SimpleEntry<>(new Key("city", "sketch", new String(update.getColumnQualifier())), new Value(update.getValue())));
+        }
+        Scanner mockScanner = mock(Scanner.class);
+        when(mockScanner.iterator()).thenReturn(entries.iterator(), new ArrayList<Map.Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(eq("TedgeMetadata"), any(Authorizations.class))).thenReturn(mockScanner);
+
+        FieldStatistics statistics = instance.getFieldStatistics("city");
+        verify(mockScanner).setRange(Range.exact(new Text("city"), new Text("sketch")));
+        assertEquals(2, statistics.getDistinctRows());
+        assertEquals(2, statistics.getDistinctColumns());
+        assertEquals(3, statistics.getEntries());
+        assertEquals(1, statistics.estimateCount("city|Rome"));
+        assertNull(instance.getFieldStatistics("name"));
+    }
+
+    /** Test attachSketchCombiner attaches the combiner only when it is missing.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAttachSketchCombiner() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        Map<String, EnumSet<IteratorScope>> iterators = new HashMap<>();
+        when(mockTableOperations.listIterators("TedgeMetadata")).thenReturn(iterators);
+        instance.attachSketchCombiner();
+        ArgumentCaptor<IteratorSetting> setting = ArgumentCaptor.forClass(IteratorSetting.class);
+        verify(mockTableOperations).attachIterator(eq("TedgeMetadata"), setting.capture());
+        assertEquals(SketchCombiner.class.getName(), setting.getValue().getIteratorClass());
+
+        iterators.put("d4mSketch", EnumSet.allOf(IteratorScope.class));
+        instance.attachSketchCombiner();
+        verify(mockTableOperations, times(1)).attachIterator(anyString(), any(IteratorSetting.class));
+    }
+
+    private Map.Entry<Key, Value> entry(final String property, final String value) {
+        return new AbstractMap.SimpleEntry<>(new Key("property", property, ""), new Value(value.getBytes()));
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.codebits.d4m;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the TableProfile class
+ *
+ * @author david
+ */
+public class TableProfileTest {
+
+    private final static String COMPRESSION = "table.file.compress.type";
+
+    /** Test the lookup tables use snappy and TedgeText keeps gz when snappy is available.
+     */
+    @Test
+    public void testConstructor_with_snappy() {
+        TableProfile instance = new TableProfile(true);
+        assertEquals("snappy", instance.getEdgeProperties().get(COMPRESSION));
+        assertEquals("snappy", instance.getTransposeProperties().get(COMPRESSION));
+        assertEquals("snappy", instance.getDegreeProperties().get(COMPRESSION));
+        assertEquals("gz", instance.getTextProperties().get(COMPRESSION));
+        assertNull(instance.getMetadataProperties().get(COMPRESSION));
+    }
+
+    /** Test every table stays on gz without the native snappy codec.
+     */
+    @Test
+    public void testConstructor_without_snappy() {
+        TableProfile instance = new TableProfile(false);
+        assertNull(instance.getEdgeProperties().get(COMPRESSION));
+        assertNull(instance.getTransposeProperties().get(COMPRESSION));
+        assertNull(instance.getDegreeProperties().get(COMPRESSION));
+        assertEquals("gz", instance.getTextProperties().get(COMPRESSION));
+    }
+
+}
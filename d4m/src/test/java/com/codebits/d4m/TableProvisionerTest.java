@@ -0,0 +1,147 @@
+package com.codebits.d4m;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.NewTableConfiguration;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Mutation;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the TableProvisioner class
+ *
+ * @author david
+ */
+public class TableProvisionerTest {
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockBatchWriter = mock(BatchWriter.class);
+
+    private TableProvisioner instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockConnector.createMultiTableBatchWriter(any(BatchWriterConfig.class))).thenReturn(mockMultiTableBatchWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter(anyString())).thenReturn(mockBatchWriter);
+        when(mockTableOperations.list()).thenReturn(new TreeSet<>(Arrays.asList(
+                "Told", "ToldTranspose", "ToldDegree", "ToldMetadata", "ToldText",
+                "Thalf", "ThalfDegree")));
+        instance = new TableProvisioner(new TableManager(mockConnector, mockTableOperations));
+        instance.setNumThreads(4);
+    }
+
+    /** Test each root name gets its own result from a single list call.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testProvision() throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException, MutationsRejectedException {
+        Map<String, TableProvisioner.Result> results = instance.provision(Arrays.asList("new", "old", "half"));
+
+        assertEquals(Arrays.asList("new", "old", "half"), Arrays.asList(results.keySet().toArray()));
+        assertEquals(TableProvisioner.Status.CREATED, results.get("new").getStatus());
+        assertEquals(TableProvisioner.Status.EXISTS, results.get("old").getStatus());
+        assertEquals(TableProvisioner.Status.INCONSISTENT, results.get("half").getStatus());
+        assertTrue(results.get("half").getCause().getMessage().contains("Inconsistent state"));
+
+        verify(mockTableOperations).list();
+        verify(mockTableOperations, never()).exists(anyString());
+        verify(mockTableOperations, never()).attachIterator(anyString(), any(IteratorSetting.class));
+        verify(mockTableOperations, times(5)).create(startsWith("Tnew"), any(NewTableConfiguration.class));
+        verify(mockTableOperations, never()).create(startsWith("Told"), any(NewTableConfiguration.class));
+        verify(mockTableOperations, never()).create(startsWith("Thalf"), any(NewTableConfiguration.class));
+
+        ArgumentCaptor<Mutation> mutation = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockBatchWriter).addMutation(mutation.capture());
+        assertEquals("property", new String(mutation.getValue().getRow()));
+        verify(mockMultiTableBatchWriter).close();
+    }
+
+    /** Test the summing combiners are passed as create properties.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     */
+    @Test
+    public void testProvision_iterator_properties() throws AccumuloException, AccumuloSecurityException, TableExistsException {
+        instance.provision(Arrays.asList("new"));
+
+        ArgumentCaptor<NewTableConfiguration> degree = ArgumentCaptor.forClass(NewTableConfiguration.class);
+        verify(mockTableOperations).create(eq("TnewDegree"), degree.capture());
+        Map<String, String> properties = degree.getValue().getProperties();
+        assertEquals("7,org.apache.accumulo.core.iterators.user.SummingCombiner", properties.get("table.iterator.scan.SummingCombiner"));
+        assertEquals("7,org.apache.accumulo.core.iterators.user.SummingCombiner", properties.get("table.iterator.majc.SummingCombiner"));
+        assertEquals(":degree", properties.get("table.iterator.minc.SummingCombiner.opt.columns"));
+        assertEquals("true", properties.get("table.bloom.enabled"));
+    }
+
+    /** Test a failed create only fails its own root name.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableExistsException
+     */
+    @Test
+    public void testProvision_failure() throws AccumuloException, AccumuloSecurityException, TableExistsException {
+        doThrow(new AccumuloException("boom")).when(mockTableOperations).create(eq("TbadText"), any(NewTableConfiguration.class));
+        Map<String, TableProvisioner.Result> results = instance.provision(Arrays.asList("bad", "good"));
+
+        assertEquals(TableProvisioner.Status.FAILED, results.get("bad").getStatus());
+        assertFalse(results.get("bad").isSuccess());
+        assertTrue(results.get("bad").getCause() instanceof D4MException);
+        assertEquals(TableProvisioner.Status.CREATED, results.get("good").getStatus());
+        assertTrue(results.get("good").isSuccess());
+    }
+
+    /** Test a rejected shared metadata flush only fails the root names whose metadata cannot be written.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testProvision_metadata_failure() throws AccumuloException, AccumuloSecurityException, TableNotFoundException, MutationsRejectedException {
+        BatchWriter mockBadWriter = mock(BatchWriter.class);
+        doThrow(mock(MutationsRejectedException.class)).when(mockMultiTableBatchWriter).close();
+        doThrow(mock(MutationsRejectedException.class)).when(mockBadWriter).close();
+        when(mockConnector.createBatchWriter(eq("TgoodMetadata"), any(BatchWriterConfig.class))).thenReturn(mockBatchWriter);
+        when(mockConnector.createBatchWriter(eq("TbadMetadata"), any(BatchWriterConfig.class))).thenReturn(mockBadWriter);
+        Map<String, TableProvisioner.Result> results = instance.provision(Arrays.asList("bad", "good", "old"));
+
+        assertEquals(TableProvisioner.Status.FAILED, results.get("bad").getStatus());
+        assertTrue(results.get("bad").getCause() instanceof D4MException);
+        assertEquals(TableProvisioner.Status.CREATED, results.get("good").getStatus());
+        assertEquals(TableProvisioner.Status.EXISTS, results.get("old").getStatus());
+        verify(mockBatchWriter).close();
+        verify(mockConnector, never()).createBatchWriter(eq("ToldMetadata"), any(BatchWriterConfig.class));
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.codebits.d4m;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/** Tests for the TimePartitionManager class
+ *
+ * @author david
+ */
+public class TimePartitionManagerTest {
+
+    final static long DAY = 24L * 60 * 60 * 1000;
+    final static long OCT_16 = 1792108800000L;
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+
+    private TimePartitionManager instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(anyString(), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockTableOperations.list()).thenReturn(new TreeSet<>(Arrays.asList(
+                "Tedge_20261014", "Tedge_20261014Transpose", "Tedge_20261014Degree", "Tedge_20261014Metadata",
+                "Tedge_20261015", "Tedge_20261015Transpose", "Tedge_20261015Degree", "Tedge_20261015Metadata", "Tedge_20261015Text",
+                "Tedge_20261016", "Tedge_20261016Transpose", "Tedge_20261016Degree", "Tedge_20261016Metadata", "Tedge_20261016Text",
+                "Tedge", "TedgeTranspose", "Tother_20261001", "Tedge_2026")));
+        instance = new TimePartitionManager(new TableManager(mockConnector, mockTableOperations), "edge");
+        instance.setNumThreads(2);
+    }
+
+    /** Test root names are built from and parsed back to the bucket start.
+     */
+    @Test
+    public void testGetRootName() {
+        assertEquals("edge_20261016", instance.getRootName(OCT_16 + 13 * 60 * 60 * 1000));
+        assertEquals(OCT_16, instance.getBucketStart("edge_20261016"));
+        assertEquals(-1, instance.getBucketStart("edge_2026"));
+        assertEquals(-1, instance.getBucketStart("edge_20261332"));
+        assertEquals(-1, instance.getBucketStart("other_20261016"));
+        assertEquals(-1, instance.getBucketStart("edge_20261016Transpose"));
+
+        instance.setGranularity(TimePartitionManager.Granularity.HOUR);
+        assertEquals("edge_2026101613", instance.getRootName(OCT_16 + 13 * 60 * 60 * 1000 + 59));
+        assertEquals(OCT_16 + 13 * 60 * 60 * 1000, instance.getBucketStart("edge_2026101613"));
+    }
+
+    /** Test only buckets of the prefix which overlap the time range are listed.
+     */
+    @Test
+    public void testListPartitions() {
+        assertEquals(Arrays.asList("edge_20261014", "edge_20261015", "edge_20261016"), instance.listPartitions());
+        assertEquals(Arrays.asList("edge_20261015", "edge_20261016"), instance.listPartitions(OCT_16 - 1, OCT_16 + DAY));
+        assertEquals(Arrays.asList("edge_20261014"), instance.listPartitions(OCT_16 - 2 * DAY + 5, OCT_16 - DAY - 1));
+    }
+
+    /** Test queries fan out to the buckets of the range and are merged.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetRows() throws TableNotFoundException {
+        BatchScanner first = mock(BatchScanner.class);
+        BatchScanner second = mock(BatchScanner.class);
+        when(mockConnector.createBatchScanner(eq("Tedge_20261015"), any(Authorizations.class), anyInt())).thenReturn(first);
+        when(mockConnector.createBatchScanner(eq("Tedge_20261016"), any(Authorizations.class), anyInt())).thenReturn(second);
+        when(first.iterator()).thenReturn(entries("r1", "c1", "1", "r1", "c2", "1").iterator());
+        when(second.iterator()).thenReturn(entries("r1", "c2", "2", "r1", "c3", "1").iterator());
+
+        AssociativeArray result = instance.getRows(OCT_16 - DAY, OCT_16 + 1, Arrays.asList("r1"));
+        assertEquals(3, result.size());
+        assertEquals("2", result.get("r1", "c2"));
+        verify(mockConnector, never()).createBatchScanner(eq("Tedge_20261014"), any(Authorizations.class), anyInt());
+        verify(first).close();
+        verify(second).close();
+    }
+
+    /** Test degrees are summed over the buckets of the range.
+     *
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testGetDegrees() throws TableNotFoundException {
+        BatchScanner first = mock(BatchScanner.class);
+        BatchScanner second = mock(BatchScanner.class);
+        when(mockConnector.createBatchScanner(eq("Tedge_20261014Degree"), any(Authorizations.class), anyInt())).thenReturn(first);
+        when(mockConnector.createBatchScanner(eq("Tedge_20261015Degree"), any(Authorizations.class), anyInt())).thenReturn(second);
+        when(first.iterator()).thenReturn(entries("c1", "degree", "3").iterator());
+        when(second.iterator()).thenReturn(entries("c1", "degree", "4", "c2", "degree", "1").iterator());
+
+        Map<String, Long> degrees = instance.getDegrees(OCT_16 - 2 * DAY, OCT_16 - 1, Arrays.asList("c1", "c2", "c3"));
+        assertEquals(Long.valueOf(7), degrees.get("c1"));
+        assertEquals(Long.valueOf(1), degrees.get("c2"));
+        assertEquals(Long.valueOf(0), degrees.get("c3"));
+    }
+
+    /** Test retention deletes every table of the expired buckets and nothing else.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testEnforceRetention() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        instance.setRetention(2);
+        doThrow(new TableNotFoundException(null, "Tedge_20261014Degree", null)).when(mockTableOperations).delete("Tedge_20261014Degree");
+
+        List<String> dropped = instance.enforceRetention(OCT_16 + 1000);
+        assertEquals(Arrays.asList("edge_20261014"), dropped);
+        verify(mockTableOperations).delete("Tedge_20261014");
+        verify(mockTableOperations).delete("Tedge_20261014Transpose");
+        verify(mockTableOperations).delete("Tedge_20261014Metadata");
+        verify(mockTableOperations, times(4)).delete(anyString());
+    }
+
+    private List<Entry<Key, Value>> entries(final String... keys) {
+        List<Entry<Key, Value>> entries = new ArrayList<>();
+        for (int i = 0; i < keys.length; i += 3) {
+            entries.add(new SimpleEntry<>(new Key(keys[i], "", keys[i + 1]), new Value(keys[i + 2].getBytes())));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.codebits.d4m;
+
+import java.util.ArrayList;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.admin.TableOperations;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/** Tests for the TimePartitionedWriter class
+ *
+ * @author david
+ */
+public class TimePartitionedWriterTest {
+
+    final static long DAY = 24L * 60 * 60 * 1000;
+    final static long OCT_16 = 1792108800000L;
+
+    Connector mockConnector = mock(Connector.class);
+    TableOperations mockTableOperations = mock(TableOperations.class);
+    Scanner mockMetadataScanner = mock(Scanner.class);
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockWriter = mock(BatchWriter.class);
+
+    private TimePartitionedWriter instance = null;
+
+    /** Setup instance for each test.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMetadataScanner.iterator()).thenReturn(new ArrayList<Entry<Key, Value>>().iterator());
+        when(mockConnector.createScanner(anyString(), any(Authorizations.class))).thenReturn(mockMetadataScanner);
+        when(mockConnector.createMultiTableBatchWriter(any(BatchWriterConfig.class))).thenReturn(mockMultiTableBatchWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter(anyString())).thenReturn(mockWriter);
+        when(mockTableOperations.exists(anyString())).thenReturn(true);
+        TimePartitionManager partitionManager = new TimePartitionManager(new TableManager(mockConnector, mockTableOperations), "edge");
+        instance = new TimePartitionedWriter(partitionManager);
+        instance.setClock(() -> OCT_16 + 12 * 60 * 60 * 1000);
+    }
+
+    /** Test edges go to the writer of their day and the oldest writer is closed when too many are open.
+     *
+     * @throws MutationsRejectedException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddEdge() throws MutationsRejectedException, AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        instance.setMaxOpenWriters(2);
+        instance.setWriterFactory(tableManager -> {
+            D4MWriter writer = new D4MWriter(tableManager);
+            writer.setMaxDegreeEntries(0);
+            return writer;
+        });
+        instance.addEdge(OCT_16 + 5, "r1", "c1");
+        instance.addEdge(OCT_16 + DAY - 1, "r2", "c1", "2");
+        instance.addEdge(OCT_16 - DAY, "r3", "c1");
+        assertEquals(2, instance.getOpenWriters());
+        verify(mockMultiTableBatchWriter, never()).close();
+
+        instance.addEdge(OCT_16 + DAY, "r4", "c1");
+        verify(mockMultiTableBatchWriter, times(1)).close();
+        verify(mockMultiTableBatchWriter).getBatchWriter("Tedge_20261015");
+        verify(mockMultiTableBatchWriter).getBatchWriter("Tedge_20261016Transpose");
+        verify(mockMultiTableBatchWriter).getBatchWriter("Tedge_20261017Degree");
+        verify(mockWriter, times(12)).addMutation(any(Mutation.class));
+
+        instance.close();
+        assertEquals(0, instance.getOpenWriters());
+        verify(mockMultiTableBatchWriter, times(3)).close();
+    }
+
+    /** Test interleaved late edges keep their writer open while the least recently used one is closed.
+     *
+     * @throws MutationsRejectedException
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddEdge_closes_least_recently_used() throws MutationsRejectedException, AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        instance.setMaxOpenWriters(2);
+        instance.addEdge(OCT_16 - DAY, "r1", "c1");
+        instance.addEdge(OCT_16, "r2", "c1");
+        instance.addEdge(OCT_16 - DAY, "r3", "c1");
+        instance.addEdge(OCT_16 - 2 * DAY, "r4", "c1");
+        verify(mockMultiTableBatchWriter, times(1)).close();
+
+        for (int i = 0; i < 10; i++) {
+            instance.addEdge(OCT_16 - DAY, "r5", "c1");
+            instance.addEdge(OCT_16 - 2 * DAY, "r6", "c1");
+        }
+        verify(mockMultiTableBatchWriter, times(1)).close();
+        verify(mockMultiTableBatchWriter, times(1)).getBatchWriter("Tedge_20261015");
+        verify(mockMultiTableBatchWriter, times(1)).getBatchWriter("Tedge_20261014");
+        instance.close();
+    }
+
+    /** Test edges older than the retention are dropped without creating their bucket.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Test
+    public void testAddEdge_older_than_retention() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        instance.getPartitionManager().setRetention(2);
+        assertFalse(instance.isExpired(OCT_16 - DAY));
+        assertTrue(instance.isExpired(OCT_16 - DAY - 1));
+
+        instance.addEdge(OCT_16 - 2 * DAY, "r1", "c1");
+        instance.addEdge(OCT_16 - 30 * DAY, "r2", "c1", "2");
+        assertEquals(2, instance.getExpiredEdges());
+        assertEquals(0, instance.getOpenWriters());
+        verify(mockTableOperations, never()).exists(anyString());
+    }
+
+    /** Test getWriter refuses a timestamp older than the retention.
+     */
+    @Test(expected = D4MException.class)
+    public void testGetWriter_older_than_retention() {
+        instance.getPartitionManager().setRetention(1);
+        instance.getWriter(OCT_16 - 1);
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.codebits.d4m;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/** Tests for the TransposeMultiplyIterator class
+ *
+ * @author david
+ */
+public class TransposeMultiplyIteratorTest {
+
+    MultiTableBatchWriter mockMultiTableBatchWriter = mock(MultiTableBatchWriter.class);
+    BatchWriter mockEdgeWriter = mock(BatchWriter.class);
+    BatchWriter mockTransposeWriter = mock(BatchWriter.class);
+
+    private final SortedMap<Key, Value> source = new TreeMap<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    private final TransposeMultiplyIterator instance = new TransposeMultiplyIterator() {
+        @Override
+        protected MultiTableBatchWriter createWriter() {
+            return mockMultiTableBatchWriter;
+        }
+    };
+
+    /** Setup the source rows r1 = {a:1, b:2} and r2 = {a:3}.
+     *
+     * @throws AccumuloException
+     * @throws AccumuloSecurityException
+     * @throws TableNotFoundException
+     */
+    @Before
+    public void setup() throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        when(mockMultiTableBatchWriter.getBatchWriter("Tresult")).thenReturn(mockEdgeWriter);
+        when(mockMultiTableBatchWriter.getBatchWriter("TresultTranspose")).thenReturn(mockTransposeWriter);
+        source.put(new Key("r1", "", "a"), new Value("1".getBytes()));
+        source.put(new Key("r1", "", "b"), new Value("2".getBytes()));
+        source.put(new Key("r2", "", "a"), new Value("3".getBytes()));
+        options.put(RemoteWriteIterator.EDGE_TABLE, "Tresult");
+        options.put(RemoteWriteIterator.TRANSPOSE_TABLE, "TresultTranspose");
+    }
+
+    /** Test the self product writes every column pair of each row.
+     *
+     * @throws IOException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testSelfProduct() throws IOException, MutationsRejectedException {
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+
+        assertTrue(instance.hasTop());
+        assertEquals(new Key("r2", "", "d4mProgress"), instance.getTopKey());
+        assertEquals("10", instance.getTopValue().toString());
+        instance.next();
+        assertFalse(instance.hasTop());
+
+        List<String> edges = entries(mockEdgeWriter, 3);
+        assertEquals("a:a=1,a:b=2,b:a=2,b:b=4,a:a=9", String.join(",", edges));
+        assertEquals("a:a=1,a:b=2,b:a=2,b:b=4,a:a=9", String.join(",", entries(mockTransposeWriter, 3)));
+        verify(mockMultiTableBatchWriter).close();
+    }
+
+    /** Test progress entries per flush, and that a resumed scan skips the finished row.
+     *
+     * @throws IOException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testResume() throws IOException, MutationsRejectedException {
+        options.put(RemoteWriteIterator.ENTRIES_PER_FLUSH, "1");
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+        assertEquals(new Key("r1", "", "d4mProgress"), instance.getTopKey());
+        assertEquals("8", instance.getTopValue().toString());
+
+        instance.seek(new Range(instance.getTopKey(), false, null, true), new ArrayList<ByteSequence>(), false);
+        assertEquals(new Key("r2", "", "d4mProgress"), instance.getTopKey());
+        assertEquals("2", instance.getTopValue().toString());
+        instance.next();
+        assertFalse(instance.hasTop());
+        verify(mockMultiTableBatchWriter, times(2)).close();
+        verify(mockEdgeWriter, times(3)).addMutation(any(Mutation.class));
+    }
+
+    /** Test a scan retried from the start writes the same partials with the same timestamps.
+     *
+     * @throws IOException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testRetriedScanRepeatsPartials() throws IOException, MutationsRejectedException {
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(mockEdgeWriter, times(6)).addMutation(captor.capture());
+        List<Mutation> mutations = captor.getAllValues();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(mutations.get(i), mutations.get(i + 3));
+        }
+        assertEquals(RemoteWriteIterator.partialTimestamp(new Text("r1")), mutations.get(0).getUpdates().get(0).getTimestamp());
+        assertEquals(RemoteWriteIterator.partialTimestamp(new Text("r2")), mutations.get(2).getUpdates().get(0).getTimestamp());
+        assertNotEquals(mutations.get(0).getUpdates().get(0).getTimestamp(), mutations.get(2).getUpdates().get(0).getTimestamp());
+    }
+
+    /** Test rows wider than maxRowColumns are skipped.
+     *
+     * @throws IOException
+     * @throws MutationsRejectedException
+     */
+    @Test
+    public void testMaxRowColumns() throws IOException, MutationsRejectedException {
+        options.put(TransposeMultiplyIterator.MAX_ROW_COLUMNS, "1");
+        instance.init(new SortedMapIterator(source), options, null);
+        instance.seek(new Range(), new ArrayList<ByteSequence>(), false);
+        assertEquals("2", instance.getTopValue().toString());
+        assertEquals("a:a=9", String.join(",", entries(mockEdgeWriter, 1)));
+    }
+
+    private List<String> entries(final BatchWriter writer, final int mutations) throws MutationsRejectedException {
+        ArgumentCaptor<Mutation> captor = ArgumentCaptor.forClass(Mutation.class);
+        verify(writer, times(mutations)).addMutation(captor.capture());
+        List<String> entries = new ArrayList<>();
+        for (Mutation mutation : captor.getAllValues()) {
+            for (ColumnUpdate update : mutation.getUpdates()) {
+                entries.add(new String(mutation.getRow()) + ":" + new String(update.getColumnQualifier()) + "=" + new String(update.getValue()));
+            }
+        }
+        return entries;
+    }
+
+}
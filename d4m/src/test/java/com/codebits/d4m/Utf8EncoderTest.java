@@ -0,0 +1,65 @@
+package com.codebits.d4m;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.hadoop.io.Text;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the Utf8Encoder class
+ *
+ * @author david
+ */
+public class Utf8EncoderTest {
+
+    private final Utf8Encoder instance = new Utf8Encoder();
+
+    /** Test the encoding matches String.getBytes for one, two, three and four byte characters.
+     */
+    @Test
+    public void testEncode() {
+        String[] samples = {"", "city|Paris", "café", "東京", "emoji 😀", "tab\there"};
+        for (String sample : samples) {
+            int length = instance.encode(sample);
+            assertArrayEquals(sample, sample.getBytes(StandardCharsets.UTF_8), Arrays.copyOf(instance.getBuffer(), length));
+        }
+    }
+
+    /** Test an unpaired surrogate is written as a question mark.
+     */
+    @Test
+    public void testEncode_unpaired_surrogate() {
+        int length = instance.encode("a\ud83db");
+        assertEquals("a?b", new String(instance.getBuffer(), 0, length, StandardCharsets.UTF_8));
+    }
+
+    /** Test the buffer grows for long input and the Text is reused.
+     */
+    @Test
+    public void testEncode_text() {
+        Text text = new Text();
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'é');
+        String text1000 = new String(chars);
+        assertSame(text, instance.encode(text1000, text));
+        assertEquals(text1000, text.toString());
+        instance.encode("short", text);
+        assertEquals("short", text.toString());
+    }
+
+    /** Test mutations and values hold their own copy of the bytes.
+     */
+    @Test
+    public void testNewMutationAndValue() {
+        Mutation mutation = instance.newMutation("ré");
+        assertEquals(3, instance.getLength());
+        instance.encode("other");
+        assertArrayEquals("ré".getBytes(StandardCharsets.UTF_8), mutation.getRow());
+        assertEquals("x", new String(instance.newValue("x").get(), StandardCharsets.UTF_8));
+        assertEquals("-1234567890", new String(instance.newValue(-1234567890L).get(), StandardCharsets.UTF_8));
+        assertEquals("0", new String(instance.newValue(0).get(), StandardCharsets.UTF_8));
+        assertEquals(Long.toString(Long.MIN_VALUE), new String(instance.newValue(Long.MIN_VALUE).get(), StandardCharsets.UTF_8));
+    }
+
+}
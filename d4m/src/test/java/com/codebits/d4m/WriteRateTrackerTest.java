@@ -0,0 +1,31 @@
+package com.codebits.d4m;
+
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/** Tests for the WriteRateTracker class
+ *
+ * @author david
+ */
+public class WriteRateTrackerTest {
+
+    /** Test writes are counted per table and prefix and reset by drain.
+     */
+    @Test
+    public void testRecordAndDrain() {
+        WriteRateTracker instance = new WriteRateTracker(2);
+        instance.record("Tedge", "abc");
+        instance.record("Tedge", "abd");
+        instance.record("Tedge", "a");
+        instance.record("TedgeText", "abc");
+
+        Map<String, Long> counts = instance.drain("Tedge");
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(2), counts.get("ab"));
+        assertEquals(Long.valueOf(1), counts.get("a"));
+        assertTrue(instance.drain("Tedge").isEmpty());
+        assertEquals(Long.valueOf(1), instance.drain("TedgeText").get("ab"));
+    }
+
+}